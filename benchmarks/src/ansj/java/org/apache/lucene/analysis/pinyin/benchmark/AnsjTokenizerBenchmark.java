@@ -0,0 +1,68 @@
+package org.apache.lucene.analysis.pinyin.benchmark;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.ansj.AnsjTokenizerFactory;
+import org.apache.lucene.analysis.util.ClasspathResourceLoader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * AnsjTokenizerFactory的基准测试[只在ansj profile中编译]
+ *
+ * index：索引分词；query：查询分词。
+ * @author Lanxiaowei
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AnsjTokenizerBenchmark {
+	@Param({"index", "query"})
+	public String mode;
+
+	@Param({"TITLES", "BODIES", "POLYPHONES"})
+	public Corpus corpus;
+
+	private String[] documents;
+	private Tokenizer stream;
+
+	@Setup
+	public void setup() throws IOException {
+		List<String> documents = this.corpus.documents();
+		this.documents = documents.toArray(new String[documents.size()]);
+		Map<String, String> args = new HashMap<String, String>();
+		args.put("query", String.valueOf("query".equals(this.mode)));
+		AnsjTokenizerFactory factory = new AnsjTokenizerFactory(args);
+		factory.inform(new ClasspathResourceLoader(AnsjTokenizerBenchmark.class));
+		this.stream = factory.create();
+	}
+
+	@Benchmark
+	public int tokenize(TokenCounter counter) throws IOException {
+		int tokens = 0;
+		for (String document : this.documents) {
+			this.stream.setReader(new StringReader(document));
+			tokens += counter.consume(this.stream);
+		}
+		return tokens;
+	}
+}
@@ -0,0 +1,117 @@
+package org.apache.lucene.analysis.pinyin.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.ProfilerConfig;
+
+/**
+ * 运行基准测试并汇总吞吐量、tokens/秒和每个词元分配的字节数
+ *
+ * 参数与JMH命令行相同[如 PinyinAnalyzer -f 1 -wi 3 -i 5 -p corpus=BODIES]，总是启用GC profiler，
+ * 每个词元分配的字节数 = gc.alloc.rate.norm[字节/操作] ÷ 每次操作输出的词元数。
+ * 通过Maven运行：mvn package exec:exec -Dbenchmark.args="PinyinTokenFilter -p filter=ngram,legacyNgram"
+ * @author Lanxiaowei
+ *
+ */
+public final class BenchmarkRunner {
+	private static final String TOKENS = "tokens";
+	private static final String ALLOC_NORM = "gc.alloc.rate.norm";
+
+	private BenchmarkRunner() {
+	}
+
+	public static void main(String[] args) throws CommandLineOptionException, RunnerException, IOException {
+		CommandLineOptions cmd = new CommandLineOptions(args);
+		if (cmd.shouldHelp()) {
+			cmd.showHelp();
+			return;
+		}
+		if (cmd.shouldList()) {
+			new Runner(cmd).list();
+			return;
+		}
+		ChainedOptionsBuilder builder = new OptionsBuilder().parent(cmd);
+		if (!hasGCProfiler(cmd.getProfilers())) {
+			builder.addProfiler(GCProfiler.class);
+		}
+		Collection<RunResult> results = new Runner(builder.build()).run();
+		System.out.println();
+		System.out.println(summary(results));
+	}
+
+	private static boolean hasGCProfiler(List<ProfilerConfig> profilers) {
+		for (ProfilerConfig profiler : profilers) {
+			if ("gc".equals(profiler.getKlass()) || GCProfiler.class.getName().equals(profiler.getKlass())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 汇总表：基准测试、参数、操作/秒、tokens/秒、字节/词元
+	 */
+	static String summary(Collection<RunResult> results) {
+		List<String[]> rows = new ArrayList<String[]>();
+		rows.add(new String[] {"Benchmark", "Params", "ops/s", "tokens/s", "bytes/token"});
+		for (RunResult result : results) {
+			BenchmarkParams params = result.getParams();
+			String benchmark = params.getBenchmark();
+			benchmark = benchmark.substring(benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1) + 1);
+			StringBuilder keys = new StringBuilder();
+			for (String key : params.getParamsKeys()) {
+				if (keys.length() > 0) {
+					keys.append(' ');
+				}
+				keys.append(key).append('=').append(params.getParam(key));
+			}
+			if (params.getThreads() > 1) {
+				keys.append(keys.length() > 0 ? " " : "").append("threads=").append(params.getThreads());
+			}
+			double ops = result.getPrimaryResult().getScore();
+			Map<String, Result> secondary = result.getSecondaryResults();
+			Result tokens = secondary.get(TOKENS);
+			Result alloc = secondary.get(ALLOC_NORM);
+			String tokensPerSecond = tokens == null ? "-" : format(tokens.getScore());
+			String bytesPerToken = "-";
+			if (tokens != null && alloc != null && tokens.getScore() > 0) {
+				bytesPerToken = String.format("%.2f", alloc.getScore() * ops / tokens.getScore());
+			}
+			rows.add(new String[] {benchmark, keys.toString(), format(ops), tokensPerSecond, bytesPerToken});
+		}
+		int[] widths = new int[rows.get(0).length];
+		for (String[] row : rows) {
+			for (int i = 0; i < row.length; i++) {
+				widths[i] = Math.max(widths[i], row[i].length());
+			}
+		}
+		StringBuilder table = new StringBuilder();
+		for (String[] row : rows) {
+			for (int i = 0; i < row.length; i++) {
+				//前两列左对齐，数值列右对齐
+				String format = i < 2 ? "%-" + widths[i] + "s  " : "%" + widths[i] + "s  ";
+				table.append(String.format(format, row[i]));
+			}
+			table.append(System.lineSeparator());
+		}
+		return table.toString();
+	}
+
+	private static String format(double value) {
+		return String.format("%,.0f", value);
+	}
+}
@@ -0,0 +1,165 @@
+package org.apache.lucene.analysis.pinyin.benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.lucene.analysis.pinyin.utils.PinyinTable;
+import org.wltea.analyzer.core.IKSegmenter;
+import org.wltea.analyzer.core.Lexeme;
+
+/**
+ * 基准测试使用的中文语料[classpath下的corpus目录]
+ *
+ * titles：新闻标题等短文本；bodies：新闻正文等长文本；polyphones：多音字密集的短句。
+ * 除原文外还提供按IK分词后用空格连接的文本和逐词转换后的全拼文本，
+ * 用于在WhitespaceTokenizer之后单独测试某一个TokenFilter。
+ * @author Lanxiaowei
+ *
+ */
+public enum Corpus {
+	TITLES("titles.txt"),
+	BODIES("bodies.txt"),
+	POLYPHONES("polyphones.txt");
+
+	private final String resource;
+	private List<String> documents;
+	private List<String> segmented;
+	private List<String> pinyin;
+	private List<String> terms;
+
+	private Corpus(String resource) {
+		this.resource = resource;
+	}
+
+	/**
+	 * 原文，每行一篇文档
+	 * @return
+	 */
+	public synchronized List<String> documents() {
+		if (this.documents == null) {
+			this.documents = Collections.unmodifiableList(read(this.resource));
+		}
+		return this.documents;
+	}
+
+	/**
+	 * IK细粒度分词后用空格连接的文本
+	 * @return
+	 */
+	public synchronized List<String> segmented() {
+		if (this.segmented == null) {
+			List<String> segmented = new ArrayList<String>();
+			StringBuilder builder = new StringBuilder();
+			for (String document : documents()) {
+				builder.setLength(0);
+				for (String term : segment(document)) {
+					if (builder.length() > 0) {
+						builder.append(' ');
+					}
+					builder.append(term);
+				}
+				segmented.add(builder.toString());
+			}
+			this.segmented = Collections.unmodifiableList(segmented);
+		}
+		return this.segmented;
+	}
+
+	/**
+	 * IK分词后逐词转换为全拼并用空格连接的文本[NGram类TokenFilter的输入]
+	 * @return
+	 */
+	public synchronized List<String> pinyin() {
+		if (this.pinyin == null) {
+			List<String> pinyin = new ArrayList<String>();
+			StringBuilder builder = new StringBuilder();
+			for (String document : documents()) {
+				builder.setLength(0);
+				for (String term : segment(document)) {
+					if (builder.length() > 0) {
+						builder.append(' ');
+					}
+					//多音字取第一个读音
+					for (int i = 0; i < term.length(); i++) {
+						short[] readings = PinyinTable.readings(term.charAt(i));
+						if (readings.length > 0) {
+							builder.append(PinyinTable.syllable(readings[0]));
+						} else {
+							builder.append(term.charAt(i));
+						}
+					}
+				}
+				pinyin.add(builder.toString());
+			}
+			this.pinyin = Collections.unmodifiableList(pinyin);
+		}
+		return this.pinyin;
+	}
+
+	/**
+	 * 所有文档IK分词后的词
+	 * @return
+	 */
+	public synchronized List<String> terms() {
+		if (this.terms == null) {
+			List<String> terms = new ArrayList<String>();
+			for (String document : documents()) {
+				terms.addAll(segment(document));
+			}
+			this.terms = Collections.unmodifiableList(terms);
+		}
+		return this.terms;
+	}
+
+	private static List<String> read(String resource) {
+		InputStream in = Corpus.class.getResourceAsStream("/corpus/" + resource);
+		if (in == null) {
+			throw new IllegalStateException("Corpus resource not found: /corpus/" + resource);
+		}
+		List<String> lines = new ArrayList<String>();
+		try {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+			try {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					line = line.trim();
+					if (!line.isEmpty()) {
+						lines.add(line);
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Failed to read corpus resource /corpus/" + resource, e);
+		}
+		return lines;
+	}
+
+	private static List<String> segment(String document) {
+		//IK首次加载词典时向标准输出打印日志，避免混入JMH的输出
+		PrintStream stdout = System.out;
+		System.setOut(System.err);
+		try {
+			List<String> terms = new ArrayList<String>();
+			IKSegmenter segmenter = new IKSegmenter(new StringReader(document), false);
+			Lexeme lexeme;
+			while ((lexeme = segmenter.next()) != null) {
+				terms.add(lexeme.getLexemeText());
+			}
+			return terms;
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		} finally {
+			System.setOut(stdout);
+		}
+	}
+}
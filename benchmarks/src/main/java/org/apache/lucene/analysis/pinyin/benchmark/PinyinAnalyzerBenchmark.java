@@ -0,0 +1,95 @@
+package org.apache.lucene.analysis.pinyin.benchmark;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.analysis.pinyin.lucene5.PinyinAnalyzer;
+import org.apache.lucene.analysis.pinyin.lucene5.PinyinAnalyzer.FieldConfig;
+import org.apache.lucene.analysis.pinyin.lucene5.PinyinAnalyzer.GramMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 完整PinyinAnalyzer分析链[IK分词 -> 拼音转换 -> NGram/EdgeNGram]的基准测试
+ *
+ * 所有线程共用一个Analyzer，每个线程通过Analyzer的复用策略拿到自己的TokenStream，与索引时的用法一致。
+ * multiThreaded用4个线程同时分析，与singleThreaded对比可以看出共享资源[词典、缓存]上的竞争。
+ * @author Lanxiaowei
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PinyinAnalyzerBenchmark {
+	private static final String FIELD = "content";
+
+	@Param({"NONE", "NGRAM", "EDGE"})
+	public GramMode gramMode;
+
+	@Param({"false", "true"})
+	public boolean useSmart;
+
+	@Param({"TITLES", "BODIES", "POLYPHONES"})
+	public Corpus corpus;
+
+	private String[] documents;
+	private PinyinAnalyzer analyzer;
+
+	@Setup
+	public void setup() throws IOException {
+		List<String> documents = this.corpus.documents();
+		this.documents = documents.toArray(new String[documents.size()]);
+		this.analyzer = PinyinAnalyzer.builder()
+				.defaults(new FieldConfig().setUseSmart(this.useSmart).setGramMode(this.gramMode))
+				.build();
+		//IK在第一次分词时加载词典并向标准输出打印日志，在预热前完成
+		PrintStream stdout = System.out;
+		System.setOut(System.err);
+		try {
+			analyze(new TokenCounter());
+		} finally {
+			System.setOut(stdout);
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.analyzer.close();
+	}
+
+	@Benchmark
+	@Threads(1)
+	public int singleThreaded(TokenCounter counter) throws IOException {
+		return analyze(counter);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public int multiThreaded(TokenCounter counter) throws IOException {
+		return analyze(counter);
+	}
+
+	private int analyze(TokenCounter counter) throws IOException {
+		int tokens = 0;
+		for (String document : this.documents) {
+			tokens += counter.consume(this.analyzer.tokenStream(FIELD, document));
+		}
+		return tokens;
+	}
+}
@@ -0,0 +1,163 @@
+package org.apache.lucene.analysis.pinyin.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.sourceforge.pinyin4j.PinyinHelper;
+import net.sourceforge.pinyin4j.format.HanyuPinyinOutputFormat;
+import net.sourceforge.pinyin4j.format.exception.BadHanyuPinyinOutputFormatCombination;
+
+import org.apache.lucene.analysis.pinyin.utils.Constant;
+import org.apache.lucene.analysis.pinyin.utils.Pinyin4jUtil;
+import org.apache.lucene.analysis.pinyin.utils.PinyinTable;
+import org.apache.lucene.analysis.pinyin.utils.PinyinVisitor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * 汉字转拼音的基准测试
+ *
+ * 逐字：PinyinTable与pinyin4j的PinyinHelper；逐词：Pinyin4jUtil的String接口与char[]接口。
+ * 一次操作处理整个语料，tokens为输出的拼音个数[逐字为读音数，逐词为拼音组合数]。
+ * @author Lanxiaowei
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PinyinConversionBenchmark {
+	@Param({"TITLES", "BODIES", "POLYPHONES"})
+	public Corpus corpus;
+
+	private char[][] documents;
+	private char[][] terms;
+	private String[] termStrings;
+	private HanyuPinyinOutputFormat format;
+	private CountingVisitor visitor;
+
+	@Setup
+	public void setup() {
+		List<String> documents = this.corpus.documents();
+		this.documents = new char[documents.size()][];
+		for (int i = 0; i < documents.size(); i++) {
+			this.documents[i] = documents.get(i).toCharArray();
+		}
+		List<String> terms = this.corpus.terms();
+		this.termStrings = terms.toArray(new String[terms.size()]);
+		this.terms = new char[terms.size()][];
+		for (int i = 0; i < terms.size(); i++) {
+			this.terms[i] = terms.get(i).toCharArray();
+		}
+		this.format = Pinyin4jUtil.getOutputFormat();
+		this.visitor = new CountingVisitor();
+	}
+
+	/**
+	 * 逐字查PinyinTable[分词器实际使用的路径]
+	 */
+	@Benchmark
+	public int charPinyinTable(TokenCounter counter) {
+		int readings = 0;
+		for (char[] document : this.documents) {
+			for (char c : document) {
+				readings += PinyinTable.readings(c).length;
+			}
+		}
+		counter.tokens += readings;
+		return readings;
+	}
+
+	/**
+	 * 逐字调用pinyin4j[对照组]
+	 */
+	@Benchmark
+	public void charPinyin4j(TokenCounter counter, Blackhole blackhole) throws BadHanyuPinyinOutputFormatCombination {
+		int readings = 0;
+		for (char[] document : this.documents) {
+			for (char c : document) {
+				String[] pinyins = PinyinHelper.toHanyuPinyinStringArray(c, this.format);
+				if (pinyins != null) {
+					readings += pinyins.length;
+				}
+				blackhole.consume(pinyins);
+			}
+		}
+		counter.tokens += readings;
+	}
+
+	/**
+	 * 逐词获取全拼字符串
+	 */
+	@Benchmark
+	public void termGetPinyin(TokenCounter counter, Blackhole blackhole) {
+		for (String term : this.termStrings) {
+			blackhole.consume(Pinyin4jUtil.getPinyin(term));
+		}
+		counter.tokens += this.termStrings.length;
+	}
+
+	/**
+	 * 逐词获取简拼字符串
+	 */
+	@Benchmark
+	public void termGetPinyinShort(TokenCounter counter, Blackhole blackhole) {
+		for (String term : this.termStrings) {
+			blackhole.consume(Pinyin4jUtil.getPinyinShort(term));
+		}
+		counter.tokens += this.termStrings.length;
+	}
+
+	/**
+	 * 逐词通过char[]接口回调全拼组合[不创建对象]
+	 */
+	@Benchmark
+	public int termVisitPinyin(TokenCounter counter) {
+		int combinations = 0;
+		for (char[] term : this.terms) {
+			combinations += Pinyin4jUtil.visitPinyin(term, 0, term.length, Constant.DEFAULT_MAX_COMBINATIONS,
+					this.visitor);
+		}
+		counter.tokens += combinations;
+		return combinations + this.visitor.chars;
+	}
+
+	/**
+	 * 逐词通过char[]接口回调简拼组合[不创建对象]
+	 */
+	@Benchmark
+	public int termVisitPinyinShort(TokenCounter counter) {
+		int combinations = 0;
+		for (char[] term : this.terms) {
+			combinations += Pinyin4jUtil.visitPinyinShort(term, 0, term.length, Constant.DEFAULT_MAX_COMBINATIONS,
+					this.visitor);
+		}
+		counter.tokens += combinations;
+		return combinations + this.visitor.chars;
+	}
+
+	/**
+	 * 累计输出的字符数，防止回调被优化掉
+	 */
+	private static final class CountingVisitor implements PinyinVisitor {
+		int chars;
+
+		@Override
+		public boolean visit(char[] buffer, int offset, int length) {
+			this.chars += length;
+			return true;
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package org.apache.lucene.analysis.pinyin.benchmark;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+import org.apache.lucene.analysis.pinyin.lucene5.LegacyPinyinNGramTokenFilter;
+import org.apache.lucene.analysis.pinyin.lucene5.PinyinEdgeNGramTokenFilter;
+import org.apache.lucene.analysis.pinyin.lucene5.PinyinGramTokenFilter;
+import org.apache.lucene.analysis.pinyin.lucene5.PinyinNGramTokenFilter;
+import org.apache.lucene.analysis.pinyin.lucene5.PinyinTokenFilter;
+import org.apache.lucene.analysis.pinyin.utils.Constant;
+import org.apache.lucene.analysis.pinyin.utils.PinyinCache;
+import org.apache.lucene.analysis.pinyin.utils.PolyphoneDictionary;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 单个TokenFilter的基准测试
+ *
+ * 输入是预先分好词、用空格连接的文本，经WhitespaceTokenizer后只接被测的一个TokenFilter，
+ * 分词本身的开销很小且对所有filter相同。拼音转换类filter的输入是中文词，NGram类filter的输入是全拼。
+ * TokenStream在一次迭代内复用[与Analyzer的复用方式一致]，一次操作处理整个语料。
+ * <ul>
+ * <li>pinyin：PinyinTokenFilter默认配置</li>
+ * <li>pinyinCached：同上，使用PinyinCache</li>
+ * <li>pinyinPolyphone：同上，使用自带的多音词词典</li>
+ * <li>pinyinGraph：同上，输出词元图</li>
+ * <li>ngram：PinyinNGramTokenFilter</li>
+ * <li>legacyNgram：按码点切分的旧PinyinNGramTokenFilter，与ngram对比</li>
+ * <li>edgeNgram：PinyinEdgeNGramTokenFilter</li>
+ * <li>gram：拼音转换与NGram合并的PinyinGramTokenFilter</li>
+ * </ul>
+ * @author Lanxiaowei
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PinyinTokenFilterBenchmark {
+	@Param({"pinyin", "pinyinCached", "pinyinPolyphone", "pinyinGraph", "ngram", "legacyNgram", "edgeNgram", "gram"})
+	public String filter;
+
+	@Param({"TITLES", "BODIES", "POLYPHONES"})
+	public Corpus corpus;
+
+	private String[] documents;
+	private Tokenizer tokenizer;
+	private TokenStream stream;
+
+	@Setup
+	public void setup() {
+		List<String> documents = isPinyinInput(this.filter) ? this.corpus.pinyin() : this.corpus.segmented();
+		this.documents = documents.toArray(new String[documents.size()]);
+		this.tokenizer = new WhitespaceTokenizer();
+		this.stream = createFilter(this.filter, this.tokenizer);
+	}
+
+	@Benchmark
+	public int filter(TokenCounter counter) throws IOException {
+		int tokens = 0;
+		for (String document : this.documents) {
+			this.tokenizer.setReader(new StringReader(document));
+			tokens += counter.consume(this.stream);
+		}
+		return tokens;
+	}
+
+	private static boolean isPinyinInput(String filter) {
+		return "ngram".equals(filter) || "legacyNgram".equals(filter) || "edgeNgram".equals(filter);
+	}
+
+	private static TokenStream createFilter(String filter, TokenStream input) {
+		switch (filter) {
+		case "pinyin":
+			return new PinyinTokenFilter(input);
+		case "pinyinCached":
+			return new PinyinTokenFilter(input, Constant.DEFAULT_SHORT_PINYIN, Constant.DEFAULT_PINYIN_ALL,
+					Constant.DEFAULT_OUT_CHINESE, Constant.DEFAULT_MIN_TERM_LRNGTH, Constant.DEFAULT_MAX_COMBINATIONS,
+					new PinyinCache(Constant.DEFAULT_CACHE_SIZE));
+		case "pinyinPolyphone":
+			return new PinyinTokenFilter(input, Constant.DEFAULT_SHORT_PINYIN, Constant.DEFAULT_PINYIN_ALL,
+					Constant.DEFAULT_OUT_CHINESE, Constant.DEFAULT_MIN_TERM_LRNGTH, Constant.DEFAULT_MAX_COMBINATIONS,
+					null, PolyphoneDictionary.getDefault());
+		case "pinyinGraph":
+			return new PinyinTokenFilter(input, Constant.DEFAULT_SHORT_PINYIN, Constant.DEFAULT_PINYIN_ALL,
+					Constant.DEFAULT_OUT_CHINESE, Constant.DEFAULT_MIN_TERM_LRNGTH, Constant.DEFAULT_MAX_COMBINATIONS,
+					null, null, true);
+		case "ngram":
+			return new PinyinNGramTokenFilter(input, Constant.DEFAULT_MIN_GRAM, Constant.DEFAULT_MAX_GRAM);
+		case "legacyNgram":
+			return new LegacyPinyinNGramTokenFilter(input, Constant.DEFAULT_MIN_GRAM, Constant.DEFAULT_MAX_GRAM);
+		case "edgeNgram":
+			return new PinyinEdgeNGramTokenFilter(input, Constant.DEFAULT_SIDE_FRONT, Constant.DEFAULT_MIN_GRAM,
+					Constant.DEFAULT_MAX_GRAM);
+		case "gram":
+			return new PinyinGramTokenFilter(input, Constant.DEFAULT_MIN_GRAM, Constant.DEFAULT_MAX_GRAM);
+		default:
+			throw new IllegalArgumentException("Unknown filter: " + filter);
+		}
+	}
+}
@@ -0,0 +1,48 @@
+package org.apache.lucene.analysis.pinyin.benchmark;
+
+import java.io.IOException;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 统计输出的词元数，JMH按吞吐量报告为tokens/秒
+ * @author Lanxiaowei
+ *
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class TokenCounter {
+	/**JMH按字段名报告，即次要结果中的"tokens"*/
+	public long tokens;
+
+	@Setup(Level.Iteration)
+	public void clean() {
+		this.tokens = 0;
+	}
+
+	/**
+	 * 消费整个TokenStream并计数[reset、end、close]，不能是public：AuxCounters会把公共方法也当作计数器
+	 * @param stream
+	 * @return 词元数
+	 * @throws IOException
+	 */
+	int consume(TokenStream stream) throws IOException {
+		int count = 0;
+		try {
+			stream.reset();
+			while (stream.incrementToken()) {
+				count++;
+			}
+			stream.end();
+		} finally {
+			stream.close();
+		}
+		this.tokens += count;
+		return count;
+	}
+}
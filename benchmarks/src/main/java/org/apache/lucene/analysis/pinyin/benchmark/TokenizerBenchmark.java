@@ -0,0 +1,83 @@
+package org.apache.lucene.analysis.pinyin.benchmark;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.ik.IKTokenizerFactory;
+import org.apache.lucene.analysis.pinyin.lucene5.PinyinSegmentTokenizer;
+import org.apache.lucene.analysis.util.ClasspathResourceLoader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 分词器的基准测试
+ *
+ * ik：IKTokenizerFactory细粒度分词；ikSmart：IKTokenizerFactory智能分词；
+ * pinyinSegment：PinyinSegmentTokenizer切分连续拼音[输入为语料的全拼]。
+ * Ansj分词器的基准测试在ansj profile中[AnsjTokenizerBenchmark]。
+ * @author Lanxiaowei
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenizerBenchmark {
+	@Param({"ik", "ikSmart", "pinyinSegment"})
+	public String tokenizer;
+
+	@Param({"TITLES", "BODIES", "POLYPHONES"})
+	public Corpus corpus;
+
+	private String[] documents;
+	private Tokenizer stream;
+
+	@Setup
+	public void setup() throws IOException {
+		List<String> documents = "pinyinSegment".equals(this.tokenizer) ? this.corpus.pinyin() : this.corpus.documents();
+		this.documents = documents.toArray(new String[documents.size()]);
+		if ("pinyinSegment".equals(this.tokenizer)) {
+			this.stream = new PinyinSegmentTokenizer();
+		} else {
+			Map<String, String> args = new HashMap<String, String>();
+			args.put("useSmart", String.valueOf("ikSmart".equals(this.tokenizer)));
+			IKTokenizerFactory factory = new IKTokenizerFactory(args);
+			//IK加载词典时向标准输出打印日志，避免混入JMH的输出
+			PrintStream stdout = System.out;
+			System.setOut(System.err);
+			try {
+				factory.inform(new ClasspathResourceLoader(TokenizerBenchmark.class));
+			} finally {
+				System.setOut(stdout);
+			}
+			this.stream = factory.create();
+		}
+	}
+
+	@Benchmark
+	public int tokenize(TokenCounter counter) throws IOException {
+		int tokens = 0;
+		for (String document : this.documents) {
+			this.stream.setReader(new StringReader(document));
+			tokens += counter.consume(this.stream);
+		}
+		return tokens;
+	}
+}
@@ -0,0 +1,251 @@
+package org.apache.lucene.analysis.pinyin.lucene5;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.lucene.analysis.TokenFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.miscellaneous.CodepointCountFilter;
+import org.apache.lucene.analysis.pinyin.utils.CharClassifier;
+import org.apache.lucene.analysis.pinyin.utils.Constant;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionLengthAttribute;
+import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+import org.apache.lucene.analysis.util.CharacterUtils;
+
+/**
+ * 对转换后的拼音进行NGram处理的TokenFilter[旧实现，仅用于基准测试对比]
+ *
+ * 保留按码点切分、外包CodepointCountFilter的实现，与当前的PinyinNGramTokenFilter输出相同，
+ * 用于在PinyinNGramTokenFilterBenchmark中比较两者的吞吐量和内存分配。
+ * 
+ * @author Lanxiaowei
+ * 
+ */
+@SuppressWarnings("unused")
+public class LegacyPinyinNGramTokenFilter extends TokenFilter {
+	private char[] curTermBuffer;
+	private int curTermLength;
+	private int curCodePointCount;
+	private int curGramSize;
+	private int curPos;
+	private int curPosInc, curPosLen;
+	private int tokStart;
+	private int tokEnd;
+	private boolean hasIllegalOffsets;
+
+	private int minGram;
+	private int maxGram;
+	/** 是否需要对中文进行NGram[默认为false] */
+	private final boolean nGramChinese;
+	/** 是否需要对纯数字进行NGram[默认为false] */
+	private final boolean nGramNumber;
+	/** 拼音NGram是否只从音节边界开始[默认为false] */
+	private final boolean syllableStart;
+	/** 拼音NGram是否只在音节边界结束[默认为false] */
+	private final boolean syllableEnd;
+	/** 是否生成全拼与首字母混合的NGram[默认为false] */
+	private final boolean mixInitials;
+	/** 当前拼音词元每个音节的结束位置 */
+	private int[] curSyllableEnds = new int[8];
+	private int curSyllableCount;
+	/** 是否正在输出混合NGram */
+	private boolean mixing;
+	private final SyllableGrams mixedGrams = new SyllableGrams();
+
+	private final CharacterUtils charUtils;
+	private CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
+	private PositionIncrementAttribute posIncAtt;
+	private PositionLengthAttribute posLenAtt;
+	private OffsetAttribute offsetAtt = addAttribute(OffsetAttribute.class);
+	private TypeAttribute typeAtt;
+	private PinyinSyllableAttribute syllableAtt;
+
+	public LegacyPinyinNGramTokenFilter(TokenStream input, int minGram, int maxGram,
+			boolean nGramChinese,boolean nGramNumber) {
+		this(input, minGram, maxGram, nGramChinese, nGramNumber, Constant.DEFAULT_SYLLABLE_START,
+				Constant.DEFAULT_SYLLABLE_END, Constant.DEFAULT_MIX_INITIALS);
+	}
+
+	/**
+	 * @param syllableStart 拼音NGram是否只从音节边界开始
+	 * @param syllableEnd 拼音NGram是否只在音节边界结束
+	 * @param mixInitials 是否生成全拼与首字母混合的NGram，如zhonggr
+	 */
+	public LegacyPinyinNGramTokenFilter(TokenStream input, int minGram, int maxGram,
+			boolean nGramChinese,boolean nGramNumber,boolean syllableStart,boolean syllableEnd,
+			boolean mixInitials) {
+		super(new CodepointCountFilter(input, minGram, Integer.MAX_VALUE));
+		this.charUtils = CharacterUtils.getInstance();
+		if (minGram < 1) {
+			throw new IllegalArgumentException(
+					"minGram must be greater than zero");
+		}
+		if (minGram > maxGram) {
+			throw new IllegalArgumentException(
+					"minGram must not be greater than maxGram");
+		}
+		this.minGram = minGram;
+		this.maxGram = maxGram;
+		this.nGramChinese = nGramChinese;
+		this.nGramNumber = nGramNumber;
+		this.syllableStart = syllableStart;
+		this.syllableEnd = syllableEnd;
+		this.mixInitials = mixInitials;
+		
+		this.termAtt = addAttribute(CharTermAttribute.class);
+		this.offsetAtt = addAttribute(OffsetAttribute.class);
+		this.typeAtt = addAttribute(TypeAttribute.class);
+		this.posIncAtt = addAttribute(PositionIncrementAttribute.class);
+		this.posLenAtt = addAttribute(PositionLengthAttribute.class);
+		this.syllableAtt = addAttribute(PinyinSyllableAttribute.class);
+	}
+
+	public LegacyPinyinNGramTokenFilter(TokenStream input, int minGram, int maxGram,
+			boolean nGramChinese) {
+		this(input, minGram, maxGram, nGramChinese, Constant.DEFAULT_NGRAM_NUMBER);
+	}
+	
+	public LegacyPinyinNGramTokenFilter(TokenStream input, int minGram, int maxGram) {
+		this(input, minGram, maxGram, Constant.DEFAULT_NGRAM_CHINESE);
+	}
+	
+	public LegacyPinyinNGramTokenFilter(TokenStream input, int minGram) {
+		this(input, minGram, Constant.DEFAULT_MAX_GRAM);
+	}
+	
+	public LegacyPinyinNGramTokenFilter(TokenStream input) {
+		this(input, Constant.DEFAULT_MIN_GRAM);
+	}
+
+	@Override
+	public final boolean incrementToken() throws IOException {
+		while (true) {
+			if (curTermBuffer == null) {
+				if (!input.incrementToken()) {
+					return false;
+				}
+				String type = this.typeAtt.type();
+				if(null != type && "normal_word".equals(type)) {
+					return true;
+				}
+				if(null != type && "numeric_original".equals(type)) {
+					return true;
+				}
+				if(null != type && "chinese_original".equals(type)) {
+					return true;
+				}
+				// 一次遍历得到词元的字符分类
+				int termClass = CharClassifier.classify(this.termAtt.buffer(), 0, this.termAtt.length());
+				if ((!this.nGramNumber)
+						&& (CharClassifier.isAllDigits(termClass))) {
+					return true;
+				}
+				if ((!this.nGramChinese)
+						&& (CharClassifier.containsHan(termClass))) {
+					return true;
+				}
+				curTermBuffer = termAtt.buffer().clone();
+				curTermLength = termAtt.length();
+				curCodePointCount = charUtils.codePointCount(termAtt);
+				curGramSize = minGram;
+				curPos = 0;
+				curPosInc = posIncAtt.getPositionIncrement();
+				curPosLen = posLenAtt.getPositionLength();
+				tokStart = offsetAtt.startOffset();
+				tokEnd = offsetAtt.endOffset();
+
+				hasIllegalOffsets = (tokStart + curTermLength) != tokEnd;
+				// 拼音词元记录音节边界[拼音都是ASCII字符，位置即码点位置]
+				curSyllableCount = curCodePointCount == curTermLength ? syllableAtt.getSyllableCount() : 0;
+				if (curSyllableEnds.length < curSyllableCount) {
+					curSyllableEnds = new int[Math.max(curSyllableCount, curSyllableEnds.length * 2)];
+				}
+				for (int i = 0; i < curSyllableCount; i++) {
+					curSyllableEnds[i] = syllableAtt.getSyllableEnd(i);
+				}
+				mixing = false;
+			}
+
+			if (!mixing) {
+				if (curGramSize > maxGram
+						|| (curPos + curGramSize) > curCodePointCount) {
+					++curPos;
+					curGramSize = minGram;
+				}
+				while ((curPos + curGramSize) <= curCodePointCount) {
+					if (!acceptGram(curPos, curGramSize)) {
+						// 不在音节边界上，跳过
+						if (++curGramSize > maxGram
+								|| (curPos + curGramSize) > curCodePointCount) {
+							++curPos;
+							curGramSize = minGram;
+						}
+						continue;
+					}
+					clearAttributes();
+					final int start = charUtils.offsetByCodePoints(curTermBuffer,
+							0, curTermLength, 0, curPos);
+					final int end = charUtils.offsetByCodePoints(curTermBuffer, 0,
+							curTermLength, start, curGramSize);
+					termAtt.copyBuffer(curTermBuffer, start, end - start);
+					posIncAtt.setPositionIncrement(curPosInc);
+					curPosInc = 0;
+					posLenAtt.setPositionLength(curPosLen);
+					offsetAtt.setOffset(tokStart, tokEnd);
+					curGramSize++;
+					return true;
+				}
+				mixing = mixInitials && mixedGrams.reset(curTermBuffer, curSyllableEnds,
+						curSyllableCount, minGram, maxGram, false, false);
+			}
+			if (mixing && mixedGrams.next()) {
+				clearAttributes();
+				termAtt.copyBuffer(mixedGrams.buffer(), 0, mixedGrams.length());
+				posIncAtt.setPositionIncrement(curPosInc);
+				curPosInc = 0;
+				posLenAtt.setPositionLength(curPosLen);
+				offsetAtt.setOffset(tokStart, tokEnd);
+				return true;
+			}
+			mixing = false;
+			curTermBuffer = null;
+		}
+	}
+
+	/**
+	 * 按音节切分时，从pos开始、长度为size的NGram是否在音节边界上
+	 */
+	private boolean acceptGram(int pos, int size) {
+		if (curSyllableCount == 0) {
+			return true;
+		}
+		return (!syllableStart || SyllableGrams.isBoundary(curSyllableEnds, curSyllableCount, pos))
+				&& (!syllableEnd || SyllableGrams.isBoundary(curSyllableEnds, curSyllableCount, pos + size));
+	}
+
+	@Override
+	public void reset() throws IOException {
+		super.reset();
+		curTermBuffer = null;
+		mixing = false;
+	}
+}
@@ -0,0 +1,80 @@
+package org.apache.lucene.analysis.ansj;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.apache.lucene.analysis.pinyin.utils.SharedResourceRegistry;
+import org.apache.lucene.analysis.pinyin.utils.SharedResourceRegistry.Handle;
+import org.apache.lucene.analysis.util.CharArraySet;
+import org.apache.lucene.analysis.util.ResourceLoader;
+import org.apache.lucene.analysis.util.WordlistLoader;
+import org.apache.lucene.util.IOUtils;
+
+/**
+ * Ansj相关工厂类从SharedResourceRegistry获取停用词表、用户词典的公共方法
+ * @author Lanxiaowei
+ *
+ */
+final class AnsjResources {
+	static final String KIND_STOPWORDS = "ansj-stopwords";
+	static final String KIND_USER_DIC = "ansj-user-dic";
+
+	private static final SharedResourceRegistry.Parser<CharArraySet> STOPWORDS_PARSER =
+			new SharedResourceRegistry.Parser<CharArraySet>() {
+		@Override
+		public CharArraySet parse(InputStream in) throws IOException {
+			//每行一个停用词[不支持注释，停用词表里常有#等标点]
+			CharArraySet words = WordlistLoader.getWordSet(IOUtils.getDecodingReader(in, StandardCharsets.UTF_8));
+			return CharArraySet.unmodifiableSet(words);
+		}
+	};
+
+	private AnsjResources() {
+	}
+
+	/**
+	 * 获取停用词表
+	 * @param loader
+	 * @param path 停用词文件路径
+	 * @return path为空时返回null
+	 * @throws IOException
+	 */
+	static Handle<CharArraySet> acquireStopwords(ResourceLoader loader, String path) throws IOException {
+		if (path == null || path.trim().isEmpty()) {
+			return null;
+		}
+		return SharedResourceRegistry.getInstance().acquire(KIND_STOPWORDS, loader, path.trim(), STOPWORDS_PARSER);
+	}
+
+	/**
+	 * 获取用户词典[相同的词典文件列表且内容相同时共享同一个实例]
+	 * @param loader
+	 * @param paths 用户词典文件路径
+	 * @param reloadInterval 检查词典文件是否变化的间隔[秒]，小于等于0表示不检查
+	 * @return
+	 * @throws IOException
+	 */
+	static Handle<AnsjUserDictionary> acquireUserDic(final ResourceLoader loader, final List<String> paths,
+			final int reloadInterval) throws IOException {
+		String name = paths + "@" + Long.toHexString(AnsjUserDictionary.checksum(AnsjUserDictionary.readAll(loader, paths)));
+		return SharedResourceRegistry.getInstance().acquire(KIND_USER_DIC, name,
+				new SharedResourceRegistry.Factory<AnsjUserDictionary>() {
+			@Override
+			public AnsjUserDictionary create() throws IOException {
+				return new AnsjUserDictionary(loader, paths, reloadInterval);
+			}
+		});
+	}
+
+	static <T> T get(Handle<T> handle) {
+		return handle == null ? null : handle.get();
+	}
+
+	static void release(Handle<?> handle) {
+		if (handle != null) {
+			handle.close();
+		}
+	}
+}
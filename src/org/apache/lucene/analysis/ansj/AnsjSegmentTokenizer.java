@@ -0,0 +1,120 @@
+package org.apache.lucene.analysis.ansj;
+
+import java.io.CharArrayReader;
+import java.io.IOException;
+
+import org.ansj.domain.Term;
+import org.ansj.lucene.util.PorterStemmer;
+import org.ansj.splitWord.Analysis;
+import org.ansj.splitWord.analysis.IndexAnalysis;
+import org.ansj.splitWord.analysis.ToAnalysis;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.util.CharArraySet;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.AttributeFactory;
+import org.nlpcn.commons.lang.tire.domain.Forest;
+
+/**
+ * 基于Ansj分词的Tokenizer
+ *
+ * 停用词表、用户词典由工厂类加载一次后传入，所有Tokenizer共享同一份，创建Tokenizer时不再读取任何文件；
+ * 输出与Ansj自带的AnsjTokenizer一致：停用词直接跳过[位置增量始终为1]，英文词使用Ansj的PorterStemmer提取词干。
+ * 每次reset时一次性读入输入再交给Ansj切分，
+ * 用户词典热更新后在下一次reset时换用新的Forest，读入缓存重复使用，非线程安全。
+ * @author Lanxiaowei
+ *
+ */
+public final class AnsjSegmentTokenizer extends Tokenizer {
+	private static final Forest[] NO_FORESTS = new Forest[0];
+	/**英文词的词性*/
+	private static final String NATURE_EN = "en";
+
+	private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
+	private final OffsetAttribute offsetAtt = addAttribute(OffsetAttribute.class);
+	private final PositionIncrementAttribute posIncrAtt = addAttribute(PositionIncrementAttribute.class);
+
+	/**是否查询分词[ToAnalysis]，否则为索引分词[IndexAnalysis]*/
+	private final boolean query;
+	/**用户词典，可以为null*/
+	private final AnsjUserDictionary userDic;
+	/**当前Analysis使用的Forest，用户词典更新后重新创建Analysis*/
+	private Forest[] forests;
+	private Analysis analysis;
+	/**停用词表[只读共享]，为null表示不过滤*/
+	private final CharArraySet stopwords;
+	/**是否对英文单词提取词干*/
+	private final boolean pstemming;
+	private final PorterStemmer stemmer;
+
+	/**输入缓存*/
+	private char[] buffer = new char[256];
+	private int length;
+
+	/**
+	 * @param factory
+	 * @param query true使用ToAnalysis，false使用IndexAnalysis
+	 * @param userDic 用户词典，可以为null
+	 * @param stopwords 停用词表，可以为null
+	 * @param pstemming 是否对英文单词提取词干
+	 */
+	public AnsjSegmentTokenizer(AttributeFactory factory, boolean query, AnsjUserDictionary userDic,
+			CharArraySet stopwords, boolean pstemming) {
+		super(factory);
+		this.query = query;
+		this.userDic = userDic;
+		this.stopwords = stopwords;
+		this.pstemming = pstemming;
+		this.stemmer = pstemming ? new PorterStemmer() : null;
+	}
+
+	@Override
+	public boolean incrementToken() throws IOException {
+		clearAttributes();
+		Term term;
+		while ((term = this.analysis.next()) != null) {
+			String name = term.getName();
+			int start = term.getOffe();
+			int end = start + name.length();
+			if (this.pstemming && NATURE_EN.equals(term.natrue().natureStr)) {
+				name = this.stemmer.stem(name);
+			}
+			if (this.stopwords != null && this.stopwords.contains(name)) {
+				continue;
+			}
+			this.termAtt.append(name);
+			this.offsetAtt.setOffset(correctOffset(start), correctOffset(end));
+			this.posIncrAtt.setPositionIncrement(1);
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public void reset() throws IOException {
+		super.reset();
+		this.length = 0;
+		int read;
+		while ((read = this.input.read(this.buffer, this.length, this.buffer.length - this.length)) != -1) {
+			this.length += read;
+			if (this.length == this.buffer.length) {
+				this.buffer = ArrayUtil.grow(this.buffer, this.length + 1);
+			}
+		}
+		Forest[] forests = this.userDic == null ? NO_FORESTS : this.userDic.getForests();
+		if (this.analysis == null || forests != this.forests) {
+			this.forests = forests;
+			this.analysis = this.query ? new ToAnalysis(forests) : new IndexAnalysis(forests);
+		}
+		this.analysis.resetContent(new CharArrayReader(this.buffer, 0, this.length));
+	}
+
+	@Override
+	public void end() throws IOException {
+		super.end();
+		int finalOffset = correctOffset(this.length);
+		this.offsetAtt.setOffset(finalOffset, finalOffset);
+	}
+}
@@ -1,35 +1,75 @@
 package org.apache.lucene.analysis.ansj;
 
+import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 
-import org.ansj.lucene.util.AnsjTokenizer;
-import org.ansj.splitWord.analysis.IndexAnalysis;
-import org.ansj.splitWord.analysis.ToAnalysis;
 import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.pinyin.utils.SharedResourceRegistry.Handle;
+import org.apache.lucene.analysis.util.CharArraySet;
+import org.apache.lucene.analysis.util.ResourceLoader;
+import org.apache.lucene.analysis.util.ResourceLoaderAware;
 import org.apache.lucene.analysis.util.TokenizerFactory;
 import org.apache.lucene.util.AttributeFactory;
-import org.nlpcn.commons.lang.tire.domain.Forest;
 
-public class AnsjTokenizerFactory  extends TokenizerFactory {
+public class AnsjTokenizerFactory  extends TokenizerFactory implements ResourceLoaderAware {
 	/**是否查询分词*/
 	private boolean query;
 	/**是否分析词干.进行单复数,时态的转换(只针对英文单词)*/
 	private boolean pstemming;
 	/**自定义停用词词典文件路径*/
 	private String stopwordsDir;
+	/**用户自定义词典文件路径，多个用逗号分隔，合并为一个Forest*/
+	private List<String> userDic;
+	/**检查用户词典是否变化的间隔[秒]，小于等于0表示不检查*/
+	private int reloadInterval;
+
+	/**停用词表、用户词典在节点内共享，inform时加载一次，所有Tokenizer共用*/
+	private CharArraySet stopwords;
+	private AnsjUserDictionary userDictionary;
+	private Handle<CharArraySet> stopwordsHandle;
+	private Handle<AnsjUserDictionary> userDictionaryHandle;
 		
 	public AnsjTokenizerFactory(Map<String, String> args) {
 		super(args);
 		query = getBoolean(args, "query", false);
 		pstemming = getBoolean(args, "pstemming", false);
 		stopwordsDir = get(args, "stopwordsDir", "");
+		String userDic = get(args, "userDic");
+		this.userDic = userDic == null ? null : splitFileNames(userDic);
+		reloadInterval = getInt(args, "reloadInterval", 0);
+	}
+
+	@Override
+	public void inform(ResourceLoader loader) throws IOException {
+		Handle<CharArraySet> stopwordsHandle = AnsjResources.acquireStopwords(loader, this.stopwordsDir);
+		Handle<AnsjUserDictionary> userDictionaryHandle = null;
+		if (this.userDic != null) {
+			try {
+				userDictionaryHandle = AnsjResources.acquireUserDic(loader, this.userDic, this.reloadInterval);
+			} catch (IOException e) {
+				AnsjResources.release(stopwordsHandle);
+				throw e;
+			}
+		}
+		AnsjResources.release(this.stopwordsHandle);
+		AnsjResources.release(this.userDictionaryHandle);
+		this.stopwordsHandle = stopwordsHandle;
+		this.userDictionaryHandle = userDictionaryHandle;
+		this.stopwords = AnsjResources.get(stopwordsHandle);
+		this.userDictionary = AnsjResources.get(userDictionaryHandle);
+	}
+
+	/**
+	 * 用户词典[加载耗时、词条数、内存占用等统计]
+	 * @return 未配置userDic时返回null
+	 */
+	public AnsjUserDictionary getUserDictionary() {
+		return userDictionary;
 	}
 	
 	@Override
 	public Tokenizer create(AttributeFactory factory) {
-		if(query) {
-			return new AnsjTokenizer(factory,new ToAnalysis(new Forest[0]),stopwordsDir,pstemming);
-		}
-		return new AnsjTokenizer(factory,new IndexAnalysis(new Forest[0]),stopwordsDir,pstemming);
+		return new AnsjSegmentTokenizer(factory,query,userDictionary,stopwords,pstemming);
 	}
 }
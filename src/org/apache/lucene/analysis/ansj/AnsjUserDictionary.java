@@ -0,0 +1,309 @@
+package org.apache.lucene.analysis.ansj;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+import org.apache.lucene.analysis.util.ResourceLoader;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.nlpcn.commons.lang.tire.domain.Branch;
+import org.nlpcn.commons.lang.tire.domain.Forest;
+import org.nlpcn.commons.lang.tire.domain.Value;
+import org.nlpcn.commons.lang.tire.domain.WoodInterface;
+import org.nlpcn.commons.lang.tire.library.Library;
+
+/**
+ * 可热更新的Ansj用户词典[一个或多个词典文件合并为一个Forest]
+ *
+ * 词典文件每行：词 \t 词性 \t 词频。设置了检查间隔时由后台线程定时比较词典文件的CRC32，
+ * 变化后在后台构造新的Forest，构造完成后整体替换[写时复制]。AnsjSegmentTokenizer在每次reset时
+ * 取当前的Forest，因此一篇文档始终使用同一个版本，分词线程只读一个volatile字段，不需要加锁。
+ * 同时记录加载耗时、词条数和估算的内存占用。
+ * @author Lanxiaowei
+ *
+ */
+public class AnsjUserDictionary implements Closeable, Accountable {
+	private static final long FOREST_BYTES = RamUsageEstimator.shallowSizeOfInstance(Forest.class)
+			+ RamUsageEstimator.alignObjectSize(RamUsageEstimator.NUM_BYTES_ARRAY_HEADER
+					+ (long) RamUsageEstimator.NUM_BYTES_OBJECT_REF * (Character.MAX_VALUE + 1));
+	/**每个Branch节点：对象本身 + 父节点子数组中的一个引用*/
+	private static final long BRANCH_BYTES = RamUsageEstimator.shallowSizeOfInstance(Branch.class)
+			+ RamUsageEstimator.NUM_BYTES_OBJECT_REF;
+
+	private final ResourceLoader loader;
+	private final List<String> paths;
+	private final ScheduledExecutorService executor;
+	private final AtomicLong reloadFailures = new AtomicLong();
+	/**当前版本，整体替换*/
+	private volatile Version current;
+
+	/**
+	 * @param loader 资源加载器
+	 * @param paths 词典文件路径
+	 * @param reloadInterval 检查词典文件是否变化的间隔[秒]，小于等于0表示不检查
+	 * @throws IOException
+	 */
+	public AnsjUserDictionary(ResourceLoader loader, List<String> paths, int reloadInterval) throws IOException {
+		this.loader = loader;
+		this.paths = Collections.unmodifiableList(new ArrayList<String>(paths));
+		this.current = load(readAll(), 1L);
+		if (reloadInterval > 0) {
+			this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "ansj-user-dic-watcher");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			this.executor.scheduleWithFixedDelay(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						reloadIfChanged();
+					} catch (IOException e) {
+						//词典文件可能正在写入，下次检查时重试
+						reloadFailures.incrementAndGet();
+					} catch (RuntimeException e) {
+						reloadFailures.incrementAndGet();
+					}
+				}
+			}, reloadInterval, reloadInterval, TimeUnit.SECONDS);
+		} else {
+			this.executor = null;
+		}
+	}
+
+	/**
+	 * 当前的Forest[不能修改]
+	 * @return
+	 */
+	public Forest[] getForests() {
+		return this.current.forests;
+	}
+
+	/**
+	 * 词典文件变化时重新加载
+	 * @return 是否重新加载
+	 * @throws IOException
+	 */
+	public synchronized boolean reloadIfChanged() throws IOException {
+		List<byte[]> contents = readAll();
+		if (checksum(contents) == this.current.checksum) {
+			return false;
+		}
+		this.current = load(contents, this.current.version + 1);
+		return true;
+	}
+
+	/**
+	 * 重新加载[不检查词典文件是否变化]
+	 * @throws IOException
+	 */
+	public synchronized void reload() throws IOException {
+		this.current = load(readAll(), this.current.version + 1);
+	}
+
+	/**
+	 * 词典版本，首次加载为1，每次重新加载加一
+	 * @return
+	 */
+	public long getVersion() {
+		return this.current.version;
+	}
+
+	/**
+	 * 词条数
+	 * @return
+	 */
+	public int getWordCount() {
+		return this.current.wordCount;
+	}
+
+	/**
+	 * 最近一次加载的耗时[毫秒]
+	 * @return
+	 */
+	public long getLoadMillis() {
+		return this.current.loadMillis;
+	}
+
+	/**
+	 * 最近一次加载完成的时间
+	 * @return
+	 */
+	public long getLoadedAt() {
+		return this.current.loadedAt;
+	}
+
+	/**
+	 * 后台重新加载失败的次数
+	 * @return
+	 */
+	public long getReloadFailures() {
+		return this.reloadFailures.get();
+	}
+
+	public List<String> getPaths() {
+		return this.paths;
+	}
+
+	/**
+	 * 估算的Forest内存占用
+	 */
+	@Override
+	public long ramBytesUsed() {
+		return this.current.ramBytesUsed;
+	}
+
+	@Override
+	public Collection<Accountable> getChildResources() {
+		return Collections.emptyList();
+	}
+
+	@Override
+	public void close() {
+		if (this.executor != null) {
+			this.executor.shutdownNow();
+		}
+	}
+
+	@Override
+	public String toString() {
+		Version version = this.current;
+		return "AnsjUserDictionary(" + this.paths + ", version=" + version.version + ", words=" + version.wordCount
+				+ ", loadMillis=" + version.loadMillis + ", ram=" + RamUsageEstimator.humanReadableUnits(version.ramBytesUsed) + ")";
+	}
+
+	private List<byte[]> readAll() throws IOException {
+		return readAll(this.loader, this.paths);
+	}
+
+	/**
+	 * 读取所有词典文件的内容
+	 */
+	static List<byte[]> readAll(ResourceLoader loader, List<String> paths) throws IOException {
+		List<byte[]> contents = new ArrayList<byte[]>(paths.size());
+		byte[] buffer = new byte[8192];
+		for (String path : paths) {
+			InputStream in = loader.openResource(path);
+			try {
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				int read;
+				while ((read = in.read(buffer)) != -1) {
+					out.write(buffer, 0, read);
+				}
+				contents.add(out.toByteArray());
+			} finally {
+				in.close();
+			}
+		}
+		return contents;
+	}
+
+	/**
+	 * 所有词典文件内容合起来的校验和
+	 */
+	static long checksum(List<byte[]> contents) {
+		CRC32 crc = new CRC32();
+		for (byte[] content : contents) {
+			crc.update(content, 0, content.length);
+			//文件之间加分隔，避免内容在文件之间移动时校验和不变
+			crc.update(0);
+		}
+		return crc.getValue();
+	}
+
+	private static Version load(List<byte[]> contents, long version) throws IOException {
+		long start = System.nanoTime();
+		Forest forest = new Forest();
+		List<String> keywords = new ArrayList<String>();
+		for (byte[] content : contents) {
+			BufferedReader reader = new BufferedReader(IOUtils.getDecodingReader(new ByteArrayInputStream(content),
+					StandardCharsets.UTF_8));
+			try {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					if (line.trim().isEmpty()) {
+						continue;
+					}
+					Value value = new Value(line);
+					Library.insertWord(forest, value);
+					keywords.add(value.getKeyword());
+				}
+			} finally {
+				reader.close();
+			}
+		}
+		long loadMillis = (System.nanoTime() - start) / 1000000L;
+		return new Version(new Forest[] {forest}, checksum(contents), version, keywords.size(), loadMillis,
+				System.currentTimeMillis(), estimateRamBytesUsed(forest, keywords));
+	}
+
+	/**
+	 * 按词条逐个访问经过的节点估算内存占用[Forest不提供遍历子节点的接口]
+	 */
+	private static long estimateRamBytesUsed(Forest forest, List<String> keywords) {
+		Map<WoodInterface, Boolean> visited = new IdentityHashMap<WoodInterface, Boolean>();
+		long bytes = FOREST_BYTES;
+		for (String keyword : keywords) {
+			WoodInterface node = forest;
+			for (int i = 0; i < keyword.length() && node != null; i++) {
+				node = node.get(keyword.charAt(i));
+				if (node != null && visited.put(node, Boolean.TRUE) == null) {
+					bytes += BRANCH_BYTES;
+					String[] params = node.getParams();
+					if (params != null) {
+						bytes += RamUsageEstimator.shallowSizeOf(params);
+						for (String param : params) {
+							bytes += RamUsageEstimator.shallowSizeOf(param) + RamUsageEstimator.sizeOf(param.toCharArray());
+						}
+					}
+				}
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * 一个加载版本的Forest及其统计信息
+	 */
+	private static final class Version {
+		final Forest[] forests;
+		final long checksum;
+		final long version;
+		final int wordCount;
+		final long loadMillis;
+		final long loadedAt;
+		final long ramBytesUsed;
+
+		Version(Forest[] forests, long checksum, long version, int wordCount, long loadMillis, long loadedAt,
+				long ramBytesUsed) {
+			this.forests = forests;
+			this.checksum = checksum;
+			this.version = version;
+			this.wordCount = wordCount;
+			this.loadMillis = loadMillis;
+			this.loadedAt = loadedAt;
+			this.ramBytesUsed = ramBytesUsed;
+		}
+	}
+}
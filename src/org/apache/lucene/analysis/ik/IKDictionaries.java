@@ -0,0 +1,374 @@
+package org.apache.lucene.analysis.ik;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.wltea.analyzer.cfg.Configuration;
+import org.wltea.analyzer.dic.Dictionary;
+
+/**
+ * 访问IK词典内部结构的工具类
+ *
+ * IK的Dictionary只能通过单例从文本词典加载，DictSegment也不对外公开，
+ * 词典快照与热更新都需要直接读写其中的字典树，这里通过反射集中处理，IK升级时只需要修改这一个类。
+ * @author Lanxiaowei
+ *
+ */
+final class IKDictionaries {
+	/**IK主词典所在目录下的量词词典，体积很小，用于不需要解析主词典时构造Dictionary*/
+	static final String STUB_MAIN_DICTIONARY = "org/wltea/analyzer/dic/quantifier.dic";
+	/**DictSegment子节点不超过该值时使用数组存储，与IK保持一致*/
+	private static final int ARRAY_LENGTH_LIMIT = 3;
+
+	private static final Class<?> SEGMENT_CLASS;
+	private static final Constructor<Dictionary> DICTIONARY_CONSTRUCTOR;
+	private static final Constructor<?> SEGMENT_CONSTRUCTOR;
+	private static final Method FILL_SEGMENT;
+	private static final Field SINGLETON;
+	private static final Field CFG;
+	private static final Field MAIN_DICT;
+	private static final Field STOP_WORD_DICT;
+	private static final Field QUANTIFIER_DICT;
+	private static final Field CHILDREN_MAP;
+	private static final Field CHILDREN_ARRAY;
+	private static final Field NODE_CHAR;
+	private static final Field STORE_SIZE;
+	private static final Field NODE_STATE;
+	/**重建字典树时每个节点都要调用，使用MethodHandle避免反射调用的开销*/
+	private static final MethodHandle NEW_SEGMENT;
+	private static final MethodHandle SET_CHILDREN_MAP;
+	private static final MethodHandle SET_CHILDREN_ARRAY;
+	private static final MethodHandle SET_STORE_SIZE;
+	private static final MethodHandle SET_NODE_STATE;
+
+	static {
+		try {
+			SEGMENT_CLASS = Class.forName("org.wltea.analyzer.dic.DictSegment", true, Dictionary.class.getClassLoader());
+			DICTIONARY_CONSTRUCTOR = Dictionary.class.getDeclaredConstructor(Configuration.class);
+			SEGMENT_CONSTRUCTOR = SEGMENT_CLASS.getDeclaredConstructor(Character.class);
+			FILL_SEGMENT = SEGMENT_CLASS.getDeclaredMethod("fillSegment", char[].class);
+			SINGLETON = Dictionary.class.getDeclaredField("singleton");
+			CFG = Dictionary.class.getDeclaredField("cfg");
+			MAIN_DICT = Dictionary.class.getDeclaredField("_MainDict");
+			STOP_WORD_DICT = Dictionary.class.getDeclaredField("_StopWordDict");
+			QUANTIFIER_DICT = Dictionary.class.getDeclaredField("_QuantifierDict");
+			CHILDREN_MAP = SEGMENT_CLASS.getDeclaredField("childrenMap");
+			CHILDREN_ARRAY = SEGMENT_CLASS.getDeclaredField("childrenArray");
+			NODE_CHAR = SEGMENT_CLASS.getDeclaredField("nodeChar");
+			STORE_SIZE = SEGMENT_CLASS.getDeclaredField("storeSize");
+			NODE_STATE = SEGMENT_CLASS.getDeclaredField("nodeState");
+			DICTIONARY_CONSTRUCTOR.setAccessible(true);
+			SEGMENT_CONSTRUCTOR.setAccessible(true);
+			FILL_SEGMENT.setAccessible(true);
+			for (Field field : new Field[] {SINGLETON, CFG, MAIN_DICT, STOP_WORD_DICT, QUANTIFIER_DICT,
+					CHILDREN_MAP, CHILDREN_ARRAY, NODE_CHAR, STORE_SIZE, NODE_STATE}) {
+				field.setAccessible(true);
+			}
+			MethodHandles.Lookup lookup = MethodHandles.lookup();
+			NEW_SEGMENT = lookup.unreflectConstructor(SEGMENT_CONSTRUCTOR)
+					.asType(MethodType.methodType(Object.class, Character.class));
+			SET_CHILDREN_MAP = lookup.unreflectSetter(CHILDREN_MAP)
+					.asType(MethodType.methodType(void.class, Object.class, Map.class));
+			SET_CHILDREN_ARRAY = lookup.unreflectSetter(CHILDREN_ARRAY)
+					.asType(MethodType.methodType(void.class, Object.class, Object[].class));
+			SET_STORE_SIZE = lookup.unreflectSetter(STORE_SIZE)
+					.asType(MethodType.methodType(void.class, Object.class, int.class));
+			SET_NODE_STATE = lookup.unreflectSetter(NODE_STATE)
+					.asType(MethodType.methodType(void.class, Object.class, int.class));
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	/**字典树的三个部分在数组中的下标*/
+	static final int MAIN = 0;
+	static final int STOP_WORD = 1;
+	static final int QUANTIFIER = 2;
+
+	private IKDictionaries() {
+	}
+
+	/**
+	 * 按配置从文本词典构造一个新的Dictionary实例[不影响IK的单例]
+	 * @param cfg
+	 * @return
+	 */
+	static Dictionary newDictionary(Configuration cfg) {
+		try {
+			return DICTIONARY_CONSTRUCTOR.newInstance(cfg);
+		} catch (InvocationTargetException e) {
+			throw rethrow(e.getCause());
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * 构造一个不解析主词典的Dictionary实例，字典树随后通过setTries替换
+	 * @param cfg
+	 * @return
+	 */
+	static Dictionary newStubDictionary(Configuration cfg) {
+		Dictionary dictionary = newDictionary(new StubConfiguration(cfg));
+		set(CFG, dictionary, cfg);
+		return dictionary;
+	}
+
+	/**
+	 * 安装为IK的单例[替换单例引用，不修改旧实例]
+	 *
+	 * 传入的dictionary在安装前已完整构造[三个字典树都已就绪且不再修改]，安装只是一次单例字段的写入。
+	 * IK的分词器在每次词典查找时都通过Dictionary.getSingleton()取得单例，
+	 * 因此每次查找要么完全使用旧实例，要么完全使用新实例，不会看到新旧字典树混合；
+	 * 仍持有旧实例的查找照常完成，旧实例随后被回收。
+	 * @param dictionary 完整构造的词典实例
+	 * @return IK的单例
+	 */
+	static Dictionary install(Dictionary dictionary) {
+		synchronized (Dictionary.class) {
+			set(SINGLETON, null, dictionary);
+			return dictionary;
+		}
+	}
+
+	/**
+	 * 主词典、停用词词典、量词词典的根节点
+	 * @param dictionary
+	 * @return
+	 */
+	static Object[] getTries(Dictionary dictionary) {
+		return new Object[] {get(MAIN_DICT, dictionary), get(STOP_WORD_DICT, dictionary), get(QUANTIFIER_DICT, dictionary)};
+	}
+
+	static void setTries(Dictionary dictionary, Object[] tries) {
+		set(MAIN_DICT, dictionary, tries[MAIN]);
+		set(STOP_WORD_DICT, dictionary, tries[STOP_WORD]);
+		set(QUANTIFIER_DICT, dictionary, tries[QUANTIFIER]);
+	}
+
+	/**
+	 * 向字典树中添加一个词[与IK一致，调用方负责trim和转小写]
+	 * @param segment
+	 * @param word
+	 */
+	static void fill(Object segment, char[] word) {
+		try {
+			FILL_SEGMENT.invoke(segment, (Object) word);
+		} catch (InvocationTargetException e) {
+			throw rethrow(e.getCause());
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	static char nodeChar(Object segment) {
+		return ((Character) get(NODE_CHAR, segment)).charValue();
+	}
+
+	static int nodeState(Object segment) {
+		return ((Integer) get(NODE_STATE, segment)).intValue();
+	}
+
+	/**
+	 * 按字符排序的子节点
+	 * @param segment
+	 * @return
+	 */
+	static List<Object> children(Object segment) {
+		int size = ((Integer) get(STORE_SIZE, segment)).intValue();
+		if (size == 0) {
+			return Collections.emptyList();
+		}
+		Object[] array = (Object[]) get(CHILDREN_ARRAY, segment);
+		if (array != null) {
+			return Arrays.asList(array).subList(0, size);
+		}
+		Map<?, ?> map = (Map<?, ?>) get(CHILDREN_MAP, segment);
+		List<Object> children = new ArrayList<Object>(map.values());
+		Collections.sort(children, new Comparator<Object>() {
+			@Override
+			public int compare(Object o1, Object o2) {
+				return nodeChar(o1) - nodeChar(o2);
+			}
+		});
+		return children;
+	}
+
+	/**
+	 * 创建字典树节点
+	 * @param nodeChar 节点字符[调用方负责复用Character对象]
+	 * @param nodeState 1表示从根节点到此构成一个词
+	 * @param children 按字符排序的子节点
+	 * @return
+	 */
+	static Object newSegment(Character nodeChar, int nodeState, Object[] children) {
+		try {
+			Object segment = (Object) NEW_SEGMENT.invokeExact(nodeChar);
+			if (nodeState != 0) {
+				SET_NODE_STATE.invokeExact(segment, nodeState);
+			}
+			int size = children.length;
+			if (size > 0) {
+				if (size <= ARRAY_LENGTH_LIMIT) {
+					Object[] array = (Object[]) Array.newInstance(SEGMENT_CLASS, ARRAY_LENGTH_LIMIT);
+					System.arraycopy(children, 0, array, 0, size);
+					SET_CHILDREN_ARRAY.invokeExact(segment, array);
+				} else {
+					Map<Character, Object> map = new HashMap<Character, Object>((int) (size / 0.8f) + 1, 0.8f);
+					for (Object child : children) {
+						map.put((Character) get(NODE_CHAR, child), child);
+					}
+					SET_CHILDREN_MAP.invokeExact(segment, (Map) map);
+				}
+				SET_STORE_SIZE.invokeExact(segment, size);
+			}
+			return segment;
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Error e) {
+			throw e;
+		} catch (Throwable t) {
+			throw new IllegalStateException(t);
+		}
+	}
+
+	/**
+	 * 按IK的方式打开词典资源[Dictionary所在的ClassLoader]
+	 * @param path
+	 * @return 不存在时返回null
+	 */
+	static InputStream openResource(String path) {
+		return Dictionary.class.getClassLoader().getResourceAsStream(path);
+	}
+
+	/**
+	 * 词典文件的CRC32校验和
+	 * @param path
+	 * @return 文件不存在时返回-1
+	 * @throws IOException
+	 */
+	static long checksum(String path) throws IOException {
+		InputStream in = openResource(path);
+		if (in == null) {
+			return -1L;
+		}
+		try {
+			CRC32 crc = new CRC32();
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				crc.update(buffer, 0, read);
+			}
+			return crc.getValue();
+		} finally {
+			in.close();
+		}
+	}
+
+	private static Object get(Field field, Object target) {
+		try {
+			return field.get(target);
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static void set(Field field, Object target, Object value) {
+		try {
+			field.set(target, value);
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static RuntimeException rethrow(Throwable t) {
+		if (t instanceof RuntimeException) {
+			return (RuntimeException) t;
+		}
+		if (t instanceof Error) {
+			throw (Error) t;
+		}
+		return new IllegalStateException(t);
+	}
+
+	/**
+	 * 只包装词典路径的配置
+	 */
+	static class ForwardingConfiguration implements Configuration {
+		private final Configuration delegate;
+
+		ForwardingConfiguration(Configuration delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public boolean useSmart() {
+			return this.delegate.useSmart();
+		}
+
+		@Override
+		public void setUseSmart(boolean useSmart) {
+			this.delegate.setUseSmart(useSmart);
+		}
+
+		@Override
+		public String getMainDictionary() {
+			return this.delegate.getMainDictionary();
+		}
+
+		@Override
+		public String getQuantifierDicionary() {
+			return this.delegate.getQuantifierDicionary();
+		}
+
+		@Override
+		public List<String> getExtDictionarys() {
+			return this.delegate.getExtDictionarys();
+		}
+
+		@Override
+		public List<String> getExtStopWordDictionarys() {
+			return this.delegate.getExtStopWordDictionarys();
+		}
+	}
+
+	/**
+	 * 不加载主词典和扩展词典的配置
+	 */
+	private static final class StubConfiguration extends ForwardingConfiguration {
+		StubConfiguration(Configuration delegate) {
+			super(delegate);
+		}
+
+		@Override
+		public String getMainDictionary() {
+			return STUB_MAIN_DICTIONARY;
+		}
+
+		@Override
+		public List<String> getExtDictionarys() {
+			return Collections.emptyList();
+		}
+
+		@Override
+		public List<String> getExtStopWordDictionarys() {
+			return Collections.emptyList();
+		}
+	}
+}
@@ -0,0 +1,241 @@
+package org.apache.lucene.analysis.ik;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.lucene.store.InputStreamDataInput;
+import org.apache.lucene.util.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wltea.analyzer.cfg.Configuration;
+import org.wltea.analyzer.dic.Dictionary;
+
+/**
+ * IK词典加载器
+ *
+ * 优先从IKDictionarySnapshot生成的二进制快照加载字典树，快照不存在、格式不兼容或与当前词典文件不一致时
+ * 记录日志并回退到解析文本词典。解析文本时可以并行读取扩展词典，读取完成后按配置顺序依次写入主词典。
+ * 加载结果安装为IK的单例，IKTokenizer直接使用。
+ *
+ * 重新加载时在调用线程中构造一个完整的新词典实例，完成后一次替换IK的单例，旧实例不会被修改，
+ * 详见IKDictionaries.install。每次加载前记录扩展词典的校验和，IKDictionaryWatcher据此判断词典是否变化，
+ * 通过IKDictionaryReloadHandler重新加载后不会再被IKDictionaryWatcher重复加载。
+ * @author Lanxiaowei
+ *
+ */
+public final class IKDictionaryLoader {
+	private static final Logger log = LoggerFactory.getLogger(IKDictionaryLoader.class);
+
+	private static final Object RELOAD_LOCK = new Object();
+	/**词典版本，每次成功重新加载后加一*/
+	private static final AtomicLong VERSION = new AtomicLong();
+	/**当前词典加载时扩展词典、扩展停用词词典的校验和，尚未通过本类加载时为null*/
+	private static volatile long[] checksums;
+
+	private IKDictionaryLoader() {
+	}
+
+	/**
+	 * 加载IK词典并安装为单例
+	 * @param cfg IK配置
+	 * @param snapshot 词典快照，为null时直接解析文本词典[由本方法关闭]
+	 * @param parallelExtDict 是否并行读取扩展词典
+	 * @return IK的词典单例
+	 * @throws IOException
+	 */
+	public static Dictionary load(Configuration cfg, InputStream snapshot, boolean parallelExtDict) throws IOException {
+		long[] current = checksums(cfg);
+		Dictionary dictionary = null;
+		if (snapshot != null) {
+			try {
+				dictionary = IKDictionarySnapshot.read(cfg, new InputStreamDataInput(new BufferedInputStream(snapshot)));
+				if (dictionary == null) {
+					log.warn("IK dictionary snapshot does not match the current dictionary files, loading text dictionaries");
+				}
+			} catch (IOException e) {
+				//快照损坏或版本不兼容，按文本词典加载
+				log.warn("IK dictionary snapshot is corrupt or incompatible, loading text dictionaries", e);
+				dictionary = null;
+			} finally {
+				IOUtils.closeWhileHandlingException(snapshot);
+			}
+		}
+		if (dictionary == null) {
+			dictionary = loadText(cfg, parallelExtDict);
+		}
+		synchronized (RELOAD_LOCK) {
+			checksums = current;
+			return IKDictionaries.install(dictionary);
+		}
+	}
+
+	/**
+	 * 从文本词典重新加载并替换当前的词典，同一时间只有一次重新加载
+	 * @param cfg IK配置
+	 * @param parallelExtDict 是否并行读取扩展词典
+	 * @return 新的词典版本
+	 * @throws IOException
+	 */
+	public static long reload(Configuration cfg, boolean parallelExtDict) throws IOException {
+		synchronized (RELOAD_LOCK) {
+			//先计算校验和，加载期间词典文件再有变化时下次检查仍会重新加载
+			long[] current = checksums(cfg);
+			IKDictionaries.install(loadText(cfg, parallelExtDict));
+			checksums = current;
+			return VERSION.incrementAndGet();
+		}
+	}
+
+	/**
+	 * 扩展词典、扩展停用词词典与当前词典加载时相比有变化时重新加载
+	 * @param cfg IK配置
+	 * @param parallelExtDict 是否并行读取扩展词典
+	 * @return 是否重新加载[尚未通过本类加载时只记录当前的校验和]
+	 * @throws IOException
+	 */
+	static boolean reloadIfChanged(Configuration cfg, boolean parallelExtDict) throws IOException {
+		synchronized (RELOAD_LOCK) {
+			long[] current = checksums(cfg);
+			if (checksums == null) {
+				checksums = current;
+				return false;
+			}
+			if (Arrays.equals(current, checksums)) {
+				return false;
+			}
+			IKDictionaries.install(loadText(cfg, parallelExtDict));
+			checksums = current;
+			VERSION.incrementAndGet();
+			return true;
+		}
+	}
+
+	/**
+	 * 扩展词典、扩展停用词词典的校验和[主词典和量词词典随IK的jar发布，不参与检查]
+	 */
+	private static long[] checksums(Configuration cfg) throws IOException {
+		List<String> sources = new ArrayList<String>();
+		if (cfg.getExtDictionarys() != null) {
+			sources.addAll(cfg.getExtDictionarys());
+		}
+		if (cfg.getExtStopWordDictionarys() != null) {
+			sources.addAll(cfg.getExtStopWordDictionarys());
+		}
+		long[] checksums = new long[sources.size()];
+		for (int i = 0; i < checksums.length; i++) {
+			checksums[i] = IKDictionaries.checksum(sources.get(i));
+		}
+		return checksums;
+	}
+
+	/**
+	 * 当前词典版本[首次加载为0]
+	 * @return
+	 */
+	public static long getVersion() {
+		return VERSION.get();
+	}
+
+	/**
+	 * 从文本词典构造一个新的词典实例[不安装为单例]
+	 * @param cfg IK配置
+	 * @param parallelExtDict 是否并行读取扩展词典
+	 * @return
+	 * @throws IOException
+	 */
+	public static Dictionary loadText(Configuration cfg, boolean parallelExtDict) throws IOException {
+		List<String> extDicts = cfg.getExtDictionarys();
+		if (!parallelExtDict || extDicts == null || extDicts.size() < 2) {
+			return IKDictionaries.newDictionary(cfg);
+		}
+		Dictionary dictionary = IKDictionaries.newDictionary(new IKDictionaries.ForwardingConfiguration(cfg) {
+			@Override
+			public List<String> getExtDictionarys() {
+				return Collections.emptyList();
+			}
+		});
+		Object mainDict = IKDictionaries.getTries(dictionary)[IKDictionaries.MAIN];
+		for (List<char[]> words : readParallel(extDicts)) {
+			for (char[] word : words) {
+				IKDictionaries.fill(mainDict, word);
+			}
+		}
+		return dictionary;
+	}
+
+	/**
+	 * 并行读取多个扩展词典，结果与extDicts顺序一致
+	 */
+	private static List<List<char[]>> readParallel(List<String> extDicts) throws IOException {
+		int threads = Math.min(extDicts.size(), Runtime.getRuntime().availableProcessors());
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<List<char[]>>> futures = new ArrayList<Future<List<char[]>>>(extDicts.size());
+			for (final String path : extDicts) {
+				futures.add(executor.submit(new Callable<List<char[]>>() {
+					@Override
+					public List<char[]> call() throws IOException {
+						return readWords(path);
+					}
+				}));
+			}
+			List<List<char[]>> result = new ArrayList<List<char[]>>(futures.size());
+			for (Future<List<char[]>> future : futures) {
+				result.add(future.get());
+			}
+			return result;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while loading IK extension dictionaries", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			throw new IOException("Failed to load IK extension dictionaries", cause);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * 按IK的规则读取一个词典文件：每行一个词，忽略空行，去掉首尾空白并转小写，文件不存在时返回空列表
+	 * @param path
+	 * @return
+	 * @throws IOException
+	 */
+	static List<char[]> readWords(String path) throws IOException {
+		InputStream in = IKDictionaries.openResource(path);
+		if (in == null) {
+			return Collections.emptyList();
+		}
+		List<char[]> words = new ArrayList<char[]>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 512);
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String word = line.trim();
+				if (!word.isEmpty()) {
+					words.add(word.toLowerCase().toCharArray());
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return words;
+	}
+}
@@ -0,0 +1,31 @@
+package org.apache.lucene.analysis.ik;
+
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.handler.RequestHandlerBase;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.response.SolrQueryResponse;
+import org.wltea.analyzer.cfg.DefaultConfig;
+
+/**
+ * 重新加载IK词典的请求处理器，不需要重新加载SolrCore
+ *
+ * 在solrconfig.xml中注册：&lt;requestHandler name="/ik/reload" class="...IKDictionaryReloadHandler"/&gt;，
+ * 请求/ik/reload时从文本词典重建字典树后替换，返回新的词典版本和耗时；参数parallelExtDict=true时并行读取扩展词典。
+ * @author Lanxiaowei
+ *
+ */
+public class IKDictionaryReloadHandler extends RequestHandlerBase {
+	@Override
+	public void handleRequestBody(SolrQueryRequest req, SolrQueryResponse rsp) throws Exception {
+		SolrParams params = req.getParams();
+		long start = System.nanoTime();
+		long version = IKDictionaryLoader.reload(DefaultConfig.getInstance(), params.getBool("parallelExtDict", false));
+		rsp.add("version", version);
+		rsp.add("elapsedMillis", (System.nanoTime() - start) / 1000000L);
+	}
+
+	@Override
+	public String getDescription() {
+		return "Reloads the IK dictionaries without reloading the core";
+	}
+}
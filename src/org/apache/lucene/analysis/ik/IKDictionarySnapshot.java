@@ -0,0 +1,211 @@
+package org.apache.lucene.analysis.ik;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.store.DataOutput;
+import org.apache.lucene.store.OutputStreamDataOutput;
+import org.wltea.analyzer.cfg.Configuration;
+import org.wltea.analyzer.cfg.DefaultConfig;
+import org.wltea.analyzer.dic.Dictionary;
+
+/**
+ * IK词典的二进制快照
+ *
+ * 把解析好的主词典、停用词词典、量词词典字典树按后序遍历写成紧凑的二进制文件[每个节点：2字节字符 + vInt(子节点数 << 1 | 是否成词)]，
+ * 加载时整块读入后自底向上直接重建节点，省去逐行解析文本和逐词查找插入位置的开销。
+ * 快照中记录了生成时每个词典文件的CRC32，读取时与当前的词典文件比较，不一致则视为过期。
+ *
+ * 生成快照：java org.apache.lucene.analysis.ik.IKDictionarySnapshot -output conf/ik_dict.bin，
+ * 词典文件按IKAnalyzer.cfg.xml从classpath查找，与IK本身一致。
+ * @author Lanxiaowei
+ *
+ */
+public final class IKDictionarySnapshot {
+	private static final String CODEC_NAME = "IKDictionarySnapshot";
+	private static final int VERSION_START = 0;
+	private static final int VERSION_CURRENT = VERSION_START;
+
+	private IKDictionarySnapshot() {
+	}
+
+	/**
+	 * 写出词典快照
+	 * @param dictionary 由cfg加载的词典
+	 * @param cfg 生成dictionary所用的配置，用于记录词典文件的校验和
+	 * @param output
+	 * @throws IOException
+	 */
+	public static void write(Dictionary dictionary, Configuration cfg, DataOutput output) throws IOException {
+		CodecUtil.writeHeader(output, CODEC_NAME, VERSION_CURRENT);
+		List<String> sources = sources(cfg);
+		output.writeVInt(sources.size());
+		for (String source : sources) {
+			output.writeString(source);
+			output.writeLong(IKDictionaries.checksum(source));
+		}
+		for (Object trie : IKDictionaries.getTries(dictionary)) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutput nodes = new OutputStreamDataOutput(bytes);
+			int count = writeNode(nodes, trie);
+			output.writeVInt(count);
+			output.writeVInt(bytes.size());
+			output.writeBytes(bytes.toByteArray(), bytes.size());
+		}
+	}
+
+	/**
+	 * 读取词典快照
+	 * @param cfg 当前的IK配置
+	 * @param input
+	 * @return 新的词典实例[未安装为单例]，快照与当前词典文件不一致时返回null
+	 * @throws IOException 快照损坏或版本不兼容
+	 */
+	public static Dictionary read(Configuration cfg, DataInput input) throws IOException {
+		CodecUtil.checkHeader(input, CODEC_NAME, VERSION_START, VERSION_CURRENT);
+		List<String> sources = sources(cfg);
+		if (input.readVInt() != sources.size()) {
+			return null;
+		}
+		for (String source : sources) {
+			if (!source.equals(input.readString()) || input.readLong() != IKDictionaries.checksum(source)) {
+				return null;
+			}
+		}
+		Character[] chars = new Character[Character.MAX_VALUE + 1];
+		Object[] tries = new Object[3];
+		for (int i = 0; i < tries.length; i++) {
+			int count = input.readVInt();
+			byte[] bytes = new byte[input.readVInt()];
+			input.readBytes(bytes, 0, bytes.length);
+			tries[i] = readNodes(bytes, count, chars);
+		}
+		Dictionary dictionary = IKDictionaries.newStubDictionary(cfg);
+		IKDictionaries.setTries(dictionary, tries);
+		return dictionary;
+	}
+
+	/**
+	 * 参与校验的词典文件：主词典、量词词典、扩展词典、扩展停用词词典
+	 */
+	private static List<String> sources(Configuration cfg) {
+		List<String> sources = new ArrayList<String>();
+		sources.add(cfg.getMainDictionary());
+		sources.add(cfg.getQuantifierDicionary());
+		if (cfg.getExtDictionarys() != null) {
+			sources.addAll(cfg.getExtDictionarys());
+		}
+		if (cfg.getExtStopWordDictionarys() != null) {
+			sources.addAll(cfg.getExtStopWordDictionarys());
+		}
+		return sources;
+	}
+
+	/**
+	 * 后序写出节点
+	 * @return 写出的节点数
+	 */
+	private static int writeNode(DataOutput output, Object segment) throws IOException {
+		List<Object> children = IKDictionaries.children(segment);
+		int count = 1;
+		for (Object child : children) {
+			count += writeNode(output, child);
+		}
+		output.writeShort((short) IKDictionaries.nodeChar(segment));
+		output.writeVInt(children.size() << 1 | (IKDictionaries.nodeState(segment) == 1 ? 1 : 0));
+		return count;
+	}
+
+	/**
+	 * 按后序重建字典树：每读到一个节点，栈顶的子节点数个节点就是它的全部子节点
+	 * @return 根节点
+	 */
+	private static Object readNodes(byte[] bytes, int count, Character[] chars) throws IOException {
+		Object[] stack = new Object[64];
+		int top = 0;
+		int pos = 0;
+		for (int n = 0; n < count; n++) {
+			char c = (char) ((bytes[pos] & 0xFF) << 8 | (bytes[pos + 1] & 0xFF));
+			pos += 2;
+			int header = 0;
+			for (int shift = 0;; shift += 7) {
+				byte b = bytes[pos++];
+				header |= (b & 0x7F) << shift;
+				if (b >= 0) {
+					break;
+				}
+			}
+			int size = header >>> 1;
+			if (size > top) {
+				throw new CorruptIndexException("IK dictionary snapshot: node has " + size + " children but only " + top
+						+ " nodes are pending", "IKDictionarySnapshot");
+			}
+			Character nodeChar = chars[c];
+			if (nodeChar == null) {
+				nodeChar = chars[c] = Character.valueOf(c);
+			}
+			Object[] children = new Object[size];
+			top -= size;
+			System.arraycopy(stack, top, children, 0, size);
+			if (top == stack.length) {
+				stack = Arrays.copyOf(stack, stack.length << 1);
+			}
+			stack[top++] = IKDictionaries.newSegment(nodeChar, header & 1, children);
+		}
+		if (top != 1 || pos != bytes.length) {
+			throw new CorruptIndexException("IK dictionary snapshot: trie is not well formed", "IKDictionarySnapshot");
+		}
+		return stack[0];
+	}
+
+	/**
+	 * 按默认配置(classpath下的IKAnalyzer.cfg.xml)生成词典快照
+	 * @param args -output 快照文件路径
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		String output = null;
+		for (int i = 0; i < args.length; i++) {
+			if ("-output".equals(args[i]) && i + 1 < args.length) {
+				output = args[++i];
+			}
+		}
+		if (output == null) {
+			System.err.println("Usage: java " + IKDictionarySnapshot.class.getName() + " -output <snapshot file>");
+			System.exit(1);
+			return;
+		}
+		//IK加载词典时向标准输出打印日志
+		PrintStream stdout = System.out;
+		System.setOut(System.err);
+		try {
+			Configuration cfg = DefaultConfig.getInstance();
+			Dictionary dictionary = IKDictionaryLoader.loadText(cfg, true);
+			Path path = Paths.get(output).toAbsolutePath();
+			Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+			OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp));
+			try {
+				write(dictionary, cfg, new OutputStreamDataOutput(out));
+			} finally {
+				out.close();
+			}
+			Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			System.err.println("IK dictionary snapshot written to " + path + " (" + Files.size(path) + " bytes)");
+		} finally {
+			System.setOut(stdout);
+		}
+	}
+}
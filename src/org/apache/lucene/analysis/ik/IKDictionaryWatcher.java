@@ -0,0 +1,80 @@
+package org.apache.lucene.analysis.ik;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wltea.analyzer.cfg.Configuration;
+
+/**
+ * 定时检查IK扩展词典、扩展停用词词典是否变化[按内容校验和]，变化时在后台线程重新加载
+ *
+ * 主词典和量词词典随IK的jar发布，不参与检查。校验和由IKDictionaryLoader在每次加载时记录，
+ * 通过IKDictionaryReloadHandler重新加载过的词典不会再次加载。检查或加载失败时记录日志，下次检查时重试。
+ * 由IKTokenizerFactory通过SharedResourceRegistry共享，最后一个引用释放时关闭后台线程。
+ * @author Lanxiaowei
+ *
+ */
+public class IKDictionaryWatcher implements Closeable {
+	private static final Logger log = LoggerFactory.getLogger(IKDictionaryWatcher.class);
+
+	private final Configuration cfg;
+	private final boolean parallelExtDict;
+	private final ScheduledExecutorService executor;
+
+	/**
+	 * @param cfg IK配置
+	 * @param parallelExtDict 重新加载时是否并行读取扩展词典
+	 * @param intervalSeconds 检查间隔[秒]
+	 * @throws IOException
+	 */
+	public IKDictionaryWatcher(Configuration cfg, boolean parallelExtDict, final long intervalSeconds) throws IOException {
+		this.cfg = cfg;
+		this.parallelExtDict = parallelExtDict;
+		//尚未通过IKDictionaryLoader加载时记录当前的校验和，加载后词典文件已变化时立即重新加载
+		IKDictionaryLoader.reloadIfChanged(cfg, parallelExtDict);
+		this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "ik-dictionary-watcher");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		this.executor.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					if (reloadIfChanged()) {
+						log.info("Reloaded IK dictionaries, version {}", IKDictionaryLoader.getVersion());
+					}
+				} catch (IOException e) {
+					//词典文件可能正在写入，下次检查时重试
+					log.warn("Failed to reload IK dictionaries, retrying in {}s", intervalSeconds, e);
+				} catch (RuntimeException e) {
+					//不能让异常终止定时任务
+					log.warn("Failed to reload IK dictionaries, retrying in {}s", intervalSeconds, e);
+				}
+			}
+		}, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * 词典变化时重新加载
+	 * @return 是否重新加载
+	 * @throws IOException
+	 */
+	boolean reloadIfChanged() throws IOException {
+		return IKDictionaryLoader.reloadIfChanged(this.cfg, this.parallelExtDict);
+	}
+
+	@Override
+	public void close() {
+		this.executor.shutdownNow();
+	}
+}
@@ -1,18 +1,83 @@
 package org.apache.lucene.analysis.ik;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Map;
 
 import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.pinyin.utils.SharedResourceRegistry;
+import org.apache.lucene.analysis.pinyin.utils.SharedResourceRegistry.Handle;
+import org.apache.lucene.analysis.util.ResourceLoader;
+import org.apache.lucene.analysis.util.ResourceLoaderAware;
 import org.apache.lucene.analysis.util.TokenizerFactory;
 import org.apache.lucene.util.AttributeFactory;
+import org.wltea.analyzer.cfg.DefaultConfig;
+import org.wltea.analyzer.dic.Dictionary;
 import org.wltea.analyzer.lucene.IKTokenizer;
 
-public class IKTokenizerFactory extends TokenizerFactory {
+public class IKTokenizerFactory extends TokenizerFactory implements ResourceLoaderAware {
+	private static final String KIND_IK_DICTIONARY = "ik-dictionary";
+	private static final String KIND_IK_WATCHER = "ik-dictionary-watcher";
+
 	public IKTokenizerFactory(Map<String, String> args) {
 		super(args);
 		useSmart = getBoolean(args, "useSmart", false);
+		snapshot = get(args, "snapshot");
+		parallelExtDict = getBoolean(args, "parallelExtDict", false);
+		reloadInterval = getInt(args, "reloadInterval", 0);
 	}
 	private boolean useSmart;
+	/**IKDictionarySnapshot生成的词典快照，不存在或已过期时解析文本词典*/
+	private String snapshot;
+	/**解析文本词典时是否并行读取扩展词典*/
+	private boolean parallelExtDict;
+	/**检查扩展词典是否变化的间隔[秒]，小于等于0表示不检查，也可以通过IKDictionaryReloadHandler手动重新加载*/
+	private int reloadInterval;
+	private Handle<Dictionary> dictionaryHandle;
+	private Handle<IKDictionaryWatcher> watcherHandle;
+
+	@Override
+	public void inform(final ResourceLoader loader) throws IOException {
+		//IK词典是JVM内的单例，这里只在注册表中登记引用并在SolrCore加载时完成加载，避免第一次分词时才加载
+		Handle<Dictionary> handle = SharedResourceRegistry.getInstance().acquire(KIND_IK_DICTIONARY, "default",
+				new SharedResourceRegistry.Factory<Dictionary>() {
+			@Override
+			public Dictionary create() throws IOException {
+				return IKDictionaryLoader.load(DefaultConfig.getInstance(), openSnapshot(loader), parallelExtDict);
+			}
+		});
+		Handle<IKDictionaryWatcher> watcherHandle = null;
+		if (this.reloadInterval > 0) {
+			//多个SolrCore共用一个后台线程，最后一个引用释放时停止
+			watcherHandle = SharedResourceRegistry.getInstance().acquire(KIND_IK_WATCHER, "default",
+					new SharedResourceRegistry.Factory<IKDictionaryWatcher>() {
+				@Override
+				public IKDictionaryWatcher create() throws IOException {
+					return new IKDictionaryWatcher(DefaultConfig.getInstance(), parallelExtDict, reloadInterval);
+				}
+			});
+		}
+		if (this.dictionaryHandle != null) {
+			this.dictionaryHandle.close();
+		}
+		if (this.watcherHandle != null) {
+			this.watcherHandle.close();
+		}
+		this.dictionaryHandle = handle;
+		this.watcherHandle = watcherHandle;
+	}
+
+	private InputStream openSnapshot(ResourceLoader loader) {
+		if (this.snapshot == null) {
+			return null;
+		}
+		try {
+			return loader.openResource(this.snapshot);
+		} catch (IOException e) {
+			//快照不存在时解析文本词典
+			return null;
+		}
+	}
 
 	@Override
 	public Tokenizer create(AttributeFactory attributeFactory) {
@@ -1,42 +1,53 @@
 package org.apache.lucene.analysis.pinyin.lucene5;
 
-import java.io.BufferedReader;
-import java.io.Reader;
-import java.io.StringReader;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.Tokenizer;
 import org.apache.lucene.analysis.pinyin.utils.Constant;
+import org.apache.lucene.analysis.pinyin.utils.PinyinCache;
+import org.apache.lucene.analysis.pinyin.utils.PolyphoneDictionary;
+import org.apache.lucene.analysis.pinyin.utils.SharedResourceRegistry;
+import org.apache.lucene.analysis.pinyin.utils.TokenBudget;
+import org.wltea.analyzer.cfg.DefaultConfig;
+import org.wltea.analyzer.dic.Dictionary;
 import org.wltea.analyzer.lucene.IKTokenizer;
 /**
  * 自定义拼音分词器
+ *
+ * 通过builder()可以为每个字段单独配置分词链(IK分词模式、全拼/简拼、NGram方式等)，
+ * 未单独配置的字段使用默认配置。配置相同(同一个FieldConfig对象)的字段在同一线程内共用一条分词链，
+ * 组件按配置而不是按字段名缓存，字段再多也只会创建与配置数相同的分词链。
+ * 拼音缓存、多音词词典、IK词典在JVM内只加载一次，所有线程共享，同一个实例可以在任意多的索引线程中使用。
+ * 拼音缓存从SharedResourceRegistry获取，close时释放引用。
+ * 配置了词元预算(maxTokens、maxTermCombinations)的字段使用分开的PinyinTokenFilter和NGram过滤器，以便超出预算时逐级降级。
  * @author Lanxiaowei
  *
  */
-@SuppressWarnings("unused")
 public class PinyinAnalyzer extends Analyzer {
-	private int minGram;
-	private int maxGram;
-	private boolean useSmart;
-	/** 是否需要对中文进行NGram[默认为false] */
-	private boolean nGramChinese;
-	/** 是否需要对纯数字进行NGram[默认为false] */
-	private boolean nGramNumber;
-	/**N-Gram的方向：front/back*/
-	private String side;
-	
+	/**按字段配置复用分词链*/
+	private static final ReuseStrategy CONFIG_REUSE_STRATEGY = new ConfigReuseStrategy();
+
+	/**未单独配置的字段使用的配置*/
+	private final FieldConfig defaultConfig;
+	/**字段名 -> 配置*/
+	private final Map<String, FieldConfig> fieldConfigs;
+	/**JVM内共享的拼音缓存，所有字段都不使用缓存时为null*/
+	private final SharedResourceRegistry.Handle<PinyinCache> cacheHandle;
+
 	public PinyinAnalyzer() {
-		super();
-		this.maxGram = Constant.DEFAULT_MAX_GRAM;
-		this.minGram = Constant.DEFAULT_MIN_GRAM;
-		this.useSmart = Constant.DEFAULT_IK_USE_SMART;
+		this(Constant.DEFAULT_MIN_GRAM, Constant.DEFAULT_MAX_GRAM, Constant.DEFAULT_SIDE_FRONT,
+				Constant.DEFAULT_IK_USE_SMART, Constant.DEFAULT_NGRAM_CHINESE, Constant.DEFAULT_NGRAM_NUMBER);
 	}
-	
+
 	public PinyinAnalyzer(boolean useSmart) {
-		this(Constant.DEFAULT_MIN_GRAM, Constant.DEFAULT_MAX_GRAM, Constant.DEFAULT_SIDE_FRONT, Constant.DEFAULT_IK_USE_SMART, Constant.DEFAULT_NGRAM_CHINESE,Constant.DEFAULT_NGRAM_NUMBER);
+		this(Constant.DEFAULT_MIN_GRAM, Constant.DEFAULT_MAX_GRAM, Constant.DEFAULT_SIDE_FRONT, useSmart, Constant.DEFAULT_NGRAM_CHINESE,Constant.DEFAULT_NGRAM_NUMBER);
 	}
-	
+
 	public PinyinAnalyzer(int maxGram) {
 		this(Constant.DEFAULT_MIN_GRAM, maxGram, Constant.DEFAULT_SIDE_FRONT, Constant.DEFAULT_IK_USE_SMART, Constant.DEFAULT_NGRAM_CHINESE,Constant.DEFAULT_NGRAM_NUMBER);
 	}
@@ -44,11 +55,11 @@ public class PinyinAnalyzer extends Analyzer {
 	public PinyinAnalyzer(int maxGram,boolean useSmart) {
 		this(Constant.DEFAULT_MIN_GRAM, maxGram, Constant.DEFAULT_SIDE_FRONT, useSmart, Constant.DEFAULT_NGRAM_CHINESE,Constant.DEFAULT_NGRAM_NUMBER);
 	}
-	
+
 	public PinyinAnalyzer(int minGram, int maxGram,boolean useSmart) {
 		this(minGram, maxGram, Constant.DEFAULT_SIDE_FRONT, useSmart, Constant.DEFAULT_NGRAM_CHINESE,Constant.DEFAULT_NGRAM_NUMBER);
 	}
-	
+
 	public PinyinAnalyzer(int minGram, int maxGram,String side,boolean useSmart) {
 		this(minGram, maxGram, side, useSmart, Constant.DEFAULT_NGRAM_CHINESE,Constant.DEFAULT_NGRAM_NUMBER);
 	}
@@ -57,33 +68,430 @@ public class PinyinAnalyzer extends Analyzer {
 			boolean nGramChinese) {
 		this(minGram, maxGram, side, useSmart,nGramChinese,Constant.DEFAULT_NGRAM_NUMBER);
 	}
-	
+
 	public PinyinAnalyzer(int minGram, int maxGram,String side,boolean useSmart,
 			boolean nGramChinese,boolean nGramNumber) {
-		super();
-		this.minGram = minGram;
-		this.maxGram = maxGram;
-		this.side = side;
-		this.useSmart = useSmart;
-		this.nGramChinese = nGramChinese;
-		this.nGramNumber = nGramNumber;
+		//与原来的行为保持一致：所有字段做拼音NGram，不使用多音词词典
+		this(new FieldConfig().setUseSmart(useSmart).setGramMode(GramMode.NGRAM).setSide(side)
+				.setMinGram(minGram).setMaxGram(maxGram).setNGramChinese(nGramChinese)
+				.setNGramNumber(nGramNumber).setDictionary(null), new HashMap<String, FieldConfig>());
+	}
+
+	private PinyinAnalyzer(FieldConfig defaultConfig, Map<String, FieldConfig> fieldConfigs) {
+		super(CONFIG_REUSE_STRATEGY);
+		this.defaultConfig = defaultConfig;
+		this.fieldConfigs = fieldConfigs;
+		int cacheSize = defaultConfig.cacheSize;
+		for (FieldConfig config : fieldConfigs.values()) {
+			cacheSize = Math.max(cacheSize, config.cacheSize);
+		}
+		try {
+			this.cacheHandle = PinyinCache.acquireShared(cacheSize);
+		} catch (IOException e) {
+			throw new IllegalStateException("can not acquire the shared pinyin cache", e);
+		}
+		//IK词典是JVM内的单例，提前加载，避免第一次分词时卡顿
+		Dictionary.initial(DefaultConfig.getInstance());
+	}
+
+	/**
+	 * 按字段配置分词链
+	 * @return
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * 字段使用的配置
+	 * @param fieldName 字段名
+	 * @return 没有单独配置时返回默认配置
+	 */
+	private FieldConfig configFor(String fieldName) {
+		FieldConfig config = this.fieldConfigs.get(fieldName);
+		return config == null ? this.defaultConfig : config;
 	}
 
 	@Override
 	protected TokenStreamComponents createComponents(String fieldName) {
-		Reader reader = new BufferedReader(new StringReader(fieldName));
-		Tokenizer tokenizer = new IKTokenizer(reader, useSmart);
-		//转拼音
-		TokenStream tokenStream = new PinyinTokenFilter(tokenizer,
-			Constant.DEFAULT_SHORT_PINYIN,Constant.DEFAULT_PINYIN_ALL, Constant.DEFAULT_MIN_TERM_LRNGTH);
-		//对拼音进行NGram处理
-		/*tokenStream = new PinyinEdgeNGramTokenFilter(tokenStream,Constant.DEFAULT_SIDE_FRONT, 
-			this.minGram, this.maxGram,true,true);*/
-		tokenStream = new PinyinNGramTokenFilter(tokenStream, 
-			minGram, maxGram, nGramChinese, nGramNumber);
-		
-	    //tokenStream = new LowerCaseFilter(tokenStream);
-		//tokenStream = new StopFilter(tokenStream,StopAnalyzer.ENGLISH_STOP_WORDS_SET);
+		FieldConfig config = configFor(fieldName);
+		Tokenizer tokenizer = new IKTokenizer(TokenStream.DEFAULT_TOKEN_ATTRIBUTE_FACTORY, config.useSmart);
+		PinyinCache cache = config.cacheSize > 0 ? this.cacheHandle.get() : null;
+		TokenStream tokenStream;
+		TokenBudget budget = config.maxTokens > 0 || config.maxTermCombinations > 0 ?
+				new TokenBudget(null, config.maxTokens, config.maxTermCombinations) : null;
+		if (config.gramMode == GramMode.NONE || budget != null) {
+			tokenStream = new PinyinTokenFilter(tokenizer, config.shortPinyin, config.pinyinAll, config.outChinese,
+					config.minTermLength, config.maxCombinations, cache, config.dictionary, config.graph, null, budget);
+			//合并的PinyinGramTokenFilter不能单独停止切分NGram，有预算时使用分开的NGram过滤器
+			if (config.gramMode == GramMode.NGRAM) {
+				tokenStream = new PinyinNGramTokenFilter(tokenStream, config.minGram, config.maxGram,
+						config.nGramChinese, config.nGramNumber, config.syllableStart, config.syllableEnd,
+						config.mixInitials, config.dedupGrams);
+			} else if (config.gramMode == GramMode.EDGE) {
+				tokenStream = new PinyinEdgeNGramTokenFilter(tokenStream, config.side, config.minGram, config.maxGram,
+						config.nGramChinese, config.nGramNumber, config.syllableStart, config.syllableEnd,
+						config.mixInitials, config.dedupGrams);
+			}
+		} else {
+			//转拼音并对拼音进行NGram处理[等价于PinyinTokenFilter + PinyinNGramTokenFilter/PinyinEdgeNGramTokenFilter]
+			tokenStream = new PinyinGramTokenFilter(tokenizer, config.shortPinyin, config.pinyinAll,
+					config.outChinese, config.minTermLength, config.maxCombinations, cache, config.dictionary,
+					config.gramMode == GramMode.EDGE, config.side, config.minGram, config.maxGram,
+					config.nGramChinese, config.nGramNumber, config.syllableStart, config.syllableEnd,
+					config.mixInitials, config.dedupGrams);
+		}
 	    return new Analyzer.TokenStreamComponents(tokenizer, tokenStream);
 	}
+
+	@Override
+	public void close() {
+		super.close();
+		if (this.cacheHandle != null) {
+			this.cacheHandle.close();
+		}
+	}
+
+	/**
+	 * 拼音NGram方式
+	 */
+	public enum GramMode {
+		/**只转拼音，不做NGram*/
+		NONE,
+		/**拼音NGram*/
+		NGRAM,
+		/**拼音EdgeNGram*/
+		EDGE
+	}
+
+	/**
+	 * 一个字段的分词链配置[默认值与各个Solr工厂类一致]
+	 */
+	public static final class FieldConfig implements Cloneable {
+		private boolean useSmart = Constant.DEFAULT_IK_USE_SMART;
+		private boolean shortPinyin = Constant.DEFAULT_SHORT_PINYIN;
+		private boolean pinyinAll = Constant.DEFAULT_PINYIN_ALL;
+		private boolean outChinese = Constant.DEFAULT_OUT_CHINESE;
+		private int minTermLength = Constant.DEFAULT_MIN_TERM_LRNGTH;
+		private int maxCombinations = Constant.DEFAULT_MAX_COMBINATIONS;
+		private int cacheSize = Constant.DEFAULT_CACHE_SIZE;
+		private PolyphoneDictionary dictionary = PolyphoneDictionary.getDefault();
+		private boolean graph = Constant.DEFAULT_GRAPH;
+		private GramMode gramMode = GramMode.NONE;
+		private String side = Constant.DEFAULT_SIDE_FRONT;
+		private int minGram = Constant.DEFAULT_MIN_GRAM;
+		private int maxGram = Constant.DEFAULT_MAX_GRAM;
+		private boolean nGramChinese = Constant.DEFAULT_NGRAM_CHINESE;
+		private boolean nGramNumber = Constant.DEFAULT_NGRAM_NUMBER;
+		private boolean syllableStart = Constant.DEFAULT_SYLLABLE_START;
+		private boolean syllableEnd = Constant.DEFAULT_SYLLABLE_END;
+		private boolean mixInitials = Constant.DEFAULT_MIX_INITIALS;
+		private boolean dedupGrams = Constant.DEFAULT_DEDUP_GRAMS;
+		private int maxTokens = Constant.DEFAULT_MAX_TOKENS;
+		private int maxTermCombinations = Constant.DEFAULT_MAX_TERM_COMBINATIONS;
+
+		public FieldConfig setUseSmart(boolean useSmart) {
+			this.useSmart = useSmart;
+			return this;
+		}
+
+		public FieldConfig setShortPinyin(boolean shortPinyin) {
+			this.shortPinyin = shortPinyin;
+			return this;
+		}
+
+		public FieldConfig setPinyinAll(boolean pinyinAll) {
+			this.pinyinAll = pinyinAll;
+			return this;
+		}
+
+		public FieldConfig setOutChinese(boolean outChinese) {
+			this.outChinese = outChinese;
+			return this;
+		}
+
+		public FieldConfig setMinTermLength(int minTermLength) {
+			this.minTermLength = minTermLength;
+			return this;
+		}
+
+		public FieldConfig setMaxCombinations(int maxCombinations) {
+			this.maxCombinations = maxCombinations;
+			return this;
+		}
+
+		/**
+		 * @param cacheSize JVM内共享拼音缓存的容量，小于等于0表示不使用缓存
+		 */
+		public FieldConfig setCacheSize(int cacheSize) {
+			this.cacheSize = cacheSize;
+			return this;
+		}
+
+		/**
+		 * @param dictionary 多音词词典，为null表示不使用
+		 */
+		public FieldConfig setDictionary(PolyphoneDictionary dictionary) {
+			this.dictionary = dictionary;
+			return this;
+		}
+
+		/**
+		 * @param graph 是否输出按字对齐的拼音词图[只能在GramMode.NONE时使用]
+		 */
+		public FieldConfig setGraph(boolean graph) {
+			this.graph = graph;
+			return this;
+		}
+
+		public FieldConfig setGramMode(GramMode gramMode) {
+			this.gramMode = gramMode;
+			return this;
+		}
+
+		public FieldConfig setSide(String side) {
+			this.side = side;
+			return this;
+		}
+
+		public FieldConfig setMinGram(int minGram) {
+			this.minGram = minGram;
+			return this;
+		}
+
+		public FieldConfig setMaxGram(int maxGram) {
+			this.maxGram = maxGram;
+			return this;
+		}
+
+		public FieldConfig setNGramChinese(boolean nGramChinese) {
+			this.nGramChinese = nGramChinese;
+			return this;
+		}
+
+		public FieldConfig setNGramNumber(boolean nGramNumber) {
+			this.nGramNumber = nGramNumber;
+			return this;
+		}
+
+		public FieldConfig setSyllableStart(boolean syllableStart) {
+			this.syllableStart = syllableStart;
+			return this;
+		}
+
+		public FieldConfig setSyllableEnd(boolean syllableEnd) {
+			this.syllableEnd = syllableEnd;
+			return this;
+		}
+
+		public FieldConfig setMixInitials(boolean mixInitials) {
+			this.mixInitials = mixInitials;
+			return this;
+		}
+
+		public FieldConfig setDedupGrams(boolean dedupGrams) {
+			this.dedupGrams = dedupGrams;
+			return this;
+		}
+
+		/**
+		 * @param maxTokens 每个字段值最多输出的词元数，超出后逐级降级，小于等于0表示不限制
+		 */
+		public FieldConfig setMaxTokens(int maxTokens) {
+			this.maxTokens = maxTokens;
+			return this;
+		}
+
+		/**
+		 * @param maxTermCombinations 每个词元最多展开的拼音个数，超出的词元只输出简拼或原词元，小于等于0表示不限制
+		 */
+		public FieldConfig setMaxTermCombinations(int maxTermCombinations) {
+			this.maxTermCombinations = maxTermCombinations;
+			return this;
+		}
+
+		public boolean isUseSmart() {
+			return useSmart;
+		}
+
+		public boolean isShortPinyin() {
+			return shortPinyin;
+		}
+
+		public boolean isPinyinAll() {
+			return pinyinAll;
+		}
+
+		public boolean isOutChinese() {
+			return outChinese;
+		}
+
+		public int getMinTermLength() {
+			return minTermLength;
+		}
+
+		public int getMaxCombinations() {
+			return maxCombinations;
+		}
+
+		public int getCacheSize() {
+			return cacheSize;
+		}
+
+		public PolyphoneDictionary getDictionary() {
+			return dictionary;
+		}
+
+		public boolean isGraph() {
+			return graph;
+		}
+
+		public GramMode getGramMode() {
+			return gramMode;
+		}
+
+		public String getSide() {
+			return side;
+		}
+
+		public int getMinGram() {
+			return minGram;
+		}
+
+		public int getMaxGram() {
+			return maxGram;
+		}
+
+		public boolean isNGramChinese() {
+			return nGramChinese;
+		}
+
+		public boolean isNGramNumber() {
+			return nGramNumber;
+		}
+
+		public boolean isSyllableStart() {
+			return syllableStart;
+		}
+
+		public boolean isSyllableEnd() {
+			return syllableEnd;
+		}
+
+		public boolean isMixInitials() {
+			return mixInitials;
+		}
+
+		public boolean isDedupGrams() {
+			return dedupGrams;
+		}
+
+		public int getMaxTokens() {
+			return maxTokens;
+		}
+
+		public int getMaxTermCombinations() {
+			return maxTermCombinations;
+		}
+
+		/**
+		 * 检查配置并复制一份[分析器持有副本，之后修改原配置不会影响已创建的分析器]
+		 */
+		private FieldConfig freeze(String name) {
+			if (this.gramMode == null) {
+				throw new IllegalArgumentException("gramMode of " + name + " must not be null");
+			}
+			if (this.graph && this.gramMode != GramMode.NONE) {
+				throw new IllegalArgumentException("graph output of " + name + " can not be combined with n-grams");
+			}
+			if (this.gramMode != GramMode.NONE) {
+				if (this.minGram < 1) {
+					throw new IllegalArgumentException("minGram of " + name + " must be greater than zero");
+				}
+				if (this.minGram > this.maxGram) {
+					throw new IllegalArgumentException("minGram of " + name + " must not be greater than maxGram");
+				}
+			}
+			try {
+				return (FieldConfig) clone();
+			} catch (CloneNotSupportedException e) {
+				throw new AssertionError(e);
+			}
+		}
+	}
+
+	/**
+	 * PinyinAnalyzer构建器
+	 */
+	public static final class Builder {
+		private FieldConfig defaultConfig = new FieldConfig();
+		private final Map<String, FieldConfig> fieldConfigs = new HashMap<String, FieldConfig>();
+
+		private Builder() {
+		}
+
+		/**
+		 * 设置未单独配置的字段使用的配置
+		 * @param config
+		 * @return
+		 */
+		public Builder defaults(FieldConfig config) {
+			this.defaultConfig = config;
+			return this;
+		}
+
+		/**
+		 * 单独配置一个字段[多个字段传入同一个FieldConfig对象时共用分词链]
+		 * @param fieldName 字段名
+		 * @param config 配置
+		 * @return
+		 */
+		public Builder field(String fieldName, FieldConfig config) {
+			this.fieldConfigs.put(fieldName, config);
+			return this;
+		}
+
+		public PinyinAnalyzer build() {
+			IdentityHashMap<FieldConfig, FieldConfig> frozen = new IdentityHashMap<FieldConfig, FieldConfig>();
+			FieldConfig defaults = this.defaultConfig.freeze("default config");
+			frozen.put(this.defaultConfig, defaults);
+			Map<String, FieldConfig> configs = new HashMap<String, FieldConfig>();
+			for (Map.Entry<String, FieldConfig> entry : this.fieldConfigs.entrySet()) {
+				FieldConfig config = frozen.get(entry.getValue());
+				if (config == null) {
+					config = entry.getValue().freeze(entry.getKey());
+					frozen.put(entry.getValue(), config);
+				}
+				configs.put(entry.getKey(), config);
+			}
+			return new PinyinAnalyzer(defaults, configs);
+		}
+	}
+
+	/**
+	 * 按字段配置复用分词链：每个线程为每个配置缓存一条分词链
+	 */
+	private static final class ConfigReuseStrategy extends ReuseStrategy {
+
+		@Override
+		public TokenStreamComponents getReusableComponents(Analyzer analyzer, String fieldName) {
+			@SuppressWarnings("unchecked")
+			Map<FieldConfig, TokenStreamComponents> componentsPerConfig =
+					(Map<FieldConfig, TokenStreamComponents>) getStoredValue(analyzer);
+			return componentsPerConfig == null ? null :
+					componentsPerConfig.get(((PinyinAnalyzer) analyzer).configFor(fieldName));
+		}
+
+		@Override
+		public void setReusableComponents(Analyzer analyzer, String fieldName, TokenStreamComponents components) {
+			@SuppressWarnings("unchecked")
+			Map<FieldConfig, TokenStreamComponents> componentsPerConfig =
+					(Map<FieldConfig, TokenStreamComponents>) getStoredValue(analyzer);
+			if (componentsPerConfig == null) {
+				componentsPerConfig = new IdentityHashMap<FieldConfig, TokenStreamComponents>();
+				setStoredValue(analyzer, componentsPerConfig);
+			}
+			componentsPerConfig.put(((PinyinAnalyzer) analyzer).configFor(fieldName), components);
+		}
+	}
 }
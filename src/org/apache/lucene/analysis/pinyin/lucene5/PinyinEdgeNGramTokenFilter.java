@@ -4,16 +4,22 @@ import java.io.IOException;
 
 import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.pinyin.utils.AnalysisMetrics;
+import org.apache.lucene.analysis.pinyin.utils.CharClassifier;
+import org.apache.lucene.analysis.pinyin.utils.CharsHashSet;
 import org.apache.lucene.analysis.pinyin.utils.Constant;
-import org.apache.lucene.analysis.pinyin.utils.StringUtils;
+import org.apache.lucene.analysis.pinyin.utils.TokenBudget;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
 import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
 import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+import org.apache.lucene.util.ArrayUtil;
 
 /**
  * 对转换后的拼音进行EdgeNGram处理的TokenFilter
  * 
+ * 传入AnalysisMetrics时记录输入/输出词元数和采样的耗时。
+ * 上游PinyinTokenFilter的词元预算超出后(TokenBudgetAttribute的级别不低于不切分NGram)，词元原样输出。
  * @author Lanxiaowei
  * 
  */
@@ -24,12 +30,36 @@ public class PinyinEdgeNGramTokenFilter extends TokenFilter {
 	private final boolean nGramChinese;
 	/** 是否需要对纯数字进行NGram[默认为false] */
 	private final boolean nGramNumber;
+	/** 拼音NGram是否只从音节边界开始[side为back时有效，默认为false] */
+	private final boolean syllableStart;
+	/** 拼音NGram是否只在音节边界结束[side为front时有效，默认为false] */
+	private final boolean syllableEnd;
+	/** 是否生成全拼与首字母混合的NGram[默认为false] */
+	private final boolean mixInitials;
+	private PinyinSyllableAttribute syllableAtt;
+	/** 当前拼音词元每个音节的结束位置 */
+	private int[] curSyllableEnds = new int[8];
+	private int curSyllableCount;
+	/** 是否正在输出混合NGram */
+	private boolean mixing;
+	private final SyllableGrams mixedGrams = new SyllableGrams();
+	/** 是否在同一位置上去除重复的词元[默认为false] */
+	private final boolean dedupGrams;
+	/** 当前位置上已输出的词元 */
+	private final CharsHashSet emittedTerms = new CharsHashSet();
+	/** 分析统计记录器，不统计时为null */
+	private final AnalysisMetrics.Recorder recorder;
 	private CharTermAttribute termAtt;
 	private OffsetAttribute offsetAtt;
 	/**位置增量属性*/
 	private PositionIncrementAttribute posIncrAtt;
 	private TypeAttribute typeAtt;
-	private char[] curTermBuffer;
+	/**当前字段值的词元预算状态*/
+	private TokenBudgetAttribute budgetAtt;
+	/**词元缓存[重复使用，只在容量不足时扩容]*/
+	private char[] curTermBuffer = new char[16];
+	/**curTermBuffer中是否有正在切分的词元*/
+	private boolean hasCurTerm;
 	private int curTermLength;
 	private int curGramSize;
 	private int tokStart;
@@ -61,6 +91,38 @@ public class PinyinEdgeNGramTokenFilter extends TokenFilter {
 
 	public PinyinEdgeNGramTokenFilter(TokenStream input, String side,int minGram, int maxGram,
 			boolean nGramChinese,boolean nGramNumber) {
+		this(input, side, minGram, maxGram, nGramChinese, nGramNumber, Constant.DEFAULT_SYLLABLE_START,
+				Constant.DEFAULT_SYLLABLE_END, Constant.DEFAULT_MIX_INITIALS);
+	}
+
+	/**
+	 * @param syllableStart 拼音NGram是否只从音节边界开始[side为back时有效]
+	 * @param syllableEnd 拼音NGram是否只在音节边界结束[side为front时有效]
+	 * @param mixInitials 是否生成全拼与首字母混合的NGram，如zhonggr
+	 */
+	public PinyinEdgeNGramTokenFilter(TokenStream input, String side,int minGram, int maxGram,
+			boolean nGramChinese,boolean nGramNumber,boolean syllableStart,boolean syllableEnd,
+			boolean mixInitials) {
+		this(input, side, minGram, maxGram, nGramChinese, nGramNumber, syllableStart, syllableEnd,
+				mixInitials, Constant.DEFAULT_DEDUP_GRAMS);
+	}
+
+	/**
+	 * @param dedupGrams 是否在同一位置上去除重复的词元
+	 */
+	public PinyinEdgeNGramTokenFilter(TokenStream input, String side,int minGram, int maxGram,
+			boolean nGramChinese,boolean nGramNumber,boolean syllableStart,boolean syllableEnd,
+			boolean mixInitials,boolean dedupGrams) {
+		this(input, side, minGram, maxGram, nGramChinese, nGramNumber, syllableStart, syllableEnd,
+				mixInitials, dedupGrams, null);
+	}
+
+	/**
+	 * @param metrics 分析统计，为null时不统计
+	 */
+	public PinyinEdgeNGramTokenFilter(TokenStream input, String side,int minGram, int maxGram,
+			boolean nGramChinese,boolean nGramNumber,boolean syllableStart,boolean syllableEnd,
+			boolean mixInitials,boolean dedupGrams,AnalysisMetrics metrics) {
 		super(input);
 		if (minGram < 1) {
 			throw new IllegalArgumentException(
@@ -80,77 +142,196 @@ public class PinyinEdgeNGramTokenFilter extends TokenFilter {
 		this.offsetAtt = ((OffsetAttribute) addAttribute(OffsetAttribute.class));
 		this.posIncrAtt = addAttribute(PositionIncrementAttribute.class);
 		this.typeAtt = addAttribute(TypeAttribute.class);
+		this.syllableAtt = addAttribute(PinyinSyllableAttribute.class);
+		this.budgetAtt = addAttribute(TokenBudgetAttribute.class);
 		
 		this.minGram = minGram;
 		this.maxGram = maxGram;
 		this.nGramChinese = nGramChinese;
 		this.nGramNumber = nGramNumber;
+		this.syllableStart = syllableStart;
+		this.syllableEnd = syllableEnd;
+		this.mixInitials = mixInitials;
+		this.dedupGrams = dedupGrams;
+		this.recorder = metrics == null ? null : metrics.newRecorder();
 		
 		this.side = Side.getSide(side);
 	}
 
+	@Override
 	public final boolean incrementToken() throws IOException {
+		boolean hasToken;
+		if (this.recorder == null) {
+			hasToken = nextUniqueToken();
+		} else if (this.recorder.sample()) {
+			long start = System.nanoTime();
+			hasToken = nextUniqueToken();
+			this.recorder.sampled(System.nanoTime() - start);
+		} else {
+			hasToken = nextUniqueToken();
+		}
+		if (hasToken) {
+			this.budgetAtt.addTokens(1);
+			if (this.recorder != null) {
+				this.recorder.tokenOut();
+			}
+		}
+		return hasToken;
+	}
+
+	private boolean nextUniqueToken() throws IOException {
+		while (nextToken()) {
+			if (!this.dedupGrams) {
+				return true;
+			}
+			// 新位置的第一个词元，清空已输出的词元
+			if (this.posIncrAtt.getPositionIncrement() > 0) {
+				this.emittedTerms.clear();
+			}
+			if (this.emittedTerms.add(this.termAtt.buffer(), 0, this.termAtt.length())) {
+				return true;
+			}
+			// 同一位置上已输出过相同的词元，跳过
+		}
+		return false;
+	}
+
+	private boolean nextToken() throws IOException {
 		while (true) {
-			if (this.curTermBuffer == null) {
+			if (!this.hasCurTerm) {
 				if (!this.input.incrementToken()) {
 					return false;
 				}
+				this.budgetAtt.addTokens(-1);
+				if (this.recorder != null) {
+					this.recorder.tokenIn();
+				}
+				if (this.budgetAtt.getLevel() >= TokenBudget.LEVEL_NO_NGRAM) {
+					// 超出词元预算，不再切分NGram
+					return true;
+				}
 				String type = this.typeAtt.type();
-				if(null != type && "normal_word".equals(type)) {
+				if(Constant.TYPE_NORMAL_WORD.equals(type)) {
 					return true;
 				}
-				if(null != type && "numeric_original".equals(type)) {
+				if(Constant.TYPE_NUMERIC_ORIGINAL.equals(type)) {
 					return true;
 				}
-				if(null != type && "chinese_original".equals(type)) {
+				if(Constant.TYPE_CHINESE_ORIGINAL.equals(type)) {
 					return true;
 				}
+				// 一次遍历得到词元的字符分类
+				int termClass = CharClassifier.classify(this.termAtt.buffer(), 0, this.termAtt.length());
 				if ((!this.nGramNumber)
-						&& (StringUtils.isNumeric(this.termAtt.toString()))) {
+						&& (CharClassifier.isAllDigits(termClass))) {
 					return true;
 				}
 				if ((!this.nGramChinese)
-						&& (StringUtils.containsChinese(this.termAtt.toString()))) {
+						&& (CharClassifier.containsHan(termClass))) {
 					return true;
 				}
-				this.curTermBuffer = ((char[]) this.termAtt.buffer().clone());
-
+				// 只复制词元本身，不再clone整个缓冲区
 				this.curTermLength = this.termAtt.length();
+				if (this.curTermBuffer.length < this.curTermLength) {
+					this.curTermBuffer = new char[ArrayUtil.oversize(this.curTermLength, 2)];
+				}
+				System.arraycopy(this.termAtt.buffer(), 0, this.curTermBuffer, 0, this.curTermLength);
+				this.hasCurTerm = true;
 				this.curGramSize = this.minGram;
 				this.tokStart = this.offsetAtt.startOffset();
+				// 拼音词元记录音节边界
+				this.curSyllableCount = this.syllableAtt.getSyllableCount();
+				if (this.curSyllableEnds.length < this.curSyllableCount) {
+					this.curSyllableEnds = new int[Math.max(this.curSyllableCount, this.curSyllableEnds.length * 2)];
+				}
+				for (int i = 0; i < this.curSyllableCount; i++) {
+					this.curSyllableEnds[i] = this.syllableAtt.getSyllableEnd(i);
+				}
+				this.mixing = false;
+			}
+			if (this.budgetAtt.isExhausted()) {
+				// 已达到词元预算，放弃当前词元剩余的EdgeNGram
+				this.mixing = false;
+				this.hasCurTerm = false;
+				continue;
 			}
 			
-			if (curTermLength >= minGram && this.curGramSize <= this.maxGram) {
-				if (this.curGramSize >= this.curTermLength) {
+			if (!this.mixing) {
+				while (curTermLength >= minGram && this.curGramSize <= this.maxGram) {
+					if (this.curGramSize >= this.curTermLength) {
+						clearAttributes();
+						this.offsetAtt.setOffset(this.tokStart + 0, this.tokStart
+								+ this.curTermLength);
+						this.termAtt.copyBuffer(this.curTermBuffer, 0,
+								this.curTermLength);
+						this.posIncrAtt.setPositionIncrement(0);
+						// 整个词元已输出，结束切分
+						this.curGramSize = this.maxGram + 1;
+						return true;
+					}
+					int start = side == Side.FRONT ? 0 : curTermLength
+							- curGramSize;
+					int end = start + this.curGramSize;
+					if (!acceptGram(start, end)) {
+						// 不在音节边界上，跳过
+						this.curGramSize += 1;
+						continue;
+					}
 					clearAttributes();
-					this.offsetAtt.setOffset(this.tokStart + 0, this.tokStart
-							+ this.curTermLength);
-					this.termAtt.copyBuffer(this.curTermBuffer, 0,
-							this.curTermLength);
+					this.offsetAtt.setOffset(this.tokStart + start, this.tokStart
+							+ end);
+					this.termAtt.copyBuffer(this.curTermBuffer, start,
+							this.curGramSize);
 					this.posIncrAtt.setPositionIncrement(0);
-					this.curTermBuffer = null;
+					this.curGramSize += 1;
 					return true;
 				}
-				int start = side == Side.FRONT ? 0 : curTermLength
-						- curGramSize;
-				int end = start + this.curGramSize;
+				this.mixing = this.mixInitials && this.mixedGrams.reset(this.curTermBuffer, this.curSyllableEnds,
+						this.curSyllableCount, this.minGram, this.maxGram, side == Side.FRONT, side == Side.BACK);
+			}
+			if (this.mixing && this.mixedGrams.next()) {
 				clearAttributes();
-				this.offsetAtt.setOffset(this.tokStart + start, this.tokStart
-						+ end);
-				this.termAtt.copyBuffer(this.curTermBuffer, start,
-						this.curGramSize);
+				this.offsetAtt.setOffset(this.tokStart + this.mixedGrams.startOffset(),
+						this.tokStart + this.mixedGrams.endOffset());
+				this.termAtt.copyBuffer(this.mixedGrams.buffer(), 0, this.mixedGrams.length());
 				this.posIncrAtt.setPositionIncrement(0);
-				this.curGramSize += 1;
 				return true;
 			}
 
-			this.curTermBuffer = null;
+			this.mixing = false;
+			this.hasCurTerm = false;
+		}
+	}
+
+	/**
+	 * 按音节切分时，[start, end)是否在音节边界上
+	 */
+	private boolean acceptGram(int start, int end) {
+		if (this.curSyllableCount == 0) {
+			return true;
+		}
+		return (!this.syllableStart || SyllableGrams.isBoundary(this.curSyllableEnds, this.curSyllableCount, start))
+				&& (!this.syllableEnd || SyllableGrams.isBoundary(this.curSyllableEnds, this.curSyllableCount, end));
+	}
+
+	@Override
+	public void end() throws IOException {
+		super.end();
+		if (this.recorder != null) {
+			this.recorder.flush();
 		}
 	}
 
 	public void reset() throws IOException {
 		super.reset();
-		this.curTermBuffer = null;
+		this.hasCurTerm = false;
+		this.emittedTerms.clear();
+		this.mixing = false;
+		this.budgetAtt.restart();
+		if (this.recorder != null) {
+			// 上一篇文档没有调用end时在这里合并
+			this.recorder.flush();
+		}
 	}
 	
 	
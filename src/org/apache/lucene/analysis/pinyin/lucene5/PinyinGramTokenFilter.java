@@ -0,0 +1,479 @@
+package org.apache.lucene.analysis.pinyin.lucene5;
+
+import java.io.IOException;
+
+import org.apache.lucene.analysis.TokenFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.pinyin.lucene5.PinyinEdgeNGramTokenFilter.Side;
+import org.apache.lucene.analysis.pinyin.utils.CharClassifier;
+import org.apache.lucene.analysis.pinyin.utils.CharsHashSet;
+import org.apache.lucene.analysis.pinyin.utils.Constant;
+import org.apache.lucene.analysis.pinyin.utils.PinyinCache;
+import org.apache.lucene.analysis.pinyin.utils.PinyinExpander;
+import org.apache.lucene.analysis.pinyin.utils.PolyphoneDictionary;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionLengthAttribute;
+import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+import org.apache.lucene.util.ArrayUtil;
+
+/**
+ * 拼音转换 + NGram/EdgeNGram合并的TokenFilter
+ *
+ * 输出的词元与PinyinTokenFilter -> PinyinNGramTokenFilter(或PinyinEdgeNGramTokenFilter)串联时完全相同，
+ * 但每个中文词元只展开一次拼音，直接从拼音结果上切分NGram，
+ * 中间的拼音结果不再作为词元写入属性、再被下游读出和复制。
+ * edgesOnly为true时按EdgeNGram切分，否则按NGram切分。
+ * @author Lanxiaowei
+ *
+ */
+public class PinyinGramTokenFilter extends TokenFilter {
+	/**当前输入词元的处理阶段*/
+	private static final int STAGE_ORIGINAL = 0;
+	private static final int STAGE_SETUP = 1;
+	private static final int STAGE_PINYIN = 2;
+
+	/**是否输出原中文*/
+	private final boolean isOutChinese;
+	/**是否只转换简拼*/
+	private final boolean shortPinyin;
+	/**中文词组长度过滤，默认超过2位长度的中文才转换拼音*/
+	private final int minTermLength;
+	private final int minGram;
+	private final int maxGram;
+	/** 是否需要对中文进行NGram[默认为false] */
+	private final boolean nGramChinese;
+	/** 是否需要对纯数字进行NGram[默认为false] */
+	private final boolean nGramNumber;
+	/**是否只切分EdgeNGram*/
+	private final boolean edgesOnly;
+	/**EdgeNGram的方向*/
+	private final Side side;
+	/** 拼音NGram是否只从音节边界开始 */
+	private final boolean syllableStart;
+	/** 拼音NGram是否只在音节边界结束 */
+	private final boolean syllableEnd;
+	/** 是否生成全拼与首字母混合的NGram */
+	private final boolean mixInitials;
+
+	private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
+	private final PositionIncrementAttribute posIncrAtt = addAttribute(PositionIncrementAttribute.class);
+	private final PositionLengthAttribute posLenAtt = addAttribute(PositionLengthAttribute.class);
+	private final OffsetAttribute offsetAtt = addAttribute(OffsetAttribute.class);
+	private final TypeAttribute typeAtt = addAttribute(TypeAttribute.class);
+
+	/**拼音展开器[重复使用]*/
+	private final PinyinExpander expander;
+
+	/**词元输入缓存[重复使用，只在容量不足时扩容]*/
+	private char[] curTermBuffer = new char[16];
+	private int curTermLength;
+	/**词元输入的字符分类[CharClassifier.classify的结果]*/
+	private int curTermClass;
+	private int curCodePointCount;
+	private int curPosInc;
+	/**词元输入的偏移量[拼音不写入属性，切分拼音时使用]*/
+	private int curStartOffset;
+	private int curEndOffset;
+	private int curPosLen;
+	/**curTermBuffer中是否有正在处理的词元*/
+	private boolean hasCurTerm;
+	private int stage;
+	/**当前输入是否正在输出拼音结果*/
+	private boolean hasPinyins;
+	/**纯数字、普通词元是否还需要再原样处理一次*/
+	private boolean echoPending;
+	/**NGram时长度不足minGram被丢弃的词元累计的位置增量*/
+	private int skippedPositions;
+
+	/**正在切分的拼音或词元[引用curTermBuffer或expander的数组]*/
+	private char[] gramBuffer;
+	private int gramLength;
+	private int gramCodePointCount;
+	private int gramSize;
+	private int gramPos;
+	private int gramPosInc;
+	private int gramPosLen;
+	private int tokStart;
+	private int tokEnd;
+	/**正在切分的拼音每个音节的结束位置[引用expander的数组]，不是拼音时音节数为0*/
+	private int[] gramSyllableEnds;
+	private int gramSyllableCount;
+	/**是否正在切分*/
+	private boolean gramming;
+	/**是否正在输出混合NGram*/
+	private boolean mixing;
+	private final SyllableGrams mixedGrams = new SyllableGrams();
+	/** 是否在同一位置上去除重复的词元[默认为false] */
+	private final boolean dedupGrams;
+	/** 当前位置上已输出的词元 */
+	private final CharsHashSet emittedTerms = new CharsHashSet();
+
+	public PinyinGramTokenFilter(TokenStream input) {
+		this(input, Constant.DEFAULT_MIN_GRAM, Constant.DEFAULT_MAX_GRAM);
+	}
+
+	public PinyinGramTokenFilter(TokenStream input, int minGram, int maxGram) {
+		this(input, Constant.DEFAULT_SHORT_PINYIN, Constant.DEFAULT_PINYIN_ALL, Constant.DEFAULT_OUT_CHINESE,
+				Constant.DEFAULT_MIN_TERM_LRNGTH, minGram, maxGram, Constant.DEFAULT_NGRAM_CHINESE,
+				Constant.DEFAULT_NGRAM_NUMBER);
+	}
+
+	public PinyinGramTokenFilter(TokenStream input, boolean shortPinyin, boolean pinyinAll,
+			boolean isOutChinese, int minTermLength, int minGram, int maxGram,
+			boolean nGramChinese, boolean nGramNumber) {
+		this(input, shortPinyin, pinyinAll, isOutChinese, minTermLength, Constant.DEFAULT_MAX_COMBINATIONS,
+				null, null, Constant.DEFAULT_EDGES_ONLY, Constant.DEFAULT_SIDE_FRONT, minGram, maxGram,
+				nGramChinese, nGramNumber);
+	}
+
+	public PinyinGramTokenFilter(TokenStream input, boolean shortPinyin, boolean pinyinAll,
+			boolean isOutChinese, int minTermLength, int maxCombinations, PinyinCache cache,
+			PolyphoneDictionary dictionary, boolean edgesOnly, String side, int minGram, int maxGram,
+			boolean nGramChinese, boolean nGramNumber) {
+		this(input, shortPinyin, pinyinAll, isOutChinese, minTermLength, maxCombinations, cache, dictionary,
+				edgesOnly, side, minGram, maxGram, nGramChinese, nGramNumber, Constant.DEFAULT_SYLLABLE_START,
+				Constant.DEFAULT_SYLLABLE_END, Constant.DEFAULT_MIX_INITIALS);
+	}
+
+	public PinyinGramTokenFilter(TokenStream input, boolean shortPinyin, boolean pinyinAll,
+			boolean isOutChinese, int minTermLength, int maxCombinations, PinyinCache cache,
+			PolyphoneDictionary dictionary, boolean edgesOnly, String side, int minGram, int maxGram,
+			boolean nGramChinese, boolean nGramNumber, boolean syllableStart, boolean syllableEnd,
+			boolean mixInitials) {
+		this(input, shortPinyin, pinyinAll, isOutChinese, minTermLength, maxCombinations, cache, dictionary,
+				edgesOnly, side, minGram, maxGram, nGramChinese, nGramNumber, syllableStart, syllableEnd,
+				mixInitials, Constant.DEFAULT_DEDUP_GRAMS);
+	}
+
+	public PinyinGramTokenFilter(TokenStream input, boolean shortPinyin, boolean pinyinAll,
+			boolean isOutChinese, int minTermLength, int maxCombinations, PinyinCache cache,
+			PolyphoneDictionary dictionary, boolean edgesOnly, String side, int minGram, int maxGram,
+			boolean nGramChinese, boolean nGramNumber, boolean syllableStart, boolean syllableEnd,
+			boolean mixInitials, boolean dedupGrams) {
+		super(input);
+		if (minGram < 1) {
+			throw new IllegalArgumentException(
+					"minGram must be greater than zero");
+		}
+		if (minGram > maxGram) {
+			throw new IllegalArgumentException(
+					"minGram must not be greater than maxGram");
+		}
+		if (edgesOnly && Side.getSide(side) == null) {
+			throw new IllegalArgumentException(
+					"side must be either front or back");
+		}
+		this.isOutChinese = isOutChinese;
+		this.shortPinyin = shortPinyin;
+		this.minTermLength = Math.max(1, minTermLength);
+		this.minGram = minGram;
+		this.maxGram = maxGram;
+		this.nGramChinese = nGramChinese;
+		this.nGramNumber = nGramNumber;
+		this.edgesOnly = edgesOnly;
+		this.side = edgesOnly ? Side.getSide(side) : Side.FRONT;
+		this.syllableStart = syllableStart;
+		this.syllableEnd = syllableEnd;
+		this.mixInitials = mixInitials;
+		this.dedupGrams = dedupGrams;
+		this.expander = new PinyinExpander(shortPinyin, pinyinAll, maxCombinations, cache, dictionary);
+	}
+
+	@Override
+	public final boolean incrementToken() throws IOException {
+		while (nextToken()) {
+			if (!this.dedupGrams) {
+				return true;
+			}
+			// 新位置的第一个词元，清空已输出的词元
+			if (this.posIncrAtt.getPositionIncrement() > 0) {
+				this.emittedTerms.clear();
+			}
+			if (this.emittedTerms.add(this.termAtt.buffer(), 0, this.termAtt.length())) {
+				return true;
+			}
+			// 同一位置上已输出过相同的词元，跳过
+		}
+		return false;
+	}
+
+	private boolean nextToken() throws IOException {
+		while (true) {
+			if (this.gramming) {
+				if (this.edgesOnly ? nextEdgeGram() : nextGram()) {
+					return true;
+				}
+				this.gramming = false;
+			}
+			if (!this.hasCurTerm) {
+				if (!this.input.incrementToken()) {
+					return false;
+				}
+				this.curTermLength = this.termAtt.length();
+				if (this.curTermBuffer.length < this.curTermLength) {
+					this.curTermBuffer = new char[ArrayUtil.oversize(this.curTermLength, 2)];
+				}
+				System.arraycopy(this.termAtt.buffer(), 0, this.curTermBuffer, 0, this.curTermLength);
+				this.curTermClass = CharClassifier.classify(this.curTermBuffer, 0, this.curTermLength);
+				this.curCodePointCount = CharClassifier.isAllAscii(this.curTermClass) ? this.curTermLength :
+						Character.codePointCount(this.curTermBuffer, 0, this.curTermLength);
+				this.curPosInc = this.posIncrAtt.getPositionIncrement();
+				this.curStartOffset = this.offsetAtt.startOffset();
+				this.curEndOffset = this.offsetAtt.endOffset();
+				this.curPosLen = this.posLenAtt.getPositionLength();
+				this.hasCurTerm = true;
+				this.stage = this.isOutChinese ? STAGE_ORIGINAL : STAGE_SETUP;
+			}
+
+			// 取下一个待切分的拼音或原词元[只在本地数组中，不写入属性]
+			char[] buffer;
+			int length;
+			int termClass;
+			int codePointCount;
+			int syllableCount = 0;
+			int posInc;
+			String type;
+			// 原词元直接在输入词元的属性上输出，拼音和再处理一次的词元在清空的属性上输出[与PinyinTokenFilter一致]
+			boolean original = this.stage == STAGE_ORIGINAL;
+			if (original) {
+				this.stage = STAGE_SETUP;
+				buffer = this.curTermBuffer;
+				length = this.curTermLength;
+				termClass = this.curTermClass;
+				codePointCount = this.curCodePointCount;
+				posInc = this.curPosInc;
+				type = CharClassifier.isAllDigits(termClass) ? Constant.TYPE_NUMERIC_ORIGINAL :
+						(CharClassifier.containsHan(termClass) ? Constant.TYPE_CHINESE_ORIGINAL : Constant.TYPE_NORMAL_WORD);
+			} else {
+				if (this.stage == STAGE_SETUP) {
+					this.stage = STAGE_PINYIN;
+					setupPinyins();
+				}
+				if (this.hasPinyins && this.expander.next()) {
+					buffer = this.expander.buffer();
+					length = this.expander.length();
+					termClass = CharClassifier.classify(buffer, 0, length);
+					codePointCount = CharClassifier.isAllAscii(termClass) ? length :
+							Character.codePointCount(buffer, 0, length);
+					syllableCount = codePointCount == length ? this.expander.syllableCount() : 0;
+				} else if (this.echoPending) {
+					this.echoPending = false;
+					buffer = this.curTermBuffer;
+					length = this.curTermLength;
+					termClass = this.curTermClass;
+					codePointCount = this.curCodePointCount;
+				} else {
+					clearState();
+					continue;
+				}
+				posInc = 0;
+				type = this.shortPinyin ? Constant.TYPE_SHORT_PINYIN : Constant.TYPE_PINYIN;
+			}
+			if (!this.edgesOnly) {
+				// 与CodepointCountFilter一致：丢弃长度不足minGram的词元，位置增量累加到下一个词元
+				if (codePointCount < this.minGram) {
+					this.skippedPositions += posInc;
+					continue;
+				}
+				posInc += this.skippedPositions;
+				this.skippedPositions = 0;
+			}
+
+			// 原词元、不需要切分的数字和中文原样输出
+			if (type == Constant.TYPE_NUMERIC_ORIGINAL || type == Constant.TYPE_CHINESE_ORIGINAL
+					|| type == Constant.TYPE_NORMAL_WORD
+					|| (!this.nGramNumber && CharClassifier.isAllDigits(termClass))
+					|| (!this.nGramChinese && CharClassifier.containsHan(termClass))) {
+				if (!original) {
+					clearAttributes();
+					this.offsetAtt.setOffset(this.curStartOffset, this.curEndOffset);
+				}
+				this.termAtt.copyBuffer(buffer, 0, length);
+				this.posIncrAtt.setPositionIncrement(posInc);
+				this.typeAtt.setType(type);
+				return true;
+			}
+
+			this.gramBuffer = buffer;
+			this.gramLength = length;
+			this.gramCodePointCount = codePointCount;
+			this.gramSize = this.minGram;
+			this.gramPos = 0;
+			this.gramPosInc = posInc;
+			this.gramPosLen = original ? this.curPosLen : 1;
+			this.tokStart = this.curStartOffset;
+			this.tokEnd = this.curEndOffset;
+			this.gramSyllableEnds = this.expander.syllableEnds();
+			this.gramSyllableCount = syllableCount;
+			this.mixing = false;
+			this.gramming = true;
+		}
+	}
+
+	/**
+	 * 决定当前输入词元是转换拼音还是原样再处理一次[与PinyinTokenFilter一致]
+	 */
+	private void setupPinyins() {
+		if (!CharClassifier.isAllAscii(this.curTermClass) &&
+				CharClassifier.hanCount(this.curTermClass) >= this.minTermLength) {
+			this.expander.reset(this.curTermBuffer, 0, this.curTermLength);
+			this.hasPinyins = true;
+		} else {
+			// 原样输出过的纯数字、普通词元[类型为numeric_original或normal_word]，按输入词元判断
+			this.echoPending = this.isOutChinese && !CharClassifier.containsHan(this.curTermClass);
+		}
+	}
+
+	/**
+	 * 切分下一个NGram[与PinyinNGramTokenFilter一致]
+	 * @return
+	 */
+	private boolean nextGram() {
+		if (this.mixing) {
+			return nextMixedGram(false);
+		}
+		if (this.gramSize > this.maxGram
+				|| (this.gramPos + this.gramSize) > this.gramCodePointCount) {
+			++this.gramPos;
+			this.gramSize = this.minGram;
+		}
+		while ((this.gramPos + this.gramSize) <= this.gramCodePointCount
+				&& !acceptGram(this.gramPos, this.gramPos + this.gramSize)) {
+			// 不在音节边界上，跳过
+			if (++this.gramSize > this.maxGram
+					|| (this.gramPos + this.gramSize) > this.gramCodePointCount) {
+				++this.gramPos;
+				this.gramSize = this.minGram;
+			}
+		}
+		if ((this.gramPos + this.gramSize) > this.gramCodePointCount) {
+			return startMixing() && nextMixedGram(false);
+		}
+		int start;
+		int end;
+		if (this.gramCodePointCount == this.gramLength) {
+			start = this.gramPos;
+			end = start + this.gramSize;
+		} else {
+			start = Character.offsetByCodePoints(this.gramBuffer, 0, this.gramLength, 0, this.gramPos);
+			end = Character.offsetByCodePoints(this.gramBuffer, 0, this.gramLength, start, this.gramSize);
+		}
+		clearAttributes();
+		this.termAtt.copyBuffer(this.gramBuffer, start, end - start);
+		this.posIncrAtt.setPositionIncrement(this.gramPosInc);
+		this.gramPosInc = 0;
+		this.posLenAtt.setPositionLength(this.gramPosLen);
+		this.offsetAtt.setOffset(this.tokStart, this.tokEnd);
+		this.gramSize++;
+		return true;
+	}
+
+	/**
+	 * 切分下一个EdgeNGram[与PinyinEdgeNGramTokenFilter一致]
+	 * @return
+	 */
+	private boolean nextEdgeGram() {
+		if (this.mixing) {
+			return nextMixedGram(true);
+		}
+		while (this.gramLength >= this.minGram && this.gramSize <= this.maxGram
+				&& this.gramSize < this.gramLength) {
+			int start = this.side == Side.FRONT ? 0 : this.gramLength - this.gramSize;
+			if (acceptGram(start, start + this.gramSize)) {
+				break;
+			}
+			// 不在音节边界上，跳过
+			this.gramSize++;
+		}
+		if (this.gramLength < this.minGram || this.gramSize > this.maxGram) {
+			return startMixing() && nextMixedGram(true);
+		}
+		clearAttributes();
+		if (this.gramSize >= this.gramLength) {
+			this.offsetAtt.setOffset(this.tokStart, this.tokStart + this.gramLength);
+			this.termAtt.copyBuffer(this.gramBuffer, 0, this.gramLength);
+			this.posIncrAtt.setPositionIncrement(0);
+			// 整个词元已输出，结束切分
+			this.gramSize = this.maxGram + 1;
+			return true;
+		}
+		int start = this.side == Side.FRONT ? 0 : this.gramLength - this.gramSize;
+		int end = start + this.gramSize;
+		this.offsetAtt.setOffset(this.tokStart + start, this.tokStart + end);
+		this.termAtt.copyBuffer(this.gramBuffer, start, this.gramSize);
+		this.posIncrAtt.setPositionIncrement(0);
+		this.gramSize++;
+		return true;
+	}
+
+	/**
+	 * 按音节切分时，[start, end)是否在音节边界上
+	 */
+	private boolean acceptGram(int start, int end) {
+		if (this.gramSyllableCount == 0) {
+			return true;
+		}
+		return (!this.syllableStart || SyllableGrams.isBoundary(this.gramSyllableEnds, this.gramSyllableCount, start))
+				&& (!this.syllableEnd || SyllableGrams.isBoundary(this.gramSyllableEnds, this.gramSyllableCount, end));
+	}
+
+	/**
+	 * 字符NGram切分完成后，开始输出全拼与首字母混合的NGram
+	 * @return 是否可能有混合NGram
+	 */
+	private boolean startMixing() {
+		this.mixing = this.mixInitials && this.mixedGrams.reset(this.gramBuffer, this.gramSyllableEnds,
+				this.gramSyllableCount, this.minGram, this.maxGram,
+				this.edgesOnly && this.side == Side.FRONT, this.edgesOnly && this.side == Side.BACK);
+		return this.mixing;
+	}
+
+	private boolean nextMixedGram(boolean edge) {
+		if (!this.mixedGrams.next()) {
+			this.mixing = false;
+			return false;
+		}
+		clearAttributes();
+		this.termAtt.copyBuffer(this.mixedGrams.buffer(), 0, this.mixedGrams.length());
+		if (edge) {
+			this.offsetAtt.setOffset(this.tokStart + this.mixedGrams.startOffset(),
+					this.tokStart + this.mixedGrams.endOffset());
+			this.posIncrAtt.setPositionIncrement(0);
+		} else {
+			this.posIncrAtt.setPositionIncrement(this.gramPosInc);
+			this.gramPosInc = 0;
+			this.posLenAtt.setPositionLength(this.gramPosLen);
+			this.offsetAtt.setOffset(this.tokStart, this.tokEnd);
+		}
+		return true;
+	}
+
+	/**
+	 * 清理当前词元的处理状态[不释放缓存数组]
+	 */
+	private void clearState() {
+		this.hasCurTerm = false;
+		this.hasPinyins = false;
+		this.echoPending = false;
+		this.gramming = false;
+		this.mixing = false;
+		this.gramBuffer = null;
+		this.expander.clear();
+	}
+
+	@Override
+	public void end() throws IOException {
+		super.end();
+		this.posIncrAtt.setPositionIncrement(this.posIncrAtt.getPositionIncrement() + this.skippedPositions);
+	}
+
+	@Override
+	public void reset() throws IOException {
+		super.reset();
+		clearState();
+		this.emittedTerms.clear();
+		this.skippedPositions = 0;
+	}
+}
@@ -0,0 +1,123 @@
+package org.apache.lucene.analysis.pinyin.lucene5;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lucene.search.suggest.InputIterator;
+import org.apache.lucene.search.suggest.Lookup;
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.store.DataOutput;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.BytesRef;
+
+/**
+ * PinyinSuggester的Lookup适配[供Solr SuggestComponent使用]
+ *
+ * 不支持payload和context，onlyMorePopular参数被忽略(结果总是按权重排序)。
+ * Solr每次build都传入全部词条，这里通过PinyinSuggester.sync与当前FST比较，只重新展开变化的词条。
+ * @author Lanxiaowei
+ *
+ */
+public class PinyinLookup extends Lookup {
+	private final PinyinSuggester suggester;
+	/**suggester使用的共享资源[如SharedResourceRegistry中多音词词典的Handle]，与Lookup同生命周期*/
+	private final Closeable resources;
+
+	public PinyinLookup() {
+		this(new PinyinSuggester());
+	}
+
+	public PinyinLookup(PinyinSuggester suggester) {
+		this(suggester, null);
+	}
+
+	/**
+	 * @param resources suggester使用的共享资源，Solr不会关闭Lookup，由Lookup持有引用直到被回收
+	 */
+	public PinyinLookup(PinyinSuggester suggester, Closeable resources) {
+		this.suggester = suggester;
+		this.resources = resources;
+	}
+
+	@Override
+	public void build(InputIterator iterator) throws IOException {
+		if (iterator.hasPayloads()) {
+			throw new IllegalArgumentException("this suggester doesn't support payloads");
+		}
+		if (iterator.hasContexts()) {
+			throw new IllegalArgumentException("this suggester doesn't support contexts");
+		}
+		// 同一原文出现多次时保留最大的权重
+		Map<String, Long> entries = new LinkedHashMap<String, Long>();
+		BytesRef surface;
+		while ((surface = iterator.next()) != null) {
+			String key = surface.utf8ToString();
+			long weight = iterator.weight();
+			Long old = entries.get(key);
+			if (old == null || old.longValue() < weight) {
+				entries.put(key, weight);
+			}
+		}
+		this.suggester.sync(entries);
+	}
+
+	@Override
+	public List<LookupResult> lookup(CharSequence key, Set<BytesRef> contexts, boolean onlyMorePopular, int num)
+			throws IOException {
+		if (contexts != null) {
+			throw new IllegalArgumentException("this suggester doesn't support contexts");
+		}
+		List<PinyinSuggester.Result> results = this.suggester.lookup(key, num);
+		List<LookupResult> lookupResults = new ArrayList<LookupResult>(results.size());
+		for (PinyinSuggester.Result result : results) {
+			lookupResults.add(new LookupResult(result.getSurface(), result.getWeight()));
+		}
+		return lookupResults;
+	}
+
+	@Override
+	public long getCount() throws IOException {
+		return this.suggester.getCount();
+	}
+
+	@Override
+	public boolean store(DataOutput output) throws IOException {
+		this.suggester.store(output);
+		return true;
+	}
+
+	@Override
+	public boolean load(DataInput input) throws IOException {
+		this.suggester.load(input);
+		return true;
+	}
+
+	@Override
+	public long ramBytesUsed() {
+		return this.suggester.ramBytesUsed();
+	}
+
+	@Override
+	public Collection<Accountable> getChildResources() {
+		return this.suggester.getChildResources();
+	}
+
+	public PinyinSuggester getSuggester() {
+		return suggester;
+	}
+
+	/**
+	 * 释放共享资源[可选，不调用时在Lookup被回收后释放]
+	 */
+	public void close() throws IOException {
+		if (this.resources != null) {
+			this.resources.close();
+		}
+	}
+}
@@ -21,25 +21,38 @@ import java.io.IOException;
 
 import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
-import org.apache.lucene.analysis.miscellaneous.CodepointCountFilter;
+import org.apache.lucene.analysis.pinyin.utils.AnalysisMetrics;
+import org.apache.lucene.analysis.pinyin.utils.CharClassifier;
+import org.apache.lucene.analysis.pinyin.utils.CharsHashSet;
 import org.apache.lucene.analysis.pinyin.utils.Constant;
-import org.apache.lucene.analysis.pinyin.utils.StringUtils;
+import org.apache.lucene.analysis.pinyin.utils.TokenBudget;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
 import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
 import org.apache.lucene.analysis.tokenattributes.PositionLengthAttribute;
 import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
 import org.apache.lucene.analysis.util.CharacterUtils;
+import org.apache.lucene.util.ArrayUtil;
 
 /**
  * 对转换后的拼音进行NGram处理的TokenFilter
  * 
+ * 码点数小于minGram的词元直接丢弃，位置增量累加到下一个词元上[与CodepointCountFilter的行为一致]；
+ * 不含代理对的词元(拼音都是ASCII)码点位置即字符位置，直接按数组下标切分。
+ * 传入AnalysisMetrics时记录输入/输出词元数和采样的耗时。
+ * 上游PinyinTokenFilter的词元预算超出后(TokenBudgetAttribute的级别不低于不切分NGram)，词元原样输出。
  * @author Lanxiaowei
  * 
  */
-@SuppressWarnings("unused")
 public class PinyinNGramTokenFilter extends TokenFilter {
-	private char[] curTermBuffer;
+	/**词元缓存[重复使用，只在容量不足时扩容]*/
+	private char[] curTermBuffer = new char[16];
+	/**curTermBuffer中是否有正在切分的词元*/
+	private boolean hasCurTerm;
+	/**词元是否不含代理对[码点位置即字符位置]*/
+	private boolean curSimple;
+	/**长度不足minGram被丢弃的词元累计的位置增量*/
+	private int skippedPositions;
 	private int curTermLength;
 	private int curCodePointCount;
 	private int curGramSize;
@@ -47,7 +60,6 @@ public class PinyinNGramTokenFilter extends TokenFilter {
 	private int curPosInc, curPosLen;
 	private int tokStart;
 	private int tokEnd;
-	private boolean hasIllegalOffsets;
 
 	private int minGram;
 	private int maxGram;
@@ -55,6 +67,24 @@ public class PinyinNGramTokenFilter extends TokenFilter {
 	private final boolean nGramChinese;
 	/** 是否需要对纯数字进行NGram[默认为false] */
 	private final boolean nGramNumber;
+	/** 拼音NGram是否只从音节边界开始[默认为false] */
+	private final boolean syllableStart;
+	/** 拼音NGram是否只在音节边界结束[默认为false] */
+	private final boolean syllableEnd;
+	/** 是否生成全拼与首字母混合的NGram[默认为false] */
+	private final boolean mixInitials;
+	/** 当前拼音词元每个音节的结束位置 */
+	private int[] curSyllableEnds = new int[8];
+	private int curSyllableCount;
+	/** 是否正在输出混合NGram */
+	private boolean mixing;
+	private final SyllableGrams mixedGrams = new SyllableGrams();
+	/** 是否在同一位置上去除重复的词元[默认为false] */
+	private final boolean dedupGrams;
+	/** 当前位置上已输出的词元 */
+	private final CharsHashSet emittedTerms = new CharsHashSet();
+	/** 分析统计记录器，不统计时为null */
+	private final AnalysisMetrics.Recorder recorder;
 
 	private final CharacterUtils charUtils;
 	private CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
@@ -62,10 +92,44 @@ public class PinyinNGramTokenFilter extends TokenFilter {
 	private PositionLengthAttribute posLenAtt;
 	private OffsetAttribute offsetAtt = addAttribute(OffsetAttribute.class);
 	private TypeAttribute typeAtt;
+	private PinyinSyllableAttribute syllableAtt;
+	private TokenBudgetAttribute budgetAtt;
 
 	public PinyinNGramTokenFilter(TokenStream input, int minGram, int maxGram,
 			boolean nGramChinese,boolean nGramNumber) {
-		super(new CodepointCountFilter(input, minGram, Integer.MAX_VALUE));
+		this(input, minGram, maxGram, nGramChinese, nGramNumber, Constant.DEFAULT_SYLLABLE_START,
+				Constant.DEFAULT_SYLLABLE_END, Constant.DEFAULT_MIX_INITIALS);
+	}
+
+	/**
+	 * @param syllableStart 拼音NGram是否只从音节边界开始
+	 * @param syllableEnd 拼音NGram是否只在音节边界结束
+	 * @param mixInitials 是否生成全拼与首字母混合的NGram，如zhonggr
+	 */
+	public PinyinNGramTokenFilter(TokenStream input, int minGram, int maxGram,
+			boolean nGramChinese,boolean nGramNumber,boolean syllableStart,boolean syllableEnd,
+			boolean mixInitials) {
+		this(input, minGram, maxGram, nGramChinese, nGramNumber, syllableStart, syllableEnd, mixInitials,
+				Constant.DEFAULT_DEDUP_GRAMS);
+	}
+
+	/**
+	 * @param dedupGrams 是否在同一位置上去除重复的词元
+	 */
+	public PinyinNGramTokenFilter(TokenStream input, int minGram, int maxGram,
+			boolean nGramChinese,boolean nGramNumber,boolean syllableStart,boolean syllableEnd,
+			boolean mixInitials,boolean dedupGrams) {
+		this(input, minGram, maxGram, nGramChinese, nGramNumber, syllableStart, syllableEnd, mixInitials,
+				dedupGrams, null);
+	}
+
+	/**
+	 * @param metrics 分析统计，为null时不统计
+	 */
+	public PinyinNGramTokenFilter(TokenStream input, int minGram, int maxGram,
+			boolean nGramChinese,boolean nGramNumber,boolean syllableStart,boolean syllableEnd,
+			boolean mixInitials,boolean dedupGrams,AnalysisMetrics metrics) {
+		super(input);
 		this.charUtils = CharacterUtils.getInstance();
 		if (minGram < 1) {
 			throw new IllegalArgumentException(
@@ -79,12 +143,19 @@ public class PinyinNGramTokenFilter extends TokenFilter {
 		this.maxGram = maxGram;
 		this.nGramChinese = nGramChinese;
 		this.nGramNumber = nGramNumber;
+		this.syllableStart = syllableStart;
+		this.syllableEnd = syllableEnd;
+		this.mixInitials = mixInitials;
+		this.dedupGrams = dedupGrams;
+		this.recorder = metrics == null ? null : metrics.newRecorder();
 		
 		this.termAtt = addAttribute(CharTermAttribute.class);
 		this.offsetAtt = addAttribute(OffsetAttribute.class);
 		this.typeAtt = addAttribute(TypeAttribute.class);
 		this.posIncAtt = addAttribute(PositionIncrementAttribute.class);
 		this.posLenAtt = addAttribute(PositionLengthAttribute.class);
+		this.syllableAtt = addAttribute(PinyinSyllableAttribute.class);
+		this.budgetAtt = addAttribute(TokenBudgetAttribute.class);
 	}
 
 	public PinyinNGramTokenFilter(TokenStream input, int minGram, int maxGram,
@@ -106,68 +177,204 @@ public class PinyinNGramTokenFilter extends TokenFilter {
 
 	@Override
 	public final boolean incrementToken() throws IOException {
+		boolean hasToken;
+		if (recorder == null) {
+			hasToken = nextUniqueToken();
+		} else if (recorder.sample()) {
+			long start = System.nanoTime();
+			hasToken = nextUniqueToken();
+			recorder.sampled(System.nanoTime() - start);
+		} else {
+			hasToken = nextUniqueToken();
+		}
+		if (hasToken) {
+			budgetAtt.addTokens(1);
+			if (recorder != null) {
+				recorder.tokenOut();
+			}
+		}
+		return hasToken;
+	}
+
+	private boolean nextUniqueToken() throws IOException {
+		while (nextToken()) {
+			if (!dedupGrams) {
+				return true;
+			}
+			// 新位置的第一个词元，清空已输出的词元
+			if (posIncAtt.getPositionIncrement() > 0) {
+				emittedTerms.clear();
+			}
+			if (emittedTerms.add(termAtt.buffer(), 0, termAtt.length())) {
+				return true;
+			}
+			// 同一位置上已输出过相同的词元，跳过
+		}
+		return false;
+	}
+
+	private boolean nextToken() throws IOException {
 		while (true) {
-			if (curTermBuffer == null) {
+			if (!hasCurTerm) {
 				if (!input.incrementToken()) {
 					return false;
 				}
+				budgetAtt.addTokens(-1);
+				if (recorder != null) {
+					recorder.tokenIn();
+				}
+				// 一次遍历得到词元的字符分类
+				int termLength = termAtt.length();
+				int termClass = CharClassifier.classify(this.termAtt.buffer(), 0, termLength);
+				boolean simple = !CharClassifier.hasSurrogates(termClass);
+				int codePointCount = simple ? termLength : charUtils.codePointCount(termAtt);
+				if (codePointCount < minGram) {
+					// 长度不足minGram，丢弃并把位置增量累加到下一个词元
+					skippedPositions += posIncAtt.getPositionIncrement();
+					continue;
+				}
+				if (skippedPositions != 0) {
+					posIncAtt.setPositionIncrement(posIncAtt.getPositionIncrement() + skippedPositions);
+					skippedPositions = 0;
+				}
+				if (budgetAtt.getLevel() >= TokenBudget.LEVEL_NO_NGRAM) {
+					// 超出词元预算，不再切分NGram
+					return true;
+				}
 				String type = this.typeAtt.type();
-				if(null != type && "normal_word".equals(type)) {
+				if(Constant.TYPE_NORMAL_WORD.equals(type)) {
 					return true;
 				}
-				if(null != type && "numeric_original".equals(type)) {
+				if(Constant.TYPE_NUMERIC_ORIGINAL.equals(type)) {
 					return true;
 				}
-				if(null != type && "chinese_original".equals(type)) {
+				if(Constant.TYPE_CHINESE_ORIGINAL.equals(type)) {
 					return true;
 				}
 				if ((!this.nGramNumber)
-						&& (StringUtils.isNumeric(this.termAtt.toString()))) {
+						&& (CharClassifier.isAllDigits(termClass))) {
 					return true;
 				}
 				if ((!this.nGramChinese)
-						&& (StringUtils.containsChinese(this.termAtt.toString()))) {
+						&& (CharClassifier.containsHan(termClass))) {
 					return true;
 				}
-				curTermBuffer = termAtt.buffer().clone();
-				curTermLength = termAtt.length();
-				curCodePointCount = charUtils.codePointCount(termAtt);
+				// 只复制词元本身，不再clone整个缓冲区
+				if (curTermBuffer.length < termLength) {
+					curTermBuffer = new char[ArrayUtil.oversize(termLength, 2)];
+				}
+				System.arraycopy(termAtt.buffer(), 0, curTermBuffer, 0, termLength);
+				curTermLength = termLength;
+				curCodePointCount = codePointCount;
+				curSimple = simple;
+				hasCurTerm = true;
 				curGramSize = minGram;
 				curPos = 0;
 				curPosInc = posIncAtt.getPositionIncrement();
 				curPosLen = posLenAtt.getPositionLength();
 				tokStart = offsetAtt.startOffset();
 				tokEnd = offsetAtt.endOffset();
-
-				hasIllegalOffsets = (tokStart + curTermLength) != tokEnd;
+				// 拼音词元记录音节边界[拼音都是ASCII字符，位置即码点位置]
+				curSyllableCount = simple ? syllableAtt.getSyllableCount() : 0;
+				if (curSyllableEnds.length < curSyllableCount) {
+					curSyllableEnds = new int[Math.max(curSyllableCount, curSyllableEnds.length * 2)];
+				}
+				for (int i = 0; i < curSyllableCount; i++) {
+					curSyllableEnds[i] = syllableAtt.getSyllableEnd(i);
+				}
+				mixing = false;
+			}
+			if (curPosInc == 0 && budgetAtt.isExhausted()) {
+				// 已达到词元预算，放弃当前词元剩余的NGram[位置增量已由第一个NGram输出]
+				mixing = false;
+				hasCurTerm = false;
+				continue;
 			}
 
-			if (curGramSize > maxGram
-					|| (curPos + curGramSize) > curCodePointCount) {
-				++curPos;
-				curGramSize = minGram;
+			if (!mixing) {
+				if (curGramSize > maxGram
+						|| (curPos + curGramSize) > curCodePointCount) {
+					++curPos;
+					curGramSize = minGram;
+				}
+				while ((curPos + curGramSize) <= curCodePointCount) {
+					if (!acceptGram(curPos, curGramSize)) {
+						// 不在音节边界上，跳过
+						if (++curGramSize > maxGram
+								|| (curPos + curGramSize) > curCodePointCount) {
+							++curPos;
+							curGramSize = minGram;
+						}
+						continue;
+					}
+					clearAttributes();
+					final int start;
+					final int end;
+					if (curSimple) {
+						start = curPos;
+						end = curPos + curGramSize;
+					} else {
+						start = charUtils.offsetByCodePoints(curTermBuffer,
+								0, curTermLength, 0, curPos);
+						end = charUtils.offsetByCodePoints(curTermBuffer, 0,
+								curTermLength, start, curGramSize);
+					}
+					termAtt.copyBuffer(curTermBuffer, start, end - start);
+					posIncAtt.setPositionIncrement(curPosInc);
+					curPosInc = 0;
+					posLenAtt.setPositionLength(curPosLen);
+					offsetAtt.setOffset(tokStart, tokEnd);
+					curGramSize++;
+					return true;
+				}
+				mixing = mixInitials && mixedGrams.reset(curTermBuffer, curSyllableEnds,
+						curSyllableCount, minGram, maxGram, false, false);
 			}
-			if ((curPos + curGramSize) <= curCodePointCount) {
+			if (mixing && mixedGrams.next()) {
 				clearAttributes();
-				final int start = charUtils.offsetByCodePoints(curTermBuffer,
-						0, curTermLength, 0, curPos);
-				final int end = charUtils.offsetByCodePoints(curTermBuffer, 0,
-						curTermLength, start, curGramSize);
-				termAtt.copyBuffer(curTermBuffer, start, end - start);
+				termAtt.copyBuffer(mixedGrams.buffer(), 0, mixedGrams.length());
 				posIncAtt.setPositionIncrement(curPosInc);
 				curPosInc = 0;
 				posLenAtt.setPositionLength(curPosLen);
 				offsetAtt.setOffset(tokStart, tokEnd);
-				curGramSize++;
 				return true;
 			}
-			curTermBuffer = null;
+			mixing = false;
+			hasCurTerm = false;
+		}
+	}
+
+	/**
+	 * 按音节切分时，从pos开始、长度为size的NGram是否在音节边界上
+	 */
+	private boolean acceptGram(int pos, int size) {
+		if (curSyllableCount == 0) {
+			return true;
+		}
+		return (!syllableStart || SyllableGrams.isBoundary(curSyllableEnds, curSyllableCount, pos))
+				&& (!syllableEnd || SyllableGrams.isBoundary(curSyllableEnds, curSyllableCount, pos + size));
+	}
+
+	@Override
+	public void end() throws IOException {
+		super.end();
+		posIncAtt.setPositionIncrement(posIncAtt.getPositionIncrement() + skippedPositions);
+		if (recorder != null) {
+			recorder.flush();
 		}
 	}
 
 	@Override
 	public void reset() throws IOException {
 		super.reset();
-		curTermBuffer = null;
+		hasCurTerm = false;
+		emittedTerms.clear();
+		mixing = false;
+		skippedPositions = 0;
+		budgetAtt.restart();
+		if (recorder != null) {
+			// 上一篇文档没有调用end时在这里合并
+			recorder.flush();
+		}
 	}
 }
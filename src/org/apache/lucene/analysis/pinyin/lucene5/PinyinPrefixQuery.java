@@ -0,0 +1,125 @@
+package org.apache.lucene.analysis.pinyin.lucene5;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.lucene.analysis.pinyin.utils.Constant;
+import org.apache.lucene.analysis.pinyin.utils.PinyinSyllableTrie;
+import org.apache.lucene.analysis.pinyin.utils.PinyinTable;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.AutomatonQuery;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.ToStringUtils;
+import org.apache.lucene.util.automaton.Automata;
+import org.apache.lucene.util.automaton.Automaton;
+import org.apache.lucene.util.automaton.Operations;
+
+/**
+ * 拼音前缀查询[把用户输入的不完整拼音编译为音节前缀自动机，与全拼字段的词典求交]
+ *
+ * 输入先经PinyinSegmentTokenizer切分：完整音节按原样匹配，不完整的音节(包括首字母)
+ * 匹配任意以它开头的音节，最后接任意后缀。例如chongq匹配chongq开头的词，
+ * cq匹配c开头音节 + q开头音节组成的词(如chongqing)，zgr匹配zhongguoren。
+ *
+ * 目标字段只需要索引整词全拼(PinyinTokenFilter默认输出)，不再需要在索引时运行
+ * PinyinEdgeNGramTokenFilter、PinyinNGramTokenFilter。空输入不匹配任何词。
+ * @author Lanxiaowei
+ *
+ */
+public class PinyinPrefixQuery extends AutomatonQuery {
+	/**音节前缀 -> 以它开头的所有音节[前缀个数受音节字典树限制，缓存不会无限增长]*/
+	private static final ConcurrentMap<String, Automaton> SYLLABLE_PREFIXES = new ConcurrentHashMap<String, Automaton>();
+
+	public PinyinPrefixQuery(Term term) {
+		this(term, Operations.DEFAULT_MAX_DETERMINIZED_STATES);
+	}
+
+	/**
+	 * @param term 字段 + 用户输入的拼音
+	 * @param maxDeterminizedStates 自动机确定化后允许的最大状态数
+	 */
+	public PinyinPrefixQuery(Term term, int maxDeterminizedStates) {
+		super(term, toAutomaton(term.text()), maxDeterminizedStates);
+	}
+
+	/**
+	 * 把用户输入的拼音编译为自动机
+	 * @param input 用户输入
+	 * @return
+	 */
+	public static Automaton toAutomaton(String input) {
+		List<Automaton> automata = new ArrayList<Automaton>();
+		PinyinSegmentTokenizer tokenizer = new PinyinSegmentTokenizer();
+		CharTermAttribute termAtt = tokenizer.addAttribute(CharTermAttribute.class);
+		TypeAttribute typeAtt = tokenizer.addAttribute(TypeAttribute.class);
+		try {
+			tokenizer.setReader(new StringReader(input));
+			tokenizer.reset();
+			while (tokenizer.incrementToken()) {
+				String text = termAtt.toString();
+				automata.add(Constant.TYPE_PINYIN_PREFIX.equals(typeAtt.type()) ?
+						syllablePrefix(text) : Automata.makeString(text));
+			}
+			tokenizer.end();
+		} catch (IOException e) {
+			// StringReader不会抛出IOException
+			throw new RuntimeException(e);
+		} finally {
+			IOUtils.closeWhileHandlingException(tokenizer);
+		}
+		if (automata.isEmpty()) {
+			return Automata.makeEmpty();
+		}
+		automata.add(Automata.makeAnyString());
+		return Operations.concatenate(automata);
+	}
+
+	/**
+	 * 以prefix开头的所有音节
+	 */
+	private static Automaton syllablePrefix(String prefix) {
+		Automaton automaton = SYLLABLE_PREFIXES.get(prefix);
+		if (automaton == null) {
+			automaton = buildSyllablePrefix(prefix);
+			SYLLABLE_PREFIXES.putIfAbsent(prefix, automaton);
+		}
+		return automaton;
+	}
+
+	private static Automaton buildSyllablePrefix(String prefix) {
+		List<BytesRef> syllables = new ArrayList<BytesRef>();
+		for (int id = 0; id < PinyinTable.syllableCount(); id++) {
+			String syllable = PinyinTable.syllable(id);
+			if (syllable.startsWith(prefix) && PinyinSyllableTrie.isLetters(PinyinTable.syllableChars(id))) {
+				syllables.add(new BytesRef(syllable));
+			}
+		}
+		if (syllables.isEmpty()) {
+			return Automata.makeString(prefix);
+		}
+		Collections.sort(syllables);
+		return Automata.makeStringUnion(syllables);
+	}
+
+	@Override
+	public String toString(String field) {
+		StringBuilder buffer = new StringBuilder();
+		if (!getField().equals(field)) {
+			buffer.append(getField());
+			buffer.append(":");
+		}
+		buffer.append("pinyin(");
+		buffer.append(term.text());
+		buffer.append("*)");
+		buffer.append(ToStringUtils.boost(getBoost()));
+		return buffer.toString();
+	}
+}
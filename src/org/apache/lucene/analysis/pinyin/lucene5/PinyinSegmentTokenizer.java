@@ -0,0 +1,267 @@
+package org.apache.lucene.analysis.pinyin.lucene5;
+
+import java.io.IOException;
+
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.pinyin.utils.Constant;
+import org.apache.lucene.analysis.pinyin.utils.PinyinSyllableTrie;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.AttributeFactory;
+
+/**
+ * 查询时的拼音切分器[把连续输入的拼音如chongqingdaxue切分为chong qing da xue]
+ *
+ * 连续的字母用合法音节字典树 + 动态规划切分，代价最小的切分方案胜出：
+ * 每个音节代价为2，不在开头的零声母音节(a、o、e开头)额外加1，因此xian优先于xi an，fangan切分为fan gan；
+ * 需要xi'an时用隔音符号'显式分隔，空白、标点同样作为分隔符。
+ * 末尾未输入完整的音节(如chongqingd中的d)输出为pinyin_prefix类型的词元，供查询端做前缀匹配；
+ * 无法组成音节的字母单独输出，是某个音节首字母时同样标记为pinyin_prefix；
+ * m、n、ng、r这类没有元音的音节在输入中多是声母(如zgr)，也标记为pinyin_prefix。
+ * 非拉丁字母的文字、数字原样作为一个词元输出。
+ *
+ * 配合索引端PinyinTokenFilter输出的按音节全拼，查询时不再依赖索引端的拼音NGram。
+ * 每次reset时一次性读入输入并完成切分，所有缓存数组重复使用，非线程安全。
+ * @author Lanxiaowei
+ *
+ */
+public final class PinyinSegmentTokenizer extends Tokenizer {
+	/**无法到达的代价*/
+	private static final int UNREACHABLE = Integer.MAX_VALUE;
+	/**每个音节的代价*/
+	private static final int SYLLABLE_COST = 2;
+	/**不在开头的零声母音节的额外代价*/
+	private static final int ZERO_INITIAL_COST = 1;
+	/**末尾不完整音节的额外代价*/
+	private static final int PARTIAL_COST = 1;
+
+	private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
+	private final OffsetAttribute offsetAtt = addAttribute(OffsetAttribute.class);
+	private final TypeAttribute typeAtt = addAttribute(TypeAttribute.class);
+
+	private final PinyinSyllableTrie trie = PinyinSyllableTrie.getInstance();
+
+	/**输入缓存[字母已转小写]*/
+	private char[] buffer = new char[64];
+	private int length;
+
+	/**切分结果[重复使用]*/
+	private int[] tokenStarts = new int[16];
+	private int[] tokenEnds = new int[16];
+	private String[] tokenTypes = new String[16];
+	private int tokenCount;
+	private int tokenIndex;
+
+	/**动态规划状态：到达每个位置的最小代价、上一个切分点、最后一段是否是不完整音节*/
+	private int[] costs = new int[64];
+	private int[] prevs = new int[64];
+	private boolean[] partials = new boolean[64];
+
+	public PinyinSegmentTokenizer() {
+		super();
+	}
+
+	public PinyinSegmentTokenizer(AttributeFactory factory) {
+		super(factory);
+	}
+
+	@Override
+	public boolean incrementToken() throws IOException {
+		if (this.tokenIndex >= this.tokenCount) {
+			return false;
+		}
+		clearAttributes();
+		int start = this.tokenStarts[this.tokenIndex];
+		int end = this.tokenEnds[this.tokenIndex];
+		this.termAtt.copyBuffer(this.buffer, start, end - start);
+		this.offsetAtt.setOffset(correctOffset(start), correctOffset(end));
+		this.typeAtt.setType(this.tokenTypes[this.tokenIndex]);
+		this.tokenIndex++;
+		return true;
+	}
+
+	@Override
+	public void reset() throws IOException {
+		super.reset();
+		this.length = 0;
+		int read;
+		while ((read = this.input.read(this.buffer, this.length, this.buffer.length - this.length)) != -1) {
+			this.length += read;
+			if (this.length == this.buffer.length) {
+				this.buffer = ArrayUtil.grow(this.buffer, this.length + 1);
+			}
+		}
+		for (int i = 0; i < this.length; i++) {
+			char c = this.buffer[i];
+			if (c >= 'A' && c <= 'Z') {
+				this.buffer[i] = (char) (c + ('a' - 'A'));
+			}
+		}
+		this.tokenCount = 0;
+		this.tokenIndex = 0;
+		segment();
+	}
+
+	@Override
+	public void end() throws IOException {
+		super.end();
+		int finalOffset = correctOffset(this.length);
+		this.offsetAtt.setOffset(finalOffset, finalOffset);
+	}
+
+	/**
+	 * 把输入切分为拼音段、其他文字段，分隔符丢弃
+	 */
+	private void segment() {
+		int pos = 0;
+		while (pos < this.length) {
+			char c = this.buffer[pos];
+			int end = pos + 1;
+			if (isLatin(c)) {
+				while (end < this.length && isLatin(this.buffer[end])) {
+					end++;
+				}
+				segmentLetters(pos, end);
+			} else if (isWordChar(c)) {
+				while (end < this.length && isWordChar(this.buffer[end]) && !isLatin(this.buffer[end])) {
+					end++;
+				}
+				addToken(pos, end, Constant.TYPE_NORMAL_WORD);
+			}
+			// 空白、隔音符号'等分隔符直接跳过
+			pos = end;
+		}
+	}
+
+	/**
+	 * 用动态规划切分[from, to)之间的连续字母
+	 */
+	private void segmentLetters(int from, int to) {
+		while (from < to) {
+			int n = to - from;
+			if (this.costs.length <= n) {
+				int size = ArrayUtil.oversize(n + 1, 4);
+				this.costs = new int[size];
+				this.prevs = new int[size];
+				this.partials = new boolean[size];
+			}
+			this.costs[0] = 0;
+			for (int i = 1; i <= n; i++) {
+				this.costs[i] = UNREACHABLE;
+			}
+			for (int i = 0; i < n; i++) {
+				if (this.costs[i] == UNREACHABLE) {
+					continue;
+				}
+				int cost = this.costs[i] + SYLLABLE_COST;
+				if (i > 0 && isZeroInitial(this.buffer[from + i])) {
+					cost += ZERO_INITIAL_COST;
+				}
+				int node = PinyinSyllableTrie.ROOT;
+				for (int j = i; j < n; j++) {
+					node = this.trie.child(node, this.buffer[from + j]);
+					if (node < 0) {
+						break;
+					}
+					if (this.trie.isSyllable(node)) {
+						// 没有元音的音节(m、n、ng、r)在输入中多是声母，同样按前缀匹配
+						relax(j + 1, cost, i, !hasVowel(from + i, from + j + 1));
+					} else if (j == n - 1) {
+						// 输入到末尾时还不是完整音节，作为前缀
+						relax(n, cost + PARTIAL_COST, i, true);
+					}
+				}
+			}
+			int reach = n;
+			while (this.costs[reach] == UNREACHABLE) {
+				reach--;
+			}
+			addPath(from, reach);
+			if (reach == n) {
+				return;
+			}
+			// 无法组成音节的字母单独输出，再从下一个字母开始切分
+			int pos = from + reach;
+			addToken(pos, pos + 1, this.trie.child(PinyinSyllableTrie.ROOT, this.buffer[pos]) < 0 ?
+					Constant.TYPE_NORMAL_WORD : Constant.TYPE_PINYIN_PREFIX);
+			from = pos + 1;
+		}
+	}
+
+	private void relax(int pos, int cost, int prev, boolean partial) {
+		if (cost < this.costs[pos]) {
+			this.costs[pos] = cost;
+			this.prevs[pos] = prev;
+			this.partials[pos] = partial;
+		}
+	}
+
+	/**
+	 * 按动态规划结果从reach回溯，把[from, from + reach)的切分结果按顺序加入结果
+	 */
+	private void addPath(int from, int reach) {
+		int steps = 0;
+		for (int pos = reach; pos > 0; pos = this.prevs[pos]) {
+			steps++;
+		}
+		ensureTokenCapacity(this.tokenCount + steps);
+		int index = this.tokenCount + steps;
+		for (int pos = reach; pos > 0; pos = this.prevs[pos]) {
+			index--;
+			this.tokenStarts[index] = from + this.prevs[pos];
+			this.tokenEnds[index] = from + pos;
+			this.tokenTypes[index] = this.partials[pos] ? Constant.TYPE_PINYIN_PREFIX : Constant.TYPE_PINYIN;
+		}
+		this.tokenCount += steps;
+	}
+
+	private void addToken(int start, int end, String type) {
+		ensureTokenCapacity(this.tokenCount + 1);
+		this.tokenStarts[this.tokenCount] = start;
+		this.tokenEnds[this.tokenCount] = end;
+		this.tokenTypes[this.tokenCount] = type;
+		this.tokenCount++;
+	}
+
+	private void ensureTokenCapacity(int size) {
+		if (this.tokenStarts.length < size) {
+			int capacity = ArrayUtil.oversize(size, 4);
+			int[] starts = new int[capacity];
+			int[] ends = new int[capacity];
+			String[] types = new String[capacity];
+			System.arraycopy(this.tokenStarts, 0, starts, 0, this.tokenCount);
+			System.arraycopy(this.tokenEnds, 0, ends, 0, this.tokenCount);
+			System.arraycopy(this.tokenTypes, 0, types, 0, this.tokenCount);
+			this.tokenStarts = starts;
+			this.tokenEnds = ends;
+			this.tokenTypes = types;
+		}
+	}
+
+	private boolean hasVowel(int start, int end) {
+		for (int i = start; i < end; i++) {
+			char c = this.buffer[i];
+			if (c == 'a' || c == 'o' || c == 'e' || c == 'i' || c == 'u' || c == 'v') {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isLatin(char c) {
+		return c >= 'a' && c <= 'z';
+	}
+
+	/**
+	 * 零声母音节的开头字母
+	 */
+	private static boolean isZeroInitial(char c) {
+		return c == 'a' || c == 'o' || c == 'e';
+	}
+
+	private static boolean isWordChar(char c) {
+		return Character.isLetterOrDigit(c) || Character.isSurrogate(c);
+	}
+}
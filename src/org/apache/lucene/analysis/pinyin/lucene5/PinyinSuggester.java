@@ -0,0 +1,570 @@
+package org.apache.lucene.analysis.pinyin.lucene5;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lucene.analysis.pinyin.utils.CharClassifier;
+import org.apache.lucene.analysis.pinyin.utils.Constant;
+import org.apache.lucene.analysis.pinyin.utils.PinyinExpander;
+import org.apache.lucene.analysis.pinyin.utils.PolyphoneDictionary;
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.store.DataOutput;
+import org.apache.lucene.store.InputStreamDataInput;
+import org.apache.lucene.store.OutputStreamDataOutput;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IntsRef;
+import org.apache.lucene.util.IntsRefBuilder;
+import org.apache.lucene.util.fst.Builder;
+import org.apache.lucene.util.fst.BytesRefFSTEnum;
+import org.apache.lucene.util.fst.FST;
+import org.apache.lucene.util.fst.PositiveIntOutputs;
+import org.apache.lucene.util.fst.Util;
+
+/**
+ * 基于加权FST的拼音自动补全[输入拼音前缀，返回原中文]
+ *
+ * 每个词条按PinyinTokenFilter的规则展开为多个键：原文本身、全拼、简拼以及全拼与首字母混合的形式
+ * (如重庆大学 -> chongqingdaxue、cqdx、chongqdx、chongqingdx、chongqingdax)，
+ * FST的输入为 键 + 分隔符 + 原文 + 分隔符，输出为由权重换算的代价，
+ * 结尾的分隔符保证没有一个输入是另一个输入的前缀[如重庆、重庆大学的同一个键]，
+ * 否则TopNSearcher对以中间节点结束的路径不调用acceptResult，同一原文会重复返回。
+ * 查询时先沿前缀走到FST节点，再按代价取前N条路径，同一原文只返回一次。
+ * 不再需要索引EdgeNGram字段，每次按键的查询只是一次FST遍历。
+ *
+ * FST不可变，构建完成后整体替换，查询无锁；build、update、sync互斥。
+ * update只对新增、修改的词条重新展开拼音，其余词条直接从旧FST中按序合并，
+ * 适合词条数较多、每次只变化一小部分的增量重建；sync用于只能拿到全部词条的场景[如Solr的suggester重建]，
+ * 先与当前FST比较得到变化的词条，再按update增量重建。
+ * @author Lanxiaowei
+ *
+ */
+public final class PinyinSuggester implements Accountable {
+	private static final String CODEC_NAME = "PinyinSuggester";
+	private static final int VERSION_START = 0;
+	/**原文之后加分隔符，旧版本的FST需要重新构建*/
+	private static final int VERSION_SURFACE_END = 1;
+	private static final int VERSION_CURRENT = VERSION_SURFACE_END;
+	/**键与原文之间、原文结尾的分隔字节[不会出现在UTF-8编码的正常文本中]*/
+	private static final int SEPARATOR = 0x1F;
+	/**每个词条在查询队列中最多占用的位置数[同一原文的多个键共用前缀时用于去重]*/
+	private static final int QUEUE_FACTOR = 8;
+
+	/**每个词最多展开的全拼/简拼组合数*/
+	private final int maxCombinations;
+	/**多音词词典，为null表示每个字都按所有读音展开*/
+	private final PolyphoneDictionary dictionary;
+
+	private volatile FST<Long> fst;
+	private volatile long count;
+
+	public PinyinSuggester() {
+		this(Constant.DEFAULT_SUGGEST_MAX_COMBINATIONS, PolyphoneDictionary.getDefault());
+	}
+
+	/**
+	 * @param maxCombinations 每个词最多展开的全拼/简拼组合数，小于等于0表示不限制
+	 * @param dictionary 多音词词典，可以为null
+	 */
+	public PinyinSuggester(int maxCombinations, PolyphoneDictionary dictionary) {
+		this.maxCombinations = maxCombinations;
+		this.dictionary = dictionary;
+	}
+
+	/**
+	 * 使用全部词条重新构建
+	 * @param entries 原文 -> 权重
+	 * @throws IOException
+	 */
+	public synchronized void build(Map<String, Long> entries) throws IOException {
+		KeyCollector collector = new KeyCollector();
+		for (Map.Entry<String, Long> entry : entries.entrySet()) {
+			collector.add(entry.getKey(), entry.getValue() == null ? 0L : entry.getValue());
+		}
+		List<Key> keys = collector.sortedKeys();
+		FSTBuilder builder = new FSTBuilder();
+		for (Key key : keys) {
+			builder.add(key.bytes, key.cost);
+		}
+		install(builder);
+	}
+
+	/**
+	 * 增量重建：只展开变化的词条，其余词条从当前FST中合并
+	 * @param upserts 新增或修改的词条[原文 -> 权重]
+	 * @param deletes 删除的词条原文
+	 * @throws IOException
+	 */
+	public synchronized void update(Map<String, Long> upserts, Collection<String> deletes) throws IOException {
+		Set<BytesRef> changed = new HashSet<BytesRef>();
+		KeyCollector collector = new KeyCollector();
+		for (Map.Entry<String, Long> entry : upserts.entrySet()) {
+			changed.add(new BytesRef(entry.getKey()));
+			collector.add(entry.getKey(), entry.getValue() == null ? 0L : entry.getValue());
+		}
+		for (String surface : deletes) {
+			changed.add(new BytesRef(surface));
+		}
+		List<Key> keys = collector.sortedKeys();
+		FSTBuilder builder = new FSTBuilder();
+		int next = 0;
+		FST<Long> current = this.fst;
+		if (current != null) {
+			BytesRefFSTEnum<Long> fstEnum = new BytesRefFSTEnum<Long>(current);
+			BytesRef surface = new BytesRef();
+			BytesRefFSTEnum.InputOutput<Long> old;
+			while ((old = fstEnum.next()) != null) {
+				int sep = separatorIndex(old.input);
+				surface.bytes = old.input.bytes;
+				surface.offset = sep + 1;
+				surface.length = surfaceLength(old.input, sep);
+				if (changed.contains(surface)) {
+					// 变化的词条以新展开的键为准
+					continue;
+				}
+				while (next < keys.size() && keys.get(next).bytes.compareTo(old.input) < 0) {
+					builder.add(keys.get(next).bytes, keys.get(next).cost);
+					next++;
+				}
+				builder.add(old.input, old.output);
+			}
+		}
+		while (next < keys.size()) {
+			builder.add(keys.get(next).bytes, keys.get(next).cost);
+			next++;
+		}
+		install(builder);
+	}
+
+	/**
+	 * 按全部词条同步：与当前FST比较，只展开新增、权重变化的词条，删除不再存在的词条，没有变化时不重建
+	 * @param entries 全部词条[原文 -> 权重]
+	 * @throws IOException
+	 */
+	public synchronized void sync(Map<String, Long> entries) throws IOException {
+		FST<Long> current = this.fst;
+		if (current == null) {
+			build(entries);
+			return;
+		}
+		Map<String, Long> costs = surfaceCosts(current);
+		Map<String, Long> upserts = new HashMap<String, Long>();
+		for (Map.Entry<String, Long> entry : entries.entrySet()) {
+			if (entry.getKey().length() == 0) {
+				continue;
+			}
+			long weight = entry.getValue() == null ? 0L : entry.getValue();
+			Long cost = costs.remove(entry.getKey());
+			if (cost == null || cost.longValue() != encodeWeight(weight)) {
+				upserts.put(entry.getKey(), weight);
+			}
+		}
+		// 剩下的是不再存在的词条
+		if (!upserts.isEmpty() || !costs.isEmpty()) {
+			update(upserts, costs.keySet());
+		}
+	}
+
+	/**
+	 * 当前FST中每个词条原文的代价[每个词条恰好有一个键等于原文]
+	 */
+	private static Map<String, Long> surfaceCosts(FST<Long> fst) throws IOException {
+		Map<String, Long> costs = new HashMap<String, Long>();
+		BytesRefFSTEnum<Long> fstEnum = new BytesRefFSTEnum<Long>(fst);
+		BytesRefFSTEnum.InputOutput<Long> entry;
+		while ((entry = fstEnum.next()) != null) {
+			if (FSTBuilder.isSurfaceKey(entry.input)) {
+				int sep = separatorIndex(entry.input);
+				String surface = new BytesRef(entry.input.bytes, sep + 1, surfaceLength(entry.input, sep)).utf8ToString();
+				costs.put(surface, entry.output);
+			}
+		}
+		return costs;
+	}
+
+	private void install(FSTBuilder builder) throws IOException {
+		this.fst = builder.finish();
+		this.count = builder.surfaces;
+	}
+
+	/**
+	 * 按前缀查询
+	 * @param prefix 用户输入的拼音(全拼、简拼或混合)或中文前缀
+	 * @param num 最多返回的条数
+	 * @return 按权重从高到低排列，同一原文只出现一次
+	 * @throws IOException
+	 */
+	public List<Result> lookup(CharSequence prefix, int num) throws IOException {
+		final FST<Long> fst = this.fst;
+		if (fst == null || num <= 0) {
+			return Collections.emptyList();
+		}
+		BytesRef key = new BytesRef(normalize(prefix));
+		FST.BytesReader reader = fst.getBytesReader();
+		FST.Arc<Long> arc = fst.getFirstArc(new FST.Arc<Long>());
+		Long output = fst.outputs.getNoOutput();
+		for (int i = 0; i < key.length; i++) {
+			if (fst.findTargetArc(key.bytes[key.offset + i] & 0xFF, arc, arc, reader) == null) {
+				return Collections.emptyList();
+			}
+			output = fst.outputs.add(output, arc.output);
+		}
+		final int prefixLength = key.length;
+		final Set<BytesRef> seen = new HashSet<BytesRef>();
+		Util.TopNSearcher<Long> searcher = new Util.TopNSearcher<Long>(fst, num, num * QUEUE_FACTOR,
+				COST_COMPARATOR) {
+			@Override
+			protected boolean acceptResult(IntsRef input, Long output) {
+				// 同一原文可能有多个键以该前缀开头，只保留代价最小的一个
+				return seen.add(surface(input, prefixLength));
+			}
+		};
+		IntsRefBuilder scratch = new IntsRefBuilder();
+		Util.toIntsRef(key, scratch);
+		searcher.addStartPaths(arc, output, true, scratch);
+		Util.TopResults<Long> top = searcher.search();
+		List<Result> results = new ArrayList<Result>(top.topN.size());
+		for (Util.Result<Long> result : top) {
+			results.add(new Result(surface(result.input, prefixLength).utf8ToString(), decodeWeight(result.output)));
+		}
+		return results;
+	}
+
+	/**
+	 * 词条数
+	 * @return
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * 持久化到输出流
+	 * @param output
+	 * @throws IOException
+	 */
+	public void store(DataOutput output) throws IOException {
+		FST<Long> fst;
+		long count;
+		synchronized (this) {
+			fst = this.fst;
+			count = this.count;
+		}
+		CodecUtil.writeHeader(output, CODEC_NAME, VERSION_CURRENT);
+		output.writeVLong(count);
+		if (fst == null) {
+			output.writeByte((byte) 0);
+		} else {
+			output.writeByte((byte) 1);
+			fst.save(output);
+		}
+	}
+
+	/**
+	 * 从输入流加载，替换当前的FST
+	 * @param input
+	 * @throws IOException
+	 */
+	public synchronized void load(DataInput input) throws IOException {
+		CodecUtil.checkHeader(input, CODEC_NAME, VERSION_SURFACE_END, VERSION_CURRENT);
+		long count = input.readVLong();
+		FST<Long> fst = input.readByte() == 0 ? null : new FST<Long>(input, PositiveIntOutputs.getSingleton());
+		this.fst = fst;
+		this.count = count;
+	}
+
+	/**
+	 * 持久化到文件[先写临时文件再替换，写入失败不会破坏原文件]
+	 * @param path
+	 * @throws IOException
+	 */
+	public void store(Path path) throws IOException {
+		Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+		OutputStream out = Files.newOutputStream(tmp);
+		try {
+			store(new OutputStreamDataOutput(out));
+		} finally {
+			out.close();
+		}
+		Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * 从文件加载
+	 * @param path
+	 * @throws IOException
+	 */
+	public void load(Path path) throws IOException {
+		InputStream in = Files.newInputStream(path);
+		try {
+			load(new InputStreamDataInput(in));
+		} finally {
+			in.close();
+		}
+	}
+
+	@Override
+	public long ramBytesUsed() {
+		FST<Long> fst = this.fst;
+		return fst == null ? 0L : fst.ramBytesUsed();
+	}
+
+	@Override
+	public Collection<Accountable> getChildResources() {
+		FST<Long> fst = this.fst;
+		return fst == null ? Collections.<Accountable>emptyList() : Collections.<Accountable>singletonList(fst);
+	}
+
+	/**
+	 * 查询前缀规范化：纯ASCII输入转小写并去掉隔音符号、空白等，其余输入原样使用
+	 */
+	private static String normalize(CharSequence prefix) {
+		if (!CharClassifier.isAllAscii(CharClassifier.classify(prefix))) {
+			return prefix.toString();
+		}
+		StringBuilder builder = new StringBuilder(prefix.length());
+		for (int i = 0; i < prefix.length(); i++) {
+			char c = prefix.charAt(i);
+			if (c >= 'A' && c <= 'Z') {
+				builder.append((char) (c + ('a' - 'A')));
+			} else if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')) {
+				builder.append(c);
+			}
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * 从prefixLength开始查找分隔符，返回两个分隔符之间的原文
+	 */
+	private static BytesRef surface(IntsRef input, int prefixLength) {
+		int start = input.offset + prefixLength;
+		int end = input.offset + input.length - 1;
+		while (start < end && input.ints[start] != SEPARATOR) {
+			start++;
+		}
+		start++;
+		byte[] bytes = new byte[Math.max(0, end - start)];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) input.ints[start + i];
+		}
+		return new BytesRef(bytes);
+	}
+
+	private static int separatorIndex(BytesRef input) {
+		for (int i = input.offset, end = input.offset + input.length; i < end; i++) {
+			if (input.bytes[i] == SEPARATOR) {
+				return i;
+			}
+		}
+		throw new IllegalStateException("corrupt suggester key: no separator");
+	}
+
+	/**
+	 * 键中原文的长度[sep为键与原文之间的分隔符位置，不含结尾的分隔符]
+	 */
+	private static int surfaceLength(BytesRef input, int sep) {
+		return input.offset + input.length - sep - 2;
+	}
+
+	/**权重越大代价越小*/
+	private static long encodeWeight(long weight) {
+		if (weight < 0 || weight > Integer.MAX_VALUE) {
+			weight = weight < 0 ? 0 : Integer.MAX_VALUE;
+		}
+		return Integer.MAX_VALUE - weight;
+	}
+
+	private static long decodeWeight(long cost) {
+		return Integer.MAX_VALUE - cost;
+	}
+
+	private static final Comparator<Long> COST_COMPARATOR = new Comparator<Long>() {
+		@Override
+		public int compare(Long a, Long b) {
+			return a.compareTo(b);
+		}
+	};
+
+	/**
+	 * 查询结果
+	 */
+	public static final class Result {
+		private final String surface;
+		private final long weight;
+
+		public Result(String surface, long weight) {
+			this.surface = surface;
+			this.weight = weight;
+		}
+
+		/**
+		 * 原文
+		 * @return
+		 */
+		public String getSurface() {
+			return surface;
+		}
+
+		public long getWeight() {
+			return weight;
+		}
+
+		@Override
+		public String toString() {
+			return surface + "/" + weight;
+		}
+	}
+
+	/**
+	 * FST中的一个键[键 + 分隔符 + 原文]
+	 */
+	private static final class Key implements Comparable<Key> {
+		final BytesRef bytes;
+		final long cost;
+
+		Key(BytesRef bytes, long cost) {
+			this.bytes = bytes;
+			this.cost = cost;
+		}
+
+		@Override
+		public int compareTo(Key other) {
+			return bytes.compareTo(other.bytes);
+		}
+	}
+
+	/**
+	 * 把词条展开为FST的键
+	 */
+	private final class KeyCollector {
+		private final PinyinExpander expander = new PinyinExpander(false, true, maxCombinations, null, dictionary);
+		private final SyllableGrams mixed = new SyllableGrams();
+		private final List<Key> keys = new ArrayList<Key>();
+		private final Set<String> forms = new HashSet<String>();
+
+		void add(String surface, long weight) {
+			if (surface.length() == 0) {
+				return;
+			}
+			long cost = encodeWeight(weight);
+			BytesRef utf8 = new BytesRef(surface);
+			byte[] surfaceBytes = Arrays.copyOfRange(utf8.bytes, utf8.offset, utf8.offset + utf8.length);
+			this.forms.clear();
+			// 原文本身[ASCII字母转小写]，可以直接输入中文前缀；纯ASCII原文另加一个与查询前缀同样规范化的形式
+			addForm(lowerAscii(surface), surfaceBytes, cost);
+			if (CharClassifier.isAllAscii(CharClassifier.classify(surface))) {
+				addForm(normalize(surface), surfaceBytes, cost);
+			}
+			char[] chars = surface.toCharArray();
+			this.expander.reset(chars, 0, chars.length);
+			while (this.expander.next()) {
+				String form = new String(this.expander.buffer(), 0, this.expander.length());
+				addForm(form, surfaceBytes, cost);
+				// 全拼与首字母混合的形式
+				if (this.mixed.reset(this.expander.buffer(), this.expander.syllableEnds(), this.expander.syllableCount(),
+						1, Integer.MAX_VALUE, true, true)) {
+					while (this.mixed.next()) {
+						addForm(new String(this.mixed.buffer(), 0, this.mixed.length()), surfaceBytes, cost);
+					}
+				}
+			}
+		}
+
+		private void addForm(String form, byte[] surfaceBytes, long cost) {
+			if (form.length() == 0 || !this.forms.add(form)) {
+				return;
+			}
+			BytesRef formBytes = new BytesRef(form);
+			byte[] bytes = new byte[formBytes.length + 1 + surfaceBytes.length + 1];
+			System.arraycopy(formBytes.bytes, formBytes.offset, bytes, 0, formBytes.length);
+			bytes[formBytes.length] = SEPARATOR;
+			System.arraycopy(surfaceBytes, 0, bytes, formBytes.length + 1, surfaceBytes.length);
+			bytes[bytes.length - 1] = SEPARATOR;
+			this.keys.add(new Key(new BytesRef(bytes), cost));
+		}
+
+		/**
+		 * 排序并去掉重复的键[保留代价最小的]
+		 */
+		List<Key> sortedKeys() {
+			Collections.sort(this.keys);
+			List<Key> sorted = new ArrayList<Key>(this.keys.size());
+			for (Key key : this.keys) {
+				int last = sorted.size() - 1;
+				if (last >= 0 && sorted.get(last).bytes.equals(key.bytes)) {
+					if (key.cost < sorted.get(last).cost) {
+						sorted.set(last, key);
+					}
+					continue;
+				}
+				sorted.add(key);
+			}
+			return sorted;
+		}
+	}
+
+	private static String lowerAscii(String surface) {
+		char[] chars = surface.toCharArray();
+		for (int i = 0; i < chars.length; i++) {
+			if (chars[i] >= 'A' && chars[i] <= 'Z') {
+				chars[i] = (char) (chars[i] + ('a' - 'A'));
+			}
+		}
+		return new String(chars);
+	}
+
+	/**
+	 * 按序写入键构建FST，同时统计词条数[键等于原文的条目每个词条恰好一个]
+	 */
+	private static final class FSTBuilder {
+		private final Builder<Long> builder = new Builder<Long>(FST.INPUT_TYPE.BYTE1, PositiveIntOutputs.getSingleton());
+		private final IntsRefBuilder scratch = new IntsRefBuilder();
+		private long added;
+		long surfaces;
+
+		void add(BytesRef input, long cost) throws IOException {
+			this.builder.add(Util.toIntsRef(input, this.scratch), cost);
+			this.added++;
+			if (isSurfaceKey(input)) {
+				this.surfaces++;
+			}
+		}
+
+		FST<Long> finish() throws IOException {
+			return this.added == 0 ? null : this.builder.finish();
+		}
+
+		private static boolean isSurfaceKey(BytesRef input) {
+			int sep = separatorIndex(input);
+			int formLength = sep - input.offset;
+			int surfaceLength = surfaceLength(input, sep);
+			if (formLength != surfaceLength) {
+				return false;
+			}
+			for (int i = 0; i < formLength; i++) {
+				byte a = input.bytes[input.offset + i];
+				byte b = input.bytes[sep + 1 + i];
+				if (a != b && !(b >= 'A' && b <= 'Z' && a == b + ('a' - 'A'))) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
@@ -0,0 +1,39 @@
+package org.apache.lucene.analysis.pinyin.lucene5;
+
+import org.apache.lucene.util.Attribute;
+
+/**
+ * 拼音词元的音节边界[由PinyinTokenFilter设置，供NGram过滤器按音节切分]
+ *
+ * 全拼词元记录每个音节在词元中的结束位置，如zhongguo为[5, 8]；
+ * 简拼词元每个字母是一个音节；原词元及其他非拼音词元的音节数为0。
+ * @author Lanxiaowei
+ *
+ */
+public interface PinyinSyllableAttribute extends Attribute {
+	/**
+	 * 音节个数，不是拼音词元时返回0
+	 * @return
+	 */
+	public int getSyllableCount();
+
+	/**
+	 * 第index个音节在词元中的结束位置[不包含]
+	 * @param index 音节下标
+	 * @return
+	 */
+	public int getSyllableEnd(int index);
+
+	/**
+	 * 设置音节边界[复制ends的前count个元素]
+	 * @param ends 每个音节的结束位置，递增
+	 * @param count 音节个数
+	 */
+	public void setSyllables(int[] ends, int count);
+
+	/**
+	 * 设置为简拼词元[每个字母是一个音节]
+	 * @param length 词元长度
+	 */
+	public void setInitials(int length);
+}
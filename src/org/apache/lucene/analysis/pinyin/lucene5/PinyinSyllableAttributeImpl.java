@@ -0,0 +1,102 @@
+package org.apache.lucene.analysis.pinyin.lucene5;
+
+import java.util.Arrays;
+
+import org.apache.lucene.util.AttributeImpl;
+import org.apache.lucene.util.AttributeReflector;
+
+/**
+ * PinyinSyllableAttribute的默认实现
+ * @author Lanxiaowei
+ *
+ */
+public class PinyinSyllableAttributeImpl extends AttributeImpl implements PinyinSyllableAttribute, Cloneable {
+	private int[] ends = new int[8];
+	private int count;
+
+	@Override
+	public int getSyllableCount() {
+		return count;
+	}
+
+	@Override
+	public int getSyllableEnd(int index) {
+		if (index < 0 || index >= count) {
+			throw new IndexOutOfBoundsException("index " + index + " out of [0, " + count + ")");
+		}
+		return ends[index];
+	}
+
+	@Override
+	public void setSyllables(int[] ends, int count) {
+		ensureCapacity(count);
+		System.arraycopy(ends, 0, this.ends, 0, count);
+		this.count = count;
+	}
+
+	@Override
+	public void setInitials(int length) {
+		ensureCapacity(length);
+		for (int i = 0; i < length; i++) {
+			this.ends[i] = i + 1;
+		}
+		this.count = length;
+	}
+
+	private void ensureCapacity(int count) {
+		if (this.ends.length < count) {
+			this.ends = new int[Math.max(count, this.ends.length * 2)];
+		}
+	}
+
+	@Override
+	public void clear() {
+		count = 0;
+	}
+
+	@Override
+	public void copyTo(AttributeImpl target) {
+		((PinyinSyllableAttribute) target).setSyllables(ends, count);
+	}
+
+	@Override
+	public PinyinSyllableAttributeImpl clone() {
+		PinyinSyllableAttributeImpl t = (PinyinSyllableAttributeImpl) super.clone();
+		t.ends = Arrays.copyOf(ends, ends.length);
+		return t;
+	}
+
+	@Override
+	public void reflectWith(AttributeReflector reflector) {
+		reflector.reflect(PinyinSyllableAttribute.class, "syllableEnds", Arrays.toString(Arrays.copyOf(ends, count)));
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (other == this) {
+			return true;
+		}
+		if (!(other instanceof PinyinSyllableAttributeImpl)) {
+			return false;
+		}
+		PinyinSyllableAttributeImpl o = (PinyinSyllableAttributeImpl) other;
+		if (count != o.count) {
+			return false;
+		}
+		for (int i = 0; i < count; i++) {
+			if (ends[i] != o.ends[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		int h = count;
+		for (int i = 0; i < count; i++) {
+			h = 31 * h + ends[i];
+		}
+		return h;
+	}
+}
@@ -1,25 +1,45 @@
 package org.apache.lucene.analysis.pinyin.lucene5;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Iterator;
 
 import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.pinyin.utils.AnalysisMetrics;
+import org.apache.lucene.analysis.pinyin.utils.CharClassifier;
 import org.apache.lucene.analysis.pinyin.utils.Constant;
-import org.apache.lucene.analysis.pinyin.utils.Pinyin4jUtil;
-import org.apache.lucene.analysis.pinyin.utils.StringUtils;
+import org.apache.lucene.analysis.pinyin.utils.PinyinCache;
+import org.apache.lucene.analysis.pinyin.utils.PinyinCombinationIterator;
+import org.apache.lucene.analysis.pinyin.utils.PinyinExpander;
+import org.apache.lucene.analysis.pinyin.utils.PinyinTable;
+import org.apache.lucene.analysis.pinyin.utils.PolyphoneDictionary;
+import org.apache.lucene.analysis.pinyin.utils.TokenBudget;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
 import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionLengthAttribute;
 import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+import org.apache.lucene.util.ArrayUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 /**
  * 拼音过滤器[负责将汉字转换为拼音]
+ *
+ * 默认把整个词的每种全拼/简拼组合叠加在原词元的位置上(位置增量为0)；
+ * graph为true时输出token graph：每个字占一个位置，该字的各个读音(全拼、首字母)叠加在这个位置上，
+ * 原中文词元的PositionLength为字数，跨过所有音节。这样拼音短语查询只需要每个位置的候选读音，
+ * 不再展开为所有读音组合的笛卡尔积。
+ * token graph要求输入词元互不重叠(如IK的useSmart=true)：预读下一个词元，与前后词元的偏移量重叠
+ * 或位置增量为0的词元(如IK的useSmart=false输出的中华人民共和国、中华、华人...)按默认方式叠加输出，
+ * 否则展开的字位置会把后面的重叠词元挤到错误的位置上。
+ * 传入AnalysisMetrics时记录输入/输出词元数、每个词元展开的拼音个数和采样的耗时。
+ * 传入TokenBudget时限制每个字段值输出的词元数(包括下游NGram过滤器的输出)和每个词元展开的拼音个数，
+ * 超出后逐级降级为不切分NGram、只输出简拼、只输出原词元，每次降级都记入统计并输出日志。
  * @author Lanxiaowei
  *
  */
 public class PinyinTokenFilter extends TokenFilter {
+	private static final Logger log = LoggerFactory.getLogger(PinyinTokenFilter.class);
+
 	/**是否输出原中文*/
 	private boolean isOutChinese;
 	/**是否只转换简拼*/
@@ -28,22 +48,79 @@ public class PinyinTokenFilter extends TokenFilter {
 	private boolean pinyinAll;
 	/**中文词组长度过滤，默认超过2位长度的中文才转换拼音*/
 	private int minTermLength;
+	/**每个词最多输出的全拼/简拼组合数，小于等于0表示不限制*/
+	private int maxCombinations;
+	/**是否输出token graph[每个字一个位置]*/
+	private boolean graph;
 
-	/**词元输入缓存*/
-	private char[] curTermBuffer;
+	/**词元输入缓存[重复使用，只在容量不足时扩容]*/
+	private char[] curTermBuffer = new char[16];
+	/**curTermBuffer中是否有正在处理的词元*/
+	private boolean hasCurTerm;
 	/**词元输入长度*/
 	private int curTermLength;
+	/**词元输入的字符分类[CharClassifier.classify的结果]*/
+	private int curTermClass;
+	/**词元输入的位置增量和偏移量[拼音词元使用相同的偏移量]*/
+	private int curPosInc;
+	private int curStartOffset;
+	private int curEndOffset;
 
 	private final CharTermAttribute termAtt = (CharTermAttribute) addAttribute(CharTermAttribute.class);
 	/**位置增量属性*/
 	private final PositionIncrementAttribute posIncrAtt = addAttribute(PositionIncrementAttribute.class);
+	/**位置长度属性[token graph模式]*/
+	private final PositionLengthAttribute posLenAtt = addAttribute(PositionLengthAttribute.class);
+	/**偏移量属性*/
+	private final OffsetAttribute offsetAtt = addAttribute(OffsetAttribute.class);
 	private final TypeAttribute typeAtt = addAttribute(TypeAttribute.class);
+	/**拼音词元的音节边界*/
+	private final PinyinSyllableAttribute syllableAtt = addAttribute(PinyinSyllableAttribute.class);
 	/**当前输入是否已输出*/
 	private boolean hasCurOut;
-	/**拼音结果集*/
-	private Collection<String> terms;
-	/**拼音结果集迭代器*/
-	private Iterator<String> termIte;
+	/**当前输入是否已开始输出拼音结果集*/
+	private boolean hasPinyinOut;
+	/**当前输入是否正在输出拼音结果*/
+	private boolean hasPinyins;
+	/**纯数字、普通词元是否还需要再原样输出一次[供后续NGram处理]*/
+	private boolean echoPending;
+	/**拼音展开器[重复使用]*/
+	private final PinyinExpander expander;
+	/**token graph模式下当前词元有拼音的字数，为0表示不按graph输出*/
+	private int graphPositions;
+	/**token graph模式下正在输出的字的下标和读音下标*/
+	private int graphPos;
+	private int graphAlt;
+	/**当前字是否已输出过读音*/
+	private boolean graphPosStarted;
+	/**当前输入是否正在输出token graph*/
+	private boolean graphing;
+	/**当前词元是否按token graph输出[graph模式下与前后词元都不重叠]*/
+	private boolean curGraph;
+	/**token graph模式下预读的下一个输入词元，没有时为null*/
+	private State peeked;
+	/**预读时输入已经结束*/
+	private boolean inputExhausted;
+	/**token graph模式下已读入的输入词元的最大结束偏移量，还没有读入时为-1*/
+	private int maxEndOffset = -1;
+	/**单个音节的结束位置[重复使用]*/
+	private final int[] singleSyllable = new int[1];
+	/**分析统计记录器，不统计时为null*/
+	private final AnalysisMetrics.Recorder recorder;
+	/**当前词元已输出的拼音个数[多音字展开直方图]*/
+	private int curPinyinCount;
+	/**词元预算，不限制时为null*/
+	private final TokenBudget budget;
+	/**当前字段值已输出的词元数和降级级别*/
+	private final TokenBudgetAttribute budgetAtt = addAttribute(TokenBudgetAttribute.class);
+	/**降级为只输出简拼时使用的展开器，不需要时为null*/
+	private final PinyinExpander shortExpander;
+	/**当前词元使用的展开器*/
+	private PinyinExpander curExpander;
+	/**当前词元是否因超出预算只输出简拼*/
+	private boolean curShortOnly;
+	/**当前词元是否因超出预算只输出原词元*/
+	private boolean curOriginalOnly;
 
 	public PinyinTokenFilter(TokenStream input) {
 		this(input,Constant.DEFAULT_MIN_TERM_LRNGTH);
@@ -67,7 +144,53 @@ public class PinyinTokenFilter extends TokenFilter {
 
 	public PinyinTokenFilter(TokenStream input, boolean shortPinyin,boolean pinyinAll,
 			boolean isOutChinese,int minTermLength) {
+		this(input, shortPinyin, pinyinAll, isOutChinese, minTermLength, Constant.DEFAULT_MAX_COMBINATIONS);
+	}
+
+	public PinyinTokenFilter(TokenStream input, boolean shortPinyin,boolean pinyinAll,
+			boolean isOutChinese,int minTermLength,int maxCombinations) {
+		this(input, shortPinyin, pinyinAll, isOutChinese, minTermLength, maxCombinations, null);
+	}
+
+	public PinyinTokenFilter(TokenStream input, boolean shortPinyin,boolean pinyinAll,
+			boolean isOutChinese,int minTermLength,int maxCombinations,PinyinCache cache) {
+		this(input, shortPinyin, pinyinAll, isOutChinese, minTermLength, maxCombinations, cache, null);
+	}
+
+	public PinyinTokenFilter(TokenStream input, boolean shortPinyin,boolean pinyinAll,
+			boolean isOutChinese,int minTermLength,int maxCombinations,PinyinCache cache,
+			PolyphoneDictionary dictionary) {
+		this(input, shortPinyin, pinyinAll, isOutChinese, minTermLength, maxCombinations, cache, dictionary,
+				Constant.DEFAULT_GRAPH);
+	}
+
+	public PinyinTokenFilter(TokenStream input, boolean shortPinyin,boolean pinyinAll,
+			boolean isOutChinese,int minTermLength,int maxCombinations,PinyinCache cache,
+			PolyphoneDictionary dictionary,boolean graph) {
+		this(input, shortPinyin, pinyinAll, isOutChinese, minTermLength, maxCombinations, cache, dictionary,
+				graph, null);
+	}
+
+	/**
+	 * @param metrics 分析统计，为null时不统计
+	 */
+	public PinyinTokenFilter(TokenStream input, boolean shortPinyin,boolean pinyinAll,
+			boolean isOutChinese,int minTermLength,int maxCombinations,PinyinCache cache,
+			PolyphoneDictionary dictionary,boolean graph,AnalysisMetrics metrics) {
+		this(input, shortPinyin, pinyinAll, isOutChinese, minTermLength, maxCombinations, cache, dictionary,
+				graph, metrics, null);
+	}
+
+	/**
+	 * @param budget 每个字段值的词元预算，为null时不限制
+	 */
+	public PinyinTokenFilter(TokenStream input, boolean shortPinyin,boolean pinyinAll,
+			boolean isOutChinese,int minTermLength,int maxCombinations,PinyinCache cache,
+			PolyphoneDictionary dictionary,boolean graph,AnalysisMetrics metrics,TokenBudget budget) {
 		super(input);
+		this.recorder = metrics == null ? null : metrics.newRecorder();
+		this.maxCombinations = maxCombinations;
+		this.graph = graph;
 		this.minTermLength = minTermLength;
 		if (this.minTermLength < 1) {
 			this.minTermLength = 1;
@@ -75,89 +198,415 @@ public class PinyinTokenFilter extends TokenFilter {
 		this.isOutChinese = isOutChinese;
 		this.shortPinyin = shortPinyin;
 		this.pinyinAll = pinyinAll;
-		// 偏移量属性
-		addAttribute(OffsetAttribute.class); 
+		this.expander = new PinyinExpander(shortPinyin, pinyinAll, maxCombinations, cache, dictionary);
+		this.curExpander = this.expander;
+		this.budget = budget == null || !budget.isLimited() ? null : budget;
+		this.budgetAtt.setMaxTokens(this.budget == null ? 0 : this.budget.getMaxTokens());
+		//已经只转换简拼时降级不需要另外的展开器
+		this.shortExpander = this.budget == null || (shortPinyin && !pinyinAll) ? null :
+			new PinyinExpander(true, false, maxCombinations, cache, dictionary);
 	}
 	
 	@Override
 	public final boolean incrementToken() throws IOException {
+		boolean hasToken;
+		if (this.recorder == null) {
+			hasToken = nextToken();
+		} else if (this.recorder.sample()) {
+			long start = System.nanoTime();
+			hasToken = nextToken();
+			this.recorder.sampled(System.nanoTime() - start);
+		} else {
+			hasToken = nextToken();
+		}
+		if (hasToken) {
+			this.budgetAtt.addTokens(1);
+			if (this.recorder != null) {
+				this.recorder.tokenOut();
+			}
+		}
+		return hasToken;
+	}
+
+	private boolean nextToken() throws IOException {
 		while (true) {
 			// 开始处理或上一输入词元已被处理完成
-			if (this.curTermBuffer == null) {
+			if (!this.hasCurTerm) {
 				// 获取下一词元输入
-				if (!this.input.incrementToken()) { 
+				if (!nextInput()) { 
 					// 没有后继词元输入，处理完成，返回false，结束上层调用
 					return false; 
 				}
-				// 缓存词元输入
-				this.curTermBuffer = ((char[]) this.termAtt.buffer().clone());
+				if (this.recorder != null) {
+					this.recorder.tokenIn();
+				}
+				// 缓存词元输入[复用缓存数组，不再每次clone]
 				this.curTermLength = this.termAtt.length();
+				if (this.curTermBuffer.length < this.curTermLength) {
+					this.curTermBuffer = new char[ArrayUtil.oversize(this.curTermLength, 2)];
+				}
+				System.arraycopy(this.termAtt.buffer(), 0, this.curTermBuffer, 0, this.curTermLength);
+				this.hasCurTerm = true;
+				// 一次遍历得到汉字个数、是否纯数字、是否纯ASCII
+				this.curTermClass = CharClassifier.classify(this.curTermBuffer, 0, this.curTermLength);
+				this.curPosInc = this.posIncrAtt.getPositionIncrement();
+				this.curStartOffset = this.offsetAtt.startOffset();
+				this.curEndOffset = this.offsetAtt.endOffset();
+				if (this.graph) {
+					// 与前后词元重叠的词元不按graph输出
+					boolean overlapsPrevious = this.maxEndOffset > this.curStartOffset ||
+							(this.maxEndOffset >= 0 && this.curPosInc == 0);
+					this.maxEndOffset = Math.max(this.maxEndOffset, this.curEndOffset);
+					this.curGraph = needPinyin() && !overlapsPrevious && !overlapsNext();
+				}
+				if (this.budget != null) {
+					startBudgetedTerm();
+				}
+				if (this.curGraph && needPinyin()) {
+					// token graph模式先按字展开，原词元的PositionLength为有拼音的字数
+					this.graphPositions = this.expander.resetPositions(this.curTermBuffer, 0, this.curTermLength);
+				}
 			}
-			String chinese = this.termAtt.toString();
 			// 处理原输入词元
-			if ((this.isOutChinese) && (!this.hasCurOut) && (this.termIte == null)) {
-				// 准许输出原中文词元且当前没有输出原输入词元且还没有处理拼音结果集
+			if ((this.isOutChinese || this.curOriginalOnly) && (!this.hasCurOut) && (!this.hasPinyinOut)) {
+				// 准许输出原中文词元(或超出预算只输出原词元)且当前没有输出原输入词元且还没有处理拼音结果集
 				// 标记以保证下次循环不会输出
 				this.hasCurOut = true; 
 				// 写入原输入词元
 				this.termAtt.copyBuffer(this.curTermBuffer, 0,
 						this.curTermLength);
 				this.posIncrAtt.setPositionIncrement(this.posIncrAtt.getPositionIncrement());
-				this.typeAtt.setType(StringUtils.isNumeric(chinese)? "numeric_original" : 
-					(StringUtils.containsChinese(chinese)?"chinese_original" : "normal_word"));
+				if (this.graphPositions > 0) {
+					this.posLenAtt.setPositionLength(this.graphPositions);
+				}
+				this.syllableAtt.setSyllables(this.expander.syllableEnds(), 0);
+				this.typeAtt.setType(CharClassifier.isAllDigits(this.curTermClass)? Constant.TYPE_NUMERIC_ORIGINAL : 
+					(CharClassifier.containsHan(this.curTermClass)? Constant.TYPE_CHINESE_ORIGINAL : Constant.TYPE_NORMAL_WORD));
 				return true;
 			}
 			
-			String type = this.typeAtt.type();
-			// 若包含中文且中文字符长度不小于限定的最小长度minTermLength
-			if (StringUtils.chineseCharCount(chinese) >= this.minTermLength) {
-				// 如果需要全拼+简拼
-				if(this.pinyinAll) {
-					Collection<String> quanpinColl = Pinyin4jUtil.getPinyinCollection(chinese);
-					quanpinColl.addAll(Pinyin4jUtil.getPinyinShortCollection(chinese));
-					this.terms = quanpinColl;
+			if (!this.hasPinyinOut) {
+				this.hasPinyinOut = true;
+				// 纯ASCII词元(字母、数字、型号等)没有汉字，直接跳过拼音转换
+				// 若包含中文且中文字符长度不小于限定的最小长度minTermLength
+				if (needPinyin()) {
+					if (this.curGraph) {
+						// 已按字展开，逐个位置输出读音
+						this.graphing = this.graphPositions > 0;
+					} else {
+						// 按需枚举多音字组合或从共享缓存中取拼音结果集
+						this.curExpander.reset(this.curTermBuffer, 0, this.curTermLength);
+						this.hasPinyins = true;
+					}
 				} else {
-					// 简拼 or 全拼，二选一
-					this.terms = this.shortPinyin ? 
-							Pinyin4jUtil.getPinyinShortCollection(chinese) : 
-							Pinyin4jUtil.getPinyinCollection(chinese);
+					// 已原样输出的纯数字、普通词元[类型为numeric_original或normal_word]再输出一次供NGram处理，
+					// 按输入词元判断，不读取下游可能修改过的类型属性；已不再切分NGram时不需要再输出
+					this.echoPending = this.hasCurOut && !CharClassifier.containsHan(this.curTermClass) && 
+							this.budgetAtt.getLevel() < TokenBudget.LEVEL_NO_NGRAM;
 				}
-				
-				if (this.terms != null) {
-					this.termIte = this.terms.iterator();
+			}
+			if (this.budget != null && (this.graphing || this.hasPinyins) && 
+					checkBudget() >= TokenBudget.LEVEL_ORIGINAL_ONLY) {
+				// 预算已用完，放弃当前词元剩余的拼音
+				this.graphing = false;
+				this.hasPinyins = false;
+			}
+			if (this.graphing) {
+				if (nextGraphToken()) {
+					this.curPinyinCount++;
+					return true;
 				}
-			} else {
-				if(null != type && ("numeric_original".equals(type) ||
-						"normal_word".equals(type))) {
-					Collection<String> coll = new ArrayList<String>();
-					coll.add(chinese);
-					this.terms = coll;
-					if (this.terms != null) {
-						this.termIte = this.terms.iterator();
-					}
+				this.graphing = false;
+			}
+			// 有拼音结果集且未处理完成
+			if (nextPinyin()) {
+				//同义词的原理，不输出原词元时第一个拼音使用原词元的位置增量
+				this.posIncrAtt.setPositionIncrement(this.hasCurOut || this.curPinyinCount > 1 ? 0 : this.curPosInc);
+				this.offsetAtt.setOffset(this.curStartOffset, this.curEndOffset);
+				this.typeAtt.setType(this.shortPinyin || this.curShortOnly ? Constant.TYPE_SHORT_PINYIN : Constant.TYPE_PINYIN);
+				return true;
+			}
+			if (this.recorder != null && needPinyin()) {
+				this.recorder.expansion(this.curPinyinCount);
+			}
+			// 没有中文或转换拼音失败，不用处理，
+			// 清理状态，下次取新词元
+			clearState();
+		}
+	}
+
+	/**
+	 * 读入下一个输入词元[优先使用预读的词元]
+	 */
+	private boolean nextInput() throws IOException {
+		if (this.peeked != null) {
+			restoreInput(this.peeked);
+			this.peeked = null;
+			return true;
+		}
+		return !this.inputExhausted && this.input.incrementToken();
+	}
+
+	/**
+	 * 预读下一个输入词元，判断是否与当前词元重叠[偏移量重叠或位置增量为0]，之后恢复当前词元的属性
+	 */
+	private boolean overlapsNext() throws IOException {
+		State current = captureState();
+		boolean overlaps = false;
+		if (this.input.incrementToken()) {
+			overlaps = this.offsetAtt.startOffset() < this.curEndOffset || this.posIncrAtt.getPositionIncrement() == 0;
+			this.peeked = captureState();
+		} else {
+			this.inputExhausted = true;
+		}
+		restoreInput(current);
+		return overlaps;
+	}
+
+	/**
+	 * 恢复输入词元的属性，TokenBudgetAttribute是整个字段值的状态，保持不变
+	 */
+	private void restoreInput(State state) {
+		int tokens = this.budgetAtt.getTokens();
+		int level = this.budgetAtt.getLevel();
+		restoreState(state);
+		this.budgetAtt.restart();
+		this.budgetAtt.addTokens(tokens);
+		this.budgetAtt.setLevel(level);
+	}
+
+	/**
+	 * 当前词元是否需要转换拼音
+	 * 纯ASCII词元(字母、数字、型号等)没有汉字，直接跳过；
+	 * 包含中文且中文字符长度不小于限定的最小长度minTermLength时才转换
+	 */
+	private boolean needPinyin() {
+		return !this.curOriginalOnly && !CharClassifier.isAllAscii(this.curTermClass) && 
+				CharClassifier.hanCount(this.curTermClass) >= this.minTermLength;
+	}
+
+	/**
+	 * token graph模式下把下一个读音写入属性：
+	 * 同一个字的全拼在前、首字母在后，与全拼相同或重复的首字母只输出一次；
+	 * 每个字的第一个读音位置增量为1(第一个字为0或原位置增量)，其余为0，PositionLength均为1；
+	 * 第一个字的起始偏移量、最后一个字的结束偏移量与原词元相同[包括词元首尾没有拼音的字符]，
+	 * 保证同一个位置上开始、结束的词元偏移量一致
+	 * @return 是否还有读音
+	 */
+	private boolean nextGraphToken() {
+		PinyinCombinationIterator positions = this.expander.positions();
+		boolean full = !this.curShortOnly && (!this.shortPinyin || this.pinyinAll);
+		boolean initials = this.curShortOnly || this.shortPinyin || this.pinyinAll;
+		while (this.graphPos < this.graphPositions) {
+			short[] ids = positions.readings(this.graphPos);
+			int fullCount = full ? ids.length : 0;
+			int index = this.graphAlt++;
+			if (index < fullCount) {
+				char[] syllable = PinyinTable.syllableChars(ids[index]);
+				clearAttributes();
+				this.termAtt.copyBuffer(syllable, 0, syllable.length);
+				this.typeAtt.setType(Constant.TYPE_PINYIN);
+			} else if (initials && index < fullCount + ids.length) {
+				char initial = PinyinTable.initial(ids[index - fullCount]);
+				if (isDuplicateInitial(ids, index - fullCount, initial, full)) {
+					continue;
 				}
+				clearAttributes();
+				this.termAtt.setEmpty().append(initial);
+				this.typeAtt.setType(Constant.TYPE_SHORT_PINYIN);
+			} else {
+				// 当前字的读音已输出完，进入下一个字
+				this.graphPos++;
+				this.graphAlt = 0;
+				this.graphPosStarted = false;
+				continue;
 			}
-			if (this.termIte != null) {
-				// 有拼音结果集且未处理完成
-				while (this.termIte.hasNext()) { 
-					String pinyin = this.termIte.next();
-					this.termAtt.copyBuffer(pinyin.toCharArray(), 0, pinyin.length());
-					//同义词的原理
-					this.posIncrAtt.setPositionIncrement(0);
-					this.typeAtt.setType(this.shortPinyin ? "short_pinyin" : "pinyin");
+			if (this.graphPosStarted) {
+				this.posIncrAtt.setPositionIncrement(0);
+			} else {
+				this.graphPosStarted = true;
+				this.posIncrAtt.setPositionIncrement(this.graphPos > 0 ? 1 : 
+					(this.isOutChinese ? 0 : this.curPosInc));
+			}
+			this.posLenAtt.setPositionLength(1);
+			if (this.curEndOffset - this.curStartOffset == this.curTermLength) {
+				this.offsetAtt.setOffset(
+						this.graphPos == 0 ? this.curStartOffset : this.curStartOffset + positions.positionStart(this.graphPos),
+						this.graphPos == this.graphPositions - 1 ? this.curEndOffset :
+							this.curStartOffset + positions.positionEnd(this.graphPos));
+			} else {
+				// 偏移量与词元长度不一致[如经过同义词、字符过滤]，使用整个词元的偏移量
+				this.offsetAtt.setOffset(this.curStartOffset, this.curEndOffset);
+			}
+			this.singleSyllable[0] = this.termAtt.length();
+			this.syllableAtt.setSyllables(this.singleSyllable, 1);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * 第index个读音的首字母是否已经输出过[与前面读音的首字母相同，或与某个单字母的全拼相同]
+	 */
+	private static boolean isDuplicateInitial(short[] ids, int index, char initial, boolean full) {
+		for (int i = 0; i < index; i++) {
+			if (PinyinTable.initial(ids[i]) == initial) {
+				return true;
+			}
+		}
+		if (full) {
+			for (int i = 0; i < ids.length; i++) {
+				char[] syllable = PinyinTable.syllableChars(ids[i]);
+				if (syllable.length == 1 && syllable[0] == initial) {
 					return true;
 				}
 			}
-			// 没有中文或转换拼音失败，不用处理，
-			// 清理缓存，下次取新词元
-			this.curTermBuffer = null;
-			this.termIte = null;
-			this.hasCurOut = false; 
+		}
+		return false;
+	}
+
+	/**
+	 * 把下一个拼音结果写入termAtt
+	 * @return 是否还有拼音结果
+	 */
+	private boolean nextPinyin() {
+		if (this.hasPinyins) {
+			if (this.curExpander.next()) {
+				this.curPinyinCount++;
+				clearAttributes();
+				this.termAtt.copyBuffer(this.curExpander.buffer(), 0, this.curExpander.length());
+				this.syllableAtt.setSyllables(this.curExpander.syllableEnds(), this.curExpander.syllableCount());
+				return true;
+			}
+			this.hasPinyins = false;
+		}
+		if (this.echoPending) {
+			// 纯数字、普通词元原样再输出一次
+			this.echoPending = false;
+			clearAttributes();
+			this.termAtt.copyBuffer(this.curTermBuffer, 0, this.curTermLength);
+			this.syllableAtt.setSyllables(this.expander.syllableEnds(), 0);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * 按预算确定当前词元的输出方式：字段值的降级级别，以及展开的拼音个数是否超出每个词元的上限
+	 */
+	private void startBudgetedTerm() {
+		int level = checkBudget();
+		this.curShortOnly = level >= TokenBudget.LEVEL_SHORT_PINYIN;
+		this.curOriginalOnly = level >= TokenBudget.LEVEL_ORIGINAL_ONLY;
+		int maxTermCombinations = this.budget.getMaxTermCombinations();
+		// token graph模式按字输出读音，个数与字数成正比，不需要检查
+		if (maxTermCombinations > 0 && !this.curGraph && needPinyin()) {
+			boolean degraded = false;
+			if (!this.curShortOnly && pinyinCount(false) > maxTermCombinations) {
+				this.curShortOnly = true;
+				degraded = true;
+			}
+			if (this.curShortOnly && pinyinCount(true) > maxTermCombinations) {
+				this.curOriginalOnly = true;
+				degraded = true;
+			}
+			if (degraded) {
+				if (this.recorder != null) {
+					this.recorder.termDegraded();
+				}
+				if (log.isDebugEnabled()) {
+					log.debug("Term [{}] of {} expands to more than {} pinyin, degraded to {}",
+							new String(this.curTermBuffer, 0, this.curTermLength), budgetName(),
+							maxTermCombinations, this.curOriginalOnly ? "original only" : "short pinyin");
+				}
+			}
+		}
+		if (this.curShortOnly && this.shortExpander != null) {
+			this.curExpander = this.shortExpander;
+		}
+	}
+
+	/**
+	 * 当前词元展开的拼音个数
+	 * @param shortOnly 是否只计算简拼
+	 */
+	private int pinyinCount(boolean shortOnly) {
+		if (shortOnly || (this.shortPinyin && !this.pinyinAll)) {
+			return this.expander.combinations(this.curTermBuffer, 0, this.curTermLength, true);
+		}
+		int count = this.expander.combinations(this.curTermBuffer, 0, this.curTermLength, false);
+		if (this.pinyinAll) {
+			count += this.expander.combinations(this.curTermBuffer, 0, this.curTermLength, true);
+		}
+		return count;
+	}
+
+	/**
+	 * 按当前字段值已输出的词元数更新降级级别，升级时记入统计并输出日志
+	 * @return 当前的降级级别
+	 */
+	private int checkBudget() {
+		int current = this.budgetAtt.getLevel();
+		int level = this.budget.levelFor(this.budgetAtt.getTokens());
+		if (level <= current) {
+			return current;
+		}
+		this.budgetAtt.setLevel(level);
+		if (this.recorder != null) {
+			for (int i = current + 1; i <= level; i++) {
+				this.recorder.degraded(i);
+			}
+		}
+		log.warn("Token budget of {} ({} tokens) exceeded at offset {}, degraded to {}", budgetName(),
+				this.budget.getMaxTokens(), this.offsetAtt.startOffset(), TokenBudget.levelName(level));
+		return level;
+	}
+
+	private String budgetName() {
+		return this.budget.getName() == null ? "field" : this.budget.getName();
+	}
+
+	/**
+	 * 清理当前词元的处理状态[不释放缓存数组]
+	 */
+	private void clearState() {
+		this.hasCurTerm = false;
+		this.hasPinyins = false;
+		this.curExpander.clear();
+		this.curExpander = this.expander;
+		this.curShortOnly = false;
+		this.curOriginalOnly = false;
+		this.echoPending = false;
+		this.hasPinyinOut = false;
+		this.hasCurOut = false; 
+		this.graphPositions = 0;
+		this.graphPos = 0;
+		this.graphAlt = 0;
+		this.graphPosStarted = false;
+		this.graphing = false;
+		this.curGraph = false;
+		this.curPinyinCount = 0;
+	}
+
+	@Override
+	public void end() throws IOException {
+		super.end();
+		if (this.recorder != null) {
+			this.recorder.flush();
 		}
 	}
 
 	@Override
 	public void reset() throws IOException {
 		super.reset();
+		clearState();
+		this.peeked = null;
+		this.inputExhausted = false;
+		this.maxEndOffset = -1;
+		this.budgetAtt.restart();
+		if (this.recorder != null) {
+			// 上一篇文档没有调用end时在这里合并
+			this.recorder.flush();
+		}
 	}
 }
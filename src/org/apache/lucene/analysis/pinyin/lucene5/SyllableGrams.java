@@ -0,0 +1,154 @@
+package org.apache.lucene.analysis.pinyin.lucene5;
+
+/**
+ * 按音节切分NGram的辅助类[NGram、EdgeNGram过滤器共用]
+ *
+ * 除了判断某个位置是否是音节边界外，还负责生成全拼与首字母混合的NGram：
+ * 连续的若干个音节，前面的音节取全拼、后面的音节只取首字母，
+ * 如zhong|guo|ren可以生成zhongg、zhonggr、zhongguor、guor等，全部取全拼或全部取首字母的情况不在此生成。
+ * 生成的结果写入内部可复用的字符数组，非线程安全。
+ * @author Lanxiaowei
+ *
+ */
+final class SyllableGrams {
+	private char[] source;
+	private int[] ends;
+	private int count;
+	private int minGram;
+	private int maxGram;
+	/**最后一个可以作为起点的音节下标*/
+	private int lastFrom;
+	/**是否只生成以最后一个音节结尾的NGram*/
+	private boolean toEnd;
+
+	/**起始音节、结束音节(不包含)、取全拼的音节个数*/
+	private int from;
+	private int to;
+	private int full;
+
+	private char[] buffer = new char[32];
+	private int length;
+
+	/**
+	 * offset是否是音节边界[词元开头、结尾以及两个音节之间]
+	 * @param ends 每个音节的结束位置
+	 * @param count 音节个数
+	 * @param offset 词元中的位置
+	 * @return
+	 */
+	static boolean isBoundary(int[] ends, int count, int offset) {
+		if (offset == 0) {
+			return true;
+		}
+		for (int i = 0; i < count; i++) {
+			if (ends[i] == offset) {
+				return true;
+			}
+			if (ends[i] > offset) {
+				return false;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 开始生成混合NGram
+	 * @param source 拼音词元
+	 * @param ends 每个音节的结束位置[生成期间调用方不能修改]
+	 * @param count 音节个数
+	 * @param minGram 最小长度
+	 * @param maxGram 最大长度
+	 * @param fromStart 是否只生成从第一个音节开始的NGram
+	 * @param toEnd 是否只生成以最后一个音节结尾的NGram
+	 * @return 是否可能有结果[音节数不足2个或每个音节都只有一个字母时返回false]
+	 */
+	boolean reset(char[] source, int[] ends, int count, int minGram, int maxGram,
+			boolean fromStart, boolean toEnd) {
+		this.source = source;
+		this.ends = ends;
+		this.count = count;
+		this.minGram = minGram;
+		this.maxGram = maxGram;
+		this.toEnd = toEnd;
+		this.lastFrom = fromStart ? 0 : count - 2;
+		this.from = 0;
+		this.to = toEnd ? count : 2;
+		this.full = this.to - this.from;
+		return count >= 2 && ends[count - 1] > count;
+	}
+
+	/**
+	 * 生成下一个混合NGram
+	 * @return 是否还有结果
+	 */
+	boolean next() {
+		while (from <= lastFrom) {
+			if (advance()) {
+				int start = start(from);
+				int fullEnd = ends[from + full - 1];
+				int len = fullEnd - start + (to - from - full);
+				// 取首字母的音节都只有一个字母时与全拼NGram相同[如简拼词元]，不再重复生成
+				if (len != ends[to - 1] - start && len >= minGram && len <= maxGram) {
+					if (buffer.length < len) {
+						buffer = new char[Math.max(len, buffer.length * 2)];
+					}
+					System.arraycopy(source, start, buffer, 0, fullEnd - start);
+					int pos = fullEnd - start;
+					for (int i = from + full; i < to; i++) {
+						buffer[pos++] = source[start(i)];
+					}
+					length = len;
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 移动到下一个(from, to, full)组合
+	 * @return 当前组合是否有效
+	 */
+	private boolean advance() {
+		// 全拼个数从to-from-1递减到1
+		full--;
+		if (full >= 1) {
+			return true;
+		}
+		to++;
+		if (toEnd || to > count) {
+			from++;
+			to = toEnd ? count : from + 2;
+		}
+		full = to - from;
+		return false;
+	}
+
+	private int start(int index) {
+		return index == 0 ? 0 : ends[index - 1];
+	}
+
+	char[] buffer() {
+		return buffer;
+	}
+
+	int length() {
+		return length;
+	}
+
+	/**
+	 * 当前结果对应的音节在原词元中的起始位置
+	 * @return
+	 */
+	int startOffset() {
+		return start(from);
+	}
+
+	/**
+	 * 当前结果对应的音节在原词元中的结束位置
+	 * @return
+	 */
+	int endOffset() {
+		return ends[to - 1];
+	}
+}
@@ -0,0 +1,56 @@
+package org.apache.lucene.analysis.pinyin.lucene5;
+
+import org.apache.lucene.util.Attribute;
+
+/**
+ * 当前字段值的词元预算状态[PinyinTokenFilter与下游的NGram过滤器共享]
+ *
+ * 参与预算的过滤器每输出一个词元加1，下游过滤器每读入一个词元减1，因此计数始终是链末端已输出的词元数；
+ * PinyinTokenFilter按TokenBudget计算降级级别，NGram过滤器在级别不低于TokenBudget.LEVEL_NO_NGRAM时不再切分，
+ * 词元数达到maxTokens时放弃正在切分的词元剩余的NGram[一个长拼音的NGram也不会超出预算]。
+ * 这是整个字段值的状态，clearAttributes不会清除，由各过滤器在reset时调用restart清零。
+ * @author Lanxiaowei
+ *
+ */
+public interface TokenBudgetAttribute extends Attribute {
+	/**
+	 * 当前字段值已输出的词元数
+	 * @return
+	 */
+	public int getTokens();
+
+	/**
+	 * 累加输出的词元数
+	 * @param delta 输出加1，下游读入减1
+	 */
+	public void addTokens(int delta);
+
+	/**
+	 * 当前的降级级别[TokenBudget.LEVEL_*]
+	 * @return
+	 */
+	public int getLevel();
+
+	/**
+	 * 设置降级级别
+	 * @param level TokenBudget.LEVEL_*
+	 */
+	public void setLevel(int level);
+
+	/**
+	 * 设置每个字段值最多输出的词元数[由PinyinTokenFilter按TokenBudget设置，restart不会清除]
+	 * @param maxTokens 小于等于0表示不限制
+	 */
+	public void setMaxTokens(int maxTokens);
+
+	/**
+	 * 已输出的词元数是否达到maxTokens
+	 * @return 不限制时返回false
+	 */
+	public boolean isExhausted();
+
+	/**
+	 * 开始新的字段值：清零词元数和降级级别
+	 */
+	public void restart();
+}
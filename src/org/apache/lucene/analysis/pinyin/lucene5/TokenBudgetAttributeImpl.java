@@ -0,0 +1,89 @@
+package org.apache.lucene.analysis.pinyin.lucene5;
+
+import org.apache.lucene.util.AttributeImpl;
+import org.apache.lucene.util.AttributeReflector;
+
+/**
+ * TokenBudgetAttribute的默认实现
+ * @author Lanxiaowei
+ *
+ */
+public class TokenBudgetAttributeImpl extends AttributeImpl implements TokenBudgetAttribute, Cloneable {
+	private int tokens;
+	private int level;
+	private int maxTokens;
+
+	@Override
+	public int getTokens() {
+		return tokens;
+	}
+
+	@Override
+	public void addTokens(int delta) {
+		tokens += delta;
+	}
+
+	@Override
+	public int getLevel() {
+		return level;
+	}
+
+	@Override
+	public void setLevel(int level) {
+		this.level = level;
+	}
+
+	@Override
+	public void setMaxTokens(int maxTokens) {
+		this.maxTokens = maxTokens;
+	}
+
+	@Override
+	public boolean isExhausted() {
+		return maxTokens > 0 && tokens >= maxTokens;
+	}
+
+	@Override
+	public void restart() {
+		tokens = 0;
+		level = 0;
+	}
+
+	@Override
+	public void clear() {
+		//整个字段值的状态，不随每个词元清除
+	}
+
+	@Override
+	public void copyTo(AttributeImpl target) {
+		TokenBudgetAttribute t = (TokenBudgetAttribute) target;
+		t.restart();
+		t.addTokens(tokens);
+		t.setLevel(level);
+		t.setMaxTokens(maxTokens);
+	}
+
+	@Override
+	public void reflectWith(AttributeReflector reflector) {
+		reflector.reflect(TokenBudgetAttribute.class, "tokens", tokens);
+		reflector.reflect(TokenBudgetAttribute.class, "level", level);
+		reflector.reflect(TokenBudgetAttribute.class, "maxTokens", maxTokens);
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (other == this) {
+			return true;
+		}
+		if (!(other instanceof TokenBudgetAttributeImpl)) {
+			return false;
+		}
+		TokenBudgetAttributeImpl o = (TokenBudgetAttributeImpl) other;
+		return tokens == o.tokens && level == o.level && maxTokens == o.maxTokens;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * (31 * tokens + level) + maxTokens;
+	}
+}
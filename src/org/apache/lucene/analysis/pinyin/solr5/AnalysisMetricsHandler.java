@@ -0,0 +1,85 @@
+package org.apache.lucene.analysis.pinyin.solr5;
+
+import java.util.List;
+
+import org.apache.lucene.analysis.pinyin.utils.AnalysisMetrics;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+import org.apache.solr.handler.RequestHandlerBase;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.response.SolrQueryResponse;
+
+/**
+ * 查看拼音TokenFilter分析统计的请求处理器
+ *
+ * 在solrconfig.xml中注册：&lt;requestHandler name="/pinyin/metrics" class="...AnalysisMetricsHandler"/&gt;，
+ * TokenFilter工厂配置了metrics="字段名"时才有统计。请求返回每个统计的输入/输出词元数、膨胀系数、
+ * 多音字展开直方图、采样的每个词元耗时和超出词元预算的降级次数，参数reset=true时返回后清零。
+ * 同样的统计也出现在本处理器的Solr统计信息[Plugins/Stats、JMX]中，并作为独立的MBean注册。
+ * @author Lanxiaowei
+ *
+ */
+public class AnalysisMetricsHandler extends RequestHandlerBase {
+	@Override
+	public void handleRequestBody(SolrQueryRequest req, SolrQueryResponse rsp) throws Exception {
+		boolean reset = req.getParams().getBool("reset", false);
+		List<AnalysisMetrics> registered = AnalysisMetrics.getRegistered();
+		NamedList<Object> metrics = new SimpleOrderedMap<Object>();
+		for (AnalysisMetrics m : registered) {
+			metrics.add(m.getFilter() + ":" + m.getName(), toNamedList(m));
+			if (reset) {
+				m.resetStatistics();
+			}
+		}
+		rsp.add("metrics", metrics);
+	}
+
+	@Override
+	public NamedList<Object> getStatistics() {
+		NamedList<Object> statistics = super.getStatistics();
+		for (AnalysisMetrics m : AnalysisMetrics.getRegistered()) {
+			String prefix = m.getFilter() + "." + m.getName() + ".";
+			statistics.add(prefix + "documents", m.getDocuments());
+			statistics.add(prefix + "tokensIn", m.getTokensIn());
+			statistics.add(prefix + "tokensOut", m.getTokensOut());
+			statistics.add(prefix + "expansionFactor", m.getExpansionFactor());
+			statistics.add(prefix + "meanNanosPerToken", m.getMeanNanosPerToken());
+			statistics.add(prefix + "degradedToNoNGram", m.getDegradedToNoNGram());
+			statistics.add(prefix + "degradedToShortPinyin", m.getDegradedToShortPinyin());
+			statistics.add(prefix + "degradedToOriginalOnly", m.getDegradedToOriginalOnly());
+			statistics.add(prefix + "degradedTerms", m.getDegradedTerms());
+		}
+		return statistics;
+	}
+
+	private static NamedList<Object> toNamedList(AnalysisMetrics m) {
+		NamedList<Object> result = new SimpleOrderedMap<Object>();
+		result.add("filter", m.getFilter());
+		result.add("name", m.getName());
+		result.add("documents", m.getDocuments());
+		result.add("tokensIn", m.getTokensIn());
+		result.add("tokensOut", m.getTokensOut());
+		result.add("expansionFactor", m.getExpansionFactor());
+		result.add("sampledTokens", m.getSampledTokens());
+		result.add("meanNanosPerToken", m.getMeanNanosPerToken());
+		String[] buckets = m.getExpansionBuckets();
+		long[] histogram = m.getExpansionHistogram();
+		NamedList<Object> expansion = new SimpleOrderedMap<Object>();
+		for (int i = 0; i < buckets.length; i++) {
+			expansion.add(buckets[i], histogram[i]);
+		}
+		result.add("expansionHistogram", expansion);
+		NamedList<Object> degradations = new SimpleOrderedMap<Object>();
+		degradations.add("noNGram", m.getDegradedToNoNGram());
+		degradations.add("shortPinyin", m.getDegradedToShortPinyin());
+		degradations.add("originalOnly", m.getDegradedToOriginalOnly());
+		degradations.add("terms", m.getDegradedTerms());
+		result.add("degradations", degradations);
+		return result;
+	}
+
+	@Override
+	public String getDescription() {
+		return "Token counts, expansion, sampled timing and budget degradations of the pinyin token filters";
+	}
+}
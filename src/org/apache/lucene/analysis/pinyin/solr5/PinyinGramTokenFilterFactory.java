@@ -0,0 +1,135 @@
+package org.apache.lucene.analysis.pinyin.solr5;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.apache.lucene.analysis.TokenFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.pinyin.lucene5.PinyinGramTokenFilter;
+import org.apache.lucene.analysis.pinyin.utils.Constant;
+import org.apache.lucene.analysis.pinyin.utils.PinyinCache;
+import org.apache.lucene.analysis.pinyin.utils.PolyphoneDictionary;
+import org.apache.lucene.analysis.pinyin.utils.SharedResourceRegistry.Handle;
+import org.apache.lucene.analysis.util.ResourceLoader;
+import org.apache.lucene.analysis.util.ResourceLoaderAware;
+import org.apache.lucene.analysis.util.TokenFilterFactory;
+/**
+ * PinyinGramTokenFilter工厂类[替代PinyinTokenFilterFactory + PinyinNGramTokenFilterFactory/PinyinEdgeNGramTokenFilterFactory]
+ * @author Lanxiaowei
+ *
+ */
+public class PinyinGramTokenFilterFactory extends TokenFilterFactory implements ResourceLoaderAware {
+	/**是否输出原中文*/
+	private boolean outChinese;
+	/**是否只转换简拼*/
+	private boolean shortPinyin;
+	/**是否转换全拼+简拼*/
+	private boolean pinyinAll;
+	/**中文词组长度过滤，默认超过minTermLength长度的中文才转换拼音*/
+	private int minTermLength;
+	/**每个词最多输出的全拼/简拼组合数，0表示不限制*/
+	private int maxCombinations;
+	/**共享拼音缓存的容量，小于等于0表示不使用缓存*/
+	private int cacheSize;
+	/**节点内共享的拼音缓存，cacheSize小于等于0时为null*/
+	private PinyinCache cache;
+	private Handle<PinyinCache> cacheHandle;
+	/**多音词词典文件路径，default表示使用自带词典，none表示不使用*/
+	private String polyphoneDict;
+	/**多音词词典*/
+	private PolyphoneDictionary dictionary;
+	private Handle<PolyphoneDictionary> dictionaryHandle;
+	private int minGram;
+	private int maxGram;
+	/**是否只切分EdgeNGram*/
+	private boolean edgesOnly;
+	/**EdgeNGram的方向：front/back*/
+	private String side;
+	/** 是否需要对中文进行NGram[默认为false] */
+	private boolean nGramChinese;
+	/** 是否需要对纯数字进行NGram[默认为false] */
+	private boolean nGramNumber;
+	/** 拼音NGram是否只从音节边界开始[默认为false] */
+	private boolean syllableStart;
+	/** 拼音NGram是否只在音节边界结束[默认为false] */
+	private boolean syllableEnd;
+	/** 是否生成全拼与首字母混合的NGram[默认为false] */
+	private boolean mixInitials;
+	/** 是否在同一位置上去除重复的词元[默认为false] */
+	private boolean dedupGrams;
+
+	public PinyinGramTokenFilterFactory(Map<String, String> args) {
+		super(args);
+		this.outChinese = getBoolean(args, "outChinese", Constant.DEFAULT_OUT_CHINESE);
+		this.shortPinyin = getBoolean(args, "shortPinyin", Constant.DEFAULT_SHORT_PINYIN);
+		this.pinyinAll = getBoolean(args, "pinyinAll", Constant.DEFAULT_PINYIN_ALL);
+		this.minTermLength = getInt(args, "minTermLength", Constant.DEFAULT_MIN_TERM_LRNGTH);
+		this.maxCombinations = getInt(args, "maxCombinations", Constant.DEFAULT_MAX_COMBINATIONS);
+		this.cacheSize = getInt(args, "cacheSize", Constant.DEFAULT_CACHE_SIZE);
+		this.polyphoneDict = get(args, "polyphoneDict", Constant.DEFAULT_POLYPHONE_DICT);
+		this.minGram = getInt(args, "minGram", Constant.DEFAULT_MIN_GRAM);
+		this.maxGram = getInt(args, "maxGram", Constant.DEFAULT_MAX_GRAM);
+		this.edgesOnly = getBoolean(args, "edgesOnly", Constant.DEFAULT_EDGES_ONLY);
+		this.side = get(args, "side", Constant.DEFAULT_SIDE_FRONT);
+		this.nGramChinese = getBoolean(args, "nGramChinese", Constant.DEFAULT_NGRAM_CHINESE);
+		this.nGramNumber = getBoolean(args, "nGramNumber", Constant.DEFAULT_NGRAM_NUMBER);
+		this.syllableStart = getBoolean(args, "syllableStart", Constant.DEFAULT_SYLLABLE_START);
+		this.syllableEnd = getBoolean(args, "syllableEnd", Constant.DEFAULT_SYLLABLE_END);
+		this.mixInitials = getBoolean(args, "mixInitials", Constant.DEFAULT_MIX_INITIALS);
+		this.dedupGrams = getBoolean(args, "dedupGrams", Constant.DEFAULT_DEDUP_GRAMS);
+	}
+
+	@Override
+	public void inform(ResourceLoader loader) throws IOException {
+		//词典、缓存从节点内共享的注册表获取，多个SolrCore只保留一份，最后一个引用释放后回收
+		Handle<PolyphoneDictionary> dictionaryHandle = SharedPinyinResources.acquireDictionary(loader, this.polyphoneDict);
+		Handle<PinyinCache> cacheHandle;
+		try {
+			cacheHandle = SharedPinyinResources.acquireCache(this.cacheSize);
+		} catch (IOException e) {
+			SharedPinyinResources.release(dictionaryHandle);
+			throw e;
+		}
+		SharedPinyinResources.release(this.dictionaryHandle);
+		SharedPinyinResources.release(this.cacheHandle);
+		this.dictionaryHandle = dictionaryHandle;
+		this.cacheHandle = cacheHandle;
+		this.dictionary = SharedPinyinResources.get(dictionaryHandle);
+		this.cache = SharedPinyinResources.get(cacheHandle);
+	}
+
+	public TokenFilter create(TokenStream input) {
+		return new PinyinGramTokenFilter(input, this.shortPinyin, this.pinyinAll,
+				this.outChinese, this.minTermLength, this.maxCombinations, this.cache, this.dictionary,
+				this.edgesOnly, this.side, this.minGram, this.maxGram, this.nGramChinese, this.nGramNumber,
+				this.syllableStart, this.syllableEnd, this.mixInitials, this.dedupGrams);
+	}
+
+	public int getMinGram() {
+		return minGram;
+	}
+
+	public int getMaxGram() {
+		return maxGram;
+	}
+
+	public boolean isEdgesOnly() {
+		return edgesOnly;
+	}
+
+	public String getSide() {
+		return side;
+	}
+
+	public PolyphoneDictionary getDictionary() {
+		return dictionary;
+	}
+
+	/**
+	 * 共享的拼音缓存[可读取命中、未命中、淘汰次数]，未启用缓存时返回null
+	 * @return
+	 */
+	public PinyinCache getCache() {
+		return cache;
+	}
+}
@@ -0,0 +1,49 @@
+package org.apache.lucene.analysis.pinyin.solr5;
+
+import java.io.IOException;
+
+import org.apache.lucene.analysis.pinyin.lucene5.PinyinLookup;
+import org.apache.lucene.analysis.pinyin.lucene5.PinyinSuggester;
+import org.apache.lucene.analysis.pinyin.utils.Constant;
+import org.apache.lucene.analysis.pinyin.utils.PolyphoneDictionary;
+import org.apache.lucene.analysis.pinyin.utils.SharedResourceRegistry.Handle;
+import org.apache.lucene.search.suggest.Lookup;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.spelling.suggest.LookupFactory;
+
+/**
+ * PinyinLookup工厂类[在solrconfig.xml的suggester中配置lookupImpl]
+ *
+ * 可选参数：maxCombinations 每个词条最多展开的拼音组合数，polyphoneDict 多音词词典(default、none或词典文件路径)。
+ * @author Lanxiaowei
+ *
+ */
+public class PinyinLookupFactory extends LookupFactory {
+	/**持久化FST的文件名*/
+	private static final String FILENAME = "pinyin_suggest.bin";
+
+	@Override
+	public Lookup create(@SuppressWarnings("rawtypes") NamedList params, SolrCore core) {
+		Object maxCombinations = params.get("maxCombinations");
+		Object polyphoneDict = params.get("polyphoneDict");
+		String dict = polyphoneDict == null ? Constant.DEFAULT_POLYPHONE_DICT : polyphoneDict.toString();
+		Handle<PolyphoneDictionary> dictionaryHandle;
+		try {
+			//与拼音TokenFilter共用SharedResourceRegistry中的词典，相同内容的词典在节点内只加载一份
+			dictionaryHandle = SharedPinyinResources.acquireDictionary(core.getResourceLoader(), dict);
+		} catch (IOException e) {
+			throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, "Unable to load polyphoneDict " + dict, e);
+		}
+		PinyinSuggester suggester = new PinyinSuggester(maxCombinations == null ?
+				Constant.DEFAULT_SUGGEST_MAX_COMBINATIONS : Integer.parseInt(maxCombinations.toString()),
+				SharedPinyinResources.get(dictionaryHandle));
+		return new PinyinLookup(suggester, dictionaryHandle);
+	}
+
+	@Override
+	public String storeFileName() {
+		return FILENAME;
+	}
+}
@@ -1,24 +1,44 @@
 package org.apache.lucene.analysis.pinyin.solr5;
 
+import java.io.IOException;
 import java.util.Map;
 
 import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.pinyin.lucene5.PinyinNGramTokenFilter;
+import org.apache.lucene.analysis.pinyin.utils.AnalysisMetrics;
 import org.apache.lucene.analysis.pinyin.utils.Constant;
+import org.apache.lucene.analysis.pinyin.utils.SharedResourceRegistry.Handle;
+import org.apache.lucene.analysis.util.ResourceLoader;
+import org.apache.lucene.analysis.util.ResourceLoaderAware;
 import org.apache.lucene.analysis.util.TokenFilterFactory;
 /**
  * PinyinNGramTokenFilter工厂类
  * @author Lanxiaowei
  *
  */
-public class PinyinNGramTokenFilterFactory extends TokenFilterFactory {
+public class PinyinNGramTokenFilterFactory extends TokenFilterFactory implements ResourceLoaderAware {
 	private int minGram;
 	private int maxGram;
 	/** 是否需要对中文进行NGram[默认为false] */
 	private boolean nGramChinese;
 	/** 是否需要对纯数字进行NGram[默认为false] */
 	private boolean nGramNumber;
+	/** 拼音NGram是否只从音节边界开始[默认为false] */
+	private boolean syllableStart;
+	/** 拼音NGram是否只在音节边界结束[默认为false] */
+	private boolean syllableEnd;
+	/** 是否生成全拼与首字母混合的NGram[默认为false] */
+	private boolean mixInitials;
+	/** 是否在同一位置上去除重复的词元[默认为false] */
+	private boolean dedupGrams;
+	/** 分析统计名称[通常为字段名]，不配置时不统计 */
+	private String metricsName;
+	/** 每多少次incrementToken调用计时一次 */
+	private int metricsSampleInterval;
+	/** 分析统计，同名的统计在节点内共享并注册为MBean */
+	private AnalysisMetrics metrics;
+	private Handle<AnalysisMetrics> metricsHandle;
 
 	public PinyinNGramTokenFilterFactory(Map<String, String> args) {
 		super(args);
@@ -27,10 +47,35 @@ public class PinyinNGramTokenFilterFactory extends TokenFilterFactory {
 		this.maxGram = getInt(args, "maxGram", Constant.DEFAULT_MAX_GRAM);
 		this.nGramChinese = getBoolean(args, "nGramChinese", Constant.DEFAULT_NGRAM_CHINESE);
 		this.nGramNumber = getBoolean(args, "nGramNumber", Constant.DEFAULT_NGRAM_NUMBER);
+		this.syllableStart = getBoolean(args, "syllableStart", Constant.DEFAULT_SYLLABLE_START);
+		this.syllableEnd = getBoolean(args, "syllableEnd", Constant.DEFAULT_SYLLABLE_END);
+		this.mixInitials = getBoolean(args, "mixInitials", Constant.DEFAULT_MIX_INITIALS);
+		this.dedupGrams = getBoolean(args, "dedupGrams", Constant.DEFAULT_DEDUP_GRAMS);
+		this.metricsName = get(args, "metrics");
+		this.metricsSampleInterval = getInt(args, "metricsSampleInterval", Constant.DEFAULT_METRICS_SAMPLE_INTERVAL);
+	}
+
+	@Override
+	public void inform(ResourceLoader loader) throws IOException {
+		Handle<AnalysisMetrics> metricsHandle = SharedPinyinResources.acquireMetrics(PinyinNGramTokenFilter.class,
+				this.metricsName, this.metricsSampleInterval);
+		SharedPinyinResources.release(this.metricsHandle);
+		this.metricsHandle = metricsHandle;
+		this.metrics = SharedPinyinResources.get(metricsHandle);
 	}
 
 	public TokenFilter create(TokenStream input) {
 		return new PinyinNGramTokenFilter(input, this.minGram, this.maxGram,
-				this.nGramChinese,this.nGramNumber);
+				this.nGramChinese,this.nGramNumber,
+				this.syllableStart, this.syllableEnd, this.mixInitials, this.dedupGrams,
+				this.metrics);
+	}
+
+	/**
+	 * 分析统计[输入/输出词元数、采样耗时]，未配置metrics时返回null
+	 * @return
+	 */
+	public AnalysisMetrics getMetrics() {
+		return metrics;
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,508 @@
+package org.apache.lucene.analysis.pinyin.solr5;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.pinyin.lucene5.PinyinAnalyzer;
+import org.apache.lucene.analysis.pinyin.lucene5.PinyinAnalyzer.FieldConfig;
+import org.apache.lucene.analysis.pinyin.lucene5.PinyinAnalyzer.GramMode;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.FlagsAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PayloadAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+import org.apache.lucene.analysis.util.AbstractAnalysisFactory;
+import org.apache.lucene.analysis.util.CharFilterFactory;
+import org.apache.lucene.analysis.util.FilesystemResourceLoader;
+import org.apache.lucene.analysis.util.ResourceLoader;
+import org.apache.lucene.analysis.util.ResourceLoaderAware;
+import org.apache.lucene.analysis.util.TokenFilterFactory;
+import org.apache.lucene.analysis.util.TokenizerFactory;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.util.AttributeFactory;
+import org.apache.lucene.document.TextField;
+import org.apache.solr.analysis.TokenizerChain;
+import org.apache.solr.schema.JsonPreAnalyzedParser;
+import org.apache.solr.schema.PreAnalyzedField.PreAnalyzedParser;
+import org.apache.solr.schema.SimplePreAnalyzedParser;
+import org.noggit.JSONUtil;
+import org.noggit.ObjectBuilder;
+
+/**
+ * 离线批量分词：在ForkJoin线程池中用分析器处理文档，把指定字段输出为Solr PreAnalyzedField格式
+ *
+ * 分词可以放到单独的机器上并利用所有CPU核，Solr只需解析已经分好的词元。
+ * 序列化直接使用Solr自带的JsonPreAnalyzedParser/SimplePreAnalyzedParser，
+ * 输出与Solr中PreAnalyzedField的格式完全一致；只输出会写入索引的属性，分词链产生的词元与schema中
+ * 配置的分词链相同(例如PinyinGramTokenFilter与PinyinTokenFilter + PinyinNGramTokenFilter)时，输出逐字节相同。
+ *
+ * 命令行用法(输入输出均为每行一个JSON文档)：
+ * java PinyinPreAnalyzer -fields title,name [-format json|simple] [-stored] [-threads N] [-batch N]
+ * [-conf dir] [-charFilter name k=v ...] -tokenizer name [k=v ...] [-filter name k=v ...]... [-input file] [-output file]
+ *
+ * -charFilter、-tokenizer、-filter与schema中字段分词链的charFilter、tokenizer、filter元素一一对应：
+ * name为工厂的完整类名或SPI名称，其后的k=v即元素上的属性，直接传给同一个工厂类，
+ * 词典等资源文件相对-conf目录(默认当前目录)加载，例如
+ * -tokenizer org.apache.lucene.analysis.ik.IKTokenizerFactory useSmart=true
+ * -filter org.apache.lucene.analysis.pinyin.solr5.PinyinTokenFilterFactory shortPinyin=true minTermLength=2
+ * 不指定-tokenizer时使用PinyinAnalyzer的默认分词链，可用[-useSmart] [-gram none|ngram|edge] [-minGram N]
+ * [-maxGram N] [-shortPinyin]调整。
+ * @author Lanxiaowei
+ *
+ */
+public class PinyinPreAnalyzer {
+	/**每个子任务最多处理的文档数*/
+	private static final int DEFAULT_THRESHOLD = 16;
+	/**命令行每批读入的文档数*/
+	private static final int DEFAULT_BATCH_SIZE = 1000;
+
+	private final Analyzer analyzer;
+	private final PreAnalyzedParser parser;
+	/**是否同时输出存储值*/
+	private final boolean stored;
+	private final ForkJoinPool pool;
+	private final int threshold;
+
+	public PinyinPreAnalyzer(Analyzer analyzer, PreAnalyzedParser parser, boolean stored, ForkJoinPool pool) {
+		this(analyzer, parser, stored, pool, DEFAULT_THRESHOLD);
+	}
+
+	/**
+	 * @param analyzer 分析器[各线程通过分析器自身的ReuseStrategy复用分词链]
+	 * @param parser PreAnalyzedField的序列化格式
+	 * @param stored 是否同时输出存储值
+	 * @param pool 执行分词的线程池
+	 * @param threshold 每个子任务最多处理的文档数
+	 */
+	public PinyinPreAnalyzer(Analyzer analyzer, PreAnalyzedParser parser, boolean stored, ForkJoinPool pool,
+			int threshold) {
+		if (threshold < 1) {
+			throw new IllegalArgumentException("threshold must be greater than zero");
+		}
+		this.analyzer = analyzer;
+		this.parser = parser;
+		this.stored = stored;
+		this.pool = pool;
+		this.threshold = threshold;
+	}
+
+	/**
+	 * 分析一个字段值
+	 * @param fieldName 字段名
+	 * @param value 字段值
+	 * @return PreAnalyzedField格式的字符串
+	 * @throws IOException
+	 */
+	public String analyze(String fieldName, String value) throws IOException {
+		TokenStream tokenStream = this.analyzer.tokenStream(fieldName, value);
+		try {
+			tokenStream.reset();
+			Field field = new Field(fieldName, value, this.stored ? TextField.TYPE_STORED : TextField.TYPE_NOT_STORED);
+			field.setTokenStream(new IndexedAttributes(tokenStream));
+			String formatted = this.parser.toFormattedString(field);
+			tokenStream.end();
+			return formatted;
+		} finally {
+			tokenStream.close();
+		}
+	}
+
+	/**
+	 * 并行分析一批文档
+	 * @param docs 文档[字段名 -> 字段值，多值字段的值为Collection]
+	 * @param fields 需要分析的字段，其余字段原样输出
+	 * @return 与docs一一对应的新文档
+	 * @throws IOException
+	 */
+	public List<Map<String, Object>> analyze(List<Map<String, Object>> docs, Set<String> fields) throws IOException {
+		//预先填充，各个任务只写入自己区间内的下标
+		List<Map<String, Object>> results = new ArrayList<Map<String, Object>>(
+				Collections.<Map<String, Object>>nCopies(docs.size(), null));
+		try {
+			this.pool.invoke(new AnalyzeTask(docs, fields, results, 0, docs.size()));
+		} catch (AnalysisException e) {
+			throw e.getCause();
+		}
+		return results;
+	}
+
+	private Map<String, Object> analyzeDocument(Map<String, Object> doc, Set<String> fields) throws IOException {
+		Map<String, Object> result = new LinkedHashMap<String, Object>();
+		for (Map.Entry<String, Object> entry : doc.entrySet()) {
+			Object value = entry.getValue();
+			if (value != null && fields.contains(entry.getKey())) {
+				if (value instanceof Collection) {
+					List<String> values = new ArrayList<String>(((Collection<?>) value).size());
+					for (Object v : (Collection<?>) value) {
+						values.add(analyze(entry.getKey(), v.toString()));
+					}
+					value = values;
+				} else {
+					value = analyze(entry.getKey(), value.toString());
+				}
+			}
+			result.put(entry.getKey(), value);
+		}
+		return result;
+	}
+
+	/**
+	 * 只暴露PreAnalyzedField能解析并写入索引的属性[词元、偏移、位置增量、类型、标志、payload]
+	 *
+	 * Solr的序列化器会输出TokenStream上的所有属性，拼音过滤器内部使用的属性(如音节边界)
+	 * 不会写入索引，去掉后同样的词元无论由哪条分词链产生，序列化结果都相同。
+	 */
+	private static final class IndexedAttributes extends TokenStream {
+		private final TokenStream source;
+		private final CharTermAttribute sourceTermAtt;
+		private final OffsetAttribute sourceOffsetAtt;
+		private final PositionIncrementAttribute sourcePosIncrAtt;
+		private final TypeAttribute sourceTypeAtt;
+		private final FlagsAttribute sourceFlagsAtt;
+		private final PayloadAttribute sourcePayloadAtt;
+
+		private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
+		private final OffsetAttribute offsetAtt = addAttribute(OffsetAttribute.class);
+		private final PositionIncrementAttribute posIncrAtt = addAttribute(PositionIncrementAttribute.class);
+		private final TypeAttribute typeAtt = addAttribute(TypeAttribute.class);
+		private final FlagsAttribute flagsAtt;
+		private final PayloadAttribute payloadAtt;
+
+		IndexedAttributes(TokenStream source) {
+			//不使用默认的PackedTokenAttributeImpl，否则会带上位置长度属性
+			super(AttributeFactory.DEFAULT_ATTRIBUTE_FACTORY);
+			this.source = source;
+			this.sourceTermAtt = source.addAttribute(CharTermAttribute.class);
+			this.sourceOffsetAtt = source.addAttribute(OffsetAttribute.class);
+			this.sourcePosIncrAtt = source.addAttribute(PositionIncrementAttribute.class);
+			this.sourceTypeAtt = source.addAttribute(TypeAttribute.class);
+			this.sourceFlagsAtt = source.hasAttribute(FlagsAttribute.class) ? source.getAttribute(FlagsAttribute.class) : null;
+			this.sourcePayloadAtt = source.hasAttribute(PayloadAttribute.class) ? source.getAttribute(PayloadAttribute.class) : null;
+			this.flagsAtt = this.sourceFlagsAtt == null ? null : addAttribute(FlagsAttribute.class);
+			this.payloadAtt = this.sourcePayloadAtt == null ? null : addAttribute(PayloadAttribute.class);
+		}
+
+		@Override
+		public boolean incrementToken() throws IOException {
+			if (!this.source.incrementToken()) {
+				return false;
+			}
+			clearAttributes();
+			this.termAtt.copyBuffer(this.sourceTermAtt.buffer(), 0, this.sourceTermAtt.length());
+			this.offsetAtt.setOffset(this.sourceOffsetAtt.startOffset(), this.sourceOffsetAtt.endOffset());
+			this.posIncrAtt.setPositionIncrement(this.sourcePosIncrAtt.getPositionIncrement());
+			this.typeAtt.setType(this.sourceTypeAtt.type());
+			if (this.flagsAtt != null) {
+				this.flagsAtt.setFlags(this.sourceFlagsAtt.getFlags());
+			}
+			if (this.payloadAtt != null) {
+				this.payloadAtt.setPayload(this.sourcePayloadAtt.getPayload());
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * 把文档区间不断二分，直到不超过threshold个文档
+	 */
+	private final class AnalyzeTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final List<Map<String, Object>> docs;
+		private final Set<String> fields;
+		private final List<Map<String, Object>> results;
+		private final int from;
+		private final int to;
+
+		AnalyzeTask(List<Map<String, Object>> docs, Set<String> fields, List<Map<String, Object>> results,
+				int from, int to) {
+			this.docs = docs;
+			this.fields = fields;
+			this.results = results;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.to - this.from <= threshold) {
+				try {
+					for (int i = this.from; i < this.to; i++) {
+						this.results.set(i, analyzeDocument(this.docs.get(i), this.fields));
+					}
+				} catch (IOException e) {
+					throw new AnalysisException(e);
+				}
+				return;
+			}
+			int mid = (this.from + this.to) >>> 1;
+			invokeAll(new AnalyzeTask(this.docs, this.fields, this.results, this.from, mid),
+					new AnalyzeTask(this.docs, this.fields, this.results, mid, this.to));
+		}
+	}
+
+	/**
+	 * 在线程池中传递IOException
+	 */
+	private static final class AnalysisException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		AnalysisException(IOException cause) {
+			super(cause);
+		}
+
+		@Override
+		public synchronized IOException getCause() {
+			return (IOException) super.getCause();
+		}
+	}
+
+	/**
+	 * 按schema的写法用工厂类构建分词链，与Solr中TokenizerChain的构建方式相同
+	 * @param loader 加载工厂类和词典等资源文件
+	 * @param chain -charFilter name [k=v ...]、-tokenizer name [k=v ...]、-filter name [k=v ...]，按分词链的顺序排列
+	 * @return 分析器
+	 * @throws IOException 工厂加载资源文件失败
+	 * @throws IllegalArgumentException 分词链不合法或有工厂没有读取的参数
+	 */
+	public static Analyzer createAnalyzer(ResourceLoader loader, String... chain) throws IOException {
+		List<CharFilterFactory> charFilters = new ArrayList<CharFilterFactory>();
+		TokenizerFactory tokenizer = null;
+		List<TokenFilterFactory> filters = new ArrayList<TokenFilterFactory>();
+		int i = 0;
+		while (i < chain.length) {
+			String element = chain[i++];
+			if (i == chain.length) {
+				throw new IllegalArgumentException(element + " requires a factory name");
+			}
+			String name = chain[i++];
+			Map<String, String> args = new HashMap<String, String>();
+			while (i < chain.length && !chain[i].startsWith("-")) {
+				int eq = chain[i].indexOf('=');
+				if (eq <= 0) {
+					throw new IllegalArgumentException("Factory arguments must be key=value: " + chain[i]);
+				}
+				args.put(chain[i].substring(0, eq), chain[i].substring(eq + 1));
+				i++;
+			}
+			if ("-charFilter".equals(element)) {
+				charFilters.add(newFactory(loader, CharFilterFactory.class, name, args));
+			} else if ("-tokenizer".equals(element)) {
+				if (tokenizer != null) {
+					throw new IllegalArgumentException("Only one -tokenizer is allowed");
+				}
+				tokenizer = newFactory(loader, TokenizerFactory.class, name, args);
+			} else if ("-filter".equals(element)) {
+				filters.add(newFactory(loader, TokenFilterFactory.class, name, args));
+			} else {
+				throw new IllegalArgumentException("Unknown analysis chain element: " + element);
+			}
+		}
+		if (tokenizer == null) {
+			throw new IllegalArgumentException("-tokenizer is required");
+		}
+		return new TokenizerChain(charFilters.toArray(new CharFilterFactory[charFilters.size()]), tokenizer,
+				filters.toArray(new TokenFilterFactory[filters.size()]));
+	}
+
+	/**
+	 * 与Solr加载schema相同：含"."的按类名加载，否则按SPI名称查找，创建后调用inform加载资源
+	 */
+	private static <T extends AbstractAnalysisFactory> T newFactory(ResourceLoader loader, Class<T> type, String name,
+			Map<String, String> args) throws IOException {
+		Class<? extends T> clazz;
+		if (name.indexOf('.') >= 0) {
+			clazz = loader.findClass(name, type);
+		} else if (type == CharFilterFactory.class) {
+			clazz = CharFilterFactory.lookupClass(name).asSubclass(type);
+		} else if (type == TokenizerFactory.class) {
+			clazz = TokenizerFactory.lookupClass(name).asSubclass(type);
+		} else {
+			clazz = TokenFilterFactory.lookupClass(name).asSubclass(type);
+		}
+		T factory;
+		try {
+			factory = clazz.getConstructor(Map.class).newInstance(args);
+		} catch (InvocationTargetException e) {
+			//工厂对参数的校验错误原样抛出
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalArgumentException("Unable to create " + name, e.getCause());
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalArgumentException("Unable to create " + name, e);
+		}
+		//工厂读取参数时会从args中移除，剩下的是拼错或不支持的参数
+		if (!args.isEmpty()) {
+			throw new IllegalArgumentException("Unknown parameters for " + name + ": " + args);
+		}
+		if (factory instanceof ResourceLoaderAware) {
+			((ResourceLoaderAware) factory).inform(loader);
+		}
+		return factory;
+	}
+
+	public static void main(String[] args) throws IOException {
+		Set<String> fields = new HashSet<String>();
+		String format = "json";
+		boolean stored = false;
+		int threads = Runtime.getRuntime().availableProcessors();
+		int batchSize = DEFAULT_BATCH_SIZE;
+		String input = null;
+		String output = null;
+		String conf = null;
+		List<String> chain = new ArrayList<String>();
+		FieldConfig config = new FieldConfig();
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			if ("-fields".equals(arg)) {
+				fields.addAll(Arrays.asList(args[++i].split(",")));
+			} else if ("-format".equals(arg)) {
+				format = args[++i];
+			} else if ("-stored".equals(arg)) {
+				stored = true;
+			} else if ("-threads".equals(arg)) {
+				threads = Integer.parseInt(args[++i]);
+			} else if ("-batch".equals(arg)) {
+				batchSize = Integer.parseInt(args[++i]);
+			} else if ("-useSmart".equals(arg)) {
+				config.setUseSmart(true);
+			} else if ("-gram".equals(arg)) {
+				config.setGramMode(GramMode.valueOf(args[++i].toUpperCase()));
+			} else if ("-minGram".equals(arg)) {
+				config.setMinGram(Integer.parseInt(args[++i]));
+			} else if ("-maxGram".equals(arg)) {
+				config.setMaxGram(Integer.parseInt(args[++i]));
+			} else if ("-shortPinyin".equals(arg)) {
+				config.setShortPinyin(true);
+			} else if ("-conf".equals(arg)) {
+				conf = args[++i];
+			} else if ("-charFilter".equals(arg) || "-tokenizer".equals(arg) || "-filter".equals(arg)) {
+				//工厂名及其后的k=v参数原样交给createAnalyzer
+				chain.add(arg);
+				while (i + 1 < args.length && !args[i + 1].startsWith("-")) {
+					chain.add(args[++i]);
+				}
+			} else if ("-input".equals(arg)) {
+				input = args[++i];
+			} else if ("-output".equals(arg)) {
+				output = args[++i];
+			} else {
+				usage("Unknown argument: " + arg);
+				return;
+			}
+		}
+		if (fields.isEmpty()) {
+			usage("-fields is required");
+			return;
+		}
+		PreAnalyzedParser parser;
+		if ("json".equalsIgnoreCase(format)) {
+			parser = new JsonPreAnalyzedParser();
+		} else if ("simple".equalsIgnoreCase(format)) {
+			parser = new SimplePreAnalyzedParser();
+		} else {
+			usage("Unknown format: " + format);
+			return;
+		}
+		//IK加载词典时会向标准输出打印日志，构建分析器(词典在此时加载)期间临时重定向到标准错误
+		PrintStream stdout = System.out;
+		Analyzer analyzer;
+		System.setOut(System.err);
+		try {
+			if (chain.isEmpty()) {
+				analyzer = PinyinAnalyzer.builder().defaults(config).build();
+			} else {
+				analyzer = createAnalyzer(new FilesystemResourceLoader(Paths.get(conf == null ? "." : conf)),
+						chain.toArray(new String[chain.size()]));
+			}
+		} catch (IllegalArgumentException e) {
+			System.setOut(stdout);
+			usage(e.getMessage());
+			return;
+		} finally {
+			System.setOut(stdout);
+		}
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		PinyinPreAnalyzer preAnalyzer = new PinyinPreAnalyzer(analyzer, parser, stored, pool);
+		Reader reader = new InputStreamReader(input == null ? System.in : new FileInputStream(input),
+				StandardCharsets.UTF_8);
+		Writer writer = new OutputStreamWriter(output == null ? System.out : new FileOutputStream(output),
+				StandardCharsets.UTF_8);
+		try {
+			BufferedReader lines = new BufferedReader(reader);
+			BufferedWriter out = new BufferedWriter(writer);
+			List<Map<String, Object>> batch = new ArrayList<Map<String, Object>>(batchSize);
+			String line;
+			while ((line = lines.readLine()) != null) {
+				if (line.trim().length() == 0) {
+					continue;
+				}
+				batch.add(parseDocument(line));
+				if (batch.size() == batchSize) {
+					write(preAnalyzer.analyze(batch, fields), out);
+					batch.clear();
+				}
+			}
+			write(preAnalyzer.analyze(batch, fields), out);
+			out.flush();
+		} finally {
+			reader.close();
+			writer.close();
+			pool.shutdown();
+			analyzer.close();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<String, Object> parseDocument(String line) throws IOException {
+		Object doc = ObjectBuilder.fromJSON(line);
+		if (!(doc instanceof Map)) {
+			throw new IOException("Each line must be a JSON object: " + line);
+		}
+		return (Map<String, Object>) doc;
+	}
+
+	private static void write(List<Map<String, Object>> docs, Writer out) throws IOException {
+		for (Map<String, Object> doc : docs) {
+			out.write(JSONUtil.toJSON(doc, -1));
+			out.write('\n');
+		}
+	}
+
+	private static void usage(String message) {
+		System.err.println(message);
+		System.err.println("Usage: java " + PinyinPreAnalyzer.class.getName()
+				+ " -fields f1,f2 [-format json|simple] [-stored] [-threads N] [-batch N] [-conf dir]"
+				+ " [-charFilter name k=v ...] -tokenizer name [k=v ...] [-filter name k=v ...]..."
+				+ " [-input file] [-output file]");
+		System.err.println("Without -tokenizer the default PinyinAnalyzer chain is used:"
+				+ " [-useSmart] [-gram none|ngram|edge] [-minGram N] [-maxGram N] [-shortPinyin]");
+		System.exit(1);
+	}
+}
@@ -0,0 +1,46 @@
+package org.apache.lucene.analysis.pinyin.solr5;
+
+import org.apache.lucene.analysis.pinyin.lucene5.PinyinPrefixQuery;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Query;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.search.QParser;
+import org.apache.solr.search.QParserPlugin;
+import org.apache.solr.search.QueryParsing;
+import org.apache.solr.search.SyntaxError;
+
+/**
+ * PinyinPrefixQuery的查询解析器插件
+ *
+ * 在solrconfig.xml中注册：&lt;queryParser name="pinyin_prefix" class="...PinyinPrefixQParserPlugin"/&gt;，
+ * 查询时使用{!pinyin_prefix f=title_pinyin}chongq，f为只索引整词全拼的字段，未指定时使用df。
+ * @author Lanxiaowei
+ *
+ */
+public class PinyinPrefixQParserPlugin extends QParserPlugin {
+	public static final String NAME = "pinyin_prefix";
+
+	@Override
+	public void init(@SuppressWarnings("rawtypes") NamedList args) {
+	}
+
+	@Override
+	public QParser createParser(String qstr, SolrParams localParams, SolrParams params, SolrQueryRequest req) {
+		return new QParser(qstr, localParams, params, req) {
+			@Override
+			public Query parse() throws SyntaxError {
+				String field = getLocalParams() == null ? null : getLocalParams().get(QueryParsing.F);
+				if (field == null) {
+					field = getParam(CommonParams.DF);
+				}
+				if (field == null) {
+					throw new SyntaxError("Missing field for pinyin prefix query: use f=<field> or df");
+				}
+				return new PinyinPrefixQuery(new Term(field, getString()));
+			}
+		};
+	}
+}
@@ -0,0 +1,24 @@
+package org.apache.lucene.analysis.pinyin.solr5;
+
+import java.util.Map;
+
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.pinyin.lucene5.PinyinSegmentTokenizer;
+import org.apache.lucene.analysis.util.TokenizerFactory;
+import org.apache.lucene.util.AttributeFactory;
+/**
+ * PinyinSegmentTokenizer工厂类[用于查询端切分连续输入的拼音]
+ * @author Lanxiaowei
+ *
+ */
+public class PinyinSegmentTokenizerFactory extends TokenizerFactory {
+
+	public PinyinSegmentTokenizerFactory(Map<String, String> args) {
+		super(args);
+	}
+
+	@Override
+	public Tokenizer create(AttributeFactory attributeFactory) {
+		return new PinyinSegmentTokenizer(attributeFactory);
+	}
+}
@@ -1,18 +1,26 @@
 package org.apache.lucene.analysis.pinyin.solr5;
 
+import java.io.IOException;
 import java.util.Map;
 
 import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.pinyin.lucene5.PinyinTokenFilter;
+import org.apache.lucene.analysis.pinyin.utils.AnalysisMetrics;
 import org.apache.lucene.analysis.pinyin.utils.Constant;
+import org.apache.lucene.analysis.pinyin.utils.PinyinCache;
+import org.apache.lucene.analysis.pinyin.utils.PolyphoneDictionary;
+import org.apache.lucene.analysis.pinyin.utils.SharedResourceRegistry.Handle;
+import org.apache.lucene.analysis.pinyin.utils.TokenBudget;
+import org.apache.lucene.analysis.util.ResourceLoader;
+import org.apache.lucene.analysis.util.ResourceLoaderAware;
 import org.apache.lucene.analysis.util.TokenFilterFactory;
 /**
  * PinyinTokenFilter工厂类
  * @author Lanxiaowei
  *
  */
-public class PinyinTokenFilterFactory extends TokenFilterFactory {
+public class PinyinTokenFilterFactory extends TokenFilterFactory implements ResourceLoaderAware {
 	/**是否输出原中文*/
 	private boolean outChinese;
 	/**是否只转换简拼*/
@@ -21,6 +29,29 @@ public class PinyinTokenFilterFactory extends TokenFilterFactory {
 	private boolean pinyinAll;
 	/**中文词组长度过滤，默认超过minTermLength长度的中文才转换拼音*/
 	private int minTermLength;
+	/**每个词最多输出的全拼/简拼组合数，0表示不限制*/
+	private int maxCombinations;
+	/**共享拼音缓存的容量，小于等于0表示不使用缓存*/
+	private int cacheSize;
+	/**节点内共享的拼音缓存，cacheSize小于等于0时为null*/
+	private PinyinCache cache;
+	private Handle<PinyinCache> cacheHandle;
+	/**多音词词典文件路径，default表示使用自带词典，none表示不使用*/
+	private String polyphoneDict;
+	/**多音词词典*/
+	private PolyphoneDictionary dictionary;
+	private Handle<PolyphoneDictionary> dictionaryHandle;
+	/**是否输出token graph[每个字一个位置，读音叠加在该位置上]*/
+	private boolean graph;
+	/**分析统计名称[通常为字段名]，不配置时不统计*/
+	private String metricsName;
+	/**每多少次incrementToken调用计时一次*/
+	private int metricsSampleInterval;
+	/**分析统计，同名的统计在节点内共享并注册为MBean*/
+	private AnalysisMetrics metrics;
+	private Handle<AnalysisMetrics> metricsHandle;
+	/**每个字段值的词元预算[maxTokens、maxTermCombinations]，不限制时为null*/
+	private TokenBudget budget;
 
 	public PinyinTokenFilterFactory(Map<String, String> args) {
 		super(args);
@@ -28,11 +59,54 @@ public class PinyinTokenFilterFactory extends TokenFilterFactory {
 		this.shortPinyin = getBoolean(args, "shortPinyin", Constant.DEFAULT_SHORT_PINYIN);
 		this.pinyinAll = getBoolean(args, "pinyinAll", Constant.DEFAULT_PINYIN_ALL);
 		this.minTermLength = getInt(args, "minTermLength", Constant.DEFAULT_MIN_TERM_LRNGTH);
+		this.maxCombinations = getInt(args, "maxCombinations", Constant.DEFAULT_MAX_COMBINATIONS);
+		this.cacheSize = getInt(args, "cacheSize", Constant.DEFAULT_CACHE_SIZE);
+		this.polyphoneDict = get(args, "polyphoneDict", Constant.DEFAULT_POLYPHONE_DICT);
+		this.graph = getBoolean(args, "graph", Constant.DEFAULT_GRAPH);
+		this.metricsName = get(args, "metrics");
+		this.metricsSampleInterval = getInt(args, "metricsSampleInterval", Constant.DEFAULT_METRICS_SAMPLE_INTERVAL);
+		int maxTokens = getInt(args, "maxTokens", Constant.DEFAULT_MAX_TOKENS);
+		int maxTermCombinations = getInt(args, "maxTermCombinations", Constant.DEFAULT_MAX_TERM_COMBINATIONS);
+		if (maxTokens > 0 || maxTermCombinations > 0) {
+			this.budget = new TokenBudget(this.metricsName, maxTokens, maxTermCombinations);
+		}
+	}
+
+	@Override
+	public void inform(ResourceLoader loader) throws IOException {
+		//词典、缓存从节点内共享的注册表获取，多个SolrCore只保留一份，最后一个引用释放后回收
+		Handle<PolyphoneDictionary> dictionaryHandle = SharedPinyinResources.acquireDictionary(loader, this.polyphoneDict);
+		Handle<PinyinCache> cacheHandle;
+		Handle<AnalysisMetrics> metricsHandle;
+		try {
+			cacheHandle = SharedPinyinResources.acquireCache(this.cacheSize);
+		} catch (IOException e) {
+			SharedPinyinResources.release(dictionaryHandle);
+			throw e;
+		}
+		try {
+			metricsHandle = SharedPinyinResources.acquireMetrics(PinyinTokenFilter.class, this.metricsName,
+					this.metricsSampleInterval);
+		} catch (IOException e) {
+			SharedPinyinResources.release(dictionaryHandle);
+			SharedPinyinResources.release(cacheHandle);
+			throw e;
+		}
+		SharedPinyinResources.release(this.dictionaryHandle);
+		SharedPinyinResources.release(this.cacheHandle);
+		SharedPinyinResources.release(this.metricsHandle);
+		this.dictionaryHandle = dictionaryHandle;
+		this.cacheHandle = cacheHandle;
+		this.metricsHandle = metricsHandle;
+		this.dictionary = SharedPinyinResources.get(dictionaryHandle);
+		this.cache = SharedPinyinResources.get(cacheHandle);
+		this.metrics = SharedPinyinResources.get(metricsHandle);
 	}
 
 	public TokenFilter create(TokenStream input) {
-		return new PinyinTokenFilter(input, this.shortPinyin,this.outChinese,
-				this.minTermLength);
+		return new PinyinTokenFilter(input, this.shortPinyin,this.pinyinAll,
+				this.outChinese,this.minTermLength,this.maxCombinations,this.cache,this.dictionary,
+				this.graph,this.metrics,this.budget);
 	}
 
 	public boolean isOutChinese() {
@@ -68,4 +142,52 @@ public class PinyinTokenFilterFactory extends TokenFilterFactory {
 	public void setMinTermLength(int minTermLength) {
 		this.minTermLength = minTermLength;
 	}
+
+	public int getMaxCombinations() {
+		return maxCombinations;
+	}
+
+	public void setMaxCombinations(int maxCombinations) {
+		this.maxCombinations = maxCombinations;
+	}
+
+	public boolean isGraph() {
+		return graph;
+	}
+
+	public void setGraph(boolean graph) {
+		this.graph = graph;
+	}
+
+	public String getPolyphoneDict() {
+		return polyphoneDict;
+	}
+
+	public PolyphoneDictionary getDictionary() {
+		return dictionary;
+	}
+
+	/**
+	 * 共享的拼音缓存[可读取命中、未命中、淘汰次数]，未启用缓存时返回null
+	 * @return
+	 */
+	public PinyinCache getCache() {
+		return cache;
+	}
+
+	/**
+	 * 分析统计[输入/输出词元数、多音字展开直方图、采样耗时]，未配置metrics时返回null
+	 * @return
+	 */
+	public AnalysisMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * 每个字段值的词元预算，未配置maxTokens和maxTermCombinations时返回null
+	 * @return
+	 */
+	public TokenBudget getBudget() {
+		return budget;
+	}
 }
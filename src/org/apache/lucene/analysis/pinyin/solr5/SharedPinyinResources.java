@@ -0,0 +1,105 @@
+package org.apache.lucene.analysis.pinyin.solr5;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.lucene.analysis.pinyin.utils.AnalysisMetrics;
+import org.apache.lucene.analysis.pinyin.utils.Constant;
+import org.apache.lucene.analysis.pinyin.utils.PinyinCache;
+import org.apache.lucene.analysis.pinyin.utils.PolyphoneDictionary;
+import org.apache.lucene.analysis.pinyin.utils.SharedResourceRegistry;
+import org.apache.lucene.analysis.pinyin.utils.SharedResourceRegistry.Handle;
+import org.apache.lucene.analysis.util.ResourceLoader;
+
+/**
+ * 拼音相关工厂类从SharedResourceRegistry获取资源的公共方法
+ * @author Lanxiaowei
+ *
+ */
+final class SharedPinyinResources {
+	static final String KIND_POLYPHONE = "polyphone";
+	static final String KIND_ANALYSIS_METRICS = "analysis-metrics";
+
+	private static final SharedResourceRegistry.Parser<PolyphoneDictionary> POLYPHONE_PARSER =
+			new SharedResourceRegistry.Parser<PolyphoneDictionary>() {
+		@Override
+		public PolyphoneDictionary parse(InputStream in) throws IOException {
+			return PolyphoneDictionary.load(in);
+		}
+	};
+
+	private static final SharedResourceRegistry.Factory<PolyphoneDictionary> DEFAULT_POLYPHONE =
+			new SharedResourceRegistry.Factory<PolyphoneDictionary>() {
+		@Override
+		public PolyphoneDictionary create() {
+			//自带词典随类加载，本身就是JVM内唯一的一份
+			return PolyphoneDictionary.getDefault();
+		}
+	};
+
+	private SharedPinyinResources() {
+	}
+
+	/**
+	 * 获取多音词词典
+	 * @param loader
+	 * @param polyphoneDict default、none或词典文件路径
+	 * @return none时返回null
+	 * @throws IOException
+	 */
+	static Handle<PolyphoneDictionary> acquireDictionary(ResourceLoader loader, String polyphoneDict)
+			throws IOException {
+		SharedResourceRegistry registry = SharedResourceRegistry.getInstance();
+		if (Constant.POLYPHONE_DICT_NONE.equalsIgnoreCase(polyphoneDict)) {
+			return null;
+		} else if (Constant.DEFAULT_POLYPHONE_DICT.equalsIgnoreCase(polyphoneDict)) {
+			return registry.acquire(KIND_POLYPHONE, Constant.DEFAULT_POLYPHONE_DICT, DEFAULT_POLYPHONE);
+		}
+		return registry.acquire(KIND_POLYPHONE, loader, polyphoneDict, POLYPHONE_PARSER);
+	}
+
+	/**
+	 * 获取节点内共享的拼音缓存，容量相同的工厂共享同一个缓存
+	 * @param cacheSize 要求的容量，小于等于0表示不使用缓存
+	 * @return 不使用缓存时返回null
+	 * @throws IOException
+	 */
+	static Handle<PinyinCache> acquireCache(int cacheSize) throws IOException {
+		return PinyinCache.acquireShared(cacheSize);
+	}
+
+	/**
+	 * 获取分析统计，同一个TokenFilter类、同名的统计在节点内共享[如多个SolrCore的同一字段]，
+	 * 创建时注册为MBean，最后一个引用释放时注销
+	 * @param filter TokenFilter类
+	 * @param name 统计名称，为null或空时不统计
+	 * @param sampleInterval 每多少次incrementToken调用计时一次
+	 * @return 不统计时返回null
+	 * @throws IOException
+	 */
+	static Handle<AnalysisMetrics> acquireMetrics(final Class<?> filter, final String name, final int sampleInterval)
+			throws IOException {
+		if (name == null || name.trim().isEmpty()) {
+			return null;
+		}
+		return SharedResourceRegistry.getInstance().acquire(KIND_ANALYSIS_METRICS, filter.getName() + ":" + name.trim(),
+				new SharedResourceRegistry.Factory<AnalysisMetrics>() {
+			@Override
+			public AnalysisMetrics create() {
+				AnalysisMetrics metrics = new AnalysisMetrics(filter.getSimpleName(), name.trim(), sampleInterval);
+				metrics.register();
+				return metrics;
+			}
+		});
+	}
+
+	static <T> T get(Handle<T> handle) {
+		return handle == null ? null : handle.get();
+	}
+
+	static void release(Handle<?> handle) {
+		if (handle != null) {
+			handle.close();
+		}
+	}
+}
@@ -0,0 +1,350 @@
+package org.apache.lucene.analysis.pinyin.utils;
+
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * 一个TokenFilter配置[通常对应一个字段]的分析统计：输入/输出词元数、多音字展开直方图、采样的每个词元耗时、
+ * 超出词元预算的降级次数
+ *
+ * 每个TokenFilter实例通过newRecorder得到自己的Recorder，逐个词元只累加Recorder中的普通字段，
+ * 每篇文档结束(end/reset)时才把结果合并到分段计数器中，因此开启统计对分词线程的开销很小，
+ * 并发索引时也几乎没有竞争。耗时只对每sampleInterval次incrementToken调用中的一次计时。
+ * register后以org.apache.lucene.analysis.pinyin:type=AnalysisMetrics,filter=...,name=...注册为MBean，close时注销。
+ * @author Lanxiaowei
+ *
+ */
+public final class AnalysisMetrics implements AnalysisMetricsMBean, Closeable {
+	public static final String JMX_DOMAIN = "org.apache.lucene.analysis.pinyin";
+	/**直方图各区间的上限[包含]*/
+	private static final int[] BUCKET_LIMITS = {0, 1, 2, 4, 8, 16, 32, 64, Integer.MAX_VALUE};
+	private static final String[] BUCKETS = {"0", "1", "2", "3-4", "5-8", "9-16", "17-32", "33-64", ">64"};
+	/**已注册为MBean的统计*/
+	private static final List<AnalysisMetrics> REGISTERED = new CopyOnWriteArrayList<AnalysisMetrics>();
+
+	private final String name;
+	private final String filter;
+	private final int sampleMask;
+	private final StripedCounter documents = new StripedCounter();
+	private final StripedCounter tokensIn = new StripedCounter();
+	private final StripedCounter tokensOut = new StripedCounter();
+	private final StripedCounter sampledTokens = new StripedCounter();
+	private final StripedCounter sampledNanos = new StripedCounter();
+	private final StripedCounter[] expansion = new StripedCounter[BUCKETS.length];
+	/**各级降级的字段值数[下标为TokenBudget.LEVEL_*，0不使用]*/
+	private final StripedCounter[] degradations = new StripedCounter[TokenBudget.LEVEL_ORIGINAL_ONLY + 1];
+	private final StripedCounter degradedTerms = new StripedCounter();
+	private ObjectName objectName;
+
+	/**
+	 * @param filter TokenFilter的类名
+	 * @param name 统计名称
+	 * @param sampleInterval 每多少次incrementToken调用计时一次，向上取整为2的幂
+	 */
+	public AnalysisMetrics(String filter, String name, int sampleInterval) {
+		if (sampleInterval < 1) {
+			throw new IllegalArgumentException("sampleInterval must be greater than zero");
+		}
+		this.filter = filter;
+		this.name = name;
+		int interval = 1;
+		while (interval < sampleInterval && interval < (1 << 30)) {
+			interval <<= 1;
+		}
+		this.sampleMask = interval - 1;
+		for (int i = 0; i < this.expansion.length; i++) {
+			this.expansion[i] = new StripedCounter();
+		}
+		for (int i = 0; i < this.degradations.length; i++) {
+			this.degradations[i] = new StripedCounter();
+		}
+	}
+
+	/**
+	 * 为一个TokenFilter实例创建记录器
+	 * @return
+	 */
+	public Recorder newRecorder() {
+		return new Recorder();
+	}
+
+	/**
+	 * 注册为MBean[同名的MBean已存在时不注册]
+	 * @return 是否注册成功
+	 */
+	public synchronized boolean register() {
+		if (this.objectName != null) {
+			return true;
+		}
+		try {
+			ObjectName objectName = new ObjectName(JMX_DOMAIN + ":type=AnalysisMetrics,filter="
+					+ ObjectName.quote(this.filter) + ",name=" + ObjectName.quote(this.name));
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if (server.isRegistered(objectName)) {
+				return false;
+			}
+			server.registerMBean(this, objectName);
+			this.objectName = objectName;
+			REGISTERED.add(this);
+			return true;
+		} catch (JMException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * 注销MBean
+	 */
+	@Override
+	public synchronized void close() {
+		if (this.objectName == null) {
+			return;
+		}
+		REGISTERED.remove(this);
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.objectName);
+		} catch (JMException e) {
+			//已被其他途径注销
+		}
+		this.objectName = null;
+	}
+
+	/**
+	 * 当前已注册为MBean的所有统计
+	 * @return
+	 */
+	public static List<AnalysisMetrics> getRegistered() {
+		return new ArrayList<AnalysisMetrics>(REGISTERED);
+	}
+
+	@Override
+	public String getName() {
+		return this.name;
+	}
+
+	@Override
+	public String getFilter() {
+		return this.filter;
+	}
+
+	@Override
+	public long getDocuments() {
+		return this.documents.sum();
+	}
+
+	@Override
+	public long getTokensIn() {
+		return this.tokensIn.sum();
+	}
+
+	@Override
+	public long getTokensOut() {
+		return this.tokensOut.sum();
+	}
+
+	@Override
+	public double getExpansionFactor() {
+		long in = getTokensIn();
+		return in == 0 ? 0d : (double) getTokensOut() / in;
+	}
+
+	@Override
+	public long getSampledTokens() {
+		return this.sampledTokens.sum();
+	}
+
+	@Override
+	public double getMeanNanosPerToken() {
+		long samples = getSampledTokens();
+		return samples == 0 ? 0d : (double) this.sampledNanos.sum() / samples;
+	}
+
+	@Override
+	public String[] getExpansionBuckets() {
+		return BUCKETS.clone();
+	}
+
+	@Override
+	public long[] getExpansionHistogram() {
+		long[] histogram = new long[this.expansion.length];
+		for (int i = 0; i < histogram.length; i++) {
+			histogram[i] = this.expansion[i].sum();
+		}
+		return histogram;
+	}
+
+	@Override
+	public long getDegradedToNoNGram() {
+		return this.degradations[TokenBudget.LEVEL_NO_NGRAM].sum();
+	}
+
+	@Override
+	public long getDegradedToShortPinyin() {
+		return this.degradations[TokenBudget.LEVEL_SHORT_PINYIN].sum();
+	}
+
+	@Override
+	public long getDegradedToOriginalOnly() {
+		return this.degradations[TokenBudget.LEVEL_ORIGINAL_ONLY].sum();
+	}
+
+	@Override
+	public long getDegradedTerms() {
+		return this.degradedTerms.sum();
+	}
+
+	@Override
+	public void resetStatistics() {
+		this.documents.reset();
+		this.tokensIn.reset();
+		this.tokensOut.reset();
+		this.sampledTokens.reset();
+		this.sampledNanos.reset();
+		for (StripedCounter counter : this.expansion) {
+			counter.reset();
+		}
+		for (StripedCounter counter : this.degradations) {
+			counter.reset();
+		}
+		this.degradedTerms.reset();
+	}
+
+	@Override
+	public String toString() {
+		return "AnalysisMetrics(" + this.filter + ", " + this.name + ", in=" + getTokensIn() + ", out=" + getTokensOut()
+				+ ", meanNanosPerToken=" + getMeanNanosPerToken() + ")";
+	}
+
+	private static int bucket(int outputs) {
+		int i = 0;
+		while (outputs > BUCKET_LIMITS[i]) {
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * 一个TokenFilter实例的记录器[非线程安全，只在分词线程中使用]
+	 */
+	public final class Recorder {
+		private long tokensIn;
+		private long tokensOut;
+		private long sampledTokens;
+		private long sampledNanos;
+		private final long[] expansion = new long[BUCKETS.length];
+		private boolean expanded;
+		private final long[] degradations = new long[TokenBudget.LEVEL_ORIGINAL_ONLY + 1];
+		private long degradedTerms;
+		private boolean degraded;
+		private int calls;
+
+		private Recorder() {
+		}
+
+		/**
+		 * 读入了一个词元
+		 */
+		public void tokenIn() {
+			this.tokensIn++;
+		}
+
+		/**
+		 * 输出了一个词元
+		 */
+		public void tokenOut() {
+			this.tokensOut++;
+		}
+
+		/**
+		 * 一个词元展开出的拼音个数
+		 * @param outputs
+		 */
+		public void expansion(int outputs) {
+			this.expansion[bucket(outputs)]++;
+			this.expanded = true;
+		}
+
+		/**
+		 * 当前字段值降级到了level
+		 * @param level TokenBudget.LEVEL_*
+		 */
+		public void degraded(int level) {
+			this.degradations[level]++;
+			this.degraded = true;
+		}
+
+		/**
+		 * 一个词元展开的拼音个数超出预算而降级
+		 */
+		public void termDegraded() {
+			this.degradedTerms++;
+			this.degraded = true;
+		}
+
+		/**
+		 * 本次incrementToken调用是否需要计时
+		 * @return
+		 */
+		public boolean sample() {
+			return (++this.calls & sampleMask) == 0;
+		}
+
+		/**
+		 * 记录一次计时的incrementToken调用
+		 * @param nanos 耗时[纳秒]
+		 */
+		public void sampled(long nanos) {
+			this.sampledTokens++;
+			this.sampledNanos += nanos;
+		}
+
+		/**
+		 * 把累计的结果合并到共享的统计中并清零[每篇文档结束时调用]
+		 */
+		public void flush() {
+			if (this.tokensIn == 0 && this.tokensOut == 0) {
+				return;
+			}
+			AnalysisMetrics.this.documents.increment();
+			AnalysisMetrics.this.tokensIn.add(this.tokensIn);
+			AnalysisMetrics.this.tokensOut.add(this.tokensOut);
+			this.tokensIn = 0;
+			this.tokensOut = 0;
+			if (this.sampledTokens != 0) {
+				AnalysisMetrics.this.sampledTokens.add(this.sampledTokens);
+				AnalysisMetrics.this.sampledNanos.add(this.sampledNanos);
+				this.sampledTokens = 0;
+				this.sampledNanos = 0;
+			}
+			if (this.expanded) {
+				for (int i = 0; i < this.expansion.length; i++) {
+					if (this.expansion[i] != 0) {
+						AnalysisMetrics.this.expansion[i].add(this.expansion[i]);
+						this.expansion[i] = 0;
+					}
+				}
+				this.expanded = false;
+			}
+			if (this.degraded) {
+				for (int i = 0; i < this.degradations.length; i++) {
+					if (this.degradations[i] != 0) {
+						AnalysisMetrics.this.degradations[i].add(this.degradations[i]);
+						this.degradations[i] = 0;
+					}
+				}
+				if (this.degradedTerms != 0) {
+					AnalysisMetrics.this.degradedTerms.add(this.degradedTerms);
+					this.degradedTerms = 0;
+				}
+				this.degraded = false;
+			}
+		}
+	}
+}
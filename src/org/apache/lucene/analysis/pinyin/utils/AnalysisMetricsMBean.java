@@ -0,0 +1,83 @@
+package org.apache.lucene.analysis.pinyin.utils;
+
+/**
+ * AnalysisMetrics的JMX接口
+ * @author Lanxiaowei
+ *
+ */
+public interface AnalysisMetricsMBean {
+	/**
+	 * 统计名称[通常是字段或字段类型名]
+	 */
+	String getName();
+
+	/**
+	 * TokenFilter的类名
+	 */
+	String getFilter();
+
+	/**
+	 * 已处理的文档[字段值]数
+	 */
+	long getDocuments();
+
+	/**
+	 * 输入的词元数
+	 */
+	long getTokensIn();
+
+	/**
+	 * 输出的词元数
+	 */
+	long getTokensOut();
+
+	/**
+	 * 膨胀系数：输出词元数 / 输入词元数
+	 */
+	double getExpansionFactor();
+
+	/**
+	 * 参与计时的incrementToken调用次数
+	 */
+	long getSampledTokens();
+
+	/**
+	 * 采样得到的每个输出词元的平均耗时[纳秒，包含上游TokenStream的耗时]
+	 */
+	double getMeanNanosPerToken();
+
+	/**
+	 * 多音字展开直方图的区间
+	 */
+	String[] getExpansionBuckets();
+
+	/**
+	 * 多音字展开直方图：每个需要转换拼音的词元输出的拼音个数落在各区间的词元数
+	 */
+	long[] getExpansionHistogram();
+
+	/**
+	 * 超出词元预算后不再切分NGram的字段值数
+	 */
+	long getDegradedToNoNGram();
+
+	/**
+	 * 超出词元预算后只输出简拼的字段值数
+	 */
+	long getDegradedToShortPinyin();
+
+	/**
+	 * 超出词元预算后只输出原词元的字段值数
+	 */
+	long getDegradedToOriginalOnly();
+
+	/**
+	 * 展开的拼音个数超出每个词元的预算而降级的词元数
+	 */
+	long getDegradedTerms();
+
+	/**
+	 * 清零所有统计
+	 */
+	void resetStatistics();
+}
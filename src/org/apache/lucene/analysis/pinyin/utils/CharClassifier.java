@@ -0,0 +1,223 @@
+package org.apache.lucene.analysis.pinyin.utils;
+
+/**
+ * 查表实现的字符分类器[一次遍历词元，按码点统计汉字个数、是否全数字、是否全ASCII、是否包含代理对]
+ *
+ * 汉字按Unicode的Han文字判断，包括扩展A区以及扩展B区等增补平面上的汉字。
+ * 分类结果压缩在一个int中，通过hanCount、isAllDigits等静态方法读取，不创建任何对象。
+ * @author Lanxiaowei
+ *
+ */
+public final class CharClassifier {
+	/**字符类别*/
+	private static final byte OTHER = 0;
+	private static final byte DIGIT = 1;
+	private static final byte HAN = 2;
+	private static final byte SURROGATE = 3;
+
+	/**分类结果标记位*/
+	private static final int ALL_DIGITS = 1;
+	private static final int ALL_ASCII = 1 << 1;
+	private static final int HAS_SURROGATES = 1 << 2;
+	private static final int HAN_SHIFT = 3;
+
+	/**基本平面字符 -> 字符类别*/
+	private static final byte[] BMP = new byte[Character.MAX_VALUE + 1];
+
+	static {
+		for (int c = 0; c <= Character.MAX_VALUE; c++) {
+			BMP[c] = classOf(c);
+		}
+	}
+
+	private CharClassifier() {
+	}
+
+	private static byte classOf(int codePoint) {
+		if (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE) {
+			return SURROGATE;
+		}
+		if (Character.isDigit(codePoint)) {
+			return DIGIT;
+		}
+		if (Character.UnicodeScript.of(codePoint) == Character.UnicodeScript.HAN) {
+			return HAN;
+		}
+		return OTHER;
+	}
+
+	/**
+	 * 对buffer[offset, offset+length)进行分类
+	 * @param buffer 字符数组
+	 * @param offset 起始位置
+	 * @param length 长度
+	 * @return 压缩后的分类结果
+	 */
+	public static int classify(char[] buffer, int offset, int length) {
+		int limit = offset + length;
+		int han = 0;
+		boolean digits = length > 0;
+		boolean ascii = true;
+		boolean surrogates = false;
+		for (int i = offset; i < limit; i++) {
+			char c = buffer[i];
+			if (c < 0x80) {
+				// ASCII快速路径
+				if (c < '0' || c > '9') {
+					digits = false;
+				}
+				continue;
+			}
+			ascii = false;
+			byte type = BMP[c];
+			if (type == SURROGATE) {
+				surrogates = true;
+				if (Character.isHighSurrogate(c) && i + 1 < limit && Character.isLowSurrogate(buffer[i + 1])) {
+					int codePoint = Character.toCodePoint(c, buffer[++i]);
+					type = classOf(codePoint);
+				} else {
+					type = OTHER;
+				}
+			}
+			if (type == HAN) {
+				han++;
+			}
+			if (type != DIGIT) {
+				digits = false;
+			}
+		}
+		int summary = han << HAN_SHIFT;
+		if (digits) {
+			summary |= ALL_DIGITS;
+		}
+		if (ascii) {
+			summary |= ALL_ASCII;
+		}
+		if (surrogates) {
+			summary |= HAS_SURROGATES;
+		}
+		return summary;
+	}
+
+	/**
+	 * 对字符串进行分类
+	 * @param s
+	 * @return 压缩后的分类结果
+	 */
+	public static int classify(CharSequence s) {
+		int length = s.length();
+		int han = 0;
+		boolean digits = length > 0;
+		boolean ascii = true;
+		boolean surrogates = false;
+		for (int i = 0; i < length; ) {
+			int codePoint = Character.codePointAt(s, i);
+			int count = Character.charCount(codePoint);
+			i += count;
+			if (codePoint < 0x80) {
+				if (codePoint < '0' || codePoint > '9') {
+					digits = false;
+				}
+				continue;
+			}
+			ascii = false;
+			byte type;
+			if (count == 2) {
+				surrogates = true;
+				type = classOf(codePoint);
+			} else {
+				type = BMP[codePoint];
+				if (type == SURROGATE) {
+					surrogates = true;
+					type = OTHER;
+				}
+			}
+			if (type == HAN) {
+				han++;
+			}
+			if (type != DIGIT) {
+				digits = false;
+			}
+		}
+		int summary = han << HAN_SHIFT;
+		if (digits) {
+			summary |= ALL_DIGITS;
+		}
+		if (ascii) {
+			summary |= ALL_ASCII;
+		}
+		if (surrogates) {
+			summary |= HAS_SURROGATES;
+		}
+		return summary;
+	}
+
+	/**
+	 * 汉字个数[按码点计算]
+	 * @param summary classify的返回值
+	 * @return
+	 */
+	public static int hanCount(int summary) {
+		return summary >>> HAN_SHIFT;
+	}
+
+	/**
+	 * 是否包含汉字
+	 * @param summary classify的返回值
+	 * @return
+	 */
+	public static boolean containsHan(int summary) {
+		return (summary >>> HAN_SHIFT) > 0;
+	}
+
+	/**
+	 * 是否非空且全部由数字组成
+	 * @param summary classify的返回值
+	 * @return
+	 */
+	public static boolean isAllDigits(int summary) {
+		return (summary & ALL_DIGITS) != 0;
+	}
+
+	/**
+	 * 是否全部是ASCII字符[空串也返回true]
+	 * @param summary classify的返回值
+	 * @return
+	 */
+	public static boolean isAllAscii(int summary) {
+		return (summary & ALL_ASCII) != 0;
+	}
+
+	/**
+	 * 是否包含代理对[增补平面字符]
+	 * @param summary classify的返回值
+	 * @return
+	 */
+	public static boolean hasSurrogates(int summary) {
+		return (summary & HAS_SURROGATES) != 0;
+	}
+
+	/**
+	 * 是否是汉字
+	 * @param codePoint 码点
+	 * @return
+	 */
+	public static boolean isHan(int codePoint) {
+		if (codePoint <= Character.MAX_VALUE) {
+			return BMP[codePoint] == HAN;
+		}
+		return classOf(codePoint) == HAN;
+	}
+
+	/**
+	 * 是否是数字
+	 * @param codePoint 码点
+	 * @return
+	 */
+	public static boolean isDigit(int codePoint) {
+		if (codePoint <= Character.MAX_VALUE) {
+			return BMP[codePoint] == DIGIT;
+		}
+		return Character.isDigit(codePoint);
+	}
+}
@@ -0,0 +1,121 @@
+package org.apache.lucene.analysis.pinyin.utils;
+
+import java.util.Arrays;
+
+import org.apache.lucene.util.ArrayUtil;
+
+/**
+ * 可重复使用的字符序列集合[开放寻址，线性探测]
+ *
+ * 加入的字符依次复制到一个共享的字符池中，表中只保存条目下标，
+ * clear只清理已占用的槽位，容量达到所需的最大值后不再创建任何对象。
+ * 用于NGram过滤器在同一位置上去除重复的词元，非线程安全。
+ * @author Lanxiaowei
+ *
+ */
+public final class CharsHashSet {
+	/**所有条目的字符*/
+	private char[] pool = new char[128];
+	private int poolSize;
+	/**每个条目在字符池中的起始位置、长度、哈希值以及所在槽位*/
+	private int[] starts = new int[16];
+	private int[] lengths = new int[16];
+	private int[] hashes = new int[16];
+	private int[] slots = new int[16];
+	private int size;
+	/**哈希表，保存条目下标+1，0表示空槽*/
+	private int[] table = new int[32];
+	private int mask = 31;
+
+	/**
+	 * 加入buffer[offset, offset+length)
+	 * @param buffer 字符数组
+	 * @param offset 起始位置
+	 * @param length 长度
+	 * @return 集合中原来没有时返回true，已存在时返回false
+	 */
+	public boolean add(char[] buffer, int offset, int length) {
+		int hash = hash(buffer, offset, length);
+		int slot = hash & mask;
+		int entry;
+		while ((entry = table[slot]) != 0) {
+			entry--;
+			if (hashes[entry] == hash && lengths[entry] == length &&
+					equals(pool, starts[entry], buffer, offset, length)) {
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+		if (poolSize + length > pool.length) {
+			pool = Arrays.copyOf(pool, ArrayUtil.oversize(poolSize + length, 2));
+		}
+		System.arraycopy(buffer, offset, pool, poolSize, length);
+		if (size == starts.length) {
+			int capacity = ArrayUtil.oversize(size + 1, 4);
+			starts = Arrays.copyOf(starts, capacity);
+			lengths = Arrays.copyOf(lengths, capacity);
+			hashes = Arrays.copyOf(hashes, capacity);
+			slots = Arrays.copyOf(slots, capacity);
+		}
+		starts[size] = poolSize;
+		lengths[size] = length;
+		hashes[size] = hash;
+		slots[size] = slot;
+		poolSize += length;
+		table[slot] = ++size;
+		if (size * 2 > table.length) {
+			rehash(table.length * 2);
+		}
+		return true;
+	}
+
+	/**
+	 * 集合中的条目数
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * 清空集合[只清理已占用的槽位，不释放内部数组]
+	 */
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			table[slots[i]] = 0;
+		}
+		size = 0;
+		poolSize = 0;
+	}
+
+	private void rehash(int capacity) {
+		table = new int[capacity];
+		mask = capacity - 1;
+		for (int i = 0; i < size; i++) {
+			int slot = hashes[i] & mask;
+			while (table[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			table[slot] = i + 1;
+			slots[i] = slot;
+		}
+	}
+
+	private static int hash(char[] buffer, int offset, int length) {
+		int h = 0;
+		for (int i = offset, limit = offset + length; i < limit; i++) {
+			h = 31 * h + buffer[i];
+		}
+		// 打散低位，线性探测只使用低位
+		return h ^ (h >>> 16);
+	}
+
+	private static boolean equals(char[] a, int aOffset, char[] b, int bOffset, int length) {
+		for (int i = 0; i < length; i++) {
+			if (a[aOffset + i] != b[bOffset + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
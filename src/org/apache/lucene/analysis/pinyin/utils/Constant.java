@@ -13,8 +13,47 @@ public class Constant {
 	public static final boolean DEFAULT_OUT_CHINESE = true;
 	public static final boolean DEFAULT_PINYIN_ALL = true;
 	public static final boolean DEFAULT_SHORT_PINYIN = false;
+	/**每个词最多输出的拼音组合数，0表示不限制*/
+	public static final int DEFAULT_MAX_COMBINATIONS = 0;
+	/**拼音补全时每个词条最多展开的拼音组合数*/
+	public static final int DEFAULT_SUGGEST_MAX_COMBINATIONS = 8;
+	/**共享拼音缓存的默认容量，0表示不使用缓存*/
+	public static final int DEFAULT_CACHE_SIZE = 10000;
+	/**默认使用自带的多音词词典*/
+	public static final String DEFAULT_POLYPHONE_DICT = "default";
+	/**不使用多音词词典*/
+	public static final String POLYPHONE_DICT_NONE = "none";
 	public static final boolean DEFAULT_IK_USE_SMART = false;
 	public static final boolean DEFAULT_EDGES_ONLY = false;
 	public static final String DEFAULT_SIDE_FRONT = "front";
 	public static final String DEFAULT_SIDE_BACK = "back";
+	/**拼音NGram默认不限制从音节边界开始*/
+	public static final boolean DEFAULT_SYLLABLE_START = false;
+	/**拼音NGram默认不限制在音节边界结束*/
+	public static final boolean DEFAULT_SYLLABLE_END = false;
+	/**默认不生成全拼与首字母混合的NGram*/
+	public static final boolean DEFAULT_MIX_INITIALS = false;
+	/**拼音默认按词叠加输出，不输出token graph*/
+	public static final boolean DEFAULT_GRAPH = false;
+	/**NGram默认不去除同一位置上重复的词元*/
+	public static final boolean DEFAULT_DEDUP_GRAMS = false;
+	/**分析统计默认每64次incrementToken调用计时一次*/
+	public static final int DEFAULT_METRICS_SAMPLE_INTERVAL = 64;
+	/**每个字段值最多输出的词元数，0表示不限制*/
+	public static final int DEFAULT_MAX_TOKENS = 0;
+	/**每个词元最多展开的拼音个数[超出时降级]，0表示不限制*/
+	public static final int DEFAULT_MAX_TERM_COMBINATIONS = 0;
+
+	/**原样输出的纯数字词元*/
+	public static final String TYPE_NUMERIC_ORIGINAL = "numeric_original";
+	/**原样输出的中文词元*/
+	public static final String TYPE_CHINESE_ORIGINAL = "chinese_original";
+	/**原样输出的其他词元*/
+	public static final String TYPE_NORMAL_WORD = "normal_word";
+	/**全拼词元*/
+	public static final String TYPE_PINYIN = "pinyin";
+	/**简拼词元*/
+	public static final String TYPE_SHORT_PINYIN = "short_pinyin";
+	/**未输入完整的音节[查询时的拼音前缀]*/
+	public static final String TYPE_PINYIN_PREFIX = "pinyin_prefix";
 }
@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -29,6 +30,13 @@ public class Pinyin4jUtil {
 	private static final int TONE_TYPE = 0;
 
 	private static final int V_CHAR_TYPE = 0;
+	/** char[]接口每个线程复用的迭代器和输出缓冲区 */
+	private static final ThreadLocal<Scratch> SCRATCH = new ThreadLocal<Scratch>() {
+		@Override
+		protected Scratch initialValue() {
+			return new Scratch();
+		}
+	};
 
 	/**
 	 * 汉字转拼音(全拼)
@@ -54,7 +62,7 @@ public class Pinyin4jUtil {
             if (nameChar[i] > 128) {  
                 try {  
                     // 取得当前汉字的所有全拼  
-                    String[] strs = PinyinHelper.toHanyuPinyinStringArray(  
+                    String[] strs = toHanyuPinyinStringArray(  
                             nameChar[i], defaultFormat);  
                     if (strs != null) {  
                         for (int j = 0; j < strs.length; j++) {  
@@ -165,7 +173,7 @@ public class Pinyin4jUtil {
         	for (int i = 0; i < nameChar.length; i++) {  
                 if (nameChar[i] > 128) { 
                 	// 取得当前汉字的所有全拼  
-                    String[] strs = PinyinHelper.toHanyuPinyinStringArray(  
+                    String[] strs = toHanyuPinyinStringArray(  
                             nameChar[i], defaultFormat);  
                     if (strs != null) {  
                         for (int j = 0; j < strs.length; j++) {  
@@ -223,9 +231,13 @@ public class Pinyin4jUtil {
 			int toneType, int vCharType) {
 		List<String[]> pinyinList = new ArrayList<String[]>();
 		HanyuPinyinOutputFormat defaultFormat = getOutputFormat(upperCase, toneType, vCharType);
+		if (isTableFormat(defaultFormat)) {
+			PinyinCombinationIterator iterator = getPinyinIterator(chinese, 0);
+			return iterator.positions() == 0 ? null : toSet(iterator);
+		}
 		try {
 			for (int i = 0; i < chinese.length(); i++) {
-				String[] pinyinArray = PinyinHelper.toHanyuPinyinStringArray(
+				String[] pinyinArray = toHanyuPinyinStringArray(
 						chinese.charAt(i), defaultFormat);
 				if (pinyinArray != null && pinyinArray.length > 0) {
 					pinyinList.add(pinyinArray);
@@ -272,9 +284,12 @@ public class Pinyin4jUtil {
 			int toneType, int vCharType) {
 		List<String[]> pinyinList = new ArrayList<String[]>();
 		HanyuPinyinOutputFormat defaultFormat = getOutputFormat(upperCase, toneType, vCharType);
+		if (isTableFormat(defaultFormat)) {
+			return toSet(getPinyinShortIterator(chinese, 0));
+		}
 		try {
 			for (int i = 0; i < chinese.length(); i++) {
-				String[] pinyinArray = PinyinHelper.toHanyuPinyinStringArray(
+				String[] pinyinArray = toHanyuPinyinStringArray(
 						chinese.charAt(i), defaultFormat);
 				if (pinyinArray != null && pinyinArray.length > 0) {
 					pinyinList.add(pinyinArray);
@@ -319,6 +334,138 @@ public class Pinyin4jUtil {
 		return getPinyinShortCollection(chinese, UPPER_CASE, TONE_TYPE, V_CHAR_TYPE);
 	}
 
+	/**
+	 * 获取汉字全拼组合的惰性迭代器[按读音常用程度排序，不构造完整的笛卡尔积]
+	 * 
+	 * @param chinese
+	 *            汉字
+	 * @param maxCombinations
+	 *            最多输出的组合数，小于等于0表示不限制
+	 * @return
+	 */
+	public static PinyinCombinationIterator getPinyinIterator(String chinese, int maxCombinations) {
+		return new PinyinCombinationIterator().reset(chinese, false, false, maxCombinations);
+	}
+
+	/**
+	 * 获取汉字简拼组合的惰性迭代器[与getPinyinShortCollection一致，同时输出前缀组合]
+	 * 
+	 * @param chinese
+	 *            汉字
+	 * @param maxCombinations
+	 *            最多输出的组合数，小于等于0表示不限制
+	 * @return
+	 */
+	public static PinyinCombinationIterator getPinyinShortIterator(String chinese, int maxCombinations) {
+		return new PinyinCombinationIterator().reset(chinese, true, true, maxCombinations);
+	}
+
+	/**
+	 * 汉字转拼音(全拼)[直接读取字符数组，每个组合写入复用的缓冲区后回调visitor，不创建任何对象]
+	 * visitor中不能再调用本类的char[]接口
+	 * 
+	 * @param buffer
+	 *            汉字所在的字符数组
+	 * @param offset
+	 *            起始位置
+	 * @param length
+	 *            长度
+	 * @param maxCombinations
+	 *            最多输出的组合数，小于等于0表示不限制
+	 * @param visitor
+	 *            结果回调
+	 * @return 回调的次数
+	 */
+	public static int visitPinyin(char[] buffer, int offset, int length,
+			int maxCombinations, PinyinVisitor visitor) {
+		Scratch scratch = SCRATCH.get();
+		return scratch.visit(scratch.iterator.reset(buffer, offset, length, false, false, maxCombinations), visitor);
+	}
+
+	/**
+	 * 获取汉字简拼[与getPinyinShortCollection一致，同时输出前缀组合；不创建任何对象]
+	 * visitor中不能再调用本类的char[]接口
+	 * 
+	 * @param buffer
+	 *            汉字所在的字符数组
+	 * @param offset
+	 *            起始位置
+	 * @param length
+	 *            长度
+	 * @param maxCombinations
+	 *            最多输出的组合数，小于等于0表示不限制
+	 * @param visitor
+	 *            结果回调
+	 * @return 回调的次数
+	 */
+	public static int visitPinyinShort(char[] buffer, int offset, int length,
+			int maxCombinations, PinyinVisitor visitor) {
+		Scratch scratch = SCRATCH.get();
+		return scratch.visit(scratch.iterator.reset(buffer, offset, length, true, true, maxCombinations), visitor);
+	}
+
+	/**
+	 * char[]接口使用的线程私有对象
+	 */
+	private static final class Scratch {
+		final PinyinCombinationIterator iterator = new PinyinCombinationIterator();
+		char[] buffer = new char[64];
+
+		int visit(PinyinCombinationIterator iterator, PinyinVisitor visitor) {
+			int count = 0;
+			while (iterator.nextCombination()) {
+				int length = iterator.currentLength();
+				if (buffer.length < length) {
+					buffer = new char[Math.max(length, buffer.length * 2)];
+				}
+				iterator.copyTo(buffer, 0);
+				count++;
+				if (!visitor.visit(buffer, 0, length)) {
+					break;
+				}
+			}
+			return count;
+		}
+	}
+
+	private static Set<String> toSet(Iterator<String> iterator) {
+		Set<String> pinyins = new HashSet<String>();
+		while (iterator.hasNext()) {
+			pinyins.add(iterator.next());
+		}
+		return pinyins;
+	}
+
+	/**
+	 * 获取单个汉字的所有拼音[默认输出格式直接查询预计算的PinyinTable，无锁；其它格式才交给pinyin4j]
+	 * 
+	 * @param ch
+	 *            汉字
+	 * @param format
+	 *            输出格式
+	 * @return
+	 * @throws BadHanyuPinyinOutputFormatCombination
+	 */
+	private static String[] toHanyuPinyinStringArray(char ch,
+			HanyuPinyinOutputFormat format) throws BadHanyuPinyinOutputFormatCombination {
+		if (isTableFormat(format)) {
+			return PinyinTable.toPinyinArray(ch);
+		}
+		return PinyinHelper.toHanyuPinyinStringArray(ch, format);
+	}
+
+	/**
+	 * 是否为PinyinTable预计算的输出格式[小写、不带声调、ü输出为v]
+	 * 
+	 * @param format
+	 * @return
+	 */
+	private static boolean isTableFormat(HanyuPinyinOutputFormat format) {
+		return format.getCaseType() == HanyuPinyinCaseType.LOWERCASE
+				&& format.getToneType() == HanyuPinyinToneType.WITHOUT_TONE
+				&& format.getVCharType() == HanyuPinyinVCharType.WITH_V;
+	}
+
 	/**
 	 * Default Format 默认输出格式
 	 * 
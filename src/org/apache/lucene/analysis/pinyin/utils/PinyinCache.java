@@ -0,0 +1,425 @@
+package org.apache.lucene.analysis.pinyin.utils;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * 词元 -> 拼音结果的有界并发缓存[同一JVM内所有PinyinTokenFilter共享]
+ * 缓存键包含组合数上限和多音词词典，配置不同的TokenFilter共享缓存也不会互相影响。
+ *
+ * 按哈希分段加锁，每段是一个分段LRU(SLRU)：新词先进入试用区，再次命中后晋升到保护区，
+ * 保护区满时最久未用的词降级回试用区，淘汰只发生在试用区，
+ * 因此偶尔出现一次的生僻词不会把高频词挤出缓存。
+ * 命中、未命中、淘汰次数在各段锁内累加，读取时汇总，不引入额外的竞争。
+ * JVM内共享的实例通过acquireShared从SharedResourceRegistry获取，容量相同的调用方共享同一个实例，
+ * 最后一个引用释放时回收。
+ * @author Lanxiaowei
+ *
+ */
+public final class PinyinCache {
+	/**最大分段数*/
+	private static final int MAX_SEGMENTS = 16;
+	/**保护区占每段容量的比例*/
+	private static final float PROTECTED_RATIO = 0.8f;
+
+	/**共享缓存在SharedResourceRegistry中的资源类型和名称前缀[名称后接容量]*/
+	public static final String KIND_PINYIN_CACHE = "pinyin-cache";
+	private static final String SHARED_CACHE = "shared-";
+
+	private final Segment[] segments;
+	private volatile int maxSize;
+
+	public PinyinCache(int maxSize) {
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("maxSize must be greater than zero");
+		}
+		int count = 1;
+		while (count < MAX_SEGMENTS && count * 2 <= maxSize) {
+			count *= 2;
+		}
+		this.segments = new Segment[count];
+		for (int i = 0; i < count; i++) {
+			this.segments[i] = new Segment();
+		}
+		setMaxSize(maxSize);
+	}
+
+	/**
+	 * 从SharedResourceRegistry获取JVM内共享的缓存，按容量区分，容量相同的调用方共享同一个实例，
+	 * 不再使用时调用方需关闭返回的Handle
+	 * @param cacheSize 要求的最大缓存词数，小于等于0表示不使用缓存
+	 * @return 不使用缓存时返回null
+	 * @throws IOException
+	 */
+	public static SharedResourceRegistry.Handle<PinyinCache> acquireShared(final int cacheSize) throws IOException {
+		if (cacheSize <= 0) {
+			return null;
+		}
+		return SharedResourceRegistry.getInstance().acquire(
+				KIND_PINYIN_CACHE, SHARED_CACHE + cacheSize, new SharedResourceRegistry.Factory<PinyinCache>() {
+			@Override
+			public PinyinCache create() {
+				return new PinyinCache(cacheSize);
+			}
+		});
+	}
+
+	/**
+	 * 调整缓存容量，缩小时在后续写入时逐步淘汰
+	 * @param maxSize 最大缓存词数
+	 */
+	public synchronized void setMaxSize(int maxSize) {
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("maxSize must be greater than zero");
+		}
+		this.maxSize = maxSize;
+		int capacity = Math.max(1, maxSize / segments.length);
+		for (Segment segment : segments) {
+			segment.resize(capacity);
+		}
+	}
+
+	public int maxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * 查询缓存
+	 * @param key 查询键[调用方可重复使用]
+	 * @return 未命中时返回null
+	 */
+	public Value get(Key key) {
+		return segmentFor(key).get(key);
+	}
+
+	/**
+	 * 写入缓存，键会被复制一份，调用方可以继续重复使用key
+	 * @param key 键
+	 * @param value 拼音结果
+	 */
+	public void put(Key key, Value value) {
+		segmentFor(key).put(key, value);
+	}
+
+	private Segment segmentFor(Key key) {
+		int h = key.hashCode();
+		h ^= (h >>> 16);
+		return segments[h & (segments.length - 1)];
+	}
+
+	/**
+	 * 当前缓存的词数
+	 * @return
+	 */
+	public int size() {
+		int size = 0;
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				size += segment.probation.size() + segment.protect.size();
+			}
+		}
+		return size;
+	}
+
+	public long hitCount() {
+		long count = 0;
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				count += segment.hits;
+			}
+		}
+		return count;
+	}
+
+	public long missCount() {
+		long count = 0;
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				count += segment.misses;
+			}
+		}
+		return count;
+	}
+
+	public long evictionCount() {
+		long count = 0;
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				count += segment.evictions;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * 命中率
+	 * @return 还没有查询时返回0
+	 */
+	public double hitRate() {
+		long hits = hitCount();
+		long total = hits + missCount();
+		return total == 0 ? 0d : (double) hits / total;
+	}
+
+	/**
+	 * 清空缓存[不重置统计数据]
+	 */
+	public void clear() {
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				segment.probation.clear();
+				segment.protect.clear();
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "PinyinCache[size=" + size() + ", maxSize=" + maxSize + ", hits=" + hitCount()
+				+ ", misses=" + missCount() + ", evictions=" + evictionCount() + "]";
+	}
+
+	/**
+	 * 缓存分段[分段LRU]
+	 */
+	private static final class Segment {
+		/**试用区，按访问顺序排列*/
+		final LinkedHashMap<Key, Node> probation = new LinkedHashMap<Key, Node>(16, 0.75f, true);
+		/**保护区，按访问顺序排列*/
+		final LinkedHashMap<Key, Node> protect = new LinkedHashMap<Key, Node>(16, 0.75f, true);
+		int capacity;
+		int protectCapacity;
+		long hits;
+		long misses;
+		long evictions;
+
+		synchronized void resize(int capacity) {
+			this.capacity = capacity;
+			this.protectCapacity = (int) (capacity * PROTECTED_RATIO);
+		}
+
+		synchronized Value get(Key key) {
+			Node node = protect.get(key);
+			if (node != null) {
+				hits++;
+				return node.value;
+			}
+			node = probation.remove(key);
+			if (node == null) {
+				misses++;
+				return null;
+			}
+			hits++;
+			// 再次命中，晋升到保护区
+			protect.put(node.key, node);
+			if (protect.size() > protectCapacity) {
+				Iterator<Node> eldest = protect.values().iterator();
+				Node demoted = eldest.next();
+				eldest.remove();
+				probation.put(demoted.key, demoted);
+			}
+			return node.value;
+		}
+
+		synchronized void put(Key key, Value value) {
+			Node node = protect.get(key);
+			if (node == null) {
+				node = probation.get(key);
+			}
+			if (node != null) {
+				node.value = value;
+				return;
+			}
+			Key copy = key.copy();
+			probation.put(copy, new Node(copy, value));
+			while (probation.size() + protect.size() > capacity) {
+				LinkedHashMap<Key, Node> victims = probation.isEmpty() ? protect : probation;
+				Iterator<Node> eldest = victims.values().iterator();
+				eldest.next();
+				eldest.remove();
+				evictions++;
+			}
+		}
+	}
+
+	private static final class Node {
+		final Key key;
+		Value value;
+
+		Node(Key key, Value value) {
+			this.key = key;
+			this.value = value;
+		}
+	}
+
+	/**
+	 * 缓存键[词元字符 + 组合数上限 + 多音词词典]，可以重复使用以避免每次查询创建对象
+	 */
+	public static final class Key {
+		private char[] chars;
+		private int length;
+		private int maxCombinations;
+		private PolyphoneDictionary dictionary;
+		private int hash;
+
+		public Key() {
+			this.chars = new char[16];
+		}
+
+		private Key(char[] chars, int maxCombinations, PolyphoneDictionary dictionary, int hash) {
+			this.chars = chars;
+			this.length = chars.length;
+			this.maxCombinations = maxCombinations;
+			this.dictionary = dictionary;
+			this.hash = hash;
+		}
+
+		/**
+		 * 设置键的内容
+		 * @param term 词元
+		 * @param maxCombinations 组合数上限
+		 * @return this
+		 */
+		public Key set(CharSequence term, int maxCombinations) {
+			int length = term.length();
+			if (chars.length < length) {
+				chars = new char[Math.max(length, chars.length * 2)];
+			}
+			int h = 31 * maxCombinations;
+			for (int i = 0; i < length; i++) {
+				char c = term.charAt(i);
+				chars[i] = c;
+				h = 31 * h + c;
+			}
+			this.length = length;
+			this.maxCombinations = maxCombinations;
+			this.dictionary = null;
+			this.hash = h;
+			return this;
+		}
+
+		/**
+		 * 设置键的内容[直接读取字符数组，不创建String]
+		 * @param buffer 词元所在的字符数组
+		 * @param offset 起始位置
+		 * @param length 长度
+		 * @param maxCombinations 组合数上限
+		 * @return this
+		 */
+		public Key set(char[] buffer, int offset, int length, int maxCombinations) {
+			return set(buffer, offset, length, maxCombinations, null);
+		}
+
+		/**
+		 * 设置键的内容[直接读取字符数组，不创建String]
+		 * @param buffer 词元所在的字符数组
+		 * @param offset 起始位置
+		 * @param length 长度
+		 * @param maxCombinations 组合数上限
+		 * @param dictionary 多音词词典，可以为null
+		 * @return this
+		 */
+		public Key set(char[] buffer, int offset, int length, int maxCombinations,
+				PolyphoneDictionary dictionary) {
+			if (chars.length < length) {
+				chars = new char[Math.max(length, chars.length * 2)];
+			}
+			int h = 31 * maxCombinations + System.identityHashCode(dictionary);
+			for (int i = 0; i < length; i++) {
+				char c = buffer[offset + i];
+				chars[i] = c;
+				h = 31 * h + c;
+			}
+			this.length = length;
+			this.maxCombinations = maxCombinations;
+			this.dictionary = dictionary;
+			this.hash = h;
+			return this;
+		}
+
+		Key copy() {
+			return new Key(Arrays.copyOf(chars, length), maxCombinations, dictionary, hash);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			if (hash != other.hash || length != other.length || maxCombinations != other.maxCombinations
+					|| dictionary != other.dictionary) {
+				return false;
+			}
+			for (int i = 0; i < length; i++) {
+				if (chars[i] != other.chars[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public String toString() {
+			return new String(chars, 0, length);
+		}
+	}
+
+	/**
+	 * 缓存值[全拼结果集 + 简拼结果集]，不可变
+	 */
+	public static final class Value {
+		private final String[] pinyins;
+		private final String[] shortPinyins;
+		private final byte[][] syllableLengths;
+
+		public Value(String[] pinyins, String[] shortPinyins) {
+			this(pinyins, shortPinyins, null);
+		}
+
+		/**
+		 * @param pinyins 全拼结果集
+		 * @param shortPinyins 简拼结果集
+		 * @param syllableLengths 每个全拼结果中每个音节的长度，可以为null
+		 */
+		public Value(String[] pinyins, String[] shortPinyins, byte[][] syllableLengths) {
+			this.pinyins = pinyins;
+			this.shortPinyins = shortPinyins;
+			this.syllableLengths = syllableLengths;
+		}
+
+		/**
+		 * 每个全拼结果中每个音节的长度[共享数组，调用方不能修改]
+		 * @return 没有记录时返回null
+		 */
+		public byte[][] getSyllableLengths() {
+			return syllableLengths;
+		}
+
+		/**
+		 * 全拼结果集[共享数组，调用方不能修改]
+		 * @return
+		 */
+		public String[] getPinyins() {
+			return pinyins;
+		}
+
+		/**
+		 * 简拼结果集[共享数组，调用方不能修改]
+		 * @return
+		 */
+		public String[] getShortPinyins() {
+			return shortPinyins;
+		}
+	}
+}
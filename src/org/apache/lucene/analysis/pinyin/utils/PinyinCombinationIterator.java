@@ -0,0 +1,430 @@
+package org.apache.lucene.analysis.pinyin.utils;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * 多音字拼音组合的惰性迭代器[按需生成组合，不在内存中构造完整的笛卡尔积]
+ *
+ * 组合按读音常用程度排序：每个字的读音下标(pinyin4j中常用读音在前)之和越小越靠前，
+ * 第一个组合总是每个字都取最常用读音。可以通过maxCombinations限制每个词最多输出的组合数。
+ * 没有拼音的字符(如字母、数字)直接跳过，与Pinyin4jUtil.getPinyinCollection的行为一致。
+ * 指定多音词词典时，先在词典中查找最长词，命中的字只取词典中的读音，其余的字再按单字展开。
+ *
+ * 迭代器可以通过reset方法重复使用，非线程安全。
+ * 除了Iterator接口外，还可以通过nextCombination + copyTo直接把组合写入调用方的char[]，
+ * 以char[]为输入、char[]为输出时整个过程不创建任何对象。
+ * @author Lanxiaowei
+ *
+ */
+public final class PinyinCombinationIterator implements Iterator<String> {
+	/**每个位置(有拼音的字)的候选读音，全拼时为共享的音节编号数组*/
+	private short[][] readings = new short[8][];
+	/**简拼时每个位置去重后的首字母*/
+	private char[][] initials = new char[8][];
+	/**每个位置的候选个数*/
+	private int[] sizes = new int[8];
+	/**每个位置对应的字在输入中的起止位置[相对于输入的起始位置]*/
+	private int[] starts = new int[8];
+	private int[] ends = new int[8];
+	/**当前组合中每个位置选中的候选下标*/
+	private int[] indexes = new int[8];
+	/**有拼音的字的个数*/
+	private int positions;
+
+	/**是否输出简拼*/
+	private boolean shortPinyin;
+	/**是否同时输出前缀组合[只取前k个字，k从positions递减到1]*/
+	private boolean prefixes;
+	/**最多输出的组合数，小于等于0表示不限制*/
+	private int maxCombinations;
+
+	/**当前正在枚举的前缀长度*/
+	private int length;
+	/**当前正在枚举的读音下标之和*/
+	private int cost;
+	/**当前前缀长度下读音下标之和的最大值*/
+	private int maxCost;
+	/**已输出的组合数*/
+	private int count;
+	/**indexes中是否有尚未输出的组合*/
+	private boolean pending;
+	/**是否已经枚举完成*/
+	private boolean exhausted = true;
+
+	private final StringBuilder builder = new StringBuilder();
+
+	/**
+	 * 使用新的输入重置迭代器
+	 * @param chinese 待转换的文本
+	 * @param shortPinyin 是否输出简拼
+	 * @param prefixes 是否同时输出前缀组合
+	 * @param maxCombinations 最多输出的组合数，小于等于0表示不限制
+	 * @return this
+	 */
+	public PinyinCombinationIterator reset(CharSequence chinese, boolean shortPinyin,
+			boolean prefixes, int maxCombinations) {
+		this.positions = 0;
+		for (int i = 0; i < chinese.length(); ) {
+			int codePoint = Character.codePointAt(chinese, i);
+			int end = i + Character.charCount(codePoint);
+			addPosition(PinyinTable.readings(codePoint), shortPinyin, i, end);
+			i = end;
+		}
+		return start(shortPinyin, prefixes, maxCombinations);
+	}
+
+	/**
+	 * 使用新的输入重置迭代器[直接读取字符数组，不创建String]
+	 * @param buffer 待转换的字符数组
+	 * @param offset 起始位置
+	 * @param length 长度
+	 * @param shortPinyin 是否输出简拼
+	 * @param prefixes 是否同时输出前缀组合
+	 * @param maxCombinations 最多输出的组合数，小于等于0表示不限制
+	 * @return this
+	 */
+	public PinyinCombinationIterator reset(char[] buffer, int offset, int length, boolean shortPinyin,
+			boolean prefixes, int maxCombinations) {
+		return reset(buffer, offset, length, shortPinyin, prefixes, maxCombinations, null);
+	}
+
+	/**
+	 * 使用新的输入重置迭代器[先查多音词词典，再按单字展开]
+	 * @param buffer 待转换的字符数组
+	 * @param offset 起始位置
+	 * @param length 长度
+	 * @param shortPinyin 是否输出简拼
+	 * @param prefixes 是否同时输出前缀组合
+	 * @param maxCombinations 最多输出的组合数，小于等于0表示不限制
+	 * @param matcher 多音词词典查询器，为null时不查词典
+	 * @return this
+	 */
+	public PinyinCombinationIterator reset(char[] buffer, int offset, int length, boolean shortPinyin,
+			boolean prefixes, int maxCombinations, PolyphoneDictionary.Matcher matcher) {
+		this.positions = 0;
+		int limit = offset + length;
+		for (int i = offset; i < limit; ) {
+			int matched = matcher == null ? 0 : matcher.longestMatch(buffer, i, limit);
+			if (matched > 0) {
+				// 词典中的词，每个字只取词典给出的读音
+				short[] ids = matcher.readings();
+				// 每个读音对应一个字符时按字符记录起止位置，否则都记为整个词
+				boolean perChar = ids.length == matched;
+				for (int j = 0; j < ids.length; j++) {
+					int start = perChar ? i + j - offset : i - offset;
+					addPosition(PinyinTable.singleton(ids[j]), shortPinyin, start,
+							perChar ? start + 1 : i + matched - offset);
+				}
+				i += matched;
+				continue;
+			}
+			int codePoint = Character.codePointAt(buffer, i, limit);
+			int end = i + Character.charCount(codePoint);
+			addPosition(PinyinTable.readings(codePoint), shortPinyin, i - offset, end - offset);
+			i = end;
+		}
+		return start(shortPinyin, prefixes, maxCombinations);
+	}
+
+	/**
+	 * 追加一个字的候选读音
+	 */
+	private void addPosition(short[] ids, boolean shortPinyin, int start, int end) {
+		if (ids.length == 0) {
+			return;
+		}
+		if (positions == readings.length) {
+			int size = positions * 2;
+			readings = Arrays.copyOf(readings, size);
+			initials = Arrays.copyOf(initials, size);
+			sizes = Arrays.copyOf(sizes, size);
+			indexes = Arrays.copyOf(indexes, size);
+			starts = Arrays.copyOf(starts, size);
+			ends = Arrays.copyOf(ends, size);
+		}
+		readings[positions] = ids;
+		starts[positions] = start;
+		ends[positions] = end;
+		if (shortPinyin) {
+			char[] row = initials[positions];
+			if (row == null || row.length < ids.length) {
+				row = initials[positions] = new char[Math.max(4, ids.length)];
+			}
+			int size = 0;
+			for (int i = 0; i < ids.length; i++) {
+				char initial = PinyinTable.initial(ids[i]);
+				int j = 0;
+				while (j < size && row[j] != initial) {
+					j++;
+				}
+				if (j == size) {
+					row[size++] = initial;
+				}
+			}
+			sizes[positions] = size;
+		} else {
+			sizes[positions] = ids.length;
+		}
+		positions++;
+	}
+
+	private PinyinCombinationIterator start(boolean shortPinyin, boolean prefixes, int maxCombinations) {
+		this.shortPinyin = shortPinyin;
+		this.prefixes = prefixes;
+		this.maxCombinations = maxCombinations;
+		this.count = 0;
+		this.exhausted = positions == 0;
+		this.pending = false;
+		if (!exhausted) {
+			startLength(positions);
+		}
+		return this;
+	}
+
+	/**
+	 * 开始枚举前length个字的组合
+	 */
+	private void startLength(int length) {
+		this.length = length;
+		this.maxCost = 0;
+		for (int i = 0; i < length; i++) {
+			maxCost += sizes[i] - 1;
+		}
+		this.cost = 0;
+		fill(0, 0);
+		this.pending = true;
+	}
+
+	/**
+	 * 从右往左尽量填满，得到[from, length)区间内下标之和为remain的字典序最小的组合
+	 */
+	private void fill(int from, int remain) {
+		for (int i = length - 1; i >= from; i--) {
+			int index = Math.min(sizes[i] - 1, remain);
+			indexes[i] = index;
+			remain -= index;
+		}
+	}
+
+	/**
+	 * 移动到下一个组合
+	 * @return 是否还有组合
+	 */
+	private boolean step() {
+		// 同一个下标和内的字典序后继：找到最右边可以加1、且右侧还能减1的位置
+		int suffix = indexes[length - 1];
+		for (int i = length - 2; i >= 0; i--) {
+			if (indexes[i] < sizes[i] - 1 && suffix > 0) {
+				indexes[i]++;
+				fill(i + 1, suffix - 1);
+				return true;
+			}
+			suffix += indexes[i];
+		}
+		// 当前下标和已枚举完，进入下一个下标和
+		if (cost < maxCost) {
+			cost++;
+			fill(0, cost);
+			return true;
+		}
+		// 当前前缀长度已枚举完，进入更短的前缀
+		if (prefixes && length > 1) {
+			startLength(length - 1);
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (exhausted) {
+			return false;
+		}
+		if (maxCombinations > 0 && count >= maxCombinations) {
+			exhausted = true;
+			return false;
+		}
+		if (!pending) {
+			if (!step()) {
+				exhausted = true;
+				return false;
+			}
+			pending = true;
+		}
+		return true;
+	}
+
+	@Override
+	public String next() {
+		if (!nextCombination()) {
+			throw new NoSuchElementException();
+		}
+		builder.setLength(0);
+		for (int i = 0; i < length; i++) {
+			if (shortPinyin) {
+				builder.append(initials[i][indexes[i]]);
+			} else {
+				builder.append(PinyinTable.syllableChars(readings[i][indexes[i]]));
+			}
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * 移动到下一个组合[不创建String，之后通过currentLength和copyTo读取组合]
+	 * @return 是否还有组合
+	 */
+	public boolean nextCombination() {
+		if (!hasNext()) {
+			return false;
+		}
+		pending = false;
+		count++;
+		return true;
+	}
+
+	/**
+	 * 当前组合的字符长度
+	 * @return
+	 */
+	public int currentLength() {
+		if (shortPinyin) {
+			return length;
+		}
+		int chars = 0;
+		for (int i = 0; i < length; i++) {
+			chars += PinyinTable.syllableChars(readings[i][indexes[i]]).length;
+		}
+		return chars;
+	}
+
+	/**
+	 * 把当前组合写入调用方的字符数组
+	 * @param dest 目标数组，剩余空间不能小于currentLength()
+	 * @param offset 写入的起始位置
+	 * @return 写入的字符数
+	 */
+	public int copyTo(char[] dest, int offset) {
+		int pos = offset;
+		for (int i = 0; i < length; i++) {
+			if (shortPinyin) {
+				dest[pos++] = initials[i][indexes[i]];
+			} else {
+				char[] syllable = PinyinTable.syllableChars(readings[i][indexes[i]]);
+				System.arraycopy(syllable, 0, dest, pos, syllable.length);
+				pos += syllable.length;
+			}
+		}
+		return pos - offset;
+	}
+
+	/**
+	 * 当前组合的音节个数
+	 * @return
+	 */
+	public int syllableCount() {
+		return length;
+	}
+
+	/**
+	 * 把当前组合每个音节的结束位置写入ends[简拼时每个字母是一个音节]
+	 * @param ends 目标数组，长度不能小于syllableCount()
+	 * @return 音节个数
+	 */
+	public int syllableEnds(int[] ends) {
+		int pos = 0;
+		for (int i = 0; i < length; i++) {
+			pos += shortPinyin ? 1 : PinyinTable.syllableChars(readings[i][indexes[i]]).length;
+			ends[i] = pos;
+		}
+		return length;
+	}
+
+	/**
+	 * 当前组合是否与buffer[offset, offset+length)相同[不复制字符]
+	 * @param buffer 字符数组
+	 * @param offset 起始位置
+	 * @param length 长度
+	 * @return
+	 */
+	public boolean equalsCurrent(char[] buffer, int offset, int length) {
+		int pos = offset;
+		int limit = offset + length;
+		for (int i = 0; i < this.length; i++) {
+			if (shortPinyin) {
+				if (pos >= limit || buffer[pos++] != initials[i][indexes[i]]) {
+					return false;
+				}
+			} else {
+				char[] syllable = PinyinTable.syllableChars(readings[i][indexes[i]]);
+				if (limit - pos < syllable.length) {
+					return false;
+				}
+				for (int j = 0; j < syllable.length; j++) {
+					if (buffer[pos++] != syllable[j]) {
+						return false;
+					}
+				}
+			}
+		}
+		return pos == limit;
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException("remove");
+	}
+
+	/**
+	 * reset之后输出的组合总数[包括前缀组合，不考虑maxCombinations]
+	 * @return 超过Integer.MAX_VALUE时返回Integer.MAX_VALUE，没有拼音时返回0
+	 */
+	public int combinations() {
+		long total = 0;
+		long product = 1;
+		for (int i = 0; i < positions; i++) {
+			product = Math.min(product * sizes[i], Integer.MAX_VALUE);
+			if (prefixes || i == positions - 1) {
+				total += product;
+			}
+		}
+		return (int) Math.min(total, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * 有拼音的字的个数
+	 * @return
+	 */
+	public int positions() {
+		return positions;
+	}
+
+	/**
+	 * 第position个有拼音的字的候选读音[音节编号，共享数组，调用方不能修改]
+	 * @param position 下标，小于positions()
+	 * @return
+	 */
+	public short[] readings(int position) {
+		return readings[position];
+	}
+
+	/**
+	 * 第position个有拼音的字在输入中的起始位置[相对于reset时的offset]
+	 * @param position 下标，小于positions()
+	 * @return
+	 */
+	public int positionStart(int position) {
+		return starts[position];
+	}
+
+	/**
+	 * 第position个有拼音的字在输入中的结束位置[相对于reset时的offset]
+	 * @param position 下标，小于positions()
+	 * @return
+	 */
+	public int positionEnd(int position) {
+		return ends[position];
+	}
+}
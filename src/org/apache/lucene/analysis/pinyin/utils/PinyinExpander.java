@@ -0,0 +1,395 @@
+package org.apache.lucene.analysis.pinyin.utils;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * 把一个中文词元展开为全拼/简拼结果序列[PinyinTokenFilter与PinyinGramTokenFilter共用]
+ *
+ * 结果依次写入内部可复用的字符数组，通过buffer和length读取，稳定状态下不创建任何对象：
+ * 全拼+简拼时先输出全拼再输出简拼，与全拼相同的简拼(如"饿"的e)只输出一次；
+ * 配置了共享缓存时优先从缓存中读取结果集，未命中时计算后写入缓存；
+ * 组合数超过MAX_CACHED_COMBINATIONS的词元不经过缓存，按需枚举，避免未命中时构造完整的笛卡尔积。
+ * 非线程安全，每个TokenFilter各自持有一个。
+ * @author Lanxiaowei
+ *
+ */
+public final class PinyinExpander {
+	/**允许写入缓存的最大组合数[全拼+简拼]，超出时不使用缓存*/
+	static final int MAX_CACHED_COMBINATIONS = 64;
+
+	/**是否只转换简拼*/
+	private final boolean shortPinyin;
+	/**是否转换全拼+简拼*/
+	private final boolean pinyinAll;
+	/**每个词最多输出的全拼/简拼组合数，小于等于0表示不限制*/
+	private final int maxCombinations;
+	/**共享的拼音结果缓存，为null表示不使用缓存*/
+	private final PinyinCache cache;
+	/**多音词词典，为null表示每个字都按所有读音展开*/
+	private final PolyphoneDictionary dictionary;
+	/**多音词词典查询器*/
+	private final PolyphoneDictionary.Matcher matcher;
+
+	/**全拼组合迭代器[重复使用]*/
+	private final PinyinCombinationIterator pinyinIte = new PinyinCombinationIterator();
+	/**简拼组合迭代器[重复使用]*/
+	private final PinyinCombinationIterator shortPinyinIte = new PinyinCombinationIterator();
+	/**简拼阶段检查全拼中是否已输出过相同结果的迭代器[重复使用]*/
+	private final PinyinCombinationIterator checkIte = new PinyinCombinationIterator();
+	/**缓存查询键[重复使用]*/
+	private final PinyinCache.Key cacheKey = new PinyinCache.Key();
+
+	/**正在展开的词元[引用调用方的数组，展开期间调用方不能修改]*/
+	private char[] term;
+	private int termOffset;
+	private int termLength;
+	/**正在输出的拼音组合迭代器[未使用缓存时]*/
+	private PinyinCombinationIterator curIte;
+	/**curIte处理完成后接着处理的迭代器[全拼+简拼时为简拼迭代器]*/
+	private PinyinCombinationIterator nextIte;
+	/**正在输出的拼音结果集[缓存命中时]*/
+	private String[] curTerms;
+	/**curTerms处理完成后接着处理的结果集[全拼+简拼时为简拼结果集]*/
+	private String[] nextTerms;
+	/**全拼+简拼且使用缓存时的全拼结果集，用于简拼阶段去重*/
+	private String[] fullTerms;
+	/**curTerms是否是全拼结果集*/
+	private boolean curFull;
+	/**curTerms为全拼结果集时每个结果的音节长度，缓存中没有记录时为null*/
+	private byte[][] curLengths;
+	/**curTerms中下一个待输出的下标*/
+	private int termIndex;
+	/**全拼+简拼时是否已切换到简拼阶段*/
+	private boolean shortPhase;
+
+	/**当前拼音结果*/
+	private char[] buffer = new char[32];
+	private int length;
+	/**当前拼音结果每个音节的结束位置*/
+	private int[] syllableEnds = new int[8];
+	private int syllableCount;
+
+	public PinyinExpander(boolean shortPinyin, boolean pinyinAll, int maxCombinations,
+			PinyinCache cache, PolyphoneDictionary dictionary) {
+		this.shortPinyin = shortPinyin;
+		this.pinyinAll = pinyinAll;
+		this.maxCombinations = maxCombinations;
+		this.cache = cache;
+		this.dictionary = dictionary;
+		this.matcher = dictionary == null ? null : dictionary.newMatcher();
+	}
+
+	/**
+	 * 开始展开一个词元
+	 * @param term 词元所在的字符数组
+	 * @param offset 起始位置
+	 * @param length 长度
+	 */
+	public void reset(char[] term, int offset, int length) {
+		clear();
+		this.term = term;
+		this.termOffset = offset;
+		this.termLength = length;
+		PinyinCache.Value value = this.cache == null ? null : cachedPinyins();
+		if (value != null) {
+			// 优先从共享缓存中取拼音结果集
+			this.curTerms = this.pinyinAll || !this.shortPinyin ?
+					value.getPinyins() : value.getShortPinyins();
+			this.nextTerms = this.pinyinAll ? value.getShortPinyins() : null;
+			this.fullTerms = this.pinyinAll ? value.getPinyins() : null;
+			this.curFull = this.pinyinAll || !this.shortPinyin;
+			this.curLengths = this.curFull ? value.getSyllableLengths() : null;
+		} else if (this.pinyinAll) {
+			// 按需枚举多音字组合，不构造完整的笛卡尔积
+			// 全拼+简拼，全拼枚举完后再切换到简拼
+			this.curIte = fullIterator(this.pinyinIte);
+			this.nextIte = shortIterator(this.shortPinyinIte);
+		} else {
+			// 简拼 or 全拼，二选一
+			this.curIte = this.shortPinyin ?
+					shortIterator(this.shortPinyinIte) : fullIterator(this.pinyinIte);
+		}
+	}
+
+	/**
+	 * 按字展开一个词元[token graph模式，不枚举组合]，
+	 * 之后通过positions()返回的迭代器读取每个字的候选读音和起止位置
+	 * @param term 词元所在的字符数组
+	 * @param offset 起始位置
+	 * @param length 长度
+	 * @return 有拼音的字的个数
+	 */
+	public int resetPositions(char[] term, int offset, int length) {
+		clear();
+		this.term = term;
+		this.termOffset = offset;
+		this.termLength = length;
+		return fullIterator(this.pinyinIte).positions();
+	}
+
+	/**
+	 * 一个词元展开的全拼或简拼组合数[已考虑maxCombinations，不改变当前的展开状态]
+	 * @param term 词元所在的字符数组
+	 * @param offset 起始位置
+	 * @param length 长度
+	 * @param shortPinyin 是否计算简拼组合数
+	 * @return
+	 */
+	public int combinations(char[] term, int offset, int length, boolean shortPinyin) {
+		int combinations = this.checkIte.reset(term, offset, length, shortPinyin, shortPinyin,
+				this.maxCombinations, this.matcher).combinations();
+		return this.maxCombinations > 0 ? Math.min(combinations, this.maxCombinations) : combinations;
+	}
+
+	/**
+	 * resetPositions之后每个字的候选读音
+	 * @return
+	 */
+	public PinyinCombinationIterator positions() {
+		return this.pinyinIte;
+	}
+
+	/**
+	 * 移动到下一个拼音结果
+	 * @return 是否还有拼音结果
+	 */
+	public boolean next() {
+		while (this.curIte != null) {
+			if (this.curIte.nextCombination()) {
+				this.buffer = grow(this.buffer, this.curIte.currentLength());
+				this.length = this.curIte.copyTo(this.buffer, 0);
+				if (this.shortPhase && isFullDuplicate()) {
+					continue;
+				}
+				if (this.syllableEnds.length < this.curIte.syllableCount()) {
+					this.syllableEnds = new int[Math.max(this.curIte.syllableCount(), this.syllableEnds.length * 2)];
+				}
+				this.syllableCount = this.curIte.syllableEnds(this.syllableEnds);
+				return true;
+			}
+			this.curIte = this.nextIte;
+			this.nextIte = null;
+			this.shortPhase = this.pinyinAll;
+		}
+		while (this.curTerms != null) {
+			if (this.termIndex < this.curTerms.length) {
+				String pinyin = this.curTerms[this.termIndex++];
+				this.buffer = grow(this.buffer, pinyin.length());
+				pinyin.getChars(0, pinyin.length(), this.buffer, 0);
+				this.length = pinyin.length();
+				if (this.shortPhase && isFullDuplicate()) {
+					continue;
+				}
+				setSyllables(this.termIndex - 1);
+				return true;
+			}
+			this.curTerms = this.nextTerms;
+			this.curFull = false;
+			this.curLengths = null;
+			this.nextTerms = null;
+			this.termIndex = 0;
+			this.shortPhase = this.pinyinAll;
+		}
+		return false;
+	}
+
+	/**
+	 * 当前拼音结果[共享数组，下次调用next后内容会改变]
+	 * @return
+	 */
+	public char[] buffer() {
+		return buffer;
+	}
+
+	/**
+	 * 当前拼音结果的长度
+	 * @return
+	 */
+	public int length() {
+		return length;
+	}
+
+	/**
+	 * 当前拼音结果的音节个数
+	 * @return 缓存中没有记录音节长度时返回0
+	 */
+	public int syllableCount() {
+		return syllableCount;
+	}
+
+	/**
+	 * 当前拼音结果每个音节的结束位置[共享数组，只有前syllableCount个元素有效]
+	 * @return
+	 */
+	public int[] syllableEnds() {
+		return syllableEnds;
+	}
+
+	/**
+	 * 设置缓存结果集中第index个结果的音节边界[简拼结果每个字母是一个音节]
+	 */
+	private void setSyllables(int index) {
+		if (this.curFull && this.curLengths == null) {
+			this.syllableCount = 0;
+			return;
+		}
+		byte[] lengths = this.curFull ? this.curLengths[index] : null;
+		int count = lengths == null ? this.length : lengths.length;
+		if (this.syllableEnds.length < count) {
+			this.syllableEnds = new int[Math.max(count, this.syllableEnds.length * 2)];
+		}
+		int pos = 0;
+		for (int i = 0; i < count; i++) {
+			pos += lengths == null ? 1 : lengths[i];
+			this.syllableEnds[i] = pos;
+		}
+		this.syllableCount = count;
+	}
+
+	/**
+	 * 清理展开状态[不释放内部数组]
+	 */
+	public void clear() {
+		this.term = null;
+		this.curIte = null;
+		this.nextIte = null;
+		this.curTerms = null;
+		this.nextTerms = null;
+		this.fullTerms = null;
+		this.curFull = false;
+		this.curLengths = null;
+		this.termIndex = 0;
+		this.shortPhase = false;
+		this.length = 0;
+		this.syllableCount = 0;
+	}
+
+	private PinyinCombinationIterator fullIterator(PinyinCombinationIterator iterator) {
+		return iterator.reset(this.term, this.termOffset, this.termLength,
+				false, false, this.maxCombinations, this.matcher);
+	}
+
+	private PinyinCombinationIterator shortIterator(PinyinCombinationIterator iterator) {
+		return iterator.reset(this.term, this.termOffset, this.termLength,
+				true, true, this.maxCombinations, this.matcher);
+	}
+
+	/**
+	 * 全拼+简拼时，当前简拼是否已作为全拼输出过[如"饿"的全拼和简拼都是e]
+	 * 只有每个字母本身都是音节时才可能重复，其余情况直接返回false
+	 * @return
+	 */
+	private boolean isFullDuplicate() {
+		for (int i = 0; i < this.length; i++) {
+			if (!PinyinTable.isSingleLetterSyllable(this.buffer[i])) {
+				return false;
+			}
+		}
+		if (this.fullTerms != null) {
+			for (String pinyin : this.fullTerms) {
+				if (equals(pinyin, this.buffer, this.length)) {
+					return true;
+				}
+			}
+			return false;
+		}
+		PinyinCombinationIterator iterator = fullIterator(this.checkIte);
+		while (iterator.nextCombination()) {
+			if (iterator.currentLength() == this.length && iterator.equalsCurrent(this.buffer, 0, this.length)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 当前词元的拼音结果集是否可以缓存[组合数不超过MAX_CACHED_COMBINATIONS]
+	 *
+	 * 只在缓存未命中时调用，按每个字的读音个数相乘估算组合数，不枚举组合、不查多音词词典：
+	 * 词典只会减少读音，去重后的首字母也不会多于读音，因此估算值不小于实际的全拼、简拼组合数。
+	 * 缓存的结果集总是同时包含全拼和简拼[简拼含前缀组合]，两者之和不超过上限才缓存。
+	 * @return
+	 */
+	private boolean isCacheable() {
+		long product = 1;
+		long prefixes = 0;
+		int limit = this.termOffset + this.termLength;
+		for (int i = this.termOffset; i < limit; ) {
+			int codePoint = Character.codePointAt(this.term, i, limit);
+			i += Character.charCount(codePoint);
+			// 没有读音的字符按原样输出，算作1种
+			product *= Math.max(1, PinyinTable.readings(codePoint).length);
+			prefixes += product;
+			if (product > MAX_CACHED_COMBINATIONS && this.maxCombinations <= 0) {
+				return false;
+			}
+			// 组合数已受maxCombinations限制，不会再超出，避免溢出
+			product = Math.min(product, MAX_CACHED_COMBINATIONS + 1);
+		}
+		long full = this.maxCombinations > 0 ? Math.min(product, this.maxCombinations) : product;
+		long initials = this.maxCombinations > 0 ? Math.min(prefixes, this.maxCombinations) : prefixes;
+		return full + initials <= MAX_CACHED_COMBINATIONS;
+	}
+
+	/**
+	 * 从共享缓存中获取当前词元的拼音结果集，未命中时计算后写入缓存
+	 * @return 未命中且组合数过多、不应缓存时返回null
+	 */
+	private PinyinCache.Value cachedPinyins() {
+		this.cacheKey.set(this.term, this.termOffset, this.termLength, this.maxCombinations, this.dictionary);
+		PinyinCache.Value value = this.cache.get(this.cacheKey);
+		if (value == null) {
+			if (!isCacheable()) {
+				return null;
+			}
+			PinyinCombinationIterator iterator = fullIterator(this.pinyinIte);
+			List<String> pinyins = new ArrayList<String>();
+			List<byte[]> lengths = new ArrayList<byte[]>();
+			while (iterator.hasNext()) {
+				pinyins.add(iterator.next());
+				if (this.syllableEnds.length < iterator.syllableCount()) {
+					this.syllableEnds = new int[Math.max(iterator.syllableCount(), this.syllableEnds.length * 2)];
+				}
+				int count = iterator.syllableEnds(this.syllableEnds);
+				byte[] syllables = new byte[count];
+				for (int i = 0; i < count; i++) {
+					syllables[i] = (byte) (this.syllableEnds[i] - (i == 0 ? 0 : this.syllableEnds[i - 1]));
+				}
+				lengths.add(syllables);
+			}
+			value = new PinyinCache.Value(pinyins.toArray(new String[pinyins.size()]),
+					toArray(shortIterator(this.shortPinyinIte)), lengths.toArray(new byte[lengths.size()][]));
+			this.cache.put(this.cacheKey, value);
+		}
+		return value;
+	}
+
+	private static String[] toArray(Iterator<String> iterator) {
+		List<String> pinyins = new ArrayList<String>();
+		while (iterator.hasNext()) {
+			pinyins.add(iterator.next());
+		}
+		return pinyins.toArray(new String[pinyins.size()]);
+	}
+
+	private static boolean equals(String s, char[] buffer, int length) {
+		if (s.length() != length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (s.charAt(i) != buffer[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static char[] grow(char[] buffer, int length) {
+		if (buffer.length >= length) {
+			return buffer;
+		}
+		return new char[Math.max(length, buffer.length * 2)];
+	}
+}
@@ -0,0 +1,101 @@
+package org.apache.lucene.analysis.pinyin.utils;
+
+import java.util.Arrays;
+
+/**
+ * 合法拼音音节的字典树[由PinyinTable中所有音节构建，只包含a-z]
+ *
+ * 每个节点26个子节点，平铺在一个short数组中，0表示没有子节点(根节点不会是任何节点的子节点)，
+ * 查询只做数组访问，无锁、无对象分配，整个JVM共享一个实例。
+ * @author Lanxiaowei
+ *
+ */
+public final class PinyinSyllableTrie {
+	/**根节点*/
+	public static final int ROOT = 0;
+	private static final int ALPHABET = 26;
+
+	private static final PinyinSyllableTrie INSTANCE = new PinyinSyllableTrie();
+
+	/**节点 * 26 + 字母 -> 子节点*/
+	private final short[] children;
+	/**节点 -> 从根到该节点是否是完整音节*/
+	private final boolean[] syllables;
+
+	private PinyinSyllableTrie() {
+		short[] children = new short[64 * ALPHABET];
+		boolean[] syllables = new boolean[64];
+		int nodes = 1;
+		for (int id = 0; id < PinyinTable.syllableCount(); id++) {
+			char[] syllable = PinyinTable.syllableChars(id);
+			if (!isLetters(syllable)) {
+				// 如e^等特殊读音无法通过键盘直接输入，不参与切分
+				continue;
+			}
+			int node = ROOT;
+			for (char c : syllable) {
+				int slot = node * ALPHABET + (c - 'a');
+				if (children[slot] == 0) {
+					if (nodes == syllables.length) {
+						syllables = Arrays.copyOf(syllables, nodes * 2);
+						children = Arrays.copyOf(children, nodes * 2 * ALPHABET);
+					}
+					children[slot] = (short) nodes++;
+				}
+				node = children[slot];
+			}
+			syllables[node] = true;
+		}
+		this.children = Arrays.copyOf(children, nodes * ALPHABET);
+		this.syllables = Arrays.copyOf(syllables, nodes);
+	}
+
+	public static PinyinSyllableTrie getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * 子节点
+	 * @param node 当前节点
+	 * @param c 小写字母
+	 * @return 没有子节点或c不是a-z时返回-1
+	 */
+	public int child(int node, char c) {
+		if (c < 'a' || c > 'z') {
+			return -1;
+		}
+		int child = children[node * ALPHABET + (c - 'a')];
+		return child == 0 ? -1 : child;
+	}
+
+	/**
+	 * 从根到node是否是完整音节
+	 * @param node
+	 * @return
+	 */
+	public boolean isSyllable(int node) {
+		return syllables[node];
+	}
+
+	/**
+	 * 节点个数
+	 * @return
+	 */
+	public int size() {
+		return syllables.length;
+	}
+
+	/**
+	 * 音节是否只包含a-z[如e^等特殊读音无法通过键盘直接输入]
+	 * @param syllable
+	 * @return
+	 */
+	public static boolean isLetters(char[] syllable) {
+		for (char c : syllable) {
+			if (c < 'a' || c > 'z') {
+				return false;
+			}
+		}
+		return syllable.length > 0;
+	}
+}
@@ -0,0 +1,252 @@
+package org.apache.lucene.analysis.pinyin.utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import net.sourceforge.pinyin4j.PinyinHelper;
+
+/**
+ * 预计算的汉字拼音表[小写、不带声调、ü输出为v，与Pinyin4jUtil的默认输出格式一致]
+ *
+ * 类加载时一次性解析pinyin4j自带的码表，之后只读：
+ * 码点 -> 音节编号数组 -> 音节，查询只需两次数组访问，无锁、无对象分配。
+ * 多音字的读音顺序与pinyin4j保持一致(常用读音在前)，同一个字重复的读音只保留一次。
+ * @author Lanxiaowei
+ *
+ */
+public final class PinyinTable {
+	/**pinyin4j码表路径*/
+	private static final String RESOURCE = "/pinyindb/unicode_to_hanyu_pinyin.txt";
+	/**没有拼音时返回的空数组*/
+	private static final short[] EMPTY = new short[0];
+
+	/**所有不带声调的音节，按字母序排列，下标即音节编号*/
+	private static final String[] SYLLABLES;
+	/**音节对应的字符数组，避免调用方重复toCharArray*/
+	private static final char[][] SYLLABLE_CHARS;
+	/**只包含一个音节编号的数组，下标即音节编号[用于固定某个字的读音]*/
+	private static final short[][] SINGLETONS;
+	/**ASCII字符 -> 是否是单字母音节(如a、e、o)*/
+	private static final boolean[] SINGLE_LETTERS = new boolean[128];
+	/**码表覆盖的第一个码点*/
+	private static final int BASE;
+	/**码点(减去BASE) -> 音节编号数组*/
+	private static final short[][] READINGS;
+
+	static {
+		Map<Integer, List<String>> records = load();
+		TreeSet<String> syllables = new TreeSet<String>();
+		int min = Integer.MAX_VALUE;
+		int max = -1;
+		for (Map.Entry<Integer, List<String>> entry : records.entrySet()) {
+			syllables.addAll(entry.getValue());
+			min = Math.min(min, entry.getKey());
+			max = Math.max(max, entry.getKey());
+		}
+		SYLLABLES = syllables.toArray(new String[syllables.size()]);
+		SYLLABLE_CHARS = new char[SYLLABLES.length][];
+		SINGLETONS = new short[SYLLABLES.length][];
+		Map<String, Short> ids = new HashMap<String, Short>();
+		for (int i = 0; i < SYLLABLES.length; i++) {
+			SYLLABLE_CHARS[i] = SYLLABLES[i].toCharArray();
+			SINGLETONS[i] = new short[] {(short) i};
+			if (SYLLABLE_CHARS[i].length == 1 && SYLLABLE_CHARS[i][0] < 128) {
+				SINGLE_LETTERS[SYLLABLE_CHARS[i][0]] = true;
+			}
+			ids.put(SYLLABLES[i], (short) i);
+		}
+		BASE = records.isEmpty() ? 0 : min;
+		READINGS = new short[records.isEmpty() ? 0 : max - min + 1][];
+		for (Map.Entry<Integer, List<String>> entry : records.entrySet()) {
+			List<String> pinyins = entry.getValue();
+			short[] readings = new short[pinyins.size()];
+			for (int i = 0; i < readings.length; i++) {
+				readings[i] = ids.get(pinyins.get(i));
+			}
+			READINGS[entry.getKey() - BASE] = readings;
+		}
+	}
+
+	private PinyinTable() {
+	}
+
+	/**
+	 * 获取指定码点的所有读音
+	 * @param codePoint 码点
+	 * @return 音节编号数组[共享数组，调用方不能修改]，没有拼音时返回空数组
+	 */
+	public static short[] readings(int codePoint) {
+		int index = codePoint - BASE;
+		if (index < 0 || index >= READINGS.length) {
+			return EMPTY;
+		}
+		short[] readings = READINGS[index];
+		return readings == null ? EMPTY : readings;
+	}
+
+	/**
+	 * 指定码点是否有拼音
+	 * @param codePoint
+	 * @return
+	 */
+	public static boolean hasReadings(int codePoint) {
+		return readings(codePoint).length > 0;
+	}
+
+	/**
+	 * 获取指定码点的所有读音，返回值与PinyinHelper.toHanyuPinyinStringArray一致
+	 * @param codePoint 码点
+	 * @return 拼音数组，没有拼音时返回null
+	 */
+	public static String[] toPinyinArray(int codePoint) {
+		short[] readings = readings(codePoint);
+		if (readings.length == 0) {
+			return null;
+		}
+		String[] pinyins = new String[readings.length];
+		for (int i = 0; i < readings.length; i++) {
+			pinyins[i] = SYLLABLES[readings[i]];
+		}
+		return pinyins;
+	}
+
+	/**
+	 * 只包含指定音节的读音数组
+	 * @param id 音节编号
+	 * @return 共享数组，调用方不能修改
+	 */
+	public static short[] singleton(int id) {
+		return SINGLETONS[id];
+	}
+
+	/**
+	 * 音节总数
+	 * @return
+	 */
+	public static int syllableCount() {
+		return SYLLABLES.length;
+	}
+
+	/**
+	 * 根据音节编号获取音节
+	 * @param id 音节编号
+	 * @return
+	 */
+	public static String syllable(int id) {
+		return SYLLABLES[id];
+	}
+
+	/**
+	 * 根据音节编号获取音节字符数组
+	 * @param id 音节编号
+	 * @return 共享数组，调用方不能修改
+	 */
+	public static char[] syllableChars(int id) {
+		return SYLLABLE_CHARS[id];
+	}
+
+	/**
+	 * 根据音节编号获取音节首字母
+	 * @param id 音节编号
+	 * @return
+	 */
+	public static char initial(int id) {
+		return SYLLABLE_CHARS[id][0];
+	}
+
+	/**
+	 * 指定字符本身是否是一个音节[如a、e、o，这类音节的全拼与简拼相同]
+	 * @param c
+	 * @return
+	 */
+	public static boolean isSingleLetterSyllable(char c) {
+		return c < 128 && SINGLE_LETTERS[c];
+	}
+
+	/**
+	 * 根据音节获取音节编号
+	 * @param syllable 不带声调的小写音节
+	 * @return 音节编号，不是合法音节时返回-1
+	 */
+	public static int syllableId(String syllable) {
+		int id = Arrays.binarySearch(SYLLABLES, syllable);
+		return id < 0 ? -1 : id;
+	}
+
+	/**
+	 * 解析pinyin4j码表，格式与PinyinFormatter的默认输出保持一致
+	 * @return 码点 -> 去重后的读音列表
+	 */
+	private static Map<Integer, List<String>> load() {
+		Map<Integer, List<String>> records = new HashMap<Integer, List<String>>();
+		InputStream in = PinyinHelper.class.getResourceAsStream(RESOURCE);
+		if (in == null) {
+			throw new IllegalStateException("pinyin4j resource " + RESOURCE + " not found");
+		}
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				int space = line.indexOf(' ');
+				if (space < 0) {
+					continue;
+				}
+				String record = line.substring(space + 1).trim();
+				if (!record.startsWith("(") || !record.endsWith(")") || "(none0)".equals(record)) {
+					continue;
+				}
+				List<String> pinyins = new ArrayList<String>();
+				for (String pinyin : record.substring(1, record.length() - 1).split(",")) {
+					pinyin = format(pinyin);
+					if (pinyin.length() > 0 && !pinyins.contains(pinyin)) {
+						pinyins.add(pinyin);
+					}
+				}
+				if (!pinyins.isEmpty()) {
+					records.put(Integer.parseInt(line.substring(0, space), 16), pinyins);
+				}
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("failed to load pinyin4j resource " + RESOURCE, e);
+		} finally {
+			try {
+				reader.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		return records;
+	}
+
+	/**
+	 * 去掉声调数字，u:输出为v，转小写
+	 * @param pinyin 码表中的原始拼音，如lu:3
+	 * @return
+	 */
+	private static String format(String pinyin) {
+		StringBuilder builder = new StringBuilder(pinyin.length());
+		for (int i = 0; i < pinyin.length(); i++) {
+			char c = pinyin.charAt(i);
+			if (c >= '1' && c <= '5') {
+				continue;
+			}
+			if (c == 'u' && i + 1 < pinyin.length() && pinyin.charAt(i + 1) == ':') {
+				builder.append('v');
+				i++;
+				continue;
+			}
+			builder.append(Character.toLowerCase(c));
+		}
+		return builder.toString();
+	}
+}
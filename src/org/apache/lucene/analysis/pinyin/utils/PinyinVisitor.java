@@ -0,0 +1,17 @@
+package org.apache.lucene.analysis.pinyin.utils;
+
+/**
+ * 拼音结果回调接口[配合Pinyin4jUtil的char[]接口使用，避免创建String和集合]
+ * @author Lanxiaowei
+ *
+ */
+public interface PinyinVisitor {
+	/**
+	 * 处理一个拼音结果
+	 * @param buffer 拼音所在的字符数组[回调返回后会被复用，需要保留时请自行复制]
+	 * @param offset 起始位置
+	 * @param length 长度
+	 * @return 是否继续输出后续结果
+	 */
+	boolean visit(char[] buffer, int offset, int length);
+}
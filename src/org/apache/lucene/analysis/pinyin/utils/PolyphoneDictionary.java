@@ -0,0 +1,216 @@
+package org.apache.lucene.analysis.pinyin.utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.lucene.util.IntsRefBuilder;
+import org.apache.lucene.util.fst.Builder;
+import org.apache.lucene.util.fst.FST;
+import org.apache.lucene.util.fst.PositiveIntOutputs;
+import org.apache.lucene.util.fst.Util;
+
+/**
+ * 多音词词典[词 -> 正确读音]，编译为Lucene FST
+ *
+ * 词典文件每行一个词：词 + 空格分隔的不带声调拼音，拼音个数必须与汉字个数一致，以#开头的行为注释，如：
+ * <pre>
+ * 重庆 chong qing
+ * 银行 yin hang
+ * </pre>
+ * FST的输出为词条序号，序号对应的读音以音节编号数组保存。
+ * 词典本身不可变，可以被多个线程共享；查询使用各自的Matcher。
+ * @author Lanxiaowei
+ *
+ */
+public final class PolyphoneDictionary {
+	/**自带的默认词典*/
+	private static final String DEFAULT_RESOURCE = "polyphone.txt";
+	private static volatile PolyphoneDictionary defaultDictionary;
+
+	private final FST<Long> fst;
+	/**词条序号 -> 每个字的音节编号*/
+	private final short[][] readings;
+
+	private PolyphoneDictionary(FST<Long> fst, short[][] readings) {
+		this.fst = fst;
+		this.readings = readings;
+	}
+
+	/**
+	 * 获取自带的默认词典
+	 * @return
+	 */
+	public static PolyphoneDictionary getDefault() {
+		PolyphoneDictionary dictionary = defaultDictionary;
+		if (dictionary == null) {
+			synchronized (PolyphoneDictionary.class) {
+				dictionary = defaultDictionary;
+				if (dictionary == null) {
+					InputStream in = PolyphoneDictionary.class.getResourceAsStream(DEFAULT_RESOURCE);
+					if (in == null) {
+						throw new IllegalStateException("polyphone dictionary " + DEFAULT_RESOURCE + " not found");
+					}
+					try {
+						defaultDictionary = dictionary = load(in);
+					} catch (IOException e) {
+						throw new IllegalStateException("failed to load polyphone dictionary " + DEFAULT_RESOURCE, e);
+					}
+				}
+			}
+		}
+		return dictionary;
+	}
+
+	/**
+	 * 从UTF-8编码的输入流加载词典[加载完成后关闭输入流]
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 */
+	public static PolyphoneDictionary load(InputStream in) throws IOException {
+		return load(new InputStreamReader(in, StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * 加载词典[加载完成后关闭reader]，同一个词出现多次时以最后一次为准
+	 * @param reader
+	 * @return
+	 * @throws IOException
+	 */
+	public static PolyphoneDictionary load(Reader reader) throws IOException {
+		Map<String, short[]> entries = new TreeMap<String, short[]>();
+		BufferedReader in = new BufferedReader(reader);
+		try {
+			String line;
+			int lineNumber = 0;
+			while ((line = in.readLine()) != null) {
+				lineNumber++;
+				line = line.trim();
+				if (line.length() == 0 || line.startsWith("#")) {
+					continue;
+				}
+				String[] parts = line.split("\\s+");
+				String word = parts[0];
+				if (parts.length - 1 != word.codePointCount(0, word.length())) {
+					throw new IllegalArgumentException("line " + lineNumber + ": expected one pinyin per character: " + line);
+				}
+				short[] ids = new short[parts.length - 1];
+				for (int i = 1; i < parts.length; i++) {
+					int id = PinyinTable.syllableId(parts[i].toLowerCase());
+					if (id < 0) {
+						throw new IllegalArgumentException("line " + lineNumber + ": unknown pinyin '" + parts[i] + "': " + line);
+					}
+					ids[i - 1] = (short) id;
+				}
+				entries.put(word, ids);
+			}
+		} finally {
+			in.close();
+		}
+		return build(entries);
+	}
+
+	/**
+	 * 由排好序的词条构造FST
+	 */
+	private static PolyphoneDictionary build(Map<String, short[]> entries) throws IOException {
+		PositiveIntOutputs outputs = PositiveIntOutputs.getSingleton();
+		Builder<Long> builder = new Builder<Long>(FST.INPUT_TYPE.BYTE2, outputs);
+		IntsRefBuilder scratch = new IntsRefBuilder();
+		List<short[]> readings = new ArrayList<short[]>(entries.size());
+		for (Map.Entry<String, short[]> entry : entries.entrySet()) {
+			builder.add(Util.toUTF16(entry.getKey(), scratch), (long) readings.size());
+			readings.add(entry.getValue());
+		}
+		return new PolyphoneDictionary(builder.finish(), readings.toArray(new short[readings.size()][]));
+	}
+
+	/**
+	 * 词条数
+	 * @return
+	 */
+	public int size() {
+		return readings.length;
+	}
+
+	/**
+	 * 词典占用的内存
+	 * @return
+	 */
+	public long ramBytesUsed() {
+		long bytes = fst == null ? 0 : fst.ramBytesUsed();
+		for (short[] ids : readings) {
+			bytes += 16 + 2 * ids.length;
+		}
+		return bytes;
+	}
+
+	/**
+	 * 创建查询器[非线程安全，每个线程/TokenFilter各自持有一个]
+	 * @return
+	 */
+	public Matcher newMatcher() {
+		return new Matcher();
+	}
+
+	/**
+	 * 词典查询器，复用FST的读取对象
+	 */
+	public final class Matcher {
+		private final FST.BytesReader reader = fst == null ? null : fst.getBytesReader();
+		private final FST.Arc<Long> arc = new FST.Arc<Long>();
+		private short[] matched;
+
+		private Matcher() {
+		}
+
+		/**
+		 * 在buffer[offset, limit)中查找从offset开始的最长词
+		 * @param buffer 字符数组
+		 * @param offset 起始位置
+		 * @param limit 结束位置[不包含]
+		 * @return 匹配到的字符数，没有匹配时返回0
+		 */
+		public int longestMatch(char[] buffer, int offset, int limit) {
+			matched = null;
+			if (fst == null) {
+				return 0;
+			}
+			fst.getFirstArc(arc);
+			long output = 0;
+			int length = 0;
+			try {
+				for (int i = offset; i < limit; i++) {
+					if (fst.findTargetArc(buffer[i], arc, arc, reader) == null) {
+						break;
+					}
+					output += arc.output;
+					if (arc.isFinal()) {
+						length = i - offset + 1;
+						matched = readings[(int) (output + arc.nextFinalOutput)];
+					}
+				}
+			} catch (IOException e) {
+				// FST完全在内存中，不会发生
+				throw new RuntimeException(e);
+			}
+			return length;
+		}
+
+		/**
+		 * 最近一次匹配到的词每个字的音节编号[共享数组，调用方不能修改]
+		 * @return 没有匹配时返回null
+		 */
+		public short[] readings() {
+			return matched;
+		}
+	}
+}
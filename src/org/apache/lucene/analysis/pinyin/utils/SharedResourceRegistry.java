@@ -0,0 +1,319 @@
+package org.apache.lucene.analysis.pinyin.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+
+import org.apache.lucene.analysis.util.ResourceLoader;
+import org.apache.lucene.util.IOUtils;
+
+/**
+ * JVM内共享的资源注册表[多音词词典、停用词表、拼音缓存等]，按 类型 + 资源路径 + 内容校验和 引用计数
+ *
+ * 同一个节点上的多个SolrCore配置了相同的资源文件时只解析一次，内存中只保留一份；
+ * 文件内容不同(校验和不同)时即使路径相同也各自加载，互不影响。
+ * 每次acquire得到一个Handle，Handle关闭或被垃圾回收(工厂类随SolrCore卸载而不可达)时引用计数减一，
+ * 计数归零时资源从注册表中移除，随之被回收，实现了Closeable的资源同时被关闭。Solr不会通知分析组件工厂类卸载，
+ * 因此未关闭就被垃圾回收的Handle通过PhantomReference登记，在之后的acquire、Handle关闭时释放，不启动后台线程。
+ * @author Lanxiaowei
+ *
+ */
+public final class SharedResourceRegistry {
+	private static final SharedResourceRegistry INSTANCE = new SharedResourceRegistry();
+
+	private final Map<Key, Entry<?>> entries = new HashMap<Key, Entry<?>>();
+	private final ReferenceQueue<Handle<?>> queue = new ReferenceQueue<Handle<?>>();
+	/**未释放的Handle的PhantomReference[需要强引用，否则引用本身会先被回收]*/
+	private final Set<HandleReference> references =
+			Collections.newSetFromMap(new IdentityHashMap<HandleReference, Boolean>());
+
+	private SharedResourceRegistry() {
+	}
+
+	public static SharedResourceRegistry getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * 从资源流解析资源
+	 * @param <T>
+	 */
+	public interface Parser<T> {
+		/**
+		 * @param in 资源内容[由注册表关闭]
+		 */
+		T parse(InputStream in) throws IOException;
+	}
+
+	/**
+	 * 创建不对应文件的资源
+	 * @param <T>
+	 */
+	public interface Factory<T> {
+		T create() throws IOException;
+	}
+
+	/**
+	 * 获取通过ResourceLoader加载的资源[读取文件计算校验和，相同内容只解析一次]
+	 * @param kind 资源类型，如polyphone、stopwords
+	 * @param loader 资源加载器
+	 * @param path 资源路径
+	 * @param parser 解析器
+	 * @return
+	 * @throws IOException
+	 */
+	public <T> Handle<T> acquire(String kind, ResourceLoader loader, String path, Parser<T> parser)
+			throws IOException {
+		InputStream in = loader.openResource(path);
+		try {
+			return acquire(kind, path, readFully(in), parser);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * 获取由字节内容解析的资源
+	 * @param kind 资源类型
+	 * @param path 资源路径[仅用于区分和展示]
+	 * @param content 资源内容
+	 * @param parser 解析器
+	 * @return
+	 * @throws IOException
+	 */
+	public <T> Handle<T> acquire(String kind, String path, final byte[] content, final Parser<T> parser)
+			throws IOException {
+		CRC32 crc = new CRC32();
+		crc.update(content, 0, content.length);
+		return acquire(new Key(kind, path, crc.getValue()), new Factory<T>() {
+			@Override
+			public T create() throws IOException {
+				return parser.parse(new ByteArrayInputStream(content));
+			}
+		});
+	}
+
+	/**
+	 * 获取不对应文件的资源[如拼音缓存]，同一类型、名称只创建一次
+	 * @param kind 资源类型
+	 * @param name 资源名称
+	 * @param factory 第一次获取时用于创建资源
+	 * @return
+	 * @throws IOException
+	 */
+	public <T> Handle<T> acquire(String kind, String name, Factory<T> factory) throws IOException {
+		return acquire(new Key(kind, name, 0L), factory);
+	}
+
+	private <T> Handle<T> acquire(Key key, Factory<T> factory) throws IOException {
+		releaseCollected();
+		Entry<T> entry;
+		synchronized (this) {
+			@SuppressWarnings("unchecked")
+			Entry<T> existing = (Entry<T>) this.entries.get(key);
+			entry = existing;
+			if (entry == null) {
+				entry = new Entry<T>(key);
+				this.entries.put(key, entry);
+			}
+			entry.refCount++;
+		}
+		try {
+			T value = entry.get(factory);
+			Handle<T> handle = new Handle<T>(value);
+			HandleReference reference = new HandleReference(handle, entry);
+			handle.reference = reference;
+			synchronized (this) {
+				this.references.add(reference);
+			}
+			return handle;
+		} catch (IOException e) {
+			release(entry);
+			throw e;
+		} catch (RuntimeException e) {
+			release(entry);
+			throw e;
+		}
+	}
+
+	private void release(Entry<?> entry) {
+		synchronized (this) {
+			if (--entry.refCount > 0) {
+				return;
+			}
+			this.entries.remove(entry.key);
+		}
+		entry.close();
+	}
+
+	/**
+	 * 释放已被垃圾回收但未关闭的Handle[不持有注册表的锁调用，资源的关闭不阻塞其他线程]
+	 */
+	private void releaseCollected() {
+		HandleReference reference;
+		while ((reference = (HandleReference) this.queue.poll()) != null) {
+			reference.release();
+		}
+	}
+
+	/**
+	 * 注册表中的资源个数
+	 * @return
+	 */
+	public int size() {
+		releaseCollected();
+		synchronized (this) {
+			return this.entries.size();
+		}
+	}
+
+	/**
+	 * 某个资源当前的引用数[所有内容版本之和]
+	 * @param kind 资源类型
+	 * @param path 资源路径或名称
+	 * @return
+	 */
+	public int refCount(String kind, String path) {
+		releaseCollected();
+		synchronized (this) {
+			int count = 0;
+			for (Entry<?> entry : this.entries.values()) {
+				if (entry.key.kind.equals(kind) && entry.key.path.equals(path)) {
+					count += entry.refCount;
+				}
+			}
+			return count;
+		}
+	}
+
+	private static byte[] readFully(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			out.write(buffer, 0, read);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * 资源的一个引用，关闭后不能再使用get()得到的资源
+	 * @param <T>
+	 */
+	public static final class Handle<T> implements Closeable {
+		private final T value;
+		private HandleReference reference;
+
+		private Handle(T value) {
+			this.value = value;
+		}
+
+		public T get() {
+			return value;
+		}
+
+		/**
+		 * 释放引用[可重复调用]
+		 */
+		@Override
+		public void close() {
+			this.reference.release();
+			INSTANCE.releaseCollected();
+		}
+	}
+
+	/**
+	 * 注册表中的一个资源，第一次获取时在自身的锁内加载，同一资源的并发加载只执行一次，
+	 * 不同资源的加载互不阻塞
+	 */
+	private static final class Entry<T> {
+		private final Key key;
+		/**由注册表的锁保护*/
+		private int refCount;
+		private T value;
+		private boolean loaded;
+
+		Entry(Key key) {
+			this.key = key;
+		}
+
+		synchronized T get(Factory<T> factory) throws IOException {
+			if (!this.loaded) {
+				this.value = factory.create();
+				this.loaded = true;
+			}
+			return this.value;
+		}
+
+		/**
+		 * 最后一个引用释放后关闭实现了Closeable的资源[如后台线程]
+		 */
+		synchronized void close() {
+			if (this.value instanceof Closeable) {
+				IOUtils.closeWhileHandlingException((Closeable) this.value);
+			}
+			this.value = null;
+		}
+	}
+
+	private final class HandleReference extends PhantomReference<Handle<?>> {
+		private final Entry<?> entry;
+		private final AtomicBoolean released = new AtomicBoolean();
+
+		HandleReference(Handle<?> handle, Entry<?> entry) {
+			super(handle, queue);
+			this.entry = entry;
+		}
+
+		void release() {
+			if (this.released.compareAndSet(false, true)) {
+				synchronized (SharedResourceRegistry.this) {
+					references.remove(this);
+				}
+				SharedResourceRegistry.this.release(this.entry);
+			}
+		}
+	}
+
+	private static final class Key {
+		final String kind;
+		final String path;
+		final long checksum;
+
+		Key(String kind, String path, long checksum) {
+			this.kind = kind;
+			this.path = path;
+			this.checksum = checksum;
+		}
+
+		@Override
+		public int hashCode() {
+			return (this.kind.hashCode() * 31 + this.path.hashCode()) * 31 + (int) (this.checksum ^ (this.checksum >>> 32));
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return this.checksum == other.checksum && this.kind.equals(other.kind) && this.path.equals(other.path);
+		}
+
+		@Override
+		public String toString() {
+			return this.kind + ":" + this.path + "@" + Long.toHexString(this.checksum);
+		}
+	}
+}
@@ -5,17 +5,16 @@ public class StringUtils {
 		if ((s == null) || ("".equals(s.trim()))) {
 			return false;
 		}
-		for (int i = 0; i < s.length(); i++) {
-			if (isChinese(s.charAt(i))) {
-				return true;
-			}
-		}
-		return false;
+		return CharClassifier.containsHan(CharClassifier.classify(s));
 	}
 
+	/**
+	 * 是否是汉字[只能判断基本平面的字符，增补平面的汉字请使用isChinese(String)]
+	 * @param a
+	 * @return
+	 */
 	public static boolean isChinese(char a) {
-		int v = a;
-		return (v >= 19968) && (v <= 171941);
+		return CharClassifier.isHan(a);
 	}
 	
 	/**
@@ -24,18 +23,18 @@ public class StringUtils {
 	 * @return
 	 */
 	public static boolean isChinese(String strName) {
-        char[] ch = strName.toCharArray();
-        for (int i = 0; i < ch.length; i++) {
-            char c = ch[i];
-            if (!isChinese(c)) {
+        for (int i = 0; i < strName.length(); ) {
+            int codePoint = strName.codePointAt(i);
+            if (!CharClassifier.isHan(codePoint)) {
                 return false;
             }
+            i += Character.charCount(codePoint);
         }
         return true;
     }
 	
 	/**
-	 * 判断字符串中是否含有中文
+	 * 统计字符串中汉字的个数[按码点计算]
 	 * @param s
 	 * @return
 	 */
@@ -43,11 +42,7 @@ public class StringUtils {
 		int count = 0;
 		if ((null == s) || ("".equals(s.trim())))
 			return count;
-		for (int i = 0; i < s.length(); i++) {
-			if (isChinese(s.charAt(i)))
-				count++;
-		}
-		return count;
+		return CharClassifier.hanCount(CharClassifier.classify(s));
 	}
 	
 	/**
@@ -56,17 +51,9 @@ public class StringUtils {
 	 * @return
 	 */
 	public static boolean isNumeric(String str) {
-		boolean flag = true;
-
-		if (null == str || str.length() == 0) {
-			flag = false;
-		} else {
-			for (int i = str.length(); --i >= 0;) {
-				if (!Character.isDigit(str.charAt(i))) {
-					flag = false;
-				}
-			}
+		if (null == str) {
+			return false;
 		}
-		return flag;
+		return CharClassifier.isAllDigits(CharClassifier.classify(str));
 	}
 }
@@ -0,0 +1,82 @@
+package org.apache.lucene.analysis.pinyin.utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 分段计数器[多线程同时累加时竞争很小]
+ *
+ * 每个线程按线程ID散列到一个分段上累加，分段之间相隔一个缓存行，避免伪共享；读取时汇总所有分段。
+ * 读取结果不是某一时刻的精确快照，用于统计已经足够。
+ * @author Lanxiaowei
+ *
+ */
+public final class StripedCounter {
+	/**分段间隔[8个long即64字节，一个缓存行]*/
+	private static final int PADDING = 8;
+	/**默认分段数：不小于CPU核数的2的幂*/
+	private static final int DEFAULT_STRIPES = stripesFor(Runtime.getRuntime().availableProcessors());
+
+	private final AtomicLongArray cells;
+	private final int mask;
+
+	public StripedCounter() {
+		this(DEFAULT_STRIPES);
+	}
+
+	/**
+	 * @param stripes 分段数，向上取整为2的幂
+	 */
+	public StripedCounter(int stripes) {
+		int count = stripesFor(stripes);
+		this.cells = new AtomicLongArray(count * PADDING);
+		this.mask = count - 1;
+	}
+
+	public void increment() {
+		add(1L);
+	}
+
+	public void add(long delta) {
+		this.cells.getAndAdd(index(), delta);
+	}
+
+	/**
+	 * 所有分段的和
+	 * @return
+	 */
+	public long sum() {
+		long sum = 0;
+		for (int i = 0; i < this.cells.length(); i += PADDING) {
+			sum += this.cells.get(i);
+		}
+		return sum;
+	}
+
+	/**
+	 * 清零[与并发的累加之间不保证原子性]
+	 */
+	public void reset() {
+		for (int i = 0; i < this.cells.length(); i += PADDING) {
+			this.cells.set(i, 0L);
+		}
+	}
+
+	private int index() {
+		long id = Thread.currentThread().getId();
+		int hash = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+		return ((hash ^ (hash >>> 16)) & this.mask) * PADDING;
+	}
+
+	private static int stripesFor(int stripes) {
+		int count = 1;
+		while (count < stripes && count < (1 << 16)) {
+			count <<= 1;
+		}
+		return count;
+	}
+
+	@Override
+	public String toString() {
+		return Long.toString(sum());
+	}
+}
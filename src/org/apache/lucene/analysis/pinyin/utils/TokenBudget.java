@@ -0,0 +1,96 @@
+package org.apache.lucene.analysis.pinyin.utils;
+
+/**
+ * 每个字段值[每篇文档]的词元预算
+ *
+ * maxTokens限制拼音过滤器及其下游NGram过滤器输出的词元总数，超出后逐级降级：
+ * 先不再切分NGram，每再多输出step个词元降一级，依次为只输出简拼、只输出原词元；
+ * NGram过滤器在词元数达到maxTokens时放弃正在切分的词元剩余的NGram，一个长拼音也不会越过预算，因此一个字段值输出的词元数不超过maxTokens + 2 * step再加上输入词元数，索引耗时有确定的上限。
+ * maxTermCombinations限制单个词元展开的拼音个数，超出的词元只输出简拼，简拼仍然超出时只输出原词元。
+ * 不可变，可以在多个TokenFilter之间共享。
+ * @author Lanxiaowei
+ *
+ */
+public final class TokenBudget {
+	/**未降级*/
+	public static final int LEVEL_FULL = 0;
+	/**不再切分NGram*/
+	public static final int LEVEL_NO_NGRAM = 1;
+	/**只输出简拼*/
+	public static final int LEVEL_SHORT_PINYIN = 2;
+	/**只输出原词元*/
+	public static final int LEVEL_ORIGINAL_ONLY = 3;
+	private static final String[] LEVEL_NAMES = {"full", "noNGram", "shortPinyin", "originalOnly"};
+
+	/**预算名称[通常为字段名，用于日志]，可以为null*/
+	private final String name;
+	/**每个字段值最多输出的词元数，小于等于0表示不限制*/
+	private final int maxTokens;
+	/**每个词元最多展开的拼音个数，小于等于0表示不限制*/
+	private final int maxTermCombinations;
+	/**超出maxTokens后每降一级允许多输出的词元数*/
+	private final int step;
+
+	/**
+	 * @param name 预算名称[通常为字段名，用于日志]，可以为null
+	 * @param maxTokens 每个字段值最多输出的词元数，小于等于0表示不限制
+	 * @param maxTermCombinations 每个词元最多展开的拼音个数，小于等于0表示不限制
+	 */
+	public TokenBudget(String name, int maxTokens, int maxTermCombinations) {
+		this.name = name;
+		this.maxTokens = maxTokens;
+		this.maxTermCombinations = maxTermCombinations;
+		this.step = Math.max(1, maxTokens / 4);
+	}
+
+	/**
+	 * 已输出tokens个词元时应处于的降级级别
+	 * @param tokens 当前字段值已输出的词元数
+	 * @return LEVEL_FULL到LEVEL_ORIGINAL_ONLY之一
+	 */
+	public int levelFor(int tokens) {
+		if (this.maxTokens <= 0 || tokens <= this.maxTokens) {
+			return LEVEL_FULL;
+		}
+		return Math.min(LEVEL_ORIGINAL_ONLY, LEVEL_NO_NGRAM + (tokens - this.maxTokens - 1) / this.step);
+	}
+
+	/**
+	 * 一个词元展开拼音个数的上限
+	 * @return 小于等于0表示不限制
+	 */
+	public int getMaxTermCombinations() {
+		return this.maxTermCombinations;
+	}
+
+	public int getMaxTokens() {
+		return this.maxTokens;
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * 是否有任何限制
+	 * @return
+	 */
+	public boolean isLimited() {
+		return this.maxTokens > 0 || this.maxTermCombinations > 0;
+	}
+
+	/**
+	 * 降级级别的名称
+	 * @param level LEVEL_FULL到LEVEL_ORIGINAL_ONLY之一
+	 * @return
+	 */
+	public static String levelName(int level) {
+		return LEVEL_NAMES[level];
+	}
+
+	@Override
+	public String toString() {
+		return "TokenBudget(" + this.name + ", maxTokens=" + this.maxTokens + ", maxTermCombinations="
+				+ this.maxTermCombinations + ")";
+	}
+}
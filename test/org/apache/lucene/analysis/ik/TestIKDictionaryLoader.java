@@ -0,0 +1,40 @@
+package org.apache.lucene.analysis.ik;
+
+import java.io.IOException;
+
+import org.apache.lucene.util.LuceneTestCase;
+import org.wltea.analyzer.cfg.Configuration;
+import org.wltea.analyzer.cfg.DefaultConfig;
+import org.wltea.analyzer.dic.Dictionary;
+
+/**
+ * IKDictionaryLoader的测试：重新加载整体替换IK的单例，重新加载后不会被IKDictionaryWatcher重复加载
+ * @author Lanxiaowei
+ *
+ */
+public class TestIKDictionaryLoader extends LuceneTestCase {
+	private static final char[] WORD = "中华人民共和国".toCharArray();
+
+	public void testReloadPublishesNewSingleton() throws IOException {
+		Configuration cfg = DefaultConfig.getInstance();
+		Dictionary before = IKDictionaryLoader.load(cfg, null, false);
+		assertSame(before, Dictionary.getSingleton());
+		long version = IKDictionaryLoader.getVersion();
+
+		assertEquals(version + 1, IKDictionaryLoader.reload(cfg, false));
+		Dictionary after = Dictionary.getSingleton();
+		assertNotSame(before, after);
+		// 旧实例不被修改，仍在使用旧实例的查找结果不变
+		assertTrue(before.matchInMainDict(WORD).isMatch());
+		assertTrue(after.matchInMainDict(WORD).isMatch());
+	}
+
+	public void testReloadRefreshesChecksums() throws IOException {
+		Configuration cfg = DefaultConfig.getInstance();
+		IKDictionaryLoader.reload(cfg, false);
+		long version = IKDictionaryLoader.getVersion();
+		// 词典文件没有变化，IKDictionaryWatcher不再重复加载
+		assertFalse(IKDictionaryLoader.reloadIfChanged(cfg, false));
+		assertEquals(version, IKDictionaryLoader.getVersion());
+	}
+}
@@ -0,0 +1,107 @@
+package org.apache.lucene.analysis.ik;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.lucene.store.ByteArrayDataInput;
+import org.apache.lucene.store.OutputStreamDataOutput;
+import org.apache.lucene.util.LuceneTestCase;
+import org.wltea.analyzer.cfg.Configuration;
+import org.wltea.analyzer.cfg.DefaultConfig;
+import org.wltea.analyzer.dic.Dictionary;
+
+/**
+ * IKDictionarySnapshot的测试：写出、重新读取，快照过期或损坏时回退到文本词典
+ * @author Lanxiaowei
+ *
+ */
+public class TestIKDictionarySnapshot extends LuceneTestCase {
+	private static final String[] WORDS = {"中华人民共和国", "人民", "共和国", "北京", "重庆"};
+	private static final String[] STOP_WORDS = {"的", "了"};
+
+	private Configuration cfg;
+	private Dictionary text;
+	private byte[] snapshot;
+
+	@Override
+	public void setUp() throws Exception {
+		super.setUp();
+		cfg = DefaultConfig.getInstance();
+		text = IKDictionaryLoader.loadText(cfg, false);
+		snapshot = write(text);
+	}
+
+	private byte[] write(Dictionary dictionary) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		IKDictionarySnapshot.write(dictionary, cfg, new OutputStreamDataOutput(bytes));
+		return bytes.toByteArray();
+	}
+
+	public void testRoundTrip() throws IOException {
+		Dictionary read = IKDictionarySnapshot.read(cfg, new ByteArrayDataInput(snapshot));
+		assertNotNull(read);
+		// 重建的字典树再次写出与原字典树完全相同
+		assertTrue(Arrays.equals(snapshot, write(read)));
+		assertSameLookups(text, read);
+	}
+
+	public void testChecksumMismatchIsStale() throws IOException {
+		byte[] stale = staleSnapshot();
+		assertNull(IKDictionarySnapshot.read(cfg, new ByteArrayDataInput(stale)));
+		// 过期的快照按文本词典加载
+		Dictionary loaded = IKDictionaryLoader.load(cfg, new ByteArrayInputStream(stale), false);
+		assertSameLookups(text, loaded);
+	}
+
+	public void testCorruptSnapshotFallsBackToText() throws IOException {
+		byte[] corrupt = snapshot.clone();
+		corrupt[0] ^= 0xFF;
+		Dictionary loaded = IKDictionaryLoader.load(cfg, new ByteArrayInputStream(corrupt), false);
+		assertSameLookups(text, loaded);
+	}
+
+	public void testLoadFromSnapshot() throws IOException {
+		Dictionary loaded = IKDictionaryLoader.load(cfg, new ByteArrayInputStream(snapshot), false);
+		assertSame(loaded, Dictionary.getSingleton());
+		assertSameLookups(text, loaded);
+	}
+
+	/**
+	 * 修改快照中记录的主词典校验和
+	 */
+	private byte[] staleSnapshot() throws IOException {
+		long checksum = IKDictionaries.checksum(cfg.getMainDictionary());
+		byte[] expected = new byte[8];
+		for (int i = 0; i < 8; i++) {
+			expected[i] = (byte) (checksum >>> (56 - 8 * i));
+		}
+		byte[] stale = snapshot.clone();
+		for (int pos = 0; pos + 8 <= stale.length; pos++) {
+			if (Arrays.equals(expected, Arrays.copyOfRange(stale, pos, pos + 8))) {
+				stale[pos + 7] ^= 1;
+				return stale;
+			}
+		}
+		throw new AssertionError("main dictionary checksum not found in snapshot");
+	}
+
+	private static void assertSameLookups(Dictionary expected, Dictionary actual) {
+		for (String word : WORDS) {
+			char[] chars = word.toCharArray();
+			assertEquals(word, expected.matchInMainDict(chars).isMatch(), actual.matchInMainDict(chars).isMatch());
+			assertEquals(word, expected.matchInMainDict(chars, 0, 1).isPrefix(),
+					actual.matchInMainDict(chars, 0, 1).isPrefix());
+		}
+		assertTrue(actual.matchInMainDict("中华人民共和国".toCharArray()).isMatch());
+		for (String word : STOP_WORDS) {
+			char[] chars = word.toCharArray();
+			assertEquals(word, expected.isStopWord(chars, 0, chars.length), actual.isStopWord(chars, 0, chars.length));
+		}
+		char[] quantifier = "个".toCharArray();
+		assertEquals(expected.matchInQuantifierDict(quantifier, 0, 1).isMatch(),
+				actual.matchInQuantifierDict(quantifier, 0, 1).isMatch());
+		assertTrue(actual.matchInQuantifierDict(quantifier, 0, 1).isMatch());
+	}
+}
@@ -0,0 +1,156 @@
+package org.apache.lucene.analysis.pinyin.lucene5;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.BaseTokenStreamTestCase;
+import org.apache.lucene.analysis.MockTokenizer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.pinyin.utils.Constant;
+import org.apache.lucene.analysis.pinyin.utils.PinyinCache;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+
+/**
+ * PinyinGramTokenFilter的测试：输出必须与PinyinTokenFilter + PinyinNGramTokenFilter/PinyinEdgeNGramTokenFilter完全相同
+ * @author Lanxiaowei
+ *
+ */
+public class TestPinyinGramTokenFilter extends BaseTokenStreamTestCase {
+	private static final String[] TEXTS = {
+		"中国 abc",
+		"中华人民共和国国务院办公厅",
+		"长城 银行行长 重庆",
+		"刘德华 2015 iphone6",
+		"饿 a 中 12",
+	};
+
+	public void testSameAsSeparateNGramChain() throws IOException {
+		for (boolean shortPinyin : new boolean[] {false, true}) {
+			for (boolean pinyinAll : new boolean[] {false, true}) {
+				for (boolean nGramChinese : new boolean[] {false, true}) {
+					for (boolean mixInitials : new boolean[] {false, true}) {
+						assertSameOutput(new Chain(shortPinyin, pinyinAll, false, null, nGramChinese, mixInitials));
+					}
+				}
+			}
+		}
+	}
+
+	public void testSameAsSeparateEdgeNGramChain() throws IOException {
+		for (String side : new String[] {"front", "back"}) {
+			for (boolean pinyinAll : new boolean[] {false, true}) {
+				for (boolean nGramChinese : new boolean[] {false, true}) {
+					assertSameOutput(new Chain(false, pinyinAll, true, side, nGramChinese, false));
+				}
+			}
+		}
+	}
+
+	public void testRandomStrings() throws IOException {
+		//EdgeNGram按拼音中的字符位置计算偏移量，可能超出原文长度，这里只检查NGram
+		Analyzer analyzer = new Chain(false, true, false, null, true, true).fused(new PinyinCache(1000));
+		checkRandomData(random(), analyzer, 100 * RANDOM_MULTIPLIER);
+		analyzer.close();
+	}
+
+	private static void assertSameOutput(Chain chain) throws IOException {
+		Analyzer fused = chain.fused(null);
+		Analyzer separate = chain.separate();
+		for (String text : TEXTS) {
+			assertEquals(chain + " " + text, tokens(separate, text), tokens(fused, text));
+		}
+		fused.close();
+		separate.close();
+	}
+
+	/**
+	 * 词元 + 偏移 + 位置增量 + 类型
+	 */
+	private static List<String> tokens(Analyzer analyzer, String text) throws IOException {
+		List<String> tokens = new ArrayList<String>();
+		TokenStream ts = analyzer.tokenStream("field", text);
+		try {
+			CharTermAttribute termAtt = ts.addAttribute(CharTermAttribute.class);
+			OffsetAttribute offsetAtt = ts.addAttribute(OffsetAttribute.class);
+			PositionIncrementAttribute posIncrAtt = ts.addAttribute(PositionIncrementAttribute.class);
+			TypeAttribute typeAtt = ts.addAttribute(TypeAttribute.class);
+			ts.reset();
+			while (ts.incrementToken()) {
+				tokens.add(termAtt + "/" + offsetAtt.startOffset() + "-" + offsetAtt.endOffset() + "/+"
+						+ posIncrAtt.getPositionIncrement() + "/" + typeAtt.type());
+			}
+			ts.end();
+		} finally {
+			ts.close();
+		}
+		return tokens;
+	}
+
+	/**
+	 * 一组分词链参数
+	 */
+	private static final class Chain {
+		private final boolean shortPinyin;
+		private final boolean pinyinAll;
+		private final boolean edges;
+		private final String side;
+		private final boolean nGramChinese;
+		private final boolean mixInitials;
+
+		Chain(boolean shortPinyin, boolean pinyinAll, boolean edges, String side, boolean nGramChinese,
+				boolean mixInitials) {
+			this.shortPinyin = shortPinyin;
+			this.pinyinAll = pinyinAll;
+			this.edges = edges;
+			this.side = side == null ? Constant.DEFAULT_SIDE_FRONT : side;
+			this.nGramChinese = nGramChinese;
+			this.mixInitials = mixInitials;
+		}
+
+		Analyzer fused(final PinyinCache cache) {
+			return new Analyzer() {
+				@Override
+				protected TokenStreamComponents createComponents(String fieldName) {
+					Tokenizer tokenizer = new MockTokenizer(MockTokenizer.WHITESPACE, false);
+					return new TokenStreamComponents(tokenizer, new PinyinGramTokenFilter(tokenizer, shortPinyin,
+							pinyinAll, Constant.DEFAULT_OUT_CHINESE, Constant.DEFAULT_MIN_TERM_LRNGTH,
+							Constant.DEFAULT_MAX_COMBINATIONS, cache, null, edges, side, Constant.DEFAULT_MIN_GRAM,
+							Constant.DEFAULT_MAX_GRAM, nGramChinese, Constant.DEFAULT_NGRAM_NUMBER,
+							Constant.DEFAULT_SYLLABLE_START, Constant.DEFAULT_SYLLABLE_END, mixInitials));
+				}
+			};
+		}
+
+		Analyzer separate() {
+			return new Analyzer() {
+				@Override
+				protected TokenStreamComponents createComponents(String fieldName) {
+					Tokenizer tokenizer = new MockTokenizer(MockTokenizer.WHITESPACE, false);
+					TokenStream stream = new PinyinTokenFilter(tokenizer, shortPinyin, pinyinAll,
+							Constant.DEFAULT_OUT_CHINESE, Constant.DEFAULT_MIN_TERM_LRNGTH,
+							Constant.DEFAULT_MAX_COMBINATIONS, null, null);
+					stream = edges ?
+							new PinyinEdgeNGramTokenFilter(stream, side, Constant.DEFAULT_MIN_GRAM,
+									Constant.DEFAULT_MAX_GRAM, nGramChinese, Constant.DEFAULT_NGRAM_NUMBER,
+									Constant.DEFAULT_SYLLABLE_START, Constant.DEFAULT_SYLLABLE_END, mixInitials) :
+							new PinyinNGramTokenFilter(stream, Constant.DEFAULT_MIN_GRAM, Constant.DEFAULT_MAX_GRAM,
+									nGramChinese, Constant.DEFAULT_NGRAM_NUMBER, Constant.DEFAULT_SYLLABLE_START,
+									Constant.DEFAULT_SYLLABLE_END, mixInitials);
+					return new TokenStreamComponents(tokenizer, stream);
+				}
+			};
+		}
+
+		@Override
+		public String toString() {
+			return "shortPinyin=" + shortPinyin + ",pinyinAll=" + pinyinAll + ",edges=" + edges + ",side=" + side
+					+ ",nGramChinese=" + nGramChinese + ",mixInitials=" + mixInitials;
+		}
+	}
+}
@@ -0,0 +1,59 @@
+package org.apache.lucene.analysis.pinyin.lucene5;
+
+import java.io.IOException;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.BaseTokenStreamTestCase;
+import org.apache.lucene.analysis.MockTokenizer;
+import org.apache.lucene.analysis.Tokenizer;
+
+/**
+ * PinyinNGramTokenFilter的测试
+ * @author Lanxiaowei
+ *
+ */
+public class TestPinyinNGramTokenFilter extends BaseTokenStreamTestCase {
+	private static Analyzer analyzer(final boolean dedupGrams) {
+		return new Analyzer() {
+			@Override
+			protected TokenStreamComponents createComponents(String fieldName) {
+				Tokenizer tokenizer = new MockTokenizer(MockTokenizer.WHITESPACE, false);
+				return new TokenStreamComponents(tokenizer, new PinyinNGramTokenFilter(tokenizer, 1, 2,
+						false, false, false, false, false, dedupGrams));
+			}
+		};
+	}
+
+	public void testDuplicateGramsAreKept() throws IOException {
+		Analyzer analyzer = analyzer(false);
+		assertAnalyzesTo(analyzer, "abab cd",
+				new String[] {"a", "ab", "b", "ba", "a", "ab", "b", "c", "cd", "d"},
+				new int[] {0, 0, 0, 0, 0, 0, 0, 5, 5, 5},
+				new int[] {4, 4, 4, 4, 4, 4, 4, 7, 7, 7},
+				new int[] {1, 0, 0, 0, 0, 0, 0, 1, 0, 0});
+		analyzer.close();
+	}
+
+	public void testDedupGrams() throws IOException {
+		Analyzer analyzer = analyzer(true);
+		// 同一位置上重复的NGram只输出一次，位置增量与偏移量不变
+		assertAnalyzesTo(analyzer, "abab cd",
+				new String[] {"a", "ab", "b", "ba", "c", "cd", "d"},
+				new int[] {0, 0, 0, 0, 5, 5, 5},
+				new int[] {4, 4, 4, 4, 7, 7, 7},
+				new int[] {1, 0, 0, 0, 1, 0, 0});
+		// 不同位置上相同的NGram都要保留
+		assertAnalyzesTo(analyzer, "ab ab",
+				new String[] {"a", "ab", "b", "a", "ab", "b"},
+				new int[] {0, 0, 0, 3, 3, 3},
+				new int[] {2, 2, 2, 5, 5, 5},
+				new int[] {1, 0, 0, 1, 0, 0});
+		analyzer.close();
+	}
+
+	public void testRandomStrings() throws IOException {
+		Analyzer analyzer = analyzer(true);
+		checkRandomData(random(), analyzer, 100 * RANDOM_MULTIPLIER);
+		analyzer.close();
+	}
+}
@@ -0,0 +1,109 @@
+package org.apache.lucene.analysis.pinyin.lucene5;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.MockTokenizer;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.pinyin.utils.Constant;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.LuceneTestCase;
+
+/**
+ * PinyinPrefixQuery的测试：用户输入的不完整拼音与索引端PinyinTokenFilter输出的全拼匹配
+ * @author Lanxiaowei
+ *
+ */
+public class TestPinyinPrefixQuery extends LuceneTestCase {
+	private static final String FIELD = "name";
+	private static final String[] NAMES = {"重庆", "中国人", "长城", "北京"};
+
+	private Directory directory;
+	private IndexReader reader;
+	private IndexSearcher searcher;
+	private Analyzer analyzer;
+
+	@Override
+	public void setUp() throws Exception {
+		super.setUp();
+		analyzer = new Analyzer() {
+			@Override
+			protected TokenStreamComponents createComponents(String fieldName) {
+				Tokenizer tokenizer = new MockTokenizer(MockTokenizer.WHITESPACE, false);
+				return new TokenStreamComponents(tokenizer, new PinyinTokenFilter(tokenizer,
+						Constant.DEFAULT_SHORT_PINYIN, Constant.DEFAULT_PINYIN_ALL, Constant.DEFAULT_OUT_CHINESE,
+						Constant.DEFAULT_MIN_TERM_LRNGTH, Constant.DEFAULT_MAX_COMBINATIONS, null));
+			}
+		};
+		directory = newDirectory();
+		RandomIndexWriter writer = new RandomIndexWriter(random(), directory, analyzer);
+		for (String name : NAMES) {
+			Document doc = new Document();
+			doc.add(new StringField("id", name, Field.Store.YES));
+			doc.add(new TextField(FIELD, name, Field.Store.NO));
+			writer.addDocument(doc);
+		}
+		reader = writer.getReader();
+		writer.close();
+		searcher = newSearcher(reader);
+	}
+
+	@Override
+	public void tearDown() throws Exception {
+		reader.close();
+		directory.close();
+		analyzer.close();
+		super.tearDown();
+	}
+
+	private Set<String> search(String input) throws IOException {
+		Set<String> names = new HashSet<String>();
+		for (ScoreDoc hit : searcher.search(new PinyinPrefixQuery(new Term(FIELD, input)), 10).scoreDocs) {
+			names.add(searcher.doc(hit.doc).get("id"));
+		}
+		return names;
+	}
+
+	private static Set<String> names(String... names) {
+		Set<String> set = new HashSet<String>();
+		for (String name : names) {
+			set.add(name);
+		}
+		return set;
+	}
+
+	public void testPartialSyllable() throws IOException {
+		assertEquals(names("重庆"), search("chongq"));
+		assertEquals(names("重庆"), search("chongqing"));
+		assertEquals(names("北京"), search("beij"));
+	}
+
+	public void testInitials() throws IOException {
+		assertEquals(names("重庆"), search("cq"));
+		assertEquals(names("中国人"), search("zgr"));
+		assertEquals(names("长城"), search("cc"));
+		assertEquals(names("重庆", "长城"), search("c"));
+	}
+
+	public void testMixedInput() throws IOException {
+		assertEquals(names("中国人"), search("zhongguor"));
+		assertEquals(names("中国人"), search("zhong'g"));
+	}
+
+	public void testNoMatch() throws IOException {
+		assertEquals(names(), search("xa"));
+		assertEquals(names(), search("beijingren"));
+		assertEquals(names(), search(""));
+	}
+}
@@ -0,0 +1,78 @@
+package org.apache.lucene.analysis.pinyin.lucene5;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.BaseTokenStreamTestCase;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.pinyin.utils.Constant;
+
+/**
+ * PinyinSegmentTokenizer的测试
+ * @author Lanxiaowei
+ *
+ */
+public class TestPinyinSegmentTokenizer extends BaseTokenStreamTestCase {
+	private static final String PINYIN = Constant.TYPE_PINYIN;
+	private static final String PREFIX = Constant.TYPE_PINYIN_PREFIX;
+	private static final String WORD = Constant.TYPE_NORMAL_WORD;
+
+	private static void assertSegments(String input, String[] terms, int[] starts, int[] ends,
+			String[] types) throws IOException {
+		Tokenizer tokenizer = new PinyinSegmentTokenizer();
+		tokenizer.setReader(new StringReader(input));
+		assertTokenStreamContents(tokenizer, terms, starts, ends, types, null, null, input.length());
+	}
+
+	public void testWholeSyllablePreferred() throws IOException {
+		assertSegments("xian",
+				new String[] {"xian"}, new int[] {0}, new int[] {4}, new String[] {PINYIN});
+	}
+
+	public void testSyllableSeparator() throws IOException {
+		assertSegments("xi'an",
+				new String[] {"xi", "an"}, new int[] {0, 3}, new int[] {2, 5}, new String[] {PINYIN, PINYIN});
+	}
+
+	public void testZeroInitialPenalty() throws IOException {
+		// fan gan优先于fang an
+		assertSegments("fangan",
+				new String[] {"fan", "gan"}, new int[] {0, 3}, new int[] {3, 6}, new String[] {PINYIN, PINYIN});
+	}
+
+	public void testTrailingPartialSyllable() throws IOException {
+		assertSegments("chongqingd",
+				new String[] {"chong", "qing", "d"}, new int[] {0, 5, 9}, new int[] {5, 9, 10},
+				new String[] {PINYIN, PINYIN, PREFIX});
+		assertSegments("ChongQ",
+				new String[] {"chong", "q"}, new int[] {0, 5}, new int[] {5, 6},
+				new String[] {PINYIN, PREFIX});
+	}
+
+	public void testInitialsOnly() throws IOException {
+		assertSegments("cq",
+				new String[] {"c", "q"}, new int[] {0, 1}, new int[] {1, 2}, new String[] {PREFIX, PREFIX});
+		// r、m本身也是音节，在输入中间同样按声母处理
+		assertSegments("zgrm",
+				new String[] {"z", "g", "r", "m"}, new int[] {0, 1, 2, 3}, new int[] {1, 2, 3, 4},
+				new String[] {PREFIX, PREFIX, PREFIX, PREFIX});
+	}
+
+	public void testOtherText() throws IOException {
+		assertSegments("beijing 2015 中国",
+				new String[] {"bei", "jing", "2015", "中国"}, new int[] {0, 3, 8, 13}, new int[] {3, 7, 12, 15},
+				new String[] {PINYIN, PINYIN, WORD, WORD});
+	}
+
+	public void testRandomStrings() throws IOException {
+		Analyzer analyzer = new Analyzer() {
+			@Override
+			protected TokenStreamComponents createComponents(String fieldName) {
+				return new TokenStreamComponents(new PinyinSegmentTokenizer());
+			}
+		};
+		checkRandomData(random(), analyzer, 200 * RANDOM_MULTIPLIER);
+		analyzer.close();
+	}
+}
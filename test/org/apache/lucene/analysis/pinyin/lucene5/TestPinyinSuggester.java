@@ -0,0 +1,125 @@
+package org.apache.lucene.analysis.pinyin.lucene5;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.search.suggest.FileDictionary;
+import org.apache.lucene.search.suggest.Lookup.LookupResult;
+import org.apache.lucene.util.LuceneTestCase;
+
+/**
+ * PinyinSuggester、PinyinLookup的测试
+ * @author Lanxiaowei
+ *
+ */
+public class TestPinyinSuggester extends LuceneTestCase {
+	private static final String[] PREFIXES = {"c", "chongq", "cq", "cqdx", "chongqingdx", "zgr", "bj", "cd", "重", "长"};
+
+	private static Map<String, Long> entries(Object... surfaceAndWeights) {
+		Map<String, Long> entries = new LinkedHashMap<String, Long>();
+		for (int i = 0; i < surfaceAndWeights.length; i += 2) {
+			entries.put((String) surfaceAndWeights[i], ((Number) surfaceAndWeights[i + 1]).longValue());
+		}
+		return entries;
+	}
+
+	private static Map<String, Long> initialEntries() {
+		return entries("重庆大学", 100, "重庆", 50, "长城", 80, "中国人", 30, "北京", 60);
+	}
+
+	private static List<String> lookup(PinyinSuggester suggester, String prefix, int num) throws IOException {
+		List<String> surfaces = new ArrayList<String>();
+		for (PinyinSuggester.Result result : suggester.lookup(prefix, num)) {
+			surfaces.add(result.getSurface());
+		}
+		return surfaces;
+	}
+
+	private static List<String> lookup(PinyinLookup lookup, String prefix) throws IOException {
+		List<String> surfaces = new ArrayList<String>();
+		for (LookupResult result : lookup.lookup(prefix, false, 10)) {
+			surfaces.add(result.key.toString());
+		}
+		return surfaces;
+	}
+
+	public void testRankingByWeight() throws IOException {
+		PinyinSuggester suggester = new PinyinSuggester();
+		suggester.build(initialEntries());
+		assertEquals(5, suggester.getCount());
+		assertEquals(Arrays.asList("重庆大学", "长城", "重庆"), lookup(suggester, "c", 10));
+		assertEquals(Arrays.asList("重庆大学", "长城"), lookup(suggester, "c", 2));
+		List<PinyinSuggester.Result> results = suggester.lookup("c", 1);
+		assertEquals(100L, results.get(0).getWeight());
+	}
+
+	public void testPrefixAndInitials() throws IOException {
+		PinyinSuggester suggester = new PinyinSuggester();
+		suggester.build(initialEntries());
+		assertEquals(Arrays.asList("重庆大学", "重庆"), lookup(suggester, "chongq", 10));
+		assertEquals(Arrays.asList("重庆大学", "重庆"), lookup(suggester, "CQ", 10));
+		assertEquals(Arrays.asList("重庆大学"), lookup(suggester, "cqdx", 10));
+		assertEquals(Arrays.asList("重庆大学"), lookup(suggester, "chongqingdx", 10));
+		assertEquals(Arrays.asList("重庆大学"), lookup(suggester, "chong'qing da", 10));
+		assertEquals(Arrays.asList("中国人"), lookup(suggester, "zgr", 10));
+		assertEquals(Arrays.asList("重庆大学", "重庆"), lookup(suggester, "重", 10));
+		assertEquals(Collections.<String>emptyList(), lookup(suggester, "xyz", 10));
+		assertEquals(Collections.<String>emptyList(), lookup(suggester, "c", 0));
+	}
+
+	public void testUpdate() throws IOException {
+		PinyinSuggester suggester = new PinyinSuggester();
+		suggester.build(initialEntries());
+		suggester.update(entries("长城", 200, "成都", 10), Arrays.asList("重庆"));
+		assertEquals(5, suggester.getCount());
+		assertEquals(Arrays.asList("长城", "重庆大学", "成都"), lookup(suggester, "c", 10));
+		assertEquals(Arrays.asList("重庆大学"), lookup(suggester, "cq", 10));
+
+		// 与全量构建的结果一致
+		Map<String, Long> all = initialEntries();
+		all.remove("重庆");
+		all.put("长城", 200L);
+		all.put("成都", 10L);
+		PinyinSuggester rebuilt = new PinyinSuggester();
+		rebuilt.build(all);
+		assertSameLookups(rebuilt, suggester);
+	}
+
+	public void testLookupBuildSyncsChangedEntries() throws IOException {
+		PinyinLookup lookup = new PinyinLookup();
+		lookup.build(new FileDictionary(new StringReader("重庆大学\t100\n重庆\t50\n长城\t80\n")).getEntryIterator());
+		assertEquals(3, lookup.getCount());
+		assertEquals(Arrays.asList("重庆大学", "长城", "重庆"), lookup(lookup, "c"));
+
+		// Solr每次传入全部词条：成都新增、长城权重变化、重庆删除
+		lookup.build(new FileDictionary(new StringReader("重庆大学\t100\n长城\t200\n成都\t10\n")).getEntryIterator());
+		assertEquals(3, lookup.getCount());
+		assertEquals(Arrays.asList("长城", "重庆大学", "成都"), lookup(lookup, "c"));
+		PinyinSuggester rebuilt = new PinyinSuggester();
+		rebuilt.build(entries("重庆大学", 100, "长城", 200, "成都", 10));
+		assertSameLookups(rebuilt, lookup.getSuggester());
+	}
+
+	public void testSyncWithoutChanges() throws IOException {
+		PinyinSuggester suggester = new PinyinSuggester();
+		suggester.build(initialEntries());
+		long ram = suggester.ramBytesUsed();
+		suggester.sync(initialEntries());
+		assertEquals(5, suggester.getCount());
+		assertEquals(ram, suggester.ramBytesUsed());
+		assertEquals(Arrays.asList("重庆大学", "长城", "重庆"), lookup(suggester, "c", 10));
+	}
+
+	private static void assertSameLookups(PinyinSuggester expected, PinyinSuggester actual) throws IOException {
+		assertEquals(expected.getCount(), actual.getCount());
+		for (String prefix : PREFIXES) {
+			assertEquals(prefix, expected.lookup(prefix, 10).toString(), actual.lookup(prefix, 10).toString());
+		}
+	}
+}
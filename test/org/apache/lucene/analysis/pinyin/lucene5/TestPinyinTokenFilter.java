@@ -0,0 +1,158 @@
+package org.apache.lucene.analysis.pinyin.lucene5;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.BaseTokenStreamTestCase;
+import org.apache.lucene.analysis.CannedTokenStream;
+import org.apache.lucene.analysis.MockCharFilter;
+import org.apache.lucene.analysis.MockTokenizer;
+import org.apache.lucene.analysis.Token;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.pinyin.utils.Constant;
+import org.apache.lucene.analysis.pinyin.utils.PinyinCache;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+
+/**
+ * PinyinTokenFilter的测试
+ * @author Lanxiaowei
+ *
+ */
+public class TestPinyinTokenFilter extends BaseTokenStreamTestCase {
+	/**超过8个音节的词元[音节边界数组的初始容量为8]*/
+	private static final String LONG_TERM = "中华人民共和国国务院办公厅";
+
+	private static Analyzer pinyinAnalyzer(final PinyinCache cache) {
+		return new Analyzer() {
+			@Override
+			protected TokenStreamComponents createComponents(String fieldName) {
+				Tokenizer tokenizer = new MockTokenizer(MockTokenizer.WHITESPACE, false);
+				return new TokenStreamComponents(tokenizer, new PinyinTokenFilter(tokenizer,
+						Constant.DEFAULT_SHORT_PINYIN, Constant.DEFAULT_PINYIN_ALL, Constant.DEFAULT_OUT_CHINESE,
+						Constant.DEFAULT_MIN_TERM_LRNGTH, Constant.DEFAULT_MAX_COMBINATIONS, cache));
+			}
+		};
+	}
+
+	public void testBasics() throws IOException {
+		Analyzer analyzer = pinyinAnalyzer(null);
+		assertAnalyzesTo(analyzer, "中国 abc",
+				new String[] {"中国", "zhongguo", "zg", "z", "abc", "abc"},
+				new int[] {0, 0, 0, 0, 3, 3},
+				new int[] {2, 2, 2, 2, 6, 6},
+				new String[] {Constant.TYPE_CHINESE_ORIGINAL, Constant.TYPE_PINYIN, Constant.TYPE_PINYIN,
+						Constant.TYPE_PINYIN, Constant.TYPE_NORMAL_WORD, Constant.TYPE_PINYIN},
+				new int[] {1, 0, 0, 0, 1, 0});
+		analyzer.close();
+	}
+
+	public void testLongTermWithoutCache() throws IOException {
+		Analyzer analyzer = pinyinAnalyzer(null);
+		List<String> terms = terms(analyzer, LONG_TERM);
+		assertEquals(LONG_TERM, terms.get(0));
+		assertTrue(terms.toString(), terms.contains("zhonghuarenmingongheguoguowuyuanbangongting"));
+		assertTrue(terms.toString(), terms.contains("zhrmghggwybgt"));
+		analyzer.close();
+	}
+
+	public void testLongTermWithCache() throws IOException {
+		Analyzer uncached = pinyinAnalyzer(null);
+		Analyzer cached = pinyinAnalyzer(new PinyinCache(100));
+		List<String> expected = terms(uncached, LONG_TERM);
+		//第一次未命中时写入缓存，第二次从缓存读取
+		assertEquals(expected, terms(cached, LONG_TERM));
+		assertEquals(expected, terms(cached, LONG_TERM));
+		uncached.close();
+		cached.close();
+	}
+
+	public void testRandomStrings() throws IOException {
+		Analyzer analyzer = pinyinAnalyzer(new PinyinCache(1000));
+		checkRandomData(random(), analyzer, 200 * RANDOM_MULTIPLIER);
+		analyzer.close();
+	}
+
+	public void testGraph() throws IOException {
+		Analyzer analyzer = graphAnalyzer(false);
+		// 每个字一个位置，原词元跨过所有字；词首尾没有拼音的字符计入第一个、最后一个字的偏移量
+		assertAnalyzesTo(analyzer, "重庆 a长城",
+				new String[] {"重庆", "zhong", "chong", "z", "c", "qing", "q",
+						"a长城", "zhang", "chang", "z", "c", "cheng", "c"},
+				new int[] {0, 0, 0, 0, 0, 1, 1, 3, 3, 3, 3, 3, 5, 5},
+				new int[] {2, 1, 1, 1, 1, 2, 2, 6, 5, 5, 5, 5, 6, 6},
+				null,
+				new int[] {1, 0, 0, 0, 0, 1, 0, 1, 0, 0, 0, 0, 1, 0},
+				new int[] {2, 1, 1, 1, 1, 1, 1, 2, 1, 1, 1, 1, 1, 1});
+		analyzer.close();
+	}
+
+	public void testGraphSkipsOverlappingTokens() throws IOException {
+		// IK的useSmart=false输出重叠的词元：中华人民、中华、人民，随后是不重叠的北京
+		TokenStream stream = new PinyinTokenFilter(new CannedTokenStream(0, 7,
+				token("中华人民", 1, 0, 4), token("中华", 1, 0, 2), token("人民", 1, 2, 4), token("北京", 1, 5, 7)),
+				true, false, true, 1, Constant.DEFAULT_MAX_COMBINATIONS, null, null, true);
+		// 重叠的词元按默认方式叠加输出，北京展开为两个位置
+		assertTokenStreamContents(stream,
+				new String[] {"中华人民", "zhrm", "zhr", "zh", "z", "中华", "zh", "z", "人民", "rm", "r", "北京", "b", "j"},
+				new int[] {0, 0, 0, 0, 0, 0, 0, 0, 2, 2, 2, 5, 5, 6},
+				new int[] {4, 4, 4, 4, 4, 2, 2, 2, 4, 4, 4, 7, 6, 7},
+				null,
+				new int[] {1, 0, 0, 0, 0, 1, 0, 0, 1, 0, 0, 1, 0, 1},
+				new int[] {1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 2, 1, 1},
+				7);
+	}
+
+	private static Token token(String term, int posInc, int startOffset, int endOffset) {
+		Token token = new Token(term, startOffset, endOffset);
+		token.setPositionIncrement(posInc);
+		return token;
+	}
+
+	public void testGraphRandomStrings() throws IOException {
+		Analyzer analyzer = graphAnalyzer(false);
+		checkRandomData(random(), analyzer, 200 * RANDOM_MULTIPLIER);
+		analyzer.close();
+	}
+
+	public void testGraphRandomStringsWithCharFilter() throws IOException {
+		Analyzer analyzer = graphAnalyzer(true);
+		checkRandomData(random(), analyzer, 200 * RANDOM_MULTIPLIER);
+		analyzer.close();
+	}
+
+	private static Analyzer graphAnalyzer(final boolean charFilter) {
+		return new Analyzer() {
+			@Override
+			protected Reader initReader(String fieldName, Reader reader) {
+				return charFilter ? new MockCharFilter(reader, 2) : reader;
+			}
+
+			@Override
+			protected TokenStreamComponents createComponents(String fieldName) {
+				Tokenizer tokenizer = new MockTokenizer(MockTokenizer.WHITESPACE, false);
+				return new TokenStreamComponents(tokenizer, new PinyinTokenFilter(tokenizer, false, true, true,
+						1, Constant.DEFAULT_MAX_COMBINATIONS, null, null, true));
+			}
+		};
+	}
+
+	static List<String> terms(Analyzer analyzer, String text) throws IOException {
+		List<String> terms = new ArrayList<String>();
+		TokenStream ts = analyzer.tokenStream("field", text);
+		try {
+			CharTermAttribute termAtt = ts.addAttribute(CharTermAttribute.class);
+			ts.reset();
+			while (ts.incrementToken()) {
+				terms.add(termAtt.toString());
+			}
+			ts.end();
+		} finally {
+			ts.close();
+		}
+		return terms;
+	}
+}
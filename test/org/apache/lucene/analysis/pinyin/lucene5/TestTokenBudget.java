@@ -0,0 +1,128 @@
+package org.apache.lucene.analysis.pinyin.lucene5;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.BaseTokenStreamTestCase;
+import org.apache.lucene.analysis.MockTokenizer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.pinyin.utils.Constant;
+import org.apache.lucene.analysis.pinyin.utils.TokenBudget;
+
+/**
+ * 词元预算的测试：PinyinTokenFilter + PinyinNGramTokenFilter的输出不超过预算给出的上限
+ * @author Lanxiaowei
+ *
+ */
+public class TestTokenBudget extends BaseTokenStreamTestCase {
+	private static final String[] WORDS = {"中华人民共和国", "银行行长", "长城", "重庆", "abc", "2015", "音乐"};
+
+	private static Analyzer budgetAnalyzer(TokenBudget budget) {
+		return budgetAnalyzer(budget, false);
+	}
+
+	private static Analyzer budgetAnalyzer(TokenBudget budget, boolean edges) {
+		return budgetAnalyzer(budget, edges, false);
+	}
+
+	private static Analyzer budgetAnalyzer(final TokenBudget budget, final boolean edges, final boolean graph) {
+		return new Analyzer() {
+			@Override
+			protected TokenStreamComponents createComponents(String fieldName) {
+				Tokenizer tokenizer = new MockTokenizer(MockTokenizer.WHITESPACE, false);
+				TokenStream stream = new PinyinTokenFilter(tokenizer, Constant.DEFAULT_SHORT_PINYIN,
+						Constant.DEFAULT_PINYIN_ALL, Constant.DEFAULT_OUT_CHINESE, Constant.DEFAULT_MIN_TERM_LRNGTH,
+						Constant.DEFAULT_MAX_COMBINATIONS, null, null, graph, null, budget);
+				stream = edges ?
+						new PinyinEdgeNGramTokenFilter(stream, Constant.DEFAULT_SIDE_FRONT, Constant.DEFAULT_MIN_GRAM,
+								Constant.DEFAULT_MAX_GRAM, Constant.DEFAULT_NGRAM_CHINESE) :
+						new PinyinNGramTokenFilter(stream, Constant.DEFAULT_MIN_GRAM, Constant.DEFAULT_MAX_GRAM,
+								Constant.DEFAULT_NGRAM_CHINESE, Constant.DEFAULT_NGRAM_NUMBER);
+				return new TokenStreamComponents(tokenizer, stream);
+			}
+		};
+	}
+
+	private static String text(int words) {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < words; i++) {
+			builder.append(WORDS[i % WORDS.length]).append(' ');
+		}
+		return builder.toString();
+	}
+
+	public void testTokenCountIsBounded() throws IOException {
+		assertTokenCountIsBounded(false);
+	}
+
+	public void testEdgeTokenCountIsBounded() throws IOException {
+		assertTokenCountIsBounded(true);
+	}
+
+	public void testGraphTokenCountIsBounded() throws IOException {
+		// graph模式预读下一个词元后恢复属性，不能把已输出的词元数一起恢复
+		assertTokenCountIsBounded(false, true);
+	}
+
+	private static void assertTokenCountIsBounded(boolean edges) throws IOException {
+		assertTokenCountIsBounded(edges, false);
+	}
+
+	private static void assertTokenCountIsBounded(boolean edges, boolean graph) throws IOException {
+		int maxTokens = 200;
+		Analyzer unlimited = budgetAnalyzer(null, edges, graph);
+		Analyzer limited = budgetAnalyzer(new TokenBudget("field", maxTokens, 0), edges, graph);
+		for (int words : new int[] {10, 100, 1000}) {
+			String text = text(words);
+			int unlimitedCount = TestPinyinTokenFilter.terms(unlimited, text).size();
+			List<String> terms = TestPinyinTokenFilter.terms(limited, text);
+			//超出maxTokens后最多再输出2 * step个，之后只输出原词元
+			assertTrue(words + ": " + terms.size(), terms.size() <= maxTokens + 2 * (maxTokens / 4) + words);
+			assertTrue(terms.size() <= unlimitedCount);
+			if (unlimitedCount <= maxTokens) {
+				assertEquals(unlimitedCount, terms.size());
+			}
+			//原词元总是输出
+			for (String word : text.split(" ")) {
+				assertTrue(word, terms.contains(word));
+			}
+		}
+		unlimited.close();
+		limited.close();
+	}
+
+	public void testBudgetRestartsPerDocument() throws IOException {
+		Analyzer analyzer = budgetAnalyzer(new TokenBudget("field", 50, 0));
+		List<String> expected = TestPinyinTokenFilter.terms(analyzer, text(5));
+		TestPinyinTokenFilter.terms(analyzer, text(500));
+		assertEquals(expected, TestPinyinTokenFilter.terms(analyzer, text(5)));
+		analyzer.close();
+	}
+
+	public void testUnlimitedBudgetChangesNothing() throws IOException {
+		Analyzer plain = budgetAnalyzer(null);
+		Analyzer unlimited = budgetAnalyzer(new TokenBudget("field", 0, 0));
+		String text = text(100);
+		assertEquals(TestPinyinTokenFilter.terms(plain, text), TestPinyinTokenFilter.terms(unlimited, text));
+		plain.close();
+		unlimited.close();
+	}
+
+	public void testMaxTermCombinations() throws IOException {
+		Analyzer analyzer = budgetAnalyzer(new TokenBudget("field", 0, 2));
+		//银行行长的全拼组合超过2个，只输出简拼
+		List<String> terms = TestPinyinTokenFilter.terms(analyzer, "银行行长");
+		assertTrue(terms.toString(), terms.contains("银行行长"));
+		assertFalse(terms.toString(), terms.contains("yinhangxingzhang"));
+		assertFalse(terms.toString(), terms.contains("yinhanghangzhang"));
+		analyzer.close();
+	}
+
+	public void testRandomStrings() throws IOException {
+		Analyzer analyzer = budgetAnalyzer(new TokenBudget("field", 20, 4));
+		checkRandomData(random(), analyzer, 200 * RANDOM_MULTIPLIER);
+		analyzer.close();
+	}
+}
@@ -0,0 +1,166 @@
+package org.apache.lucene.analysis.pinyin.solr5;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.charfilter.HTMLStripCharFilterFactory;
+import org.apache.lucene.analysis.ik.IKTokenizerFactory;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+import org.apache.lucene.analysis.util.ClasspathResourceLoader;
+import org.apache.lucene.analysis.util.ResourceLoader;
+import org.apache.lucene.util.AttributeSource;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.solr.schema.JsonPreAnalyzedParser;
+import org.apache.solr.schema.PreAnalyzedField.ParseResult;
+import org.apache.solr.schema.PreAnalyzedField.PreAnalyzedParser;
+import org.apache.solr.schema.SimplePreAnalyzedParser;
+
+/**
+ * PinyinPreAnalyzer的测试：按命令行参数构建的分词链，预分词结果解析后与直接使用Solr工厂类得到的词元相同
+ * @author Lanxiaowei
+ *
+ */
+public class TestPinyinPreAnalyzer extends LuceneTestCase {
+	private static final String[] TEXTS = {
+		"中华人民共和国",
+		"<b>重庆</b>长城 银行行长",
+		"刘德华 2015 iphone6",
+	};
+
+	private static final String[] CHAIN = {
+		"-charFilter", "htmlStrip",
+		"-tokenizer", IKTokenizerFactory.class.getName(), "useSmart=true",
+		"-filter", PinyinTokenFilterFactory.class.getName(), "shortPinyin=true", "minTermLength=2", "cacheSize=0",
+		"-filter", PinyinNGramTokenFilterFactory.class.getName(), "minGram=2", "maxGram=4",
+	};
+
+	private ResourceLoader loader;
+
+	@Override
+	public void setUp() throws Exception {
+		super.setUp();
+		loader = new ClasspathResourceLoader(getClass());
+	}
+
+	/**
+	 * 与Solr加载schema一样直接创建工厂类
+	 */
+	private Analyzer solrChain() throws IOException {
+		final HTMLStripCharFilterFactory charFilter = new HTMLStripCharFilterFactory(new HashMap<String, String>());
+		final IKTokenizerFactory tokenizer = new IKTokenizerFactory(args("useSmart", "true"));
+		tokenizer.inform(loader);
+		final PinyinTokenFilterFactory pinyin = new PinyinTokenFilterFactory(
+				args("shortPinyin", "true", "minTermLength", "2", "cacheSize", "0"));
+		pinyin.inform(loader);
+		final PinyinNGramTokenFilterFactory nGram = new PinyinNGramTokenFilterFactory(
+				args("minGram", "2", "maxGram", "4"));
+		return new Analyzer() {
+			@Override
+			protected Reader initReader(String fieldName, Reader reader) {
+				return charFilter.create(reader);
+			}
+
+			@Override
+			protected TokenStreamComponents createComponents(String fieldName) {
+				Tokenizer source = tokenizer.create();
+				return new TokenStreamComponents(source, nGram.create(pinyin.create(source)));
+			}
+		};
+	}
+
+	private static Map<String, String> args(String... keyValues) {
+		Map<String, String> args = new HashMap<String, String>();
+		for (int i = 0; i < keyValues.length; i += 2) {
+			args.put(keyValues[i], keyValues[i + 1]);
+		}
+		return args;
+	}
+
+	public void testSameTokensAsSolrFactories() throws IOException {
+		Analyzer expected = solrChain();
+		Analyzer actual = PinyinPreAnalyzer.createAnalyzer(loader, CHAIN);
+		for (PreAnalyzedParser parser : new PreAnalyzedParser[] {new JsonPreAnalyzedParser(), new SimplePreAnalyzedParser()}) {
+			PinyinPreAnalyzer preAnalyzer = new PinyinPreAnalyzer(actual, parser, true, ForkJoinPool.commonPool());
+			for (String text : TEXTS) {
+				String formatted = preAnalyzer.analyze("title", text);
+				List<String> tokens = tokens(expected.tokenStream("title", text));
+				assertFalse(text, tokens.isEmpty());
+				assertEquals(parser.getClass().getSimpleName() + " " + text, tokens, parse(parser, formatted, text));
+			}
+		}
+		expected.close();
+		actual.close();
+	}
+
+	public void testInvalidChain() throws IOException {
+		try {
+			PinyinPreAnalyzer.createAnalyzer(loader, "-filter", PinyinNGramTokenFilterFactory.class.getName());
+			fail("a tokenizer is required");
+		} catch (IllegalArgumentException e) {
+			assertEquals("-tokenizer is required", e.getMessage());
+		}
+		try {
+			PinyinPreAnalyzer.createAnalyzer(loader, "-tokenizer", IKTokenizerFactory.class.getName(), "smart=true");
+			fail("unknown factory arguments must be rejected");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("smart"));
+		}
+		try {
+			PinyinPreAnalyzer.createAnalyzer(loader, "-tokenizer", IKTokenizerFactory.class.getName(), "useSmart");
+			fail("arguments must be key=value");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("key=value"));
+		}
+	}
+
+	/**
+	 * 词元、偏移、位置增量、类型
+	 */
+	private static List<String> tokens(TokenStream tokenStream) throws IOException {
+		List<String> tokens = new ArrayList<String>();
+		try {
+			CharTermAttribute termAtt = tokenStream.addAttribute(CharTermAttribute.class);
+			OffsetAttribute offsetAtt = tokenStream.addAttribute(OffsetAttribute.class);
+			PositionIncrementAttribute posIncrAtt = tokenStream.addAttribute(PositionIncrementAttribute.class);
+			TypeAttribute typeAtt = tokenStream.addAttribute(TypeAttribute.class);
+			tokenStream.reset();
+			while (tokenStream.incrementToken()) {
+				tokens.add(termAtt + "/" + offsetAtt.startOffset() + "-" + offsetAtt.endOffset() + "/+"
+						+ posIncrAtt.getPositionIncrement() + "/" + typeAtt.type());
+			}
+			tokenStream.end();
+		} finally {
+			tokenStream.close();
+		}
+		return tokens;
+	}
+
+	private static List<String> parse(PreAnalyzedParser parser, String formatted, String text) throws IOException {
+		AttributeSource source = new AttributeSource();
+		CharTermAttribute termAtt = source.addAttribute(CharTermAttribute.class);
+		OffsetAttribute offsetAtt = source.addAttribute(OffsetAttribute.class);
+		PositionIncrementAttribute posIncrAtt = source.addAttribute(PositionIncrementAttribute.class);
+		TypeAttribute typeAtt = source.addAttribute(TypeAttribute.class);
+		ParseResult result = parser.parse(new StringReader(formatted), source);
+		assertEquals(text, result.str);
+		List<String> tokens = new ArrayList<String>();
+		for (AttributeSource.State state : result.states) {
+			source.restoreState(state);
+			tokens.add(termAtt + "/" + offsetAtt.startOffset() + "-" + offsetAtt.endOffset() + "/+"
+					+ posIncrAtt.getPositionIncrement() + "/" + typeAtt.type());
+		}
+		return tokens;
+	}
+}
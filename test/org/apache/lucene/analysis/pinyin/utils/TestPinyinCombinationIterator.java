@@ -0,0 +1,108 @@
+package org.apache.lucene.analysis.pinyin.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.lucene.util.LuceneTestCase;
+
+/**
+ * PinyinCombinationIterator的测试
+ * @author Lanxiaowei
+ *
+ */
+public class TestPinyinCombinationIterator extends LuceneTestCase {
+	/**多音字组成的词[长:chang/zhang，行:xing/hang...，重:zhong/chong]*/
+	private static final String POLYPHONE_TERM = "长行重";
+
+	public void testSameCombinationsAsEagerExpansion() {
+		for (String text : new String[] {"中国", POLYPHONE_TERM, "银行行长", "a长b"}) {
+			assertEquals(text, new HashSet<String>(Pinyin4jUtil.getPinyinCollection(text)),
+					new HashSet<String>(toList(new PinyinCombinationIterator().reset(text, false, false, 0))));
+		}
+	}
+
+	public void testOrderedByReadingRank() {
+		PinyinCombinationIterator iterator = new PinyinCombinationIterator().reset(POLYPHONE_TERM, false, false, 0);
+		List<String> combinations = toList(iterator);
+		assertEquals(iterator.combinations(), combinations.size());
+		assertEquals(combinations.size(), new HashSet<String>(combinations).size());
+		//第一个组合每个字都取最常用读音，之后读音下标之和不减
+		StringBuilder first = new StringBuilder();
+		for (int i = 0; i < POLYPHONE_TERM.length(); i++) {
+			first.append(PinyinTable.syllable(PinyinTable.readings(POLYPHONE_TERM.charAt(i))[0]));
+		}
+		assertEquals(first.toString(), combinations.get(0));
+		int lastCost = 0;
+		for (String combination : combinations) {
+			int cost = cost(combination);
+			assertTrue(combinations.toString(), cost >= lastCost);
+			lastCost = cost;
+		}
+	}
+
+	public void testMaxCombinationsKeepsMostCommonPrefix() {
+		List<String> all = toList(new PinyinCombinationIterator().reset(POLYPHONE_TERM, false, false, 0));
+		assertTrue(all.size() > 3);
+		assertEquals(all.subList(0, 3), toList(new PinyinCombinationIterator().reset(POLYPHONE_TERM, false, false, 3)));
+	}
+
+	public void testShortPrefixes() {
+		Set<String> prefixes = new HashSet<String>(toList(new PinyinCombinationIterator().reset("中华人民", true, true, 0)));
+		assertEquals(new HashSet<String>(Arrays.asList("zhrm", "zhr", "zh", "z")), prefixes);
+	}
+
+	public void testReuse() {
+		PinyinCombinationIterator iterator = new PinyinCombinationIterator();
+		List<String> expected = toList(new PinyinCombinationIterator().reset("中国", false, false, 0));
+		toList(iterator.reset(POLYPHONE_TERM, false, false, 0));
+		char[] buffer = "x中国x".toCharArray();
+		assertEquals(expected, toList(iterator.reset(buffer, 1, 2, false, false, 0)));
+		assertFalse(iterator.reset("abc", false, false, 0).hasNext());
+	}
+
+	/**
+	 * 组合中每个字的读音下标之和[按字从左到右匹配音节]
+	 */
+	private static int cost(String combination) {
+		int cost = 0;
+		int pos = 0;
+		for (int i = 0; i < POLYPHONE_TERM.length(); i++) {
+			short[] readings = PinyinTable.readings(POLYPHONE_TERM.charAt(i));
+			int match = -1;
+			for (int j = 0; j < readings.length && match < 0; j++) {
+				String syllable = PinyinTable.syllable(readings[j]);
+				if (combination.startsWith(syllable, pos) && canFinish(combination, pos + syllable.length(), i + 1)) {
+					match = j;
+					pos += syllable.length();
+				}
+			}
+			assertTrue(combination, match >= 0);
+			cost += match;
+		}
+		return cost;
+	}
+
+	private static boolean canFinish(String combination, int pos, int index) {
+		if (index == POLYPHONE_TERM.length()) {
+			return pos == combination.length();
+		}
+		for (short reading : PinyinTable.readings(POLYPHONE_TERM.charAt(index))) {
+			String syllable = PinyinTable.syllable(reading);
+			if (combination.startsWith(syllable, pos) && canFinish(combination, pos + syllable.length(), index + 1)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static List<String> toList(PinyinCombinationIterator iterator) {
+		List<String> combinations = new ArrayList<String>();
+		while (iterator.hasNext()) {
+			combinations.add(iterator.next());
+		}
+		return combinations;
+	}
+}
@@ -0,0 +1,56 @@
+package org.apache.lucene.analysis.pinyin.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.util.LuceneTestCase;
+
+/**
+ * PinyinExpander的测试
+ * @author Lanxiaowei
+ *
+ */
+public class TestPinyinExpander extends LuceneTestCase {
+	/**每个字都是多音字[chang/zhang]，组合数超过MAX_CACHED_COMBINATIONS*/
+	private static final String POLYPHONE_TERM = "长长长长长长长";
+
+	public void testSmallTermIsCached() {
+		PinyinCache cache = new PinyinCache(100);
+		PinyinExpander expander = new PinyinExpander(false, true, 0, cache, null);
+		assertEquals(expand(new PinyinExpander(false, true, 0, null, null), "中国"), expand(expander, "中国"));
+		assertEquals(1, cache.size());
+		expand(expander, "中国");
+		assertEquals(1, cache.hitCount());
+	}
+
+	public void testLargeExpansionBypassesCache() {
+		PinyinExpander uncached = new PinyinExpander(false, true, 0, null, null);
+		char[] term = POLYPHONE_TERM.toCharArray();
+		assertTrue(uncached.combinations(term, 0, term.length, false) > PinyinExpander.MAX_CACHED_COMBINATIONS);
+		PinyinCache cache = new PinyinCache(100);
+		PinyinExpander cached = new PinyinExpander(false, true, 0, cache, null);
+		assertEquals(expand(uncached, POLYPHONE_TERM), expand(cached, POLYPHONE_TERM));
+		assertEquals(0, cache.size());
+	}
+
+	public void testCappedExpansionIsCached() {
+		PinyinCache cache = new PinyinCache(100);
+		PinyinExpander cached = new PinyinExpander(false, false, 8, cache, null);
+		List<String> expected = expand(new PinyinExpander(false, false, 8, null, null), POLYPHONE_TERM);
+		assertEquals(8, expected.size());
+		assertEquals(expected, expand(cached, POLYPHONE_TERM));
+		assertEquals(1, cache.size());
+		assertEquals(expected, expand(cached, POLYPHONE_TERM));
+	}
+
+	static List<String> expand(PinyinExpander expander, String text) {
+		char[] term = text.toCharArray();
+		List<String> pinyins = new ArrayList<String>();
+		expander.reset(term, 0, term.length);
+		while (expander.next()) {
+			pinyins.add(new String(expander.buffer(), 0, expander.length()));
+		}
+		expander.clear();
+		return pinyins;
+	}
+}
@@ -0,0 +1,69 @@
+package org.apache.lucene.analysis.pinyin.utils;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import org.apache.lucene.util.LuceneTestCase;
+
+/**
+ * PolyphoneDictionary的测试：自定义词典覆盖多音字的读音
+ * @author Lanxiaowei
+ *
+ */
+public class TestPolyphoneDictionary extends LuceneTestCase {
+	private static PolyphoneDictionary load(String text) throws IOException {
+		return PolyphoneDictionary.load(new StringReader(text));
+	}
+
+	public void testDefaultReadings() {
+		PinyinExpander expander = new PinyinExpander(false, false, 0, null, PolyphoneDictionary.getDefault());
+		assertEquals(Arrays.asList("chongqing"), TestPinyinExpander.expand(expander, "重庆"));
+		assertEquals(Arrays.asList("yinhang"), TestPinyinExpander.expand(expander, "银行"));
+	}
+
+	public void testCustomDictionaryOverridesReadings() throws IOException {
+		PolyphoneDictionary dictionary = load("# 自定义读音\n重庆 zhong qing\n行长 hang zhang\n");
+		assertEquals(2, dictionary.size());
+		PinyinExpander expander = new PinyinExpander(false, false, 0, null, dictionary);
+		assertEquals(Arrays.asList("zhongqing"), TestPinyinExpander.expand(expander, "重庆"));
+		assertEquals(Arrays.asList("yinhangzhang"), TestPinyinExpander.expand(expander, "银行长"));
+		// 词典中没有的词按单字展开所有读音
+		PinyinExpander withoutDictionary = new PinyinExpander(false, false, 0, null, null);
+		assertEquals(TestPinyinExpander.expand(withoutDictionary, "银行"), TestPinyinExpander.expand(expander, "银行"));
+	}
+
+	public void testShortPinyinFollowsDictionary() throws IOException {
+		PinyinExpander expander = new PinyinExpander(true, false, 0, null, load("重庆 zhong qing\n"));
+		// 简拼同时输出前缀组合
+		assertEquals(Arrays.asList("zq", "z"), TestPinyinExpander.expand(expander, "重庆"));
+	}
+
+	public void testLongestMatchAndLastEntryWins() throws IOException {
+		PolyphoneDictionary dictionary = load("重 chong\n重庆 chong qing\n重庆 zhong qing\n");
+		PolyphoneDictionary.Matcher matcher = dictionary.newMatcher();
+		char[] text = "重庆市".toCharArray();
+		assertEquals(2, matcher.longestMatch(text, 0, text.length));
+		short[] readings = matcher.readings();
+		assertEquals("zhong", PinyinTable.syllable(readings[0]));
+		assertEquals("qing", PinyinTable.syllable(readings[1]));
+		assertEquals(1, matcher.longestMatch(text, 0, 1));
+		assertEquals(0, matcher.longestMatch(text, 2, text.length));
+		assertNull(matcher.readings());
+	}
+
+	public void testInvalidLines() {
+		try {
+			load("重庆 chong\n");
+			fail("pinyin count must match the character count");
+		} catch (IllegalArgumentException | IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().startsWith("line 1"));
+		}
+		try {
+			load("# comment\n重庆 chong qxx\n");
+			fail("unknown pinyin must be rejected");
+		} catch (IllegalArgumentException | IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().startsWith("line 2"));
+		}
+	}
+}
@@ -0,0 +1,47 @@
+package org.apache.lucene.analysis.pinyin.utils;
+
+import java.io.IOException;
+
+import org.apache.lucene.util.LuceneTestCase;
+
+/**
+ * SharedResourceRegistry的测试[继承LuceneTestCase，注册表不能留下后台线程]
+ * @author Lanxiaowei
+ *
+ */
+public class TestSharedResourceRegistry extends LuceneTestCase {
+	public void testCacheIsSharedPerSize() throws IOException {
+		SharedResourceRegistry registry = SharedResourceRegistry.getInstance();
+		int before = registry.size();
+		SharedResourceRegistry.Handle<PinyinCache> small = PinyinCache.acquireShared(100);
+		SharedResourceRegistry.Handle<PinyinCache> sameSize = PinyinCache.acquireShared(100);
+		SharedResourceRegistry.Handle<PinyinCache> large = PinyinCache.acquireShared(1000);
+		try {
+			assertSame(small.get(), sameSize.get());
+			assertNotSame(small.get(), large.get());
+			assertEquals(100, small.get().maxSize());
+			assertEquals(1000, large.get().maxSize());
+			assertEquals(before + 2, registry.size());
+		} finally {
+			small.close();
+			sameSize.close();
+			large.close();
+		}
+		assertEquals(before, registry.size());
+	}
+
+	public void testNoCache() throws IOException {
+		assertNull(PinyinCache.acquireShared(0));
+	}
+
+	public void testHandleCloseIsIdempotent() throws IOException {
+		SharedResourceRegistry registry = SharedResourceRegistry.getInstance();
+		SharedResourceRegistry.Handle<PinyinCache> first = PinyinCache.acquireShared(10);
+		SharedResourceRegistry.Handle<PinyinCache> second = PinyinCache.acquireShared(10);
+		first.close();
+		first.close();
+		assertEquals(1, registry.refCount(PinyinCache.KIND_PINYIN_CACHE, "shared-10"));
+		second.close();
+		assertEquals(0, registry.refCount(PinyinCache.KIND_PINYIN_CACHE, "shared-10"));
+	}
+}